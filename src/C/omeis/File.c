@@ -1313,3 +1313,102 @@ FILE *infile;
 	closeInputFile (infile,isLocalFile);
 	return (ID);
 }
+
+
+
+/*
+  GetPendingFileRep (OID ID, char rorw)
+  Returns a FileRep for a file that was made by NewFile, but has not yet been
+  passed to FinishFile.  This allows a file to be filled in by several
+  separate WriteFile requests.  The repository file is opened for writing and
+  mmapped; the info is opened as specified by rorw.
+  Files that have already been finished have a SHA1, and are rejected.
+*/
+FileRep *GetPendingFileRep (OID ID, char rorw)
+{
+FileRep *myFile;
+int i;
+
+	if (!ID) return (NULL);
+
+	if (! (myFile = newFileRep (ID))) {
+		OMEIS_DoError ("Could not get a File object (no memory).");
+		return (NULL);
+	}
+
+	if (GetFileInfo (myFile,rorw) < 1) {
+		OMEIS_DoError ("Could not get info for FileID=%llu",(unsigned long long)ID);
+		freeFileRep (myFile);
+		return (NULL);
+	}
+
+	for (i = 0; i < OME_DIGEST_LENGTH; i++)
+		if (myFile->file_info->sha1[i]) break;
+	if (i < OME_DIGEST_LENGTH || myFile->file_info->isAlias) {
+		OMEIS_DoError ("FileID=%llu has already been finished",(unsigned long long)ID);
+		freeFileRep (myFile);
+		return (NULL);
+	}
+
+	if ( (myFile->fd_rep = openRepFile (myFile->path_rep, O_RDWR)) < 0) {
+		OMEIS_DoError ("Could not open repository file for writing (FileID = %llu): %s",
+			(unsigned long long)ID,strerror( errno ));
+		freeFileRep (myFile);
+		return (NULL);
+	}
+
+	myFile->size_buf = myFile->size_rep;
+	if ( (myFile->file_buf = mmap (NULL, myFile->size_rep, PROT_READ|PROT_WRITE, MAP_SHARED, myFile->fd_rep, 0LL)) == (void *) -1 ) {
+		OMEIS_DoError ("Could not mmap FileID=%llu",(unsigned long long)ID);
+		freeFileRep (myFile);
+		return (NULL);
+	}
+	myFile->is_mmapped = 1;
+
+	return (myFile);
+}
+
+/*
+  WriteFile (OID ID, size_t offset, size_t length, char *filename, unsigned char isLocalFile, unsigned char *md_value)
+  Reads length bytes from stdin (or from a local file), writing them to the
+  pending file at the specified offset.  Several ranges of the same file can
+  be written concurrently.  The SHA1 of the range is placed in md_value, so that
+  the client can verify it.
+  returns 1 on success, 0 on failure.
+*/
+int WriteFile (OID ID, size_t offset, size_t length, char *filename, unsigned char isLocalFile, unsigned char *md_value) {
+FileRep *myFile;
+size_t nIO;
+FILE *infile;
+
+	if ( !(myFile = GetPendingFileRep (ID,'r')) ) return (0);
+
+	if (length == 0 || offset+length > myFile->size_rep) {
+		OMEIS_DoError ("Trying to write past end of FileID=%llu",(unsigned long long)ID);
+		freeFileRep (myFile);
+		return (0);
+	}
+
+	if ( !(infile = openInputFile (filename,isLocalFile)) ) {
+		freeFileRep (myFile);
+		return (0);
+	}
+
+	nIO = fread ((char *)myFile->file_buf + offset,1,length,infile);
+	closeInputFile (infile,isLocalFile);
+	if (nIO != length) {
+		OMEIS_DoError ("Couldn't finish writing FileID=%llu.  Wrote %lu, expected %lu",
+			(unsigned long long)ID,(unsigned long)nIO,(unsigned long)length);
+		freeFileRep (myFile);
+		return (0);
+	}
+
+	if ( get_md_from_buffer ((char *)myFile->file_buf + offset, length, md_value) < 0 ) {
+		OMEIS_DoError ("Unable to calculate SHA1.");
+		freeFileRep (myFile);
+		return (0);
+	}
+
+	freeFileRep (myFile);
+	return (1);
+}
@@ -142,6 +142,12 @@ int RemovePixelsDep (FileRep *myFile, OID theDep);
 OID
 UploadFile (char *filename, size_t size, unsigned char isLocalFile);
 
+FileRep *
+GetPendingFileRep (OID ID, char rorw);
+
+int
+WriteFile (OID ID, size_t offset, size_t length, char *filename, unsigned char isLocalFile, unsigned char *md_value);
+
 void
 freeFileRep (FileRep *myFile);
 
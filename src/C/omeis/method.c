@@ -72,6 +72,7 @@ get_method_by_name(char * m_name)
 	if (strcmp(m_name, "Plane") == 0) return M_PLANE;
 	if (strcmp(m_name, "SetPlane") == 0) return M_SETPLANE;
 	if (strcmp(m_name, "GetPlane") == 0) return M_GETPLANE;
+	if (strcmp(m_name, "GetPlanes") == 0) return M_GETPLANES;
 	if (strcmp(m_name, "GetPlaneStats") == 0) return M_GETPLANESSTATS;
 	if (strcmp(m_name, "GetPlaneHist") == 0) return M_GETPLANESHIST;
 	if (strcmp(m_name, "ConvertPlane") == 0) return M_CONVERTPLANE;
@@ -96,6 +97,9 @@ get_method_by_name(char * m_name)
 	if (strcmp(m_name, "UploadFile") == 0) return M_UPLOADFILE;
 	if (strcmp(m_name, "DeleteFile") == 0) return M_DELETEFILE;
 	if (strcmp(m_name, "ZipFiles") == 0) return M_ZIPFILES;
+	if (strcmp(m_name, "NewFile") == 0) return M_NEWFILE;
+	if (strcmp(m_name, "WriteFile") == 0) return M_WRITEFILE;
+	if (strcmp(m_name, "FinishFile") == 0) return M_FINISHFILE;
 
 	/* Utility/other comparisons */
 	if (strcmp(m_name, "GetLocalPath") == 0) return M_GETLOCALPATH;
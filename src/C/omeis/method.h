@@ -65,6 +65,7 @@ get_method_by_name(char * m_name);
 #define M_CONVERTPLANE  24
 #define M_CONVERTTIFF   25
 #define M_GETPLANESHIST 26  
+#define M_GETPLANES     27
 
 	/* STACK METHODS */
 #define M_STACK         30
@@ -85,6 +86,9 @@ get_method_by_name(char * m_name);
 #define M_READFILE      53
 #define M_DELETEFILE    54
 #define M_ZIPFILES      55
+#define M_NEWFILE       56
+#define M_WRITEFILE     57
+#define M_FINISHFILE    58
 
 	/* OTHER/UTILITY METHODS */
 #define M_GETLOCALPATH  60
@@ -98,6 +98,7 @@ dispatch (char **param)
 	planeInfo *planeInfoP;
 	stackInfo *stackInfoP;
 	unsigned long uploadSize;
+	unsigned char md_value[OME_DIGEST_LENGTH];
 	unsigned long length;
 	u_int8_t sha1[20];
 	OID fileID;
@@ -163,6 +164,9 @@ dispatch (char **param)
 		m_val != M_ISBIOFORMATS     &&
 		m_val != M_IMPORTBIOFORMATS     &&
 		m_val != M_ZIPFILES &&
+		m_val != M_NEWFILE       &&
+		m_val != M_WRITEFILE     &&
+		m_val != M_FINISHFILE    &&
 		m_val != M_FINDPIXELS) {
 			OMEIS_ReportError (method, NULL, ID, "PixelsID Parameter missing");
 			return (-1);
@@ -507,6 +511,81 @@ dispatch (char **param)
 				fprintf (stdout,"%llu\n",(unsigned long long)ID);
 			}
 
+			break;
+		case M_NEWFILE:
+			uploadSize = 0;
+			if ( (theParam = get_param (param,"Size")) ) {
+				sscanf (theParam,"%llu",&scan_length);
+				uploadSize = (unsigned long)scan_length;
+			} else {
+				OMEIS_ReportError (method, NULL, ID,"Size must be specified!");
+				return (-1);
+			}
+			if ( !(theFile = NewFile (get_param (param,"Name"),uploadSize)) ) {
+				OMEIS_ReportError (method, NULL, ID, "NewFile failed.");
+				return (-1);
+			}
+			fileID = theFile->ID;
+			freeFileRep (theFile);
+
+			HTTP_ResultType ("text/plain");
+			fprintf (stdout,"%llu\n",(unsigned long long)fileID);
+
+			break;
+		case M_WRITEFILE:
+			if ( (theParam = get_param (param,"FileID")) ) {
+				sscanf (theParam,"%llu",&scan_ID);
+				fileID = (OID)scan_ID;
+			} else {
+				OMEIS_ReportError (method, NULL, ID,"FileID must be specified!");
+				return (-1);
+			}
+			if ( (theParam = get_param (param,"Offset")) ) {
+				sscanf (theParam,"%llu",&scan_off);
+				offset = (size_t)scan_off;
+			} else {
+				OMEIS_ReportError (method, "FileID", fileID,"Offset must be specified!");
+				return (-1);
+			}
+			uploadSize = 0;
+			if ( (theParam = get_param (param,"UploadSize")) ) {
+				sscanf (theParam,"%llu",&scan_length);
+				uploadSize = (unsigned long)scan_length;
+			} else {
+				OMEIS_ReportError (method, "FileID", fileID,"UploadSize must be specified!");
+				return (-1);
+			}
+			if ( !WriteFile (fileID,offset,uploadSize,get_param (param,"File"),isLocalFile,md_value) ) {
+				OMEIS_ReportError (method, "FileID", fileID, "WriteFile failed.");
+				return (-1);
+			}
+
+			HTTP_ResultType ("text/plain");
+			print_md (md_value);
+			printf ("\n");
+
+			break;
+		case M_FINISHFILE:
+			if ( (theParam = get_param (param,"FileID")) ) {
+				sscanf (theParam,"%llu",&scan_ID);
+				fileID = (OID)scan_ID;
+			} else {
+				OMEIS_ReportError (method, NULL, ID,"FileID must be specified!");
+				return (-1);
+			}
+			if ( !(theFile = GetPendingFileRep (fileID,'w')) ) {
+				OMEIS_ReportError (method, "FileID", fileID, "GetPendingFileRep failed.");
+				return (-1);
+			}
+			/* FinishFile frees theFile, and may return the ID of an identical file */
+			if ( (resultID = FinishFile (theFile)) == 0) {
+				OMEIS_ReportError (method, "FileID", fileID, "FinishFile failed.");
+				return (-1);
+			}
+
+			HTTP_ResultType ("text/plain");
+			fprintf (stdout,"%llu\n",(unsigned long long)resultID);
+
 			break;
 		case M_GETLOCALPATH:
 			fileID = 0;
@@ -1236,6 +1315,56 @@ dispatch (char **param)
 		freePixelsRep (thePixels);
 	}
 
+	else if (m_val == M_GETPLANES) {
+		char *planes, *spec;
+		int pZ,pC,pT;
+
+		if (!ID) return (-1);
+		if ( !(planes = get_param (param,"Planes")) ) {
+			OMEIS_ReportError (method, "PixelsID", ID,"Planes Parameter required for the %s method",method);
+			return (-1);
+		}
+
+		if (! (thePixels = GetPixelsRep (ID,'r',iam_BigEndian)) ) {
+			OMEIS_ReportError (method, "PixelsID", ID, "GetPixelsRep failed.");
+			return (-1);
+		}
+		head = thePixels->head;
+
+		/*
+		  Check every plane before streaming any of them, since we can't
+		  report an error once the pixels have started going out.
+		*/
+		spec = planes;
+		while (spec) {
+			if (sscanf (spec,"%d,%d,%d",&pZ,&pC,&pT) < 3) {
+				OMEIS_ReportError (method, "PixelsID", ID,"Planes improperly formed.  Expected z,c,t;z,c,t;...");
+				freePixelsRep (thePixels);
+				return (-1);
+			}
+			if (!CheckCoords (thePixels, 0, 0, pZ, pC, pT)){
+				OMEIS_ReportError (method, "PixelsID", ID,"Parameters theZ, theC, theT (%d,%d,%d) must be in range (%d,%d,%d).",pZ,pC,pT,head->dz-1,head->dc-1,head->dt-1);
+				freePixelsRep (thePixels);
+				return (-1);
+			}
+			if ( (spec = strchr (spec,';')) ) spec++;
+		}
+
+		/* The planes are sent back to back, in the order requested. */
+		thePixels->IO_stream = stdout;
+		HTTP_ResultType ("application/octet-stream");
+		nPix = head->dx*head->dy;
+		spec = planes;
+		while (spec) {
+			sscanf (spec,"%d,%d,%d",&pZ,&pC,&pT);
+			offset = GetOffset (thePixels, 0, 0, pZ, pC, pT);
+			DoPixelIO (thePixels, offset, nPix, 'r');
+			if ( (spec = strchr (spec,';')) ) spec++;
+		}
+
+		freePixelsRep (thePixels);
+	}
+
 
 
 	return (1);
@@ -36,6 +36,8 @@
 
 package org.openmicroscopy.ds;
 
+import java.util.List;
+
 /**
  * Provides some base functionality common to most {@link
  * RemoteCaller} implementations.
@@ -72,5 +74,33 @@ public abstract class AbstractRemoteCaller
                                                  e.getMessage());
         }
     }
-    
+
+    /**
+     * Invokes each of the calls in turn via the {@link #dispatch}
+     * method.  If a call cannot reach the data server at all, the
+     * {@link RemoteConnectionException} is rethrown rather than
+     * retried for each of the remaining calls.  Subclasses can
+     * override this method if their transport allows several calls
+     * to be sent at once.
+     */
+    public void dispatchBatch(List calls)
+    {
+        for (int i = 0; i < calls.size(); i++)
+        {
+            BatchResult result = (BatchResult) calls.get(i);
+            Object value;
+            try
+            {
+                value = dispatch(result.getMethod(),result.getParams());
+            } catch (RemoteConnectionException e) {
+                result.fail(e);
+                throw e;
+            } catch (RemoteException e) {
+                result.fail(e);
+                continue;
+            }
+            result.complete(value);
+        }
+    }
+
 }
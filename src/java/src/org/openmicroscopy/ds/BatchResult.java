@@ -0,0 +1,208 @@
+/*
+ * org.openmicroscopy.ds.BatchResult
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+/**
+ * <p>The deferred result of a remote method call which has been
+ * queued in a {@link RemoteBatch}.  The call is not sent to the data
+ * server until the batch is executed; after that, the {@link
+ * #getResult} method returns the call's result, or throws the
+ * exception that the call caused.  An error in one call of a batch
+ * does not affect any of the other calls in the batch.</p>
+ *
+ * <p>Subclasses can override the {@link #convert} method to turn the
+ * raw result of the remote call into a more useful object, such as a
+ * DTO.  The conversion happens once, when the result arrives; any
+ * exception thrown by the conversion is reported by {@link
+ * #getResult} in the same way as a remote error.</p>
+ *
+ * <p>The methods of this class are synchronized, so a result can be
+ * examined from a different thread than the one which executed its
+ * batch.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see RemoteBatch
+ */
+
+public class BatchResult
+{
+    private String  method;
+    private Object[]  params;
+
+    private boolean  done = false;
+    private Object  result = null;
+    private RuntimeException  exception = null;
+
+    /**
+     * Creates a new deferred result for a call to the specified
+     * remote method.  The method is invoked via the
+     * <code>dispatch</code> procedure, in the same way as the {@link
+     * RemoteCaller#dispatch} method.
+     */
+    public BatchResult(String method, Object[] params)
+    {
+        super();
+
+        if (method == null)
+            throw new IllegalArgumentException("Method cannot be null");
+
+        this.method = method;
+        this.params = params;
+    }
+
+    /**
+     * Returns the name of the remote method.
+     */
+    public String getMethod() { return method; }
+
+    /**
+     * Returns the parameters of the remote method.
+     */
+    public Object[] getParams() { return params; }
+
+    /**
+     * Returns whether the call has completed, either successfully or
+     * not.
+     */
+    public synchronized boolean isDone() { return done; }
+
+    /**
+     * Returns whether the call has completed with an error.
+     */
+    public synchronized boolean isFailed() { return exception != null; }
+
+    /**
+     * Returns the exception caused by the call, or <code>null</code>
+     * if it has not completed or completed successfully.
+     */
+    public synchronized RuntimeException getException() { return exception; }
+
+    /**
+     * Returns the result of the call.
+     *
+     * @throws IllegalStateException if the call's batch has not been
+     * executed yet
+     * @throws RemoteException if the call caused an error on the data
+     * server, or if it could not be sent
+     */
+    public synchronized Object getResult()
+    {
+        if (!done)
+            throw new IllegalStateException("The batch containing "+method+
+                                            " has not been executed");
+        if (exception != null)
+            throw exception;
+        return result;
+    }
+
+    /**
+     * Returns the result of the call, which is expected to be
+     * something which can be typecast into an {@link Integer}.  If it
+     * can't, a {@link RemoteServerErrorException} is thrown.
+     */
+    public Integer getInteger()
+    {
+        Object result = getResult();
+        try
+        {
+            return PrimitiveConverters.convertToInteger(result);
+        } catch (NumberFormatException e) {
+            throw new RemoteServerErrorException("Invalid return type "+
+                                                 e.getMessage());
+        }
+    }
+
+    /**
+     * Converts the raw result of the remote call into the object
+     * returned by {@link #getResult}.  The default implementation
+     * returns the raw result unchanged.
+     */
+    protected Object convert(Object raw)
+    {
+        return raw;
+    }
+
+    /**
+     * Records the raw result of the call.  This method is called by
+     * the {@link RemoteCaller} which executed the call, and should
+     * not be called otherwise.
+     */
+    public synchronized void complete(Object raw)
+    {
+        if (done)
+            throw new IllegalStateException("Call has already completed");
+
+        try
+        {
+            result = convert(raw);
+        } catch (RuntimeException e) {
+            exception = e;
+        }
+        done = true;
+    }
+
+    /**
+     * Records that the call caused an error.  This method is called
+     * by the {@link RemoteCaller} which executed the call, and should
+     * not be called otherwise.
+     */
+    public synchronized void fail(RuntimeException e)
+    {
+        if (done)
+            throw new IllegalStateException("Call has already completed");
+
+        exception = e;
+        done = true;
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "BatchResult ("+method+", "+
+            (!done? "pending": (exception != null)? "failed": "done")+")";
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * org.openmicroscopy.ds.CallMetrics
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>A {@link CallRecorder} which aggregates the recorded calls into
+ * statistics for each remote method: the number of calls and errors,
+ * a latency histogram, the time spent in serialization and on the
+ * network, and the total request and response sizes.  The {@link
+ * #getStatistics} and {@link #getAllStatistics} methods return
+ * immutable snapshots of these statistics.</p>
+ *
+ * <p>A single instance can be shared by any number of callers and
+ * image servers, in which case their calls are aggregated together.
+ * All of the methods of this class are synchronized.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see XmlRpcCaller#setCallRecorder
+ * @see org.openmicroscopy.is.ImageServer#setCallRecorder
+ */
+
+public class CallMetrics
+    implements CallRecorder
+{
+    /**
+     * The statistics of each method, keyed by method name.  Kept in
+     * sorted order, so that snapshots are returned in a predictable
+     * order.
+     */
+    private Map  methods = new TreeMap();
+
+    /**
+     * Creates a new <code>CallMetrics</code> with no recorded calls.
+     */
+    public CallMetrics()
+    {
+        super();
+    }
+
+    public synchronized void recordCall(String method,
+                                        long serializationMillis,
+                                        long networkMillis,
+                                        long requestBytes,
+                                        long responseBytes,
+                                        boolean failed)
+    {
+        MethodMetrics metrics = (MethodMetrics) methods.get(method);
+        if (metrics == null)
+        {
+            metrics = new MethodMetrics(method);
+            methods.put(method,metrics);
+        }
+
+        long millis = serializationMillis+networkMillis;
+
+        if (metrics.callCount == 0 || millis < metrics.minMillis)
+            metrics.minMillis = millis;
+        if (millis > metrics.maxMillis)
+            metrics.maxMillis = millis;
+
+        metrics.callCount++;
+        if (failed)
+            metrics.errorCount++;
+        metrics.serializationMillis += serializationMillis;
+        metrics.networkMillis += networkMillis;
+        if (requestBytes > 0)
+            metrics.requestBytes += requestBytes;
+        if (responseBytes > 0)
+            metrics.responseBytes += responseBytes;
+        metrics.histogram[CallStatistics.getBucket(millis)]++;
+    }
+
+    /**
+     * Returns a snapshot of the statistics for the specified remote
+     * method, or <code>null</code> if no calls to it have been
+     * recorded.
+     */
+    public synchronized CallStatistics getStatistics(String method)
+    {
+        MethodMetrics metrics = (MethodMetrics) methods.get(method);
+        return (metrics == null)? null: metrics.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of the statistics for every remote method
+     * which has been called, as a {@link List} of {@link
+     * CallStatistics} objects, sorted by method name.
+     */
+    public synchronized List getAllStatistics()
+    {
+        List result = new ArrayList(methods.size());
+        Iterator it = methods.values().iterator();
+        while (it.hasNext())
+            result.add(((MethodMetrics) it.next()).snapshot());
+        return result;
+    }
+
+    /**
+     * Returns the total number of calls recorded for all methods.
+     */
+    public synchronized long getCallCount()
+    {
+        long count = 0;
+        Iterator it = methods.values().iterator();
+        while (it.hasNext())
+            count += ((MethodMetrics) it.next()).callCount;
+        return count;
+    }
+
+    /**
+     * Discards all of the recorded statistics.
+     */
+    public synchronized void reset()
+    {
+        methods.clear();
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "CallMetrics ("+methods.size()+" methods, "+
+            getCallCount()+" calls)";
+    }
+
+    /**
+     * The running statistics of a single remote method.
+     */
+    private static final class MethodMetrics
+    {
+        final String  method;
+        long  callCount;
+        long  errorCount;
+        long  serializationMillis;
+        long  networkMillis;
+        long  minMillis;
+        long  maxMillis;
+        long  requestBytes;
+        long  responseBytes;
+        final long[]  histogram = new long[CallStatistics.getBucketCount()];
+
+        MethodMetrics(String method)
+        {
+            this.method = method;
+        }
+
+        CallStatistics snapshot()
+        {
+            return new CallStatistics(method,callCount,errorCount,
+                                      serializationMillis,networkMillis,
+                                      minMillis,maxMillis,
+                                      requestBytes,responseBytes,
+                                      histogram);
+        }
+    }
+}
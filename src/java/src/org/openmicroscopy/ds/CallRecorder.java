@@ -0,0 +1,83 @@
+/*
+ * org.openmicroscopy.ds.CallRecorder
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+/**
+ * <p>Receives a record of each remote call made by a {@link
+ * XmlRpcCaller} or an {@link org.openmicroscopy.is.HttpImageServer}.
+ * The {@link CallMetrics} class aggregates these records into
+ * per-method statistics; other implementations can forward them to
+ * whatever monitoring system is in use.</p>
+ *
+ * <p>The methods of a recorder are called by every thread which makes
+ * remote calls, so they must be thread-safe, and should return
+ * quickly.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public interface CallRecorder
+{
+    /**
+     * Records a single remote call.
+     *
+     * @param method the name of the remote method
+     * @param serializationMillis the time spent preparing the request
+     * on the client before it was sent
+     * @param networkMillis the time spent sending the request and
+     * receiving the response, including the time taken by the server
+     * @param requestBytes the size of the request, or -1 if it is not
+     * known
+     * @param responseBytes the size of the response, or -1 if it is
+     * not known
+     * @param failed whether the call failed
+     */
+    public void recordCall(String method,
+                           long serializationMillis,
+                           long networkMillis,
+                           long requestBytes,
+                           long responseBytes,
+                           boolean failed);
+}
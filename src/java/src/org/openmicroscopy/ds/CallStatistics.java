@@ -0,0 +1,240 @@
+/*
+ * org.openmicroscopy.ds.CallStatistics
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+/**
+ * <p>A snapshot of the statistics recorded by a {@link CallMetrics}
+ * for a single remote method.  Instances are immutable, and are not
+ * affected by calls recorded after the snapshot was taken.</p>
+ *
+ * <p>The latency of each call is the sum of its serialization and
+ * network times.  Latencies are counted in a histogram with fixed
+ * bucket bounds, given by {@link #getBucketBounds}.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see CallMetrics#getStatistics
+ */
+
+public class CallStatistics
+{
+    /**
+     * The upper bounds, in milliseconds, of the histogram buckets.
+     * The histogram has one more bucket than there are bounds, for
+     * the calls slower than the last bound.
+     */
+    private static final long[] BUCKET_BOUNDS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500,
+        1000, 2000, 5000, 10000, 30000, 60000
+    };
+
+    private String  method;
+    private long  callCount;
+    private long  errorCount;
+    private long  serializationMillis;
+    private long  networkMillis;
+    private long  minMillis;
+    private long  maxMillis;
+    private long  requestBytes;
+    private long  responseBytes;
+    private long[]  histogram;
+
+    /**
+     * Returns the upper bounds, in milliseconds, of the latency
+     * histogram buckets.  A call falls into the first bucket whose
+     * bound is greater than its latency.
+     */
+    public static long[] getBucketBounds()
+    {
+        return (long[]) BUCKET_BOUNDS.clone();
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns the histogram bucket for the
+     * specified latency.
+     */
+    static int getBucket(long millis)
+    {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++)
+            if (millis < BUCKET_BOUNDS[i])
+                return i;
+        return BUCKET_BOUNDS.length;
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns the number of buckets in the
+     * latency histogram.
+     */
+    static int getBucketCount() { return BUCKET_BOUNDS.length+1; }
+
+    CallStatistics(String method,
+                   long callCount, long errorCount,
+                   long serializationMillis, long networkMillis,
+                   long minMillis, long maxMillis,
+                   long requestBytes, long responseBytes,
+                   long[] histogram)
+    {
+        super();
+        this.method = method;
+        this.callCount = callCount;
+        this.errorCount = errorCount;
+        this.serializationMillis = serializationMillis;
+        this.networkMillis = networkMillis;
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.histogram = (long[]) histogram.clone();
+    }
+
+    /**
+     * Returns the name of the remote method.
+     */
+    public String getMethod() { return method; }
+
+    /**
+     * Returns the number of calls made to the method.
+     */
+    public long getCallCount() { return callCount; }
+
+    /**
+     * Returns the number of calls to the method which failed.
+     */
+    public long getErrorCount() { return errorCount; }
+
+    /**
+     * Returns the total time spent preparing requests on the client.
+     */
+    public long getSerializationMillis() { return serializationMillis; }
+
+    /**
+     * Returns the total time spent sending requests and receiving
+     * responses.
+     */
+    public long getNetworkMillis() { return networkMillis; }
+
+    /**
+     * Returns the total latency of all of the calls.
+     */
+    public long getTotalMillis()
+    {
+        return serializationMillis+networkMillis;
+    }
+
+    /**
+     * Returns the mean latency of the calls, or 0 if there have not
+     * been any.
+     */
+    public double getMeanMillis()
+    {
+        return (callCount == 0)? 0.0: ((double) getTotalMillis())/callCount;
+    }
+
+    /**
+     * Returns the latency of the fastest call.
+     */
+    public long getMinMillis() { return minMillis; }
+
+    /**
+     * Returns the latency of the slowest call.
+     */
+    public long getMaxMillis() { return maxMillis; }
+
+    /**
+     * Returns an estimate of the specified percentile of the
+     * latencies, as the upper bound of the histogram bucket which
+     * contains it.  The estimate is never larger than the latency of
+     * the slowest call.
+     *
+     * @param percentile the percentile to estimate, between 0 and 100
+     */
+    public long getPercentileMillis(double percentile)
+    {
+        if (percentile < 0.0 || percentile > 100.0)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        if (callCount == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(callCount*percentile/100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++)
+        {
+            seen += histogram[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(BUCKET_BOUNDS[i],maxMillis);
+        }
+        return maxMillis;
+    }
+
+    /**
+     * Returns the total size of the requests whose size was known.
+     */
+    public long getRequestBytes() { return requestBytes; }
+
+    /**
+     * Returns the total size of the responses whose size was known.
+     */
+    public long getResponseBytes() { return responseBytes; }
+
+    /**
+     * Returns the number of calls in each bucket of the latency
+     * histogram.
+     *
+     * @see #getBucketBounds
+     */
+    public long[] getHistogram() { return (long[]) histogram.clone(); }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public String toString()
+    {
+        return method+" ("+callCount+" calls, "+errorCount+" errors, "+
+            "mean "+((long) getMeanMillis())+" ms, "+
+            "p95 "+getPercentileMillis(95.0)+" ms, "+
+            "max "+maxMillis+" ms, "+
+            serializationMillis+"/"+networkMillis+" ms serialization/network, "+
+            requestBytes+"/"+responseBytes+" bytes sent/received)";
+    }
+}
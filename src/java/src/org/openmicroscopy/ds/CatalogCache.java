@@ -0,0 +1,752 @@
+/*
+ * org.openmicroscopy.ds.CatalogCache
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openmicroscopy.ds.dto.AnalysisChain;
+import org.openmicroscopy.ds.dto.AnalysisLink;
+import org.openmicroscopy.ds.dto.AnalysisNode;
+import org.openmicroscopy.ds.dto.FormalInput;
+import org.openmicroscopy.ds.dto.FormalOutput;
+import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.Module;
+import org.openmicroscopy.ds.dto.ModuleCategory;
+import org.openmicroscopy.ds.dto.SemanticElement;
+import org.openmicroscopy.ds.dto.SemanticType;
+
+/**
+ * <p>Caches the results of the remote methods which download the
+ * module and chain catalogs, so that they do not have to be
+ * downloaded again each time a client starts.  The cache is used by
+ * the {@link org.openmicroscopy.ds.managers.ModuleRetrievalManager},
+ * {@link org.openmicroscopy.ds.managers.ChainRetrievalManager}, and
+ * {@link org.openmicroscopy.ds.managers.ConfigurationManager}
+ * classes, which get it from their {@link DataServices} like any
+ * other service.</p>
+ *
+ * <p>The cache is disabled until it is given a directory with the
+ * {@link #setDirectory} method.  Each cached result is then stored
+ * in that directory, in a compressed binary encoding of the XML-RPC
+ * values returned by the data server, and in memory.  Since the
+ * results are stored before they are turned into DTOs, the cached
+ * DTO graphs are exactly those that the data server would
+ * return.  A separate directory should be used for each data
+ * server.</p>
+ *
+ * <p>Each cached result is stored along with a fingerprint of the
+ * catalog tables it was read from: the number of rows in each of the
+ * tables, and the largest primary key ID in each.  Since IDs are
+ * never reused, the ID catches a module which was deleted and
+ * another installed in its place, which leaves the row count
+ * unchanged.  Before a cached result is used, the current
+ * fingerprint is fetched from the data server with a single batched
+ * call.  If it has changed, only the results which depend on the
+ * changed tables are downloaded again.  The fingerprint does not
+ * detect rows which were modified in place, so the {@link #clear}
+ * method should be called if the catalog is known to have been
+ * edited.  The fingerprint is reused for {@link
+ * #getFingerprintLifetime} milliseconds, so that the several catalog
+ * lookups made while a client starts only fetch it once.</p>
+ *
+ * <p>Results which depend on more than the catalog tables, such as
+ * the modules named by the data server's configuration, can be
+ * cached in memory only, by passing <code>false</code> as the
+ * <code>persistent</code> parameter of {@link
+ * #dispatch(String,Object[],Class[],boolean)}.  They are then
+ * downloaded once by each client.</p>
+ *
+ * <p>The methods of this class are synchronized.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class CatalogCache
+    extends AbstractService
+{
+    /**
+     * The tables which make up the module catalog.
+     */
+    public static final Class[] MODULE_TABLES = {
+        Module.class, ModuleCategory.class,
+        FormalInput.class, FormalOutput.class,
+        SemanticType.class, SemanticElement.class
+    };
+
+    /**
+     * The tables which make up the chain catalog.
+     */
+    public static final Class[] CHAIN_TABLES = {
+        AnalysisChain.class, AnalysisNode.class, AnalysisLink.class,
+        Module.class, ModuleCategory.class,
+        FormalInput.class, FormalOutput.class,
+        SemanticType.class, SemanticElement.class
+    };
+
+    /**
+     * The default number of milliseconds for which a fingerprint is
+     * reused.
+     */
+    public static final long DEFAULT_FINGERPRINT_LIFETIME = 10*1000;
+
+    private static final int MAGIC = 0x4F4D4543;
+    private static final int VERSION = 2;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte STRING_REF = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte DATE = 7;
+    private static final byte BYTES = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+
+    /**
+     * Strings up to this long are written once, and referred to by
+     * index after that.  This catches the struct keys, which make up
+     * most of a catalog.
+     */
+    private static final int SHARED_STRING_LENGTH = 64;
+
+    private File  directory;
+    private long  fingerprintLifetime = DEFAULT_FINGERPRINT_LIFETIME;
+
+    /** The cached results, keyed by their cache key. */
+    private Map  entries = new HashMap();
+
+    /**
+     * The most recently fetched fingerprints of each table, keyed by
+     * table class.  Each is an <code>int[]</code> containing the row
+     * count and the largest ID.
+     */
+    private Map  tableFingerprints = new HashMap();
+
+    /** When the table fingerprints were fetched. */
+    private long  tableFingerprintsTime;
+
+    private long  hitCount;
+    private long  missCount;
+
+    public CatalogCache()
+    {
+        super();
+    }
+
+    /**
+     * Returns the directory in which the cache is stored, or
+     * <code>null</code> if the cache is disabled.
+     */
+    public synchronized File getDirectory() { return directory; }
+
+    /**
+     * Sets the directory in which the cache is stored.  The directory
+     * is created if it does not exist.  A value of <code>null</code>
+     * disables the cache.
+     *
+     * @throws DataException if the directory cannot be created
+     */
+    public synchronized void setDirectory(File directory)
+    {
+        if (directory != null && !directory.isDirectory() &&
+            !directory.mkdirs())
+            throw new DataException("Could not create "+directory);
+        this.directory = directory;
+        entries.clear();
+    }
+
+    /**
+     * Returns whether the cache is enabled.
+     */
+    public synchronized boolean isEnabled() { return directory != null; }
+
+    /**
+     * Returns the number of milliseconds for which a fingerprint is
+     * reused.
+     */
+    public synchronized long getFingerprintLifetime()
+    {
+        return fingerprintLifetime;
+    }
+
+    /**
+     * Sets the number of milliseconds for which a fingerprint is
+     * reused.  A value of 0 fetches the fingerprint again for every
+     * lookup.
+     */
+    public synchronized void setFingerprintLifetime(long fingerprintLifetime)
+    {
+        if (fingerprintLifetime < 0)
+            throw new IllegalArgumentException("Lifetime cannot be negative");
+        this.fingerprintLifetime = fingerprintLifetime;
+    }
+
+    /**
+     * <p>Calls a remote method which returns part of the catalog, and
+     * returns its raw result.  If the cache is enabled and contains a
+     * result for the same method and parameters, and none of the
+     * specified tables have changed since it was stored, the cached
+     * result is returned instead.</p>
+     *
+     * <p>The returned value is never shared, so it can be passed to
+     * the {@link Instantiator}, which modifies it.</p>
+     *
+     * @param method the remote method to call
+     * @param params the parameters of the remote method
+     * @param tables the DTO interfaces of the tables which the result
+     * is read from
+     * @return the raw result of the remote method
+     */
+    public Object dispatch(String method, Object[] params, Class[] tables)
+    {
+        return dispatch(method,params,tables,true);
+    }
+
+    /**
+     * Calls a remote method which returns part of the catalog, as in
+     * the {@link #dispatch(String,Object[],Class[])} method.  If
+     * <code>persistent</code> is <code>false</code>, the result is
+     * only cached in memory, and not written to the cache directory.
+     * This should be used for results which also depend on data
+     * outside of the specified tables.
+     *
+     * @param method the remote method to call
+     * @param params the parameters of the remote method
+     * @param tables the DTO interfaces of the tables which the result
+     * is read from
+     * @param persistent whether the result can be stored in the cache
+     * directory
+     * @return the raw result of the remote method
+     */
+    public synchronized Object dispatch(String method, Object[] params,
+                                        Class[] tables, boolean persistent)
+    {
+        if (directory == null)
+            return caller.dispatch(method,params);
+
+        String key = createKey(method,params);
+        int[] fingerprint = getFingerprint(tables);
+
+        Entry entry = (Entry) entries.get(key);
+        if (entry == null && persistent)
+        {
+            entry = readEntry(key);
+            if (entry != null)
+                entries.put(key,entry);
+        }
+
+        if (entry != null && equals(entry.fingerprint,fingerprint))
+        {
+            try
+            {
+                Object result = decode(entry.payload);
+                hitCount++;
+                return result;
+            } catch (IOException e) {
+                // Fall through and download the result again
+            }
+        }
+
+        missCount++;
+        Object result = caller.dispatch(method,params);
+
+        try
+        {
+            entry = new Entry(key,fingerprint,encode(result));
+            entries.put(key,entry);
+            if (persistent)
+                writeEntry(entry);
+        } catch (IOException e) {
+            // The result cannot be cached, but it is still valid.
+            entries.remove(key);
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes all of the cached results, both from memory and from
+     * the cache directory.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        tableFingerprints.clear();
+        if (directory != null)
+        {
+            File[] files = directory.listFiles();
+            for (int i = 0; files != null && i < files.length; i++)
+                if (files[i].getName().endsWith(".catalog"))
+                    files[i].delete();
+        }
+    }
+
+    /**
+     * Returns the number of lookups which were satisfied by the cache.
+     */
+    public synchronized long getHitCount() { return hitCount; }
+
+    /**
+     * Returns the number of lookups which had to be sent to the data
+     * server.
+     */
+    public synchronized long getMissCount() { return missCount; }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "CatalogCache ("+directory+", "+entries.size()+" entries, "+
+            hitCount+" hits, "+missCount+" misses)";
+    }
+
+    /**
+     * Returns the fingerprint of the specified tables: the row count
+     * and largest ID of each, in order.  Any tables which are not
+     * known are fetched, or all of them if the known ones are too
+     * old.
+     */
+    private int[] getFingerprint(Class[] tables)
+    {
+        long now = System.currentTimeMillis();
+        if (now-tableFingerprintsTime > fingerprintLifetime)
+            tableFingerprints.clear();
+
+        List missing = new ArrayList();
+        for (int i = 0; i < tables.length; i++)
+            if (!tableFingerprints.containsKey(tables[i]) &&
+                !missing.contains(tables[i]))
+                missing.add(tables[i]);
+
+        if (missing.size() > 0)
+        {
+            if (tableFingerprints.size() == 0)
+                tableFingerprintsTime = now;
+
+            DataFactory factory = (DataFactory)
+                services.getService(DataFactory.class);
+            RemoteBatch batch = factory.createBatch();
+            BatchResult[] counts = new BatchResult[missing.size()];
+            BatchResult[] maxIDs = new BatchResult[missing.size()];
+            for (int i = 0; i < counts.length; i++)
+            {
+                Class table = (Class) missing.get(i);
+                counts[i] = factory.count(batch,table,null);
+
+                Criteria crit = new Criteria();
+                crit.addWantedField("id");
+                crit.addOrderBy("!id");
+                crit.setLimit(1);
+                maxIDs[i] = factory.retrieve(batch,table,crit);
+            }
+            batch.executeAndCheck();
+
+            for (int i = 0; i < counts.length; i++)
+            {
+                int maxID = 0;
+                MappedDTO last = (MappedDTO) maxIDs[i].getResult();
+                if (last != null)
+                    maxID = PrimitiveConverters.
+                        convertToInteger(last.getMap().get("id")).intValue();
+
+                tableFingerprints.put(missing.get(i),
+                                      new int[] {
+                                          counts[i].getInteger().intValue(),
+                                          maxID
+                                      });
+            }
+        }
+
+        int[] fingerprint = new int[tables.length*2];
+        for (int i = 0; i < tables.length; i++)
+        {
+            int[] table = (int[]) tableFingerprints.get(tables[i]);
+            fingerprint[2*i] = table[0];
+            fingerprint[2*i+1] = table[1];
+        }
+        return fingerprint;
+    }
+
+    private static boolean equals(int[] a, int[] b)
+    {
+        if (a.length != b.length)
+            return false;
+        for (int i = 0; i < a.length; i++)
+            if (a[i] != b[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Creates the cache key for a remote method call.  Maps are
+     * written in key order, so that equal parameters always give the
+     * same key.
+     */
+    private static String createKey(String method, Object[] params)
+    {
+        StringBuffer key = new StringBuffer(method);
+        for (int i = 0; params != null && i < params.length; i++)
+        {
+            key.append('|');
+            appendKey(key,params[i]);
+        }
+        return key.toString();
+    }
+
+    private static void appendKey(StringBuffer key, Object value)
+    {
+        if (value instanceof Map)
+        {
+            key.append('{');
+            Iterator it = new TreeMap((Map) value).entrySet().iterator();
+            while (it.hasNext())
+            {
+                Map.Entry entry = (Map.Entry) it.next();
+                key.append(entry.getKey()).append('=');
+                appendKey(key,entry.getValue());
+                if (it.hasNext())
+                    key.append(',');
+            }
+            key.append('}');
+        } else if (value instanceof List) {
+            key.append('[');
+            List list = (List) value;
+            for (int i = 0; i < list.size(); i++)
+            {
+                if (i > 0)
+                    key.append(',');
+                appendKey(key,list.get(i));
+            }
+            key.append(']');
+        } else {
+            key.append(value);
+        }
+    }
+
+    /**
+     * Returns the file which stores the entry with the specified key.
+     */
+    private File getFile(String key)
+    {
+        int end = key.indexOf('|');
+        String method = (end < 0)? key: key.substring(0,end);
+        return new File(directory,method+"-"+
+                        Integer.toHexString(key.hashCode())+".catalog");
+    }
+
+    /**
+     * Reads the entry with the specified key from the cache
+     * directory, or returns <code>null</code> if it is missing or
+     * unreadable.
+     */
+    private Entry readEntry(String key)
+    {
+        File file = getFile(key);
+        if (!file.isFile())
+            return null;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+            if (!key.equals(in.readUTF()))
+                return null;
+
+            int[] fingerprint = new int[in.readInt()];
+            for (int i = 0; i < fingerprint.length; i++)
+                fingerprint[i] = in.readInt();
+
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return new Entry(key,fingerprint,payload);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            try
+            {
+                if (in != null) in.close();
+            } catch (IOException e) { }
+        }
+    }
+
+    /**
+     * Writes an entry to the cache directory.  The entry is written
+     * to a temporary file first, so that a failed write never leaves
+     * a partial entry behind.
+     */
+    private void writeEntry(Entry entry)
+        throws IOException
+    {
+        File file = getFile(entry.key);
+        File temp = new File(directory,file.getName()+".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(temp)));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(entry.key);
+            out.writeInt(entry.fingerprint.length);
+            for (int i = 0; i < entry.fingerprint.length; i++)
+                out.writeInt(entry.fingerprint[i]);
+            out.writeInt(entry.payload.length);
+            out.write(entry.payload);
+        } finally {
+            out.close();
+        }
+
+        file.delete();
+        if (!temp.renameTo(file))
+        {
+            temp.delete();
+            throw new IOException("Could not write "+file);
+        }
+    }
+
+    /**
+     * Encodes a raw XML-RPC result into a compressed byte array.
+     *
+     * @throws IOException if the result contains a value which cannot
+     * be encoded
+     */
+    private static byte[] encode(Object value)
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(
+            new GZIPOutputStream(bytes));
+        encode(out,value,new HashMap());
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void encode(DataOutputStream out, Object value,
+                               Map strings)
+        throws IOException
+    {
+        if (value == null)
+        {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            String s = (String) value;
+            Integer index = (Integer) strings.get(s);
+            if (index != null)
+            {
+                out.writeByte(STRING_REF);
+                out.writeInt(index.intValue());
+            } else {
+                if (s.length() <= SHARED_STRING_LENGTH)
+                    strings.put(s,new Integer(strings.size()));
+                byte[] utf8 = s.getBytes("UTF-8");
+                out.writeByte(STRING);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt(((Integer) value).intValue());
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(((Boolean) value).booleanValue()? TRUE: FALSE);
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            byte[] b = (byte[]) value;
+            out.writeByte(BYTES);
+            out.writeInt(b.length);
+            out.write(b);
+        } else if (value instanceof List) {
+            List list = (List) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (int i = 0; i < list.size(); i++)
+                encode(out,list.get(i),strings);
+        } else if (value instanceof Map) {
+            Map map = (Map) value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            Iterator it = map.entrySet().iterator();
+            while (it.hasNext())
+            {
+                Map.Entry entry = (Map.Entry) it.next();
+                encode(out,entry.getKey(),strings);
+                encode(out,entry.getValue(),strings);
+            }
+        } else {
+            throw new IOException("Cannot cache values of type "+
+                                  value.getClass());
+        }
+    }
+
+    /**
+     * Decodes a compressed byte array into the XML-RPC result it was
+     * encoded from.  Lists and maps are decoded as {@link Vector}s
+     * and {@link Hashtable}s, as the XML-RPC layer would return them.
+     */
+    private static Object decode(byte[] payload)
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream(
+            new GZIPInputStream(new ByteArrayInputStream(payload)));
+        try
+        {
+            return decode(in,new ArrayList());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Object decode(DataInputStream in, List strings)
+        throws IOException
+    {
+        byte tag = in.readByte();
+        switch (tag)
+        {
+        case NULL:
+            return null;
+        case STRING:
+        {
+            byte[] utf8 = new byte[in.readInt()];
+            in.readFully(utf8);
+            String s = new String(utf8,"UTF-8");
+            if (s.length() <= SHARED_STRING_LENGTH)
+                strings.add(s);
+            return s;
+        }
+        case STRING_REF:
+        {
+            int index = in.readInt();
+            if (index < 0 || index >= strings.size())
+                throw new IOException("Invalid string reference");
+            return strings.get(index);
+        }
+        case INTEGER:
+            return new Integer(in.readInt());
+        case DOUBLE:
+            return new Double(in.readDouble());
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case DATE:
+            return new Date(in.readLong());
+        case BYTES:
+        {
+            byte[] b = new byte[in.readInt()];
+            in.readFully(b);
+            return b;
+        }
+        case LIST:
+        {
+            int size = in.readInt();
+            Vector list = new Vector(size);
+            for (int i = 0; i < size; i++)
+                list.add(decode(in,strings));
+            return list;
+        }
+        case MAP:
+        {
+            int size = in.readInt();
+            Hashtable map = new Hashtable(size*2+1);
+            for (int i = 0; i < size; i++)
+            {
+                Object key = decode(in,strings);
+                Object value = decode(in,strings);
+                if (key != null && value != null)
+                    map.put(key,value);
+            }
+            return map;
+        }
+        default:
+            throw new IOException("Invalid tag "+tag);
+        }
+    }
+
+    /**
+     * A single cached result.
+     */
+    private static final class Entry
+    {
+        final String  key;
+        final int[]  fingerprint;
+        final byte[]  payload;
+
+        Entry(String key, int[] fingerprint, byte[] payload)
+        {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.payload = payload;
+        }
+    }
+}
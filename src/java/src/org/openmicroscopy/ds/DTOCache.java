@@ -0,0 +1,518 @@
+/*
+ * org.openmicroscopy.ds.DTOCache
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.openmicroscopy.ds.dto.MappedDTO;
+
+/**
+ * <p>An identity map of the DTO objects which have been read from the
+ * data server.  Each DTO is keyed by its remote type name (the value
+ * of its {@link MappedDTO#getDTOTypeName} method, such as
+ * <code>Image</code> or <code>@Pixels</code>) and by its primary key
+ * ID.  When a {@link DataFactory} which has a cache reads an object
+ * which is already in the cache, the newly read fields are merged
+ * into the cached instance, and the cached instance is returned.
+ * This ensures that the same database object is always represented
+ * by the same Java object, and lets the factory answer some {@link
+ * DataFactory#load} calls without contacting the data server.</p>
+ *
+ * <p>Only the top-level objects returned by the factory are merged;
+ * the objects which they refer to are instantiated separately, as
+ * usual.  The fields of a cached object which has been modified since
+ * it was read or saved (i.e., which is tainted) are not overwritten
+ * by a merge, though fields which it did not already contain are
+ * added.</p>
+ *
+ * <p>The cache holds at most a fixed number of objects, evicting the
+ * least recently used ones as necessary.  Each object also expires a
+ * fixed amount of time after it was last read from or saved to the
+ * data server; expired objects are never returned, and are replaced
+ * rather than merged into.  The methods of this class are
+ * synchronized, but the DTO objects themselves are not, so an
+ * instance should only be shared by threads which do not modify its
+ * objects concurrently.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see DataFactory#setCache
+ */
+
+public class DTOCache
+{
+    /**
+     * The default maximum number of cached objects.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /**
+     * The default number of milliseconds for which a cached object
+     * is considered fresh.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 5*60*1000L;
+
+    /** The maximum number of cached objects. */
+    private int maximumSize;
+
+    /**
+     * The number of milliseconds for which a cached object is
+     * considered fresh, or 0 if cached objects never expire.
+     */
+    private long timeToLive;
+
+    /**
+     * The cached objects, keyed by {@link DTOKey}.  Each value is a
+     * {@link CacheEntry}.  This map is kept in access order, so its
+     * first entry is always the least recently used object.
+     */
+    private LinkedHashMap entries;
+
+    /** The number of lookups which were satisfied by the cache. */
+    private long hitCount;
+
+    /** The number of lookups which were not. */
+    private long missCount;
+
+    /** The number of objects which were merged into a cached instance. */
+    private long mergeCount;
+
+    /** The number of objects which have been evicted or have expired. */
+    private long evictionCount;
+
+    /**
+     * Creates a new cache with the default maximum size and time to
+     * live.
+     */
+    public DTOCache()
+    {
+        this(DEFAULT_MAXIMUM_SIZE,DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Creates a new cache with the specified maximum size and time to
+     * live.
+     *
+     * @param maximumSize the maximum number of objects to keep in the
+     * cache
+     * @param timeToLive the number of milliseconds for which a cached
+     * object is considered fresh, or 0 if cached objects should never
+     * expire
+     */
+    public DTOCache(int maximumSize, long timeToLive)
+    {
+        super();
+
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("Maximum size must be positive");
+        if (timeToLive < 0)
+            throw new IllegalArgumentException("Time to live cannot be negative");
+
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap(16,0.75f,true);
+    }
+
+    /**
+     * Returns the maximum number of objects kept in the cache.
+     */
+    public int getMaximumSize() { return maximumSize; }
+
+    /**
+     * Returns the number of milliseconds for which a cached object is
+     * considered fresh, or 0 if cached objects never expire.
+     */
+    public long getTimeToLive() { return timeToLive; }
+
+    /**
+     * Returns the cached object with the specified type and ID, or
+     * <code>null</code> if it is not in the cache or has expired.
+     *
+     * @param typeName the remote type name of the object
+     * @param id the primary key ID of the object
+     * @return the cached object, or <code>null</code>
+     */
+    public MappedDTO get(String typeName, int id)
+    {
+        return get(typeName,id,null);
+    }
+
+    /**
+     * Returns the cached object with the specified type and ID, if it
+     * contains all of the specified fields.  If the object is not in
+     * the cache, has expired, or is missing any of the fields,
+     * <code>null</code> is returned.
+     *
+     * @param typeName the remote type name of the object
+     * @param id the primary key ID of the object
+     * @param fields a {@link List} of field names, or
+     * <code>null</code> if any cached object will do
+     * @return the cached object, or <code>null</code>
+     */
+    public synchronized MappedDTO get(String typeName, int id, List fields)
+    {
+        CacheEntry entry = getEntry(new DTOKey(typeName,id));
+        if (entry != null && fields != null)
+        {
+            Map map = entry.dto.getMap();
+            for (int i = 0; i < fields.size(); i++)
+            {
+                if (!map.containsKey(fields.get(i)))
+                {
+                    entry = null;
+                    break;
+                }
+            }
+        }
+
+        if (entry == null)
+        {
+            missCount++;
+            return null;
+        } else {
+            hitCount++;
+            return entry.dto;
+        }
+    }
+
+    /**
+     * Adds an object which was just read from the data server to the
+     * cache.  If the cache already contains a fresh instance of the
+     * same object, the fields of <code>dto</code> are merged into it,
+     * and the cached instance is returned.  Otherwise,
+     * <code>dto</code> is added to the cache and returned.  Objects
+     * which do not have their primary key ID loaded are returned
+     * unchanged.
+     *
+     * @param dto the object which was read
+     * @return the canonical instance of the object
+     */
+    public MappedDTO merge(MappedDTO dto)
+    {
+        if (dto == null)
+            return null;
+        return merge(dto.getDTOTypeName(),dto);
+    }
+
+    /**
+     * Adds an object which was just read from the data server to the
+     * cache, as in the {@link #merge(MappedDTO)} method.  The remote
+     * type name is given explicitly, since attribute objects can only
+     * determine their own type name if their semantic type was
+     * loaded.
+     *
+     * @param typeName the remote type name of the object
+     * @param dto the object which was read
+     * @return the canonical instance of the object
+     */
+    public synchronized MappedDTO merge(String typeName, MappedDTO dto)
+    {
+        if (dto == null)
+            return null;
+
+        DTOKey key = createKey(typeName,dto);
+        if (key == null)
+            return dto;
+
+        CacheEntry entry = getEntry(key);
+        if (entry == null || entry.dto == dto)
+        {
+            put(key,dto);
+            return dto;
+        }
+
+        MappedDTO cached = entry.dto;
+        Map cachedMap = cached.getMap();
+        Iterator it = dto.getMap().entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry field = (Map.Entry) it.next();
+            if (!cached.isTainted() || !cachedMap.containsKey(field.getKey()))
+                cachedMap.put(field.getKey(),field.getValue());
+        }
+
+        entry.loaded = System.currentTimeMillis();
+        mergeCount++;
+        return cached;
+    }
+
+    /**
+     * Merges each of the objects in a {@link List} which was just
+     * read from the data server into the cache, as in the {@link
+     * #merge(String,MappedDTO)} method.  The list is modified in
+     * place, with each object being replaced by its canonical
+     * instance.
+     *
+     * @param typeName the remote type name of the objects
+     * @param list a {@link List} of {@link MappedDTO}s
+     */
+    public void mergeList(String typeName, List list)
+    {
+        if (list == null)
+            return;
+
+        for (int i = 0; i < list.size(); i++)
+        {
+            Object o = list.get(i);
+            if (o instanceof MappedDTO)
+                list.set(i,merge(typeName,(MappedDTO) o));
+        }
+    }
+
+    /**
+     * Records that an object has just been saved to the data server.
+     * The object becomes the canonical instance for its type and ID,
+     * replacing any other instance which was cached.
+     *
+     * @param dto the object which was saved
+     */
+    public synchronized void refresh(MappedDTO dto)
+    {
+        if (dto == null)
+            return;
+
+        DTOKey key = createKey(dto.getDTOTypeName(),dto);
+        if (key != null)
+            put(key,dto);
+    }
+
+    /**
+     * Removes the specified object from the cache.
+     *
+     * @param typeName the remote type name of the object
+     * @param id the primary key ID of the object
+     */
+    public synchronized void invalidate(String typeName, int id)
+    {
+        entries.remove(new DTOKey(typeName,id));
+    }
+
+    /**
+     * Removes all of the objects of the specified type from the
+     * cache.
+     *
+     * @param typeName the remote type name of the objects
+     */
+    public synchronized void invalidateType(String typeName)
+    {
+        Iterator it = entries.keySet().iterator();
+        while (it.hasNext())
+        {
+            DTOKey key = (DTOKey) it.next();
+            if (key.typeName.equals(typeName))
+                it.remove();
+        }
+    }
+
+    /**
+     * Removes all of the objects from the cache.  The statistics
+     * counters are not reset.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Resets the hit, miss, merge, and eviction counters to zero.
+     */
+    public synchronized void resetStatistics()
+    {
+        hitCount = 0;
+        missCount = 0;
+        mergeCount = 0;
+        evictionCount = 0;
+    }
+
+    /**
+     * Returns the number of lookups which were satisfied by the
+     * cache.
+     */
+    public synchronized long getHitCount() { return hitCount; }
+
+    /**
+     * Returns the number of lookups which were not satisfied by the
+     * cache.
+     */
+    public synchronized long getMissCount() { return missCount; }
+
+    /**
+     * Returns the number of objects read from the data server which
+     * were merged into an existing cached instance.
+     */
+    public synchronized long getMergeCount() { return mergeCount; }
+
+    /**
+     * Returns the number of objects which have been evicted to keep
+     * the cache within its maximum size, or which have expired.
+     */
+    public synchronized long getEvictionCount() { return evictionCount; }
+
+    /**
+     * Returns the fraction of lookups which were satisfied by the
+     * cache, or 0 if there have not been any lookups.
+     */
+    public synchronized double getHitRate()
+    {
+        long total = hitCount+missCount;
+        return (total == 0)? 0.0: ((double) hitCount)/total;
+    }
+
+    /**
+     * Returns the number of objects currently in the cache, including
+     * any which have expired but have not been removed yet.
+     */
+    public synchronized int getEntryCount() { return entries.size(); }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "DTOCache ("+entries.size()+"/"+maximumSize+" entries, "+
+            hitCount+" hits, "+missCount+" misses, "+
+            mergeCount+" merges)";
+    }
+
+    /**
+     * Returns the key for the specified object, or <code>null</code>
+     * if it cannot be cached.
+     */
+    private DTOKey createKey(String typeName, MappedDTO dto)
+    {
+        // Attributes whose semantic type was not loaded cannot
+        // determine their own type name.
+        if (typeName == null || typeName.equals("Unknown") || dto.isNew())
+            return null;
+
+        Object id = dto.getMap().get("id");
+        if (id == null)
+            return null;
+
+        try
+        {
+            Integer intID = PrimitiveConverters.convertToInteger(id);
+            return (intID == null)? null: new DTOKey(typeName,intID.intValue());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the fresh entry for the specified key, or
+     * <code>null</code>.  An expired entry is removed.
+     */
+    private CacheEntry getEntry(DTOKey key)
+    {
+        CacheEntry entry = (CacheEntry) entries.get(key);
+        if (entry != null && timeToLive > 0 &&
+            System.currentTimeMillis()-entry.loaded > timeToLive)
+        {
+            entries.remove(key);
+            evictionCount++;
+            return null;
+        }
+        return entry;
+    }
+
+    private void put(DTOKey key, MappedDTO dto)
+    {
+        CacheEntry entry = new CacheEntry(dto);
+        entries.put(key,entry);
+
+        Iterator it = entries.values().iterator();
+        while (entries.size() > maximumSize && it.hasNext())
+        {
+            it.next();
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * A single cached object, and the time it was last read from or
+     * saved to the data server.
+     */
+    private static final class CacheEntry
+    {
+        final MappedDTO dto;
+        long loaded;
+
+        CacheEntry(MappedDTO dto)
+        {
+            this.dto = dto;
+            this.loaded = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The key used to identify a single cached object.
+     */
+    private static final class DTOKey
+    {
+        final String typeName;
+        final int id;
+
+        DTOKey(String typeName, int id)
+        {
+            this.typeName = typeName;
+            this.id = id;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof DTOKey)) return false;
+            DTOKey key = (DTOKey) o;
+            return (key.id == id) && key.typeName.equals(typeName);
+        }
+
+        public int hashCode()
+        {
+            return typeName.hashCode()*31 + id;
+        }
+    }
+}
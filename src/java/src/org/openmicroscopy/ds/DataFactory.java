@@ -43,6 +43,7 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.NoSuchElementException;
 
 import org.openmicroscopy.ds.dto.DataInterface;
 import org.openmicroscopy.ds.dto.SemanticType;
@@ -73,30 +74,21 @@ public class DataFactory
 {
     protected InstantiatingCaller icaller = null;
     protected Instantiator  instantiator = null;
+    protected DTOCache  cache = null;
 
-    private List markedForUpdate = new ArrayList();
-
-    private static class EqualsWrapper
-    {
-        private DataInterface ref;
+    /**
+     * The default maximum number of objects requested by each remote
+     * call of the {@link #loadAll} methods.
+     */
+    public static final int DEFAULT_LOAD_CHUNK_SIZE = 250;
 
-        private EqualsWrapper(DataInterface ref)
-        {
-            super();
-            this.ref = ref;
-        }
+    private int  loadChunkSize = DEFAULT_LOAD_CHUNK_SIZE;
+    private int  loadParallelism = 0;
 
-        public boolean equals(Object o)
-        {
-            if (o instanceof EqualsWrapper)
-            {
-                EqualsWrapper ew = (EqualsWrapper) o;
-                return ref == ew.ref;
-            } else {
-                return ref == o;
-            }
-        }
-    }
+    /**
+     * The objects marked by the {@link #markForUpdate} method.
+     */
+    private UnitOfWork unitOfWork = new UnitOfWork(this);
 
     public DataFactory()
     {
@@ -134,6 +126,71 @@ public class DataFactory
         instantiator = icaller.getInstantiator();
     }
 
+    /**
+     * Returns the {@link DTOCache} used by this factory, or
+     * <code>null</code> if it does not use one.
+     */
+    public DTOCache getCache() { return cache; }
+
+    /**
+     * <p>Sets the {@link DTOCache} used by this factory.  If a cache
+     * is set, the objects returned by the {@link #load}, {@link
+     * #retrieve}, and {@link #retrieveList} methods are merged into
+     * the cache, so that each database object is represented by a
+     * single Java instance.  The {@link #load} methods return a
+     * cached object without contacting the data server if it already
+     * contains all of the requested fields.  (This is only possible
+     * if the fields specification does not request any has-many
+     * fields.)  Objects saved by the {@link #update} and {@link
+     * #updateList} methods become the cached instances of their
+     * database objects.</p>
+     *
+     * <p>By default, a factory does not use a cache.</p>
+     *
+     * @param cache the cache to use, or <code>null</code> to stop
+     * using one
+     */
+    public void setCache(DTOCache cache) { this.cache = cache; }
+
+    /**
+     * Returns the cached object with the specified type and ID, if
+     * it contains all of the fields in the fields specification.
+     */
+    private MappedDTO getCached(String remoteType, int id, Map fields)
+    {
+        if (cache == null || fields.size() != 1)
+            return null;
+
+        List wanted = (List) fields.get(".");
+        if (wanted == null)
+            return null;
+
+        return cache.get(remoteType,id,wanted);
+    }
+
+    /**
+     * Merges an object which was just read from the data server into
+     * the cache, returning its canonical instance.
+     */
+    private DataInterface cacheResult(String remoteType,
+                                      DataInterface result)
+    {
+        if (cache == null || !(result instanceof MappedDTO))
+            return result;
+        return cache.merge(remoteType,(MappedDTO) result);
+    }
+
+    /**
+     * Merges a {@link List} of objects which were just read from the
+     * data server into the cache.
+     */
+    private List cacheResult(String remoteType, List result)
+    {
+        if (cache != null)
+            cache.mergeList(remoteType,result);
+        return result;
+    }
+
     /**
      * Creates a criteria {@link Map} in the format expected by the
      * remote server from the given {@link Criteria} object.
@@ -282,13 +339,19 @@ public class DataFactory
     {
         String remoteType = RemoteTypes.getRemoteType(targetClass);
         Map fields = fieldSpec.getFieldsWanted();
-        return icaller.dispatch(targetClass,
-                                "loadObject",
-                                new Object[] {
-                                    remoteType,
-                                    new Integer(id),
-                                    fields
-                                });
+
+        MappedDTO cached = getCached(remoteType,id,fields);
+        if (cached != null)
+            return cached;
+
+        return cacheResult(remoteType,
+                           icaller.dispatch(targetClass,
+                                            "loadObject",
+                                            new Object[] {
+                                                remoteType,
+                                                new Integer(id),
+                                                fields
+                                            }));
     }
 
     /**
@@ -347,14 +410,323 @@ public class DataFactory
     public Attribute load(String semanticType, int id,
                           FieldsSpecification fieldSpec)
     {
+        String remoteType = "@"+semanticType;
         Map fields = fieldSpec.getFieldsWanted();
-        return icaller.dispatch(semanticType,
-                                "loadObject",
-                                new Object[] {
-                                    "@"+semanticType,
-                                    new Integer(id),
-                                    fields
-                                });
+
+        MappedDTO cached = getCached(remoteType,id,fields);
+        if (cached != null)
+            return (Attribute) cached;
+
+        return (Attribute)
+            cacheResult(remoteType,
+                        icaller.dispatch(semanticType,
+                                         "loadObject",
+                                         new Object[] {
+                                             remoteType,
+                                             new Integer(id),
+                                             fields
+                                         }));
+    }
+
+    /**
+     * Returns the maximum number of objects requested by each remote
+     * call of the {@link #loadAll} methods.
+     */
+    public int getLoadChunkSize() { return loadChunkSize; }
+
+    /**
+     * Sets the maximum number of objects requested by each remote
+     * call of the {@link #loadAll} methods.
+     */
+    public void setLoadChunkSize(int loadChunkSize)
+    {
+        if (loadChunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive");
+        this.loadChunkSize = loadChunkSize;
+    }
+
+    /**
+     * Returns the number of remote calls which the {@link #loadAll}
+     * methods make at once.  Unless it has been set explicitly, this
+     * is the number of connections of this factory's {@link
+     * PooledXmlRpcCaller}, or 1 for any other kind of caller.
+     */
+    public int getLoadParallelism()
+    {
+        if (loadParallelism > 0)
+            return loadParallelism;
+        else if (caller instanceof PooledXmlRpcCaller)
+            return ((PooledXmlRpcCaller) caller).getMaxConnections();
+        else
+            return 1;
+    }
+
+    /**
+     * Sets the number of remote calls which the {@link #loadAll}
+     * methods make at once.  A value of 0 restores the default.
+     */
+    public void setLoadParallelism(int loadParallelism)
+    {
+        if (loadParallelism < 0)
+            throw new IllegalArgumentException("Parallelism cannot be negative");
+        this.loadParallelism = loadParallelism;
+    }
+
+    /**
+     * <p>Retrieves the objects in the database with the specified
+     * primary key IDs.  This version of the method is used to
+     * retrieve core data types; the data type desired should be
+     * specified by the <code>targetClass</code> parameter.  The
+     * <code>fieldSpec</code> parameter is used in the same way as in
+     * the {@link #load(Class,int,FieldsSpecification)} method.</p>
+     *
+     * <p>The IDs are requested with an <code>IN</code> filter, split
+     * into chunks of at most {@link #getLoadChunkSize} IDs each.  Up
+     * to {@link #getLoadParallelism} chunks are requested at once.
+     * The returned list contains one element for each element of
+     * <code>ids</code>, in the same order; the element is
+     * <code>null</code> if there is no object with that ID.
+     * Repeated IDs result in repeated references to the same
+     * object.</p>
+     *
+     * @param targetClass the core data type to retrieve
+     * @param ids the primary key ID values to retrieve
+     * @param fieldSpec the fields specification for the returned DTO
+     * objects
+     * @return a {@link List} of the DTO objects with the given
+     * primary key IDs
+     */
+    public List loadAll(Class targetClass, int[] ids,
+                        FieldsSpecification fieldSpec)
+    {
+        String remoteType = RemoteTypes.getRemoteType(targetClass);
+        return loadAll(targetClass,null,remoteType,ids,fieldSpec);
+    }
+
+    /**
+     * Retrieves the attributes in the database with the specified
+     * primary key IDs, as in the {@link
+     * #loadAll(String,int[],FieldsSpecification)} method.  The
+     * semantic type parameter should have its <code>name</code>
+     * parameter loaded, otherwise a {@link DataException} will be
+     * thrown.
+     */
+    public List loadAll(SemanticType semanticType, int[] ids,
+                        FieldsSpecification fieldSpec)
+    {
+        return loadAll(semanticType.getName(),ids,fieldSpec);
+    }
+
+    /**
+     * Retrieves the attributes in the database with the specified
+     * primary key IDs.  This version of the method is used to
+     * retrieve semantically typed attributed; the semantic type
+     * desired should be specified by the <code>semanticType</code>
+     * parameter.  The IDs are requested in the same way as in the
+     * {@link #loadAll(Class,int[],FieldsSpecification)} method, and
+     * the results are returned in the same order as the IDs.
+     *
+     * @param semanticType the semantic type to retrieve
+     * @param ids the primary key ID values to retrieve
+     * @param fieldSpec the fields specification for the returned DTO
+     * objects
+     * @return a {@link List} of the DTO objects with the given
+     * primary key IDs
+     */
+    public List loadAll(String semanticType, int[] ids,
+                        FieldsSpecification fieldSpec)
+    {
+        return loadAll(null,semanticType,"@"+semanticType,ids,fieldSpec);
+    }
+
+    private List loadAll(Class targetClass, String semanticType,
+                         String remoteType, int[] ids,
+                         FieldsSpecification fieldSpec)
+    {
+        Map fields = fieldSpec.getFieldsWanted();
+        Map found = new HashMap();
+
+        // Find the distinct IDs which are not already cached.
+
+        List missing = new ArrayList();
+        for (int i = 0; i < ids.length; i++)
+        {
+            Integer id = new Integer(ids[i]);
+            if (found.containsKey(id))
+                continue;
+
+            MappedDTO cached = getCached(remoteType,ids[i],fields);
+            found.put(id,cached);
+            if (cached == null)
+                missing.add(id);
+        }
+
+        // The IDs are needed to put the results back in order, so
+        // make sure that they are requested.
+
+        Map wanted = addWantedID(fields);
+
+        List chunks = new ArrayList();
+        for (int start = 0; start < missing.size(); start += loadChunkSize)
+            chunks.add(missing.subList(start,
+                                       Math.min(start+loadChunkSize,
+                                                missing.size())));
+
+        BulkLoad load = new BulkLoad(targetClass,semanticType,remoteType,
+                                     wanted,chunks);
+        load.execute(getLoadParallelism());
+
+        for (int i = 0; i < load.results.length; i++)
+        {
+            List chunk = cacheResult(remoteType,load.results[i]);
+            if (chunk == null)
+                continue;
+
+            for (int j = 0; j < chunk.size(); j++)
+            {
+                MappedDTO dto = (MappedDTO) chunk.get(j);
+                if (dto != null)
+                    found.put(PrimitiveConverters.
+                              convertToInteger(dto.getMap().get("id")),
+                              dto);
+            }
+        }
+
+        List result = new ArrayList(ids.length);
+        for (int i = 0; i < ids.length; i++)
+            result.add(found.get(new Integer(ids[i])));
+        return result;
+    }
+
+    /**
+     * Returns a copy of a fields-wanted {@link Map} which is
+     * guaranteed to request the <code>id</code> field of the
+     * top-level objects.
+     */
+    private Map addWantedID(Map fields)
+    {
+        Map wanted = new HashMap(fields);
+        List topLevel = (List) wanted.get(".");
+        if (topLevel == null || !topLevel.contains("id"))
+        {
+            topLevel = (topLevel == null)?
+                new ArrayList(): new ArrayList(topLevel);
+            topLevel.add("id");
+            wanted.put(".",topLevel);
+        }
+        return wanted;
+    }
+
+    /**
+     * Requests the chunks of a {@link #loadAll} call, several at a
+     * time.  Each thread repeatedly takes the next chunk which has not
+     * been requested yet, until they are all done or one of them
+     * fails.
+     */
+    private class BulkLoad
+        implements Runnable
+    {
+        private Class  targetClass;
+        private String  semanticType;
+        private String  remoteType;
+        private Map  fields;
+        private List  chunks;
+        private List[]  results;
+        private int  nextChunk = 0;
+        private RuntimeException  error = null;
+
+        private BulkLoad(Class targetClass, String semanticType,
+                         String remoteType, Map fields, List chunks)
+        {
+            this.targetClass = targetClass;
+            this.semanticType = semanticType;
+            this.remoteType = remoteType;
+            this.fields = fields;
+            this.chunks = chunks;
+            this.results = new List[chunks.size()];
+        }
+
+        private void execute(int parallelism)
+        {
+            int threadCount = Math.min(parallelism,chunks.size())-1;
+            Thread[] threads = new Thread[Math.max(threadCount,0)];
+            for (int i = 0; i < threads.length; i++)
+            {
+                threads[i] = new Thread(this,"DataFactory.loadAll");
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+
+            run();
+
+            boolean interrupted = false;
+            for (int i = 0; i < threads.length; i++)
+            {
+                try
+                {
+                    threads[i].join();
+                } catch (InterruptedException e) {
+                    // Abort the load: the threads stop once their
+                    // current chunk is done, and are then joined.
+                    interrupted = true;
+                    synchronized(this)
+                    {
+                        if (error == null)
+                            error = new DataException("Interrupted while loading objects");
+                    }
+                    i--;
+                }
+            }
+
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            if (error != null)
+                throw error;
+        }
+
+        public void run()
+        {
+            while (true)
+            {
+                int chunk;
+                synchronized(this)
+                {
+                    if (error != null || nextChunk >= chunks.size())
+                        return;
+                    chunk = nextChunk++;
+                }
+
+                try
+                {
+                    List result = loadChunk((List) chunks.get(chunk));
+                    synchronized(this)
+                    {
+                        results[chunk] = result;
+                    }
+                } catch (RuntimeException e) {
+                    synchronized(this)
+                    {
+                        if (error == null)
+                            error = e;
+                    }
+                }
+            }
+        }
+
+        private List loadChunk(List ids)
+        {
+            Criteria criteria = new Criteria();
+            criteria.addFilter("id","in",new ArrayList(ids));
+            Map crit = createCriteriaMap(criteria);
+            Object[] params = new Object[] { remoteType, crit, fields };
+
+            if (targetClass != null)
+                return icaller.dispatchList(targetClass,
+                                            "retrieveObjects",params);
+            else
+                return icaller.dispatchList(semanticType,
+                                            "retrieveObjects",params);
+        }
     }
 
     /**
@@ -381,9 +753,14 @@ public class DataFactory
         String remoteType = RemoteTypes.getRemoteType(targetClass);
         Map crit = createCriteriaMap(criteria);
         Map fields = criteria.getFieldsWanted();
-        return icaller.dispatch(targetClass,
-                                "retrieveObject",
-                                new Object[] {remoteType,crit,fields});
+        return cacheResult(remoteType,
+                           icaller.dispatch(targetClass,
+                                            "retrieveObject",
+                                            new Object[] {
+                                                remoteType,
+                                                crit,
+                                                fields
+                                            }));
     }
 
     public Attribute retrieve(SemanticType semanticType, Criteria criteria)
@@ -393,15 +770,18 @@ public class DataFactory
 
     public Attribute retrieve(String semanticType, Criteria criteria)
     {
+        String remoteType = "@"+semanticType;
         Map crit = createCriteriaMap(criteria);
         Map fields = criteria.getFieldsWanted();
-        return icaller.dispatch(semanticType,
-                                "retrieveObject",
-                                new Object[] {
-                                    "@"+semanticType,
-                                    crit,
-                                    fields
-                                });
+        return (Attribute)
+            cacheResult(remoteType,
+                        icaller.dispatch(semanticType,
+                                         "retrieveObject",
+                                         new Object[] {
+                                             remoteType,
+                                             crit,
+                                             fields
+                                         }));
     }
 
     /**
@@ -427,9 +807,14 @@ public class DataFactory
         String remoteType = RemoteTypes.getRemoteType(targetClass);
         Map crit = createCriteriaMap(criteria);
         Map fields = criteria.getFieldsWanted();
-        return icaller.dispatchList(targetClass,
-                                    "retrieveObjects",
-                                    new Object[] {remoteType,crit,fields});
+        return cacheResult(remoteType,
+                           icaller.dispatchList(targetClass,
+                                                "retrieveObjects",
+                                                new Object[] {
+                                                    remoteType,
+                                                    crit,
+                                                    fields
+                                                }));
     }
 
     public List retrieveList(SemanticType semanticType, Criteria criteria)
@@ -439,9 +824,475 @@ public class DataFactory
 
     public List retrieveList(String semanticType, Criteria criteria)
     {
+        String remoteType = "@"+semanticType;
         Map crit = createCriteriaMap(criteria);
         Map fields = criteria.getFieldsWanted();
-        return icaller.dispatchList(semanticType,
+        return cacheResult(remoteType,
+                           icaller.dispatchList(semanticType,
+                                                "retrieveObjects",
+                                                new Object[] {
+                                                    remoteType,
+                                                    crit,
+                                                    fields
+                                                }));
+    }
+
+    /**
+     * <p>Returns an {@link Iterator} over all of the objects in the
+     * database which match the specified search criteria.  This
+     * version of the method is used to retrieve core data types, in
+     * the same way as the {@link #retrieveList(Class,Criteria)}
+     * method.  Unlike that method, though, the objects are retrieved
+     * one page at a time, so that arbitrarily large result sets can
+     * be processed in a bounded amount of memory.</p>
+     *
+     * <p>While the caller is consuming one page, the next page is
+     * retrieved by a background thread, so at most two pages are held
+     * by the iterator at once.  If the criteria has no order-by
+     * clause, offset, or filter on the <code>id</code> column, the
+     * pages are retrieved in order of primary key ID, each one
+     * starting after the last ID of the previous page.  This remains
+     * correct even if objects are added or deleted during the
+     * iteration.  Otherwise, the pages are retrieved with
+     * <code>LIMIT</code> and <code>OFFSET</code> clauses, with
+     * <code>id</code> added to the end of the order-by clause so that
+     * the order is well-defined.  A limit in the criteria bounds the
+     * total number of objects returned.</p>
+     *
+     * <p>Errors in retrieving a page are thrown by the iterator's
+     * {@link Iterator#hasNext} or {@link Iterator#next} methods.  The
+     * iterator does not support the {@link Iterator#remove}
+     * method.</p>
+     *
+     * @param targetClass the core data type to retrieve
+     * @param criteria the search criteria to use
+     * @param pageSize the number of objects to retrieve in each page
+     * @return an {@link Iterator} over the matching DTO objects
+     */
+    public Iterator retrieveIterator(Class targetClass, Criteria criteria,
+                                     int pageSize)
+    {
+        String remoteType = RemoteTypes.getRemoteType(targetClass);
+        return new PageIterator(targetClass,null,remoteType,
+                                criteria,pageSize);
+    }
+
+    public Iterator retrieveIterator(SemanticType semanticType,
+                                     Criteria criteria, int pageSize)
+    {
+        return retrieveIterator(semanticType.getName(),criteria,pageSize);
+    }
+
+    /**
+     * Returns an {@link Iterator} over all of the attributes in the
+     * database which match the specified search criteria.  This
+     * version of the method is used to retrieve semantically typed
+     * attributes.  The attributes are retrieved one page at a time,
+     * as in the {@link #retrieveIterator(Class,Criteria,int)}
+     * method.
+     *
+     * @param semanticType the semantic type to retrieve
+     * @param criteria the search criteria to use
+     * @param pageSize the number of attributes to retrieve in each
+     * page
+     * @return an {@link Iterator} over the matching DTO objects
+     */
+    public Iterator retrieveIterator(String semanticType, Criteria criteria,
+                                     int pageSize)
+    {
+        return new PageIterator(null,semanticType,"@"+semanticType,
+                                criteria,pageSize);
+    }
+
+    /**
+     * The iterator returned by the {@link #retrieveIterator} methods.
+     * Each page is retrieved by a new daemon thread, which is started
+     * as soon as the previous page has been handed to the caller.
+     */
+    private class PageIterator
+        implements Iterator, Runnable
+    {
+        private Class  targetClass;
+        private String  semanticType;
+        private String  remoteType;
+        private Map  baseCriteria;
+        private Map  fields;
+        private int  pageSize;
+
+        /** Whether pages are retrieved by ID rather than by offset. */
+        private boolean  keyset;
+
+        /** The ID of the last object of the previous page. */
+        private Object  lastID = null;
+
+        /** The offset of the next page. */
+        private int  offset;
+
+        /** The number of objects left to retrieve, or -1. */
+        private int  remaining;
+
+        private List  page = null;
+        private int  index = 0;
+        private boolean  exhausted = false;
+
+        // These fields are shared with the background thread.
+        private boolean  fetching = false;
+        private List  nextPage = null;
+        private RuntimeException  fetchError = null;
+
+        private PageIterator(Class targetClass, String semanticType,
+                             String remoteType, Criteria criteria,
+                             int pageSize)
+        {
+            if (pageSize <= 0)
+                throw new IllegalArgumentException("Page size must be positive");
+
+            this.targetClass = targetClass;
+            this.semanticType = semanticType;
+            this.remoteType = remoteType;
+            this.pageSize = pageSize;
+
+            baseCriteria = createCriteriaMap(criteria);
+            baseCriteria.remove("__limit");
+            baseCriteria.remove("__offset");
+            fields = addWantedID(criteria.getFieldsWanted());
+
+            List orderBy = criteria.getOrderBy();
+            keyset = (orderBy == null || orderBy.size() == 0) &&
+                criteria.getOffset() < 0 &&
+                !baseCriteria.containsKey("id");
+
+            List order = (orderBy == null)?
+                new ArrayList(): new ArrayList(orderBy);
+            if (!order.contains("id"))
+                order.add("id");
+            baseCriteria.put("__order",order);
+
+            offset = Math.max(criteria.getOffset(),0);
+            remaining = criteria.getLimit();
+
+            startFetch();
+        }
+
+        public boolean hasNext()
+        {
+            while (page == null || index >= page.size())
+            {
+                if (exhausted)
+                    return false;
+                page = takePage();
+                index = 0;
+            }
+            return true;
+        }
+
+        public Object next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            // Don't keep a reference to objects which have already
+            // been returned.
+            Object o = page.get(index);
+            page.set(index++,null);
+            return o;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Waits for the page being retrieved by the background thread,
+         * and starts retrieving the following page, if there is one.
+         */
+        private List takePage()
+        {
+            List result;
+
+            synchronized(this)
+            {
+                while (fetching)
+                {
+                    try
+                    {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // The page being fetched is abandoned, and so
+                        // is the rest of the iteration.
+                        Thread.currentThread().interrupt();
+                        exhausted = true;
+                        throw new DataException("Interrupted while waiting for the next page");
+                    }
+                }
+
+                if (fetchError != null)
+                {
+                    exhausted = true;
+                    throw fetchError;
+                }
+
+                result = nextPage;
+                nextPage = null;
+            }
+
+            if (result == null)
+                result = new ArrayList();
+            else
+                cacheResult(remoteType,result);
+
+            int requested = (remaining < 0)?
+                pageSize: Math.min(pageSize,remaining);
+            if (remaining >= 0)
+                remaining -= result.size();
+
+            if (result.size() < requested || remaining == 0)
+            {
+                exhausted = true;
+            } else {
+                offset += result.size();
+                MappedDTO last = (MappedDTO) result.get(result.size()-1);
+                lastID = last.getMap().get("id");
+                startFetch();
+            }
+
+            return result;
+        }
+
+        private synchronized void startFetch()
+        {
+            fetching = true;
+            Thread thread = new Thread(this,"DataFactory.retrieveIterator");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public void run()
+        {
+            List result = null;
+            RuntimeException error = null;
+
+            try
+            {
+                result = fetchPage();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+
+            synchronized(this)
+            {
+                nextPage = result;
+                fetchError = error;
+                fetching = false;
+                notifyAll();
+            }
+        }
+
+        private List fetchPage()
+        {
+            Map crit = new HashMap(baseCriteria);
+            int limit;
+            Object cursor;
+            int pageOffset;
+
+            synchronized(this)
+            {
+                limit = (remaining < 0)? pageSize: Math.min(pageSize,remaining);
+                cursor = lastID;
+                pageOffset = offset;
+            }
+
+            crit.put("__limit",new Integer(limit));
+            if (keyset)
+            {
+                if (cursor != null)
+                {
+                    List filter = new ArrayList(2);
+                    filter.add(">");
+                    filter.add(cursor);
+                    crit.put("id",filter);
+                }
+            } else {
+                crit.put("__offset",new Integer(pageOffset));
+            }
+
+            Object[] params = new Object[] { remoteType, crit, fields };
+            if (targetClass != null)
+                return icaller.dispatchList(targetClass,
+                                            "retrieveObjects",params);
+            else
+                return icaller.dispatchList(semanticType,
+                                            "retrieveObjects",params);
+        }
+    }
+
+    /**
+     * Creates a new, empty {@link RemoteBatch} which sends its calls
+     * through this factory's {@link RemoteCaller}.  The batched
+     * versions of the {@link #count}, {@link #load}, {@link
+     * #retrieve}, and {@link #retrieveList} methods queue their calls
+     * in a batch, so that many independent requests can be sent to
+     * the data server in a single round trip.
+     */
+    public RemoteBatch createBatch()
+    {
+        return new RemoteBatch(caller);
+    }
+
+    /**
+     * Queues a call which counts the objects in the database which
+     * match the given criteria, as in the {@link
+     * #count(Class,Criteria)} method.  After the batch is executed,
+     * the result's {@link BatchResult#getResult} method returns the
+     * count as an {@link Integer}.
+     */
+    public BatchResult count(RemoteBatch batch,
+                             Class targetClass, Criteria criteria)
+    {
+        String remoteType = RemoteTypes.getRemoteType(targetClass);
+        return queueCount(batch,remoteType,criteria);
+    }
+
+    /**
+     * Queues a call which counts the attributes in the database which
+     * match the given criteria, as in the {@link
+     * #count(String,Criteria)} method.  After the batch is executed,
+     * the result's {@link BatchResult#getResult} method returns the
+     * count as an {@link Integer}.
+     */
+    public BatchResult count(RemoteBatch batch,
+                             String semanticType, Criteria criteria)
+    {
+        return queueCount(batch,"@"+semanticType,criteria);
+    }
+
+    private BatchResult queueCount(RemoteBatch batch,
+                                   String remoteType, Criteria criteria)
+    {
+        Map crit = createCriteriaMap(criteria);
+        return batch.add(new BatchResult("countObjects",
+                                         new Object[] {
+                                             remoteType,
+                                             crit
+                                         })
+            {
+                protected Object convert(Object raw)
+                {
+                    if (raw == null)
+                        return new Integer(0);
+                    try
+                    {
+                        return PrimitiveConverters.convertToInteger(raw);
+                    } catch (NumberFormatException e) {
+                        throw new RemoteServerErrorException("Invalid return type "+
+                                                             e.getMessage());
+                    }
+                }
+            });
+    }
+
+    /**
+     * Queues a call which retrieves the object in the database with
+     * the specified primary key ID, as in the {@link
+     * #load(Class,int,FieldsSpecification)} method.
+     */
+    public BatchResult load(RemoteBatch batch,
+                            Class targetClass, int id,
+                            FieldsSpecification fieldSpec)
+    {
+        String remoteType = RemoteTypes.getRemoteType(targetClass);
+        Map fields = fieldSpec.getFieldsWanted();
+        return icaller.dispatch(batch,targetClass,
+                                "loadObject",
+                                new Object[] {
+                                    remoteType,
+                                    new Integer(id),
+                                    fields
+                                });
+    }
+
+    /**
+     * Queues a call which retrieves the attribute in the database
+     * with the specified primary key ID, as in the {@link
+     * #load(String,int,FieldsSpecification)} method.
+     */
+    public BatchResult load(RemoteBatch batch,
+                            String semanticType, int id,
+                            FieldsSpecification fieldSpec)
+    {
+        Map fields = fieldSpec.getFieldsWanted();
+        return icaller.dispatch(batch,semanticType,
+                                "loadObject",
+                                new Object[] {
+                                    "@"+semanticType,
+                                    new Integer(id),
+                                    fields
+                                });
+    }
+
+    /**
+     * Queues a call which retrieves the one object in the database
+     * which matches the specified search criteria, as in the {@link
+     * #retrieve(Class,Criteria)} method.
+     */
+    public BatchResult retrieve(RemoteBatch batch,
+                                Class targetClass, Criteria criteria)
+    {
+        String remoteType = RemoteTypes.getRemoteType(targetClass);
+        Map crit = createCriteriaMap(criteria);
+        Map fields = criteria.getFieldsWanted();
+        return icaller.dispatch(batch,targetClass,
+                                "retrieveObject",
+                                new Object[] {remoteType,crit,fields});
+    }
+
+    /**
+     * Queues a call which retrieves the one attribute in the database
+     * which matches the specified search criteria, as in the {@link
+     * #retrieve(String,Criteria)} method.
+     */
+    public BatchResult retrieve(RemoteBatch batch,
+                                String semanticType, Criteria criteria)
+    {
+        Map crit = createCriteriaMap(criteria);
+        Map fields = criteria.getFieldsWanted();
+        return icaller.dispatch(batch,semanticType,
+                                "retrieveObject",
+                                new Object[] {
+                                    "@"+semanticType,
+                                    crit,
+                                    fields
+                                });
+    }
+
+    /**
+     * Queues a call which retrieves all of the objects in the
+     * database which match the specified search criteria, as in the
+     * {@link #retrieveList(Class,Criteria)} method.
+     */
+    public BatchResult retrieveList(RemoteBatch batch,
+                                    Class targetClass, Criteria criteria)
+    {
+        String remoteType = RemoteTypes.getRemoteType(targetClass);
+        Map crit = createCriteriaMap(criteria);
+        Map fields = criteria.getFieldsWanted();
+        return icaller.dispatchList(batch,targetClass,
+                                    "retrieveObjects",
+                                    new Object[] {remoteType,crit,fields});
+    }
+
+    /**
+     * Queues a call which retrieves all of the attributes in the
+     * database which match the specified search criteria, as in the
+     * {@link #retrieveList(String,Criteria)} method.
+     */
+    public BatchResult retrieveList(RemoteBatch batch,
+                                    String semanticType, Criteria criteria)
+    {
+        Map crit = createCriteriaMap(criteria);
+        Map fields = criteria.getFieldsWanted();
+        return icaller.dispatchList(batch,semanticType,
                                     "retrieveObjects",
                                     new Object[] {
                                         "@"+semanticType,
@@ -537,6 +1388,11 @@ public class DataFactory
      * transaction is committed.  If multiple objects needs to be
      * saved atomically, use the {@link #updateList} method.</p>
      *
+     * <p>Only the fields which have been modified since the object
+     * was read from the database are sent to the data server.  If the
+     * object is not new, and has not been modified, nothing is sent
+     * at all.</p>
+     *
      * @param object the data object to save to the database
      * @throws IllegalArgumentException if the object was not created
      * by the {@link #createNew}, {@link #retrieve}, or {@link
@@ -559,6 +1415,9 @@ public class DataFactory
         // Serialize the DTO
 
         MappedDTO dto = (MappedDTO) object;
+        if (!needsUpdate(dto))
+            return;
+
         Map serialized = instantiator.serializeForUpdate(dto,null);
 
         // Make the remote call
@@ -597,6 +1456,10 @@ public class DataFactory
             dto.setNew(false);
             dto.getMap().put("id",new Integer(realID));
         }
+
+        dto.setTainted(false);
+        if (cache != null)
+            cache.refresh(dto);
     }
 
     /**
@@ -634,6 +1497,11 @@ public class DataFactory
      * DTO, as long as the new object appears in before the referring
      * DTO in this method's <code>list</code> parameter.</p>
      *
+     * <p>Only the fields which have been modified since each object
+     * was read from the database are sent to the data server.
+     * Objects which are not new, and have not been modified, are
+     * skipped entirely.</p>
+     *
      * <p>After the objects are saved to the database, the database
      * transaction is committed.</p>
      *
@@ -652,6 +1520,7 @@ public class DataFactory
             return;
 
         List serialized = new ArrayList(list.size()*2);
+        List changed = new ArrayList(list.size());
         Iterator iter;
 
         Map newIDs = new HashMap();
@@ -671,6 +1540,10 @@ public class DataFactory
                 throw new IllegalArgumentException("That DTO was not created by createNew, retrieve, or retrieveList");
 
             MappedDTO dto = (MappedDTO) object;
+            if (!needsUpdate(dto))
+                continue;
+
+            changed.add(dto);
             if (dto.isNew())
             {
                 int newID = nextNew++;
@@ -678,11 +1551,14 @@ public class DataFactory
             }
         }
 
+        if (changed.size() == 0)
+            return;
+
         // Now we go through and serialize the DTO's.  We can't do
         // this in one pass because we have to know all of the
         // new-ID's before we can serialize anything.
 
-        iter = list.iterator();
+        iter = changed.iterator();
         while (iter.hasNext())
         {
             MappedDTO dto = (MappedDTO) iter.next();
@@ -726,24 +1602,67 @@ public class DataFactory
             newObject.setNew(false);
             newObject.getMap().put("id",realID);
         }
+
+        // The objects now match the database, so they become the
+        // cached instances of their database objects.
+
+        iter = changed.iterator();
+        while (iter.hasNext())
+        {
+            MappedDTO dto = (MappedDTO) iter.next();
+            dto.setTainted(false);
+            if (cache != null)
+                cache.refresh(dto);
+        }
     }
 
+    /**
+     * Returns whether the specified object has to be sent to the data
+     * server to be saved: that is, whether it is new or has been
+     * modified.
+     */
+    private boolean needsUpdate(MappedDTO dto)
+    {
+        return dto.isNew() || dto.isTainted();
+    }
+
+    /**
+     * Returns the {@link UnitOfWork} which holds the objects marked by
+     * the {@link #markForUpdate} method.  Its chunk size, auto-flush
+     * threshold, and listener can be configured through the returned
+     * object.
+     */
+    public UnitOfWork getUnitOfWork() { return unitOfWork; }
+
+    /**
+     * Marks an object to be saved by the next call to {@link
+     * #updateMarked}.  Marking an object which is already marked has
+     * no effect.  If the {@link UnitOfWork} has an auto-flush
+     * threshold, reaching it saves the marked objects immediately.
+     *
+     * @param object the data object to save to the database
+     * @throws IllegalArgumentException if the object was not created
+     * by the {@link #createNew}, {@link #retrieve}, or {@link
+     * #retrieveList} method
+     * @see UnitOfWork#mark
+     */
     public void markForUpdate(DataInterface object)
     {
-        if (!markedForUpdate.contains(object))
-            markedForUpdate.add(new EqualsWrapper(object));
+        unitOfWork.mark(object);
     }
 
+    /**
+     * Saves all of the objects marked by the {@link #markForUpdate}
+     * method to the database.  The objects are saved in chunks, each
+     * of which is committed separately; see {@link UnitOfWork} for
+     * details.
+     *
+     * @throws DataException if one of the objects refers to a new
+     * object which has not been saved and is not marked
+     * @see UnitOfWork#flush
+     */
     public void updateMarked()
     {
-        for (int i = 0; i < markedForUpdate.size(); i++)
-        {
-            EqualsWrapper ew = (EqualsWrapper) markedForUpdate.get(i);
-            markedForUpdate.set(i,ew.ref);
-        }
-
-        updateList(markedForUpdate);
-
-        markedForUpdate.clear();
+        unitOfWork.flush();
     }
 }
@@ -90,6 +90,37 @@ public class DataServer
         return new XmlRpcCaller(url);
     }
 
+    /**
+     * Returns a {@link RemoteCaller} which can be used to communicate
+     * with a data server at the specified URL, and which allows up to
+     * <code>maxConnections</code> calls to be in flight at once.
+     * @param url the URL of the data server
+     * @param maxConnections the maximum number of connections to
+     * keep open to the data server
+     * @throws MalformedURLException if <code>url</code> does not
+     * encode a well-formed URL
+     * @see PooledXmlRpcCaller
+     */
+    public static RemoteCaller getPooledCaller(String url, int maxConnections)
+        throws MalformedURLException
+    {
+        return getPooledCaller(new URL(url),maxConnections);
+    }
+
+    /**
+     * Returns a {@link RemoteCaller} which can be used to communicate
+     * with a data server at the specified URL, and which allows up to
+     * <code>maxConnections</code> calls to be in flight at once.
+     * @param url the URL of the data server
+     * @param maxConnections the maximum number of connections to
+     * keep open to the data server
+     * @see PooledXmlRpcCaller
+     */
+    public static RemoteCaller getPooledCaller(URL url, int maxConnections)
+    {
+        return new PooledXmlRpcCaller(url,maxConnections);
+    }
+
     /**
      * Returns a {@link DataServices} which can be used to communicate
      * with a data server at the specified URL.
@@ -160,4 +160,102 @@ public class InstantiatingCaller
         return instantiator.instantiateList(semanticType,result);
     }
 
+    /**
+     * Queues a call to a remote method in the specified {@link
+     * RemoteBatch}.  When the batch is executed, the result is
+     * instantiated into an instance of the specified Java DTO
+     * interface, which is returned by the {@link
+     * BatchResult#getResult} method.
+     * @param javaClass the {@link Class} object for a DTO interface
+     * (not implementing class)
+     * @see #dispatch(Class,String,Object[])
+     */
+    public BatchResult dispatch(RemoteBatch batch,
+                                final Class javaClass,
+                                String method,
+                                Object[] params)
+    {
+        return batch.add(new BatchResult(method,params)
+            {
+                protected Object convert(Object raw)
+                {
+                    return instantiator.instantiateDTO(javaClass,raw);
+                }
+            });
+    }
+
+    /**
+     * Queues a call to a remote method in the specified {@link
+     * RemoteBatch}.  When the batch is executed, the result is
+     * instantiated into an instance of the specified semantic type
+     * interface, which is returned by the {@link
+     * BatchResult#getResult} method.
+     * @param semanticType the name of the semantic type to
+     * instantiate (the name of the type, not the interface or
+     * implementing class)
+     * @see #dispatch(String,String,Object[])
+     */
+    public BatchResult dispatch(RemoteBatch batch,
+                                final String semanticType,
+                                String method,
+                                Object[] params)
+    {
+        return batch.add(new BatchResult(method,params)
+            {
+                protected Object convert(Object raw)
+                {
+                    return instantiator.instantiateDTO(semanticType,raw);
+                }
+            });
+    }
+
+    /**
+     * Queues a call to a remote method in the specified {@link
+     * RemoteBatch}.  When the batch is executed, the result is
+     * instantiated into a {@link List} of instances of the specified
+     * Java DTO interface, which is returned by the {@link
+     * BatchResult#getResult} method.
+     * @param javaClass the {@link Class} object for a DTO interface
+     * (not implementing class)
+     * @see #dispatchList(Class,String,Object[])
+     */
+    public BatchResult dispatchList(RemoteBatch batch,
+                                    final Class javaClass,
+                                    String method,
+                                    Object[] params)
+    {
+        return batch.add(new BatchResult(method,params)
+            {
+                protected Object convert(Object raw)
+                {
+                    return instantiator.instantiateList(javaClass,raw);
+                }
+            });
+    }
+
+    /**
+     * Queues a call to a remote method in the specified {@link
+     * RemoteBatch}.  When the batch is executed, the result is
+     * instantiated into a {@link List} of instances of the specified
+     * semantic type interface, which is returned by the {@link
+     * BatchResult#getResult} method.
+     * @param semanticType the name of the semantic type to
+     * instantiate (the name of the type, not the interface or
+     * implementing class)
+     * @see #dispatchList(String,String,Object[])
+     */
+    public BatchResult dispatchList(RemoteBatch batch,
+                                    final String semanticType,
+                                    String method,
+                                    Object[] params)
+    {
+        return batch.add(new BatchResult(method,params)
+            {
+                protected Object convert(Object raw)
+                {
+                    return instantiator.instantiateList(semanticType,raw);
+                }
+            });
+    }
+
 }
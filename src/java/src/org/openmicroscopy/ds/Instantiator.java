@@ -41,11 +41,13 @@ package org.openmicroscopy.ds;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.HashMap;
 import java.util.Vector;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 
 /**
  * Contains the methods for serializing and deserializing DTO methods
@@ -63,12 +65,36 @@ public class Instantiator
      */
     public Instantiator() { super(); }
 
-    private Class getDTOClass(Class javaClass)
+    /**
+     * Returns the factory for the DTO class which implements the
+     * specified DTO interface.
+     */
+    private DTOFactory getFactory(Class javaClass)
     {
-        return RemoteTypes.getDTOClass(javaClass);
+        return MappedDTO.getFactory(RemoteTypes.getDTOClass(javaClass));
     }
 
     private Map semanticTypeClassCache = new HashMap();
+    private Map semanticTypeFactoryCache = new HashMap();
+
+    /**
+     * Returns the factory for the DTO class used to instantiate
+     * attributes of the specified semantic type.  The factory is
+     * cached, so that the class is only looked up once per semantic
+     * type.
+     */
+    private synchronized DTOFactory getSemanticTypeFactory(String semanticTypeName)
+    {
+        DTOFactory factory = (DTOFactory)
+            semanticTypeFactoryCache.get(semanticTypeName);
+        if (factory == null)
+        {
+            factory = MappedDTO.
+                getFactory(getSemanticTypeClass(semanticTypeName));
+            semanticTypeFactoryCache.put(semanticTypeName,factory);
+        }
+        return factory;
+    }
 
     /**
      * Determines which class should be used to instantiate an
@@ -131,20 +157,14 @@ public class Instantiator
         }
         if (result instanceof Map)
         {
-            Class dtoClass = getDTOClass(javaClass);
             Map map = (Map) result;
 
             try
             {
-                MappedDTO dto = (MappedDTO) dtoClass.newInstance();
+                MappedDTO dto = getFactory(javaClass).newInstance();
                 dto.setMap(map);
                 return dto;
-            } catch (ClassCastException e) {
-                throw new RemoteServerErrorException(dtoClass+" is not a MappedDTO subclass");
-            } catch (InstantiationException e) {
-                throw new RemoteServerErrorException("Could not create DTO instance: "+
-                                                     e.getMessage());
-            } catch (IllegalAccessException e) {
+            } catch (DataException e) {
                 throw new RemoteServerErrorException("Could not create DTO instance: "+
                                                      e.getMessage());
             }
@@ -180,20 +200,17 @@ public class Instantiator
         }
         if (result instanceof Map)
         {
-            Class dtoClass = getSemanticTypeClass(semanticType);
             Map map = (Map) result;
 
             try
             {
-                MappedDTO dto = (MappedDTO) dtoClass.newInstance();
+                MappedDTO dto = getSemanticTypeFactory(semanticType).
+                    newInstance();
                 dto.setMap(map);
                 return (AttributeDTO) dto;
             } catch (ClassCastException e) {
-                throw new RemoteServerErrorException(dtoClass+" is not a MappedDTO subclass");
-            } catch (InstantiationException e) {
-                throw new RemoteServerErrorException("Could not create DTO instance: "+
-                                                     e.getMessage());
-            } catch (IllegalAccessException e) {
+                throw new RemoteServerErrorException("The DTO class for "+semanticType+" is not an AttributeDTO subclass");
+            } catch (DataException e) {
                 throw new RemoteServerErrorException("Could not create DTO instance: "+
                                                      e.getMessage());
             }
@@ -316,6 +333,12 @@ public class Instantiator
      * method call.  It is used to ensure that any object references
      * in the data object refer to existent objects.</p>
      *
+     * <p>If the object is already in the database, only the fields
+     * reported by its {@link MappedDTO#getDirtyFields} method are
+     * serialized, along with its primary key ID.  If the modified
+     * fields are not known, or if the object is new, every field is
+     * serialized.</p>
+     *
      * @param dto the data object to serialize
      * @param newIDs a {@link Map} linking new-ID values to data
      * objects
@@ -327,7 +350,16 @@ public class Instantiator
         Map serialized = new HashMap();
 
         Map elements = dto.getMap();
-        Iterator keys = elements.keySet().iterator();
+        Set dirtyFields = dto.isNew()? null: dto.getDirtyFields();
+        Iterator keys;
+        if (dirtyFields == null)
+        {
+            keys = elements.keySet().iterator();
+        } else {
+            keys = dirtyFields.iterator();
+            if (elements.containsKey("id"))
+                serialized.put("id",elements.get("id"));
+        }
 
         // Create a Map of the format expected by the updateObject
         // method
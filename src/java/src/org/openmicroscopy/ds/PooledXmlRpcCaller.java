@@ -0,0 +1,264 @@
+/*
+ * org.openmicroscopy.ds.PooledXmlRpcCaller
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+
+package org.openmicroscopy.ds;
+
+import java.net.URL;
+import java.util.LinkedList;
+import java.util.Vector;
+import java.io.IOException;
+import org.apache.xmlrpc.XmlRpc;
+import org.apache.xmlrpc.XmlRpcClient;
+import org.apache.xmlrpc.XmlRpcException;
+
+/**
+ * <p>An {@link XmlRpcCaller} which allows several XML-RPC calls to be
+ * in flight at once.  Each call is sent through one of a bounded pool
+ * of {@link XmlRpcClient} instances, each of which keeps its HTTP
+ * connection to the data server open between calls.  If every
+ * connection in the pool is busy, a call waits until one of them is
+ * released.  All of the connections share this caller's session key,
+ * so logging in once is enough for every thread.</p>
+ *
+ * <h4>Thread safety</h4>
+ *
+ * <p>Each call builds its own parameter vector, so the
+ * <code>invoke</code> and <code>dispatch</code> methods can be called
+ * from any number of threads without blocking each other, up to the
+ * size of the pool.  The <code>login</code> and <code>logout</code>
+ * methods are still synchronized, and should not be called while
+ * other threads are making calls.</p>
+ *
+ * <p>Keep-alive is a global setting of the XML-RPC library, so
+ * creating a <code>PooledXmlRpcCaller</code> turns it on for every
+ * client in the virtual machine.  Creating a plain {@link
+ * XmlRpcCaller} afterwards turns it back off.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see DataServer#getPooledCaller
+ */
+
+public class PooledXmlRpcCaller
+    extends XmlRpcCaller
+{
+    /**
+     * The default maximum number of connections to the data server.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+    /** The URL of the data server. */
+    private URL  url;
+
+    /** The maximum number of connections in the pool. */
+    private int  maxConnections;
+
+    /**
+     * The clients which are not currently in use.  This list is also
+     * used to synchronize access to the pool, so that a call in
+     * flight in the synchronized <code>login</code> method does not
+     * block the pool.
+     */
+    private LinkedList  idleClients = new LinkedList();
+
+    /** The number of clients which have been created and not closed. */
+    private int  clientCount = 0;
+
+    /** The number of calls which have had to wait for a connection. */
+    private long  waitCount = 0;
+
+    /**
+     * Creates a new <code>PooledXmlRpcCaller</code> which can be used
+     * to send remote method calls to the data server at the specified
+     * URL, with the default maximum number of connections.
+     */
+    public PooledXmlRpcCaller(URL url)
+    {
+        this(url,DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Creates a new <code>PooledXmlRpcCaller</code> which can be used
+     * to send remote method calls to the data server at the specified
+     * URL, with at most <code>maxConnections</code> calls in flight
+     * at once.
+     */
+    public PooledXmlRpcCaller(URL url, int maxConnections)
+    {
+        super(url);
+
+        if (maxConnections <= 0)
+            throw new IllegalArgumentException("Must allow at least one connection");
+
+        this.url = url;
+        this.maxConnections = maxConnections;
+        XmlRpc.setKeepAlive(true);
+    }
+
+    /**
+     * Returns the maximum number of connections in the pool.
+     */
+    public int getMaxConnections()
+    {
+        synchronized (idleClients) { return maxConnections; }
+    }
+
+    /**
+     * Sets the maximum number of connections in the pool.  If the
+     * pool is shrunk, the extra connections are closed as they are
+     * released.
+     */
+    public void setMaxConnections(int maxConnections)
+    {
+        synchronized (idleClients)
+        {
+            if (maxConnections <= 0)
+                throw new IllegalArgumentException("Must allow at least one connection");
+            this.maxConnections = maxConnections;
+            while (clientCount > maxConnections && !idleClients.isEmpty())
+            {
+                idleClients.removeFirst();
+                clientCount--;
+            }
+            idleClients.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of connections which are currently open,
+     * whether or not they are in use.
+     */
+    public int getConnectionCount()
+    {
+        synchronized (idleClients) { return clientCount; }
+    }
+
+    /**
+     * Returns the number of connections which are open but not in
+     * use.
+     */
+    public int getIdleConnectionCount()
+    {
+        synchronized (idleClients) { return idleClients.size(); }
+    }
+
+    /**
+     * Returns the number of calls which have had to wait for a
+     * connection to be released.
+     */
+    public long getWaitCount()
+    {
+        synchronized (idleClients) { return waitCount; }
+    }
+
+    /**
+     * Sends the call through a connection from the pool.  Only a
+     * failure of the connection itself removes it from the pool;
+     * errors reported by the data server do not.
+     */
+    protected Object execute(String method, Vector params)
+        throws Exception
+    {
+        XmlRpcClient client = acquireClient();
+        boolean broken = true;
+        try
+        {
+            Object result = client.execute(method,params);
+            broken = false;
+            return result;
+        } catch (XmlRpcException e) {
+            // The data server reported an error, but the connection
+            // is still usable.
+            broken = false;
+            throw e;
+        } finally {
+            releaseClient(client,broken);
+        }
+    }
+
+    private XmlRpcClient acquireClient()
+        throws IOException
+    {
+        synchronized (idleClients)
+        {
+            boolean waited = false;
+            while (idleClients.isEmpty() && clientCount >= maxConnections)
+            {
+                waited = true;
+                try
+                {
+                    idleClients.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a connection");
+                }
+            }
+            if (waited) waitCount++;
+
+            if (!idleClients.isEmpty())
+                return (XmlRpcClient) idleClients.removeFirst();
+
+            clientCount++;
+            return createClient(url);
+        }
+    }
+
+    private void releaseClient(XmlRpcClient client, boolean broken)
+    {
+        synchronized (idleClients)
+        {
+            if (broken || clientCount > maxConnections)
+                clientCount--;
+            else
+                idleClients.addFirst(client);
+            idleClients.notifyAll();
+        }
+    }
+
+    public String toString()
+    {
+        return "PooledXmlRpcCaller ("+url+", "+getConnectionCount()+"/"+
+            getMaxConnections()+" connections)";
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * org.openmicroscopy.ds.RemoteBatch
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+import java.util.List;
+import java.util.ArrayList;
+
+/**
+ * <p>Queues remote method calls so that they can be sent to the data
+ * server together.  Each call added to the batch returns a {@link
+ * BatchResult}, which is filled in when the batch is executed.  The
+ * {@link #execute} method passes the queued calls to the {@link
+ * RemoteCaller#dispatchBatch} method of the batch's caller, which
+ * sends them in as few round trips as the transport allows; the
+ * {@link XmlRpcCaller} sends each group of calls as a single
+ * <code>system.multicall</code> request.</p>
+ *
+ * <p>The calls in a batch are independent of each other.  They are
+ * executed in the order in which they were added, but an error in
+ * one call does not prevent the others from being executed, and is
+ * only reported by that call's {@link BatchResult#getResult} method.
+ * Since no call's result is known until the batch is executed, the
+ * parameters of a call cannot depend on the result of an earlier call
+ * in the same batch.</p>
+ *
+ * <p>A batch can be executed any number of times; each execution
+ * sends the calls which were added since the last one.  The methods
+ * of this class are synchronized, but calls added by another thread
+ * while the batch is executing are left for the next execution.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see DataFactory#createBatch
+ */
+
+public class RemoteBatch
+{
+    /**
+     * The default maximum number of calls sent in a single request.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 100;
+
+    private RemoteCaller  caller;
+    private int  maximumSize;
+    private List  pending = new ArrayList();
+
+    /**
+     * Creates a new, empty batch which will be sent to the data
+     * server by the specified {@link RemoteCaller}.
+     */
+    public RemoteBatch(RemoteCaller caller)
+    {
+        this(caller,DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new, empty batch which will be sent to the data
+     * server by the specified {@link RemoteCaller}.  Larger batches
+     * are split into requests of at most <code>maximumSize</code>
+     * calls each.
+     */
+    public RemoteBatch(RemoteCaller caller, int maximumSize)
+    {
+        super();
+
+        if (caller == null)
+            throw new IllegalArgumentException("Caller cannot be null");
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("Maximum size must be positive");
+
+        this.caller = caller;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the {@link RemoteCaller} which executes this batch.
+     */
+    public RemoteCaller getRemoteCaller() { return caller; }
+
+    /**
+     * Returns the maximum number of calls sent in a single request.
+     */
+    public int getMaximumSize() { return maximumSize; }
+
+    /**
+     * Returns the number of calls which have been added since the
+     * batch was last executed.
+     */
+    public synchronized int getPendingCount() { return pending.size(); }
+
+    /**
+     * Queues a call to a remote method via the <code>dispatch</code>
+     * procedure.  The method can receive an arbitrary number of
+     * parameters.
+     *
+     * @return the deferred result of the call
+     */
+    public BatchResult dispatch(String method, Object[] params)
+    {
+        return add(new BatchResult(method,params));
+    }
+
+    /**
+     * Queues a call, which is described by a {@link BatchResult}
+     * which has not been executed yet.  This allows subclasses of
+     * {@link BatchResult} to convert the raw result of the call.
+     *
+     * @return the <code>result</code> parameter
+     */
+    public synchronized BatchResult add(BatchResult result)
+    {
+        if (result == null)
+            throw new IllegalArgumentException("Result cannot be null");
+        if (result.isDone())
+            throw new IllegalArgumentException("That call has already been executed");
+
+        pending.add(result);
+        return result;
+    }
+
+    /**
+     * Sends all of the queued calls to the data server, and fills in
+     * their results.  This method does not throw an exception if any
+     * of the calls fail; the errors are reported by each call's
+     * {@link BatchResult}.
+     */
+    public void execute()
+    {
+        List calls;
+
+        synchronized(this)
+        {
+            if (pending.size() == 0)
+                return;
+            calls = pending;
+            pending = new ArrayList();
+        }
+
+        for (int start = 0; start < calls.size(); start += maximumSize)
+        {
+            List chunk = calls.
+                subList(start,Math.min(start+maximumSize,calls.size()));
+
+            try
+            {
+                caller.dispatchBatch(chunk);
+            } catch (RuntimeException e) {
+                failPending(chunk,e);
+            }
+
+            failPending(chunk,null);
+        }
+    }
+
+    /**
+     * Executes the batch, and then throws the first error caused by
+     * any of its calls.  This is a convenience for batches of calls
+     * whose results are not otherwise examined.
+     *
+     * @throws RemoteException if any of the calls caused an error
+     */
+    public void executeAndCheck()
+    {
+        List calls;
+
+        synchronized(this)
+        {
+            calls = new ArrayList(pending);
+        }
+
+        execute();
+
+        for (int i = 0; i < calls.size(); i++)
+        {
+            BatchResult result = (BatchResult) calls.get(i);
+            if (result.isFailed())
+                throw result.getException();
+        }
+    }
+
+    /**
+     * Fails any calls which the caller did not complete, so that no
+     * result is left pending after its batch has been executed.
+     */
+    private void failPending(List calls, RuntimeException e)
+    {
+        for (int i = 0; i < calls.size(); i++)
+        {
+            BatchResult result = (BatchResult) calls.get(i);
+            synchronized(result)
+            {
+                if (!result.isDone())
+                    result.fail((e != null)? e:
+                                new RemoteServerErrorException("No result was returned for "+result.getMethod()));
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "RemoteBatch ("+pending.size()+" pending calls)";
+    }
+}
@@ -36,12 +36,14 @@
 
 package org.openmicroscopy.ds;
 
+import java.util.List;
+
 /**
  * Provides an interface for making generic RPC calls.  Currently, the
  * only implementation of this interface is the {@link XmlRpcCaller}
- * class.  If, at some point in the future, the transport protocol of
- * the remote framework changes, that should be the only class which
- * needs rewriting.
+ * class, and its {@link PooledXmlRpcCaller} subclass.  If, at some
+ * point in the future, the transport protocol of the remote framework
+ * changes, that should be the only class which needs rewriting.
  *
  * @author Douglas Creager (dcreager@alum.mit.edu)
  * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
@@ -97,6 +99,19 @@ public interface RemoteCaller
      */
     Integer dispatchInteger(String method, Object[] params);
 
+    /**
+     * Invokes a {@link List} of remote methods via the
+     * <code>dispatch</code> procedure, and fills in each element's
+     * {@link BatchResult}.  Implementations should send the calls in
+     * as few round trips as possible, falling back to sending them
+     * one at a time if the data server does not support anything
+     * better.  An error in one call must be recorded in that call's
+     * {@link BatchResult}, and must not prevent the remaining calls
+     * from being executed.  Most code should use a {@link
+     * RemoteBatch} rather than calling this method directly.
+     */
+    void dispatchBatch(List calls);
+
     void startProfiler();
     void stopProfiler();
     void resetProfiler();
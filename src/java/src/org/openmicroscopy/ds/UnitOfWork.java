@@ -0,0 +1,429 @@
+/*
+ * org.openmicroscopy.ds.UnitOfWork
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.openmicroscopy.ds.dto.DataInterface;
+import org.openmicroscopy.ds.dto.MappedDTO;
+
+/**
+ * <p>Collects DTOs which have been marked to be saved, and saves them
+ * to the database with as few <code>updateObjects</code> calls as
+ * possible.  Each {@link DataFactory} has a unit of work, which backs
+ * its {@link DataFactory#markForUpdate} and {@link
+ * DataFactory#updateMarked} methods.</p>
+ *
+ * <p>Objects are marked by identity, so marking the same object
+ * twice has no effect, no matter how many objects have been marked.
+ * If an auto-flush threshold is set, the marked objects are saved
+ * automatically once that many have been marked.  The automatic
+ * flush is put off while any marked object refers to a new object
+ * which has not been marked yet, so an object can be marked before
+ * the new objects it refers to.</p>
+ *
+ * <p>When the unit of work is flushed, the marked objects are saved
+ * in chunks of at most {@link #getChunkSize} objects, each of which
+ * is saved by a single call to {@link DataFactory#updateList} and
+ * committed separately.  The objects are saved in the order in which
+ * they were marked, except that a new object is always saved before
+ * any marked object which refers to it.  Once a chunk has been saved,
+ * its new objects have been given their real primary key IDs, so
+ * later chunks can refer to them like any other object.  Unlike a
+ * single call to {@link DataFactory#updateList}, a flush is therefore
+ * not atomic: if a chunk fails, the chunks before it stay committed,
+ * and the objects in the failed chunk and the chunks after it remain
+ * marked.  Setting the chunk size to 0 saves all of the marked
+ * objects in a single call.</p>
+ *
+ * <p>The time taken by each chunk of the last flush is recorded, and
+ * can also be reported as the flush progresses to a {@link
+ * UnitOfWorkListener}.  The methods of this class are
+ * synchronized.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see DataFactory#getUnitOfWork
+ */
+
+public class UnitOfWork
+{
+    /**
+     * The default maximum number of objects saved by each
+     * <code>updateObjects</code> call.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /** The factory which saves the objects. */
+    private DataFactory  factory;
+
+    /** The marked objects, in the order they were marked. */
+    private List  marked = new ArrayList();
+
+    /** The marked objects, keyed by identity. */
+    private Map  markedSet = new IdentityHashMap();
+
+    private int  chunkSize = DEFAULT_CHUNK_SIZE;
+    private int  autoFlushThreshold = 0;
+
+    private UnitOfWorkListener  listener;
+
+    /** The number of objects in each chunk of the last flush. */
+    private int[]  lastChunkSizes = new int[0];
+
+    /** The time taken by each chunk of the last flush. */
+    private long[]  lastChunkTimes = new long[0];
+
+    /** The number of objects saved since this unit of work was created. */
+    private long  savedCount;
+
+    /** The number of chunks saved since this unit of work was created. */
+    private long  chunkCount;
+
+    /**
+     * Creates a new unit of work which saves its objects with the
+     * specified {@link DataFactory}.
+     */
+    public UnitOfWork(DataFactory factory)
+    {
+        super();
+        if (factory == null)
+            throw new IllegalArgumentException("Factory cannot be null");
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the maximum number of objects saved by each
+     * <code>updateObjects</code> call, or 0 if all of the marked
+     * objects are saved in a single call.
+     */
+    public synchronized int getChunkSize() { return chunkSize; }
+
+    /**
+     * Sets the maximum number of objects saved by each
+     * <code>updateObjects</code> call.  A value of 0 saves all of the
+     * marked objects in a single call.
+     */
+    public synchronized void setChunkSize(int chunkSize)
+    {
+        if (chunkSize < 0)
+            throw new IllegalArgumentException("Chunk size cannot be negative");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the number of marked objects which causes the unit of
+     * work to be flushed automatically, or 0 if it is only flushed
+     * explicitly.
+     */
+    public synchronized int getAutoFlushThreshold()
+    {
+        return autoFlushThreshold;
+    }
+
+    /**
+     * Sets the number of marked objects which causes the unit of work
+     * to be flushed automatically.  A value of 0, the default,
+     * disables automatic flushing.
+     */
+    public synchronized void setAutoFlushThreshold(int autoFlushThreshold)
+    {
+        if (autoFlushThreshold < 0)
+            throw new IllegalArgumentException("Threshold cannot be negative");
+        this.autoFlushThreshold = autoFlushThreshold;
+    }
+
+    /**
+     * Returns the listener which is notified as chunks are saved, or
+     * <code>null</code>.
+     */
+    public synchronized UnitOfWorkListener getListener() { return listener; }
+
+    /**
+     * Sets the listener which is notified as chunks are saved.
+     */
+    public synchronized void setListener(UnitOfWorkListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Marks an object to be saved when this unit of work is flushed.
+     * Marking an object which is already marked has no effect.  If
+     * this brings the number of marked objects up to the auto-flush
+     * threshold, the unit of work is flushed, unless a marked object
+     * refers to a new object which is not marked.  In that case the
+     * flush happens on a later call, once the new object has been
+     * marked.
+     *
+     * @param object the object to save
+     * @throws IllegalArgumentException if the object was not created
+     * by the {@link DataFactory#createNew}, {@link
+     * DataFactory#retrieve}, or {@link DataFactory#retrieveList}
+     * method
+     */
+    public synchronized void mark(DataInterface object)
+    {
+        if (object == null)
+            return;
+        if (!(object instanceof MappedDTO))
+            throw new IllegalArgumentException("That DTO was not created by createNew, retrieve, or retrieveList");
+
+        if (markedSet.put(object,object) == null)
+            marked.add(object);
+
+        if (autoFlushThreshold > 0 && marked.size() >= autoFlushThreshold &&
+            !hasUnmarkedReferents())
+            flush();
+    }
+
+    /**
+     * Returns whether any marked object refers to a new object which
+     * is not marked, and which therefore could not be saved yet.
+     */
+    private boolean hasUnmarkedReferents()
+    {
+        for (int i = 0; i < marked.size(); i++)
+        {
+            MappedDTO dto = (MappedDTO) marked.get(i);
+            Iterator it = dto.getMap().values().iterator();
+            while (it.hasNext())
+            {
+                Object value = it.next();
+                if (value instanceof MappedDTO &&
+                    ((MappedDTO) value).isNew() &&
+                    !markedSet.containsKey(value))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the specified object is marked.
+     */
+    public synchronized boolean isMarked(DataInterface object)
+    {
+        return markedSet.containsKey(object);
+    }
+
+    /**
+     * Returns the number of marked objects.
+     */
+    public synchronized int getMarkedCount() { return marked.size(); }
+
+    /**
+     * Unmarks all of the marked objects without saving them.
+     */
+    public synchronized void clear()
+    {
+        marked.clear();
+        markedSet.clear();
+    }
+
+    /**
+     * Saves all of the marked objects to the database, and unmarks
+     * them.
+     *
+     * @throws DataException if one of the objects refers to a new
+     * object which has not been saved and is not marked
+     */
+    public synchronized void flush()
+    {
+        if (marked.size() == 0)
+            return;
+
+        List ordered = orderForSave();
+        int size = (chunkSize == 0)? ordered.size(): chunkSize;
+        int chunks = (ordered.size()+size-1)/size;
+
+        lastChunkSizes = new int[chunks];
+        lastChunkTimes = new long[chunks];
+
+        int start = 0;
+        try
+        {
+            for (int chunk = 0; chunk < chunks; chunk++)
+            {
+                int end = Math.min(start+size,ordered.size());
+                List objects = ordered.subList(start,end);
+                lastChunkSizes[chunk] = objects.size();
+
+                long time = System.currentTimeMillis();
+                factory.updateList(objects);
+                time = System.currentTimeMillis()-time;
+
+                // The chunk is committed, so its objects are no longer
+                // marked.
+                for (int i = 0; i < objects.size(); i++)
+                    markedSet.remove(objects.get(i));
+                start = end;
+
+                lastChunkTimes[chunk] = time;
+                savedCount += objects.size();
+                chunkCount++;
+
+                if (listener != null)
+                    listener.chunkCommitted(this,chunk,chunks,
+                                            objects.size(),time);
+            }
+        } finally {
+            // Anything which was not committed stays marked, in the
+            // order in which it would have been saved.
+            marked = new ArrayList(ordered.subList(start,ordered.size()));
+        }
+    }
+
+    /**
+     * Returns the marked objects in the order in which they should be
+     * saved.
+     */
+    private List orderForSave()
+    {
+        List ordered = new ArrayList(marked.size());
+        Map placed = new IdentityHashMap();
+
+        for (int i = 0; i < marked.size(); i++)
+            place((MappedDTO) marked.get(i),ordered,placed);
+        return ordered;
+    }
+
+    /**
+     * Adds an object to the save order, after any new, marked objects
+     * which it refers to.  The references are followed depth-first
+     * with an explicit stack, since a chain of new objects can be
+     * far longer than the thread's stack allows.
+     */
+    private void place(MappedDTO dto, List ordered, Map placed)
+    {
+        if (placed.put(dto,dto) != null)
+            return;
+
+        List stack = new ArrayList();
+        stack.add(new Frame(dto));
+        while (stack.size() > 0)
+        {
+            Frame frame = (Frame) stack.get(stack.size()-1);
+
+            MappedDTO next = null;
+            while (next == null && frame.values.hasNext())
+            {
+                Object value = frame.values.next();
+                if (value instanceof MappedDTO)
+                {
+                    MappedDTO referent = (MappedDTO) value;
+                    if (referent.isNew() && markedSet.containsKey(referent) &&
+                        placed.put(referent,referent) == null)
+                        next = referent;
+                }
+            }
+
+            if (next != null)
+            {
+                stack.add(new Frame(next));
+            } else {
+                // Everything this object refers to has been placed.
+                stack.remove(stack.size()-1);
+                ordered.add(frame.dto);
+            }
+        }
+    }
+
+    /**
+     * An object whose references are being followed by {@link
+     * #place}, and the position reached in its values.
+     */
+    private static final class Frame
+    {
+        final MappedDTO  dto;
+        final Iterator  values;
+
+        Frame(MappedDTO dto)
+        {
+            this.dto = dto;
+            this.values = dto.getMap().values().iterator();
+        }
+    }
+
+    /**
+     * Returns the number of objects in each chunk of the last flush.
+     */
+    public synchronized int[] getLastChunkSizes()
+    {
+        return (int[]) lastChunkSizes.clone();
+    }
+
+    /**
+     * Returns the time, in milliseconds, taken to save each chunk of
+     * the last flush.  If the last flush failed, the failed chunk and
+     * the chunks after it have a time of 0.
+     */
+    public synchronized long[] getLastChunkTimes()
+    {
+        return (long[]) lastChunkTimes.clone();
+    }
+
+    /**
+     * Returns the number of objects saved by this unit of work.
+     */
+    public synchronized long getSavedCount() { return savedCount; }
+
+    /**
+     * Returns the number of chunks saved by this unit of work.
+     */
+    public synchronized long getChunkCount() { return chunkCount; }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "UnitOfWork ("+marked.size()+" marked, "+
+            savedCount+" saved in "+chunkCount+" chunks)";
+    }
+}
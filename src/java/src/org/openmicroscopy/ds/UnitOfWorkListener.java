@@ -0,0 +1,72 @@
+/*
+ * org.openmicroscopy.ds.UnitOfWorkListener
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds;
+
+/**
+ * Receives progress notifications from a {@link UnitOfWork} as its
+ * marked objects are saved.  The methods are called from the thread
+ * which flushed the unit of work, while it is locked, so they should
+ * return quickly and must not call back into the unit of work.
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public interface UnitOfWorkListener
+{
+    /**
+     * Called each time a chunk of objects has been saved to the
+     * database and committed.
+     *
+     * @param unitOfWork the unit of work being flushed
+     * @param chunk the index of the chunk within this flush, starting
+     * at 0
+     * @param chunkCount the number of chunks in this flush
+     * @param objectCount the number of objects in the chunk
+     * @param milliseconds the time taken to save the chunk
+     */
+    public void chunkCommitted(UnitOfWork unitOfWork,
+                               int chunk, int chunkCount,
+                               int objectCount, long milliseconds);
+}
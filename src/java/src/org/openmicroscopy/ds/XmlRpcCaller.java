@@ -70,7 +70,23 @@ import org.apache.xmlrpc.XmlRpcClientLite;
  * threads.  However, it is not defined in which order simultaneous
  * method calls will be executed, so the possibility for race
  * conditions still exist.  As is usual with multi-threaded
- * applications, care must be taken not to screw things up.</p>
+ * applications, care must be taken not to screw things up.  The
+ * {@link PooledXmlRpcCaller} subclass allows several calls to be in
+ * flight at once.</p>
+ *
+ * <h4>Metrics</h4>
+ *
+ * <p>If a {@link CallRecorder} is installed with the {@link
+ * #setCallRecorder} method, every call is recorded under the name of
+ * the remote method.  Calls made through the <code>dispatch</code>
+ * procedure are recorded under the name of the dispatched method,
+ * and batches are recorded as <code>system.multicall</code>.  The
+ * serialization time is the time spent encoding the parameters with
+ * the {@link #encodeObject} method; the network time is everything
+ * else, including the XML encoding and parsing performed by the
+ * XML-RPC library.  The XML-RPC library does not expose the encoded
+ * messages, so the request and response sizes are estimated from the
+ * values being sent and received.</p>
  *
  * @author Douglas Creager (dcreager@alum.mit.edu)
  * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
@@ -93,10 +109,12 @@ public class XmlRpcCaller
 
     private boolean profileCalls = false;
     private long profilerTime = 0L;
+    private Object profilerLock = new Object();
 
     private XmlRpcClient  xmlrpc;
-    private Vector        vparams = new Vector();
-    private String        sessionKey = null;
+    private volatile String  sessionKey = null;
+    private volatile boolean  multicallSupported = true;
+    private volatile CallRecorder  callRecorder;
 
     private File  traceFilename;
     private PrintWriter  traceFile;
@@ -187,80 +205,188 @@ public class XmlRpcCaller
         }
     }
 
-    private void addParameter(Object object)
-    {
-        synchronized(this)
-        {
-            vparams.add(encodeObject(object));
-        }
-    }
-
     public void startProfiler() { profileCalls = true; }
     public void stopProfiler() { profileCalls = false; }
     public void resetProfiler() { profilerTime = 0L; }
     public long getProfiledMilliseconds() { return profilerTime; }
 
-    private Object invoke(String method)
+    /**
+     * Returns the {@link CallRecorder} which records each call made by
+     * this caller, or <code>null</code>.
+     */
+    public CallRecorder getCallRecorder() { return callRecorder; }
+
+    /**
+     * Sets the {@link CallRecorder} which records each call made by
+     * this caller.  A value of <code>null</code>, the default,
+     * disables recording.
+     */
+    public void setCallRecorder(CallRecorder callRecorder)
+    {
+        this.callRecorder = callRecorder;
+    }
+
+    private void profile(long thisTime)
+    {
+        if (profileCalls)
+        {
+            synchronized(profilerLock)
+            {
+                profilerTime += thisTime;
+            }
+            System.err.println("Profiler: "+thisTime);
+        }
+    }
+
+    /**
+     * Sends a single XML-RPC call to the data server.  The default
+     * implementation sends every call through the same {@link
+     * XmlRpcClient}, and only allows one call to be in flight at a
+     * time.  Subclasses can override this method to send calls
+     * through some other client.  The parameters have already been
+     * encoded with the {@link #encodeObject} method, and the vector
+     * is not shared with any other call.
+     */
+    protected Object execute(String method, Vector params)
+        throws Exception
     {
         synchronized(this)
         {
-            long startTime = System.currentTimeMillis();
+            return xmlrpc.execute(method,params);
+        }
+    }
 
-            try
+    private Object invoke(String method, Vector params)
+    {
+        return invoke(method,params,method,0L);
+    }
+
+    /**
+     * Sends a single XML-RPC call to the data server, recording it
+     * under the specified name if a {@link CallRecorder} is
+     * installed.
+     *
+     * @param method the XML-RPC procedure to call
+     * @param params the encoded parameters
+     * @param recordedMethod the name to record the call under
+     * @param serializationTime the time spent encoding the parameters
+     */
+    private Object invoke(String method, Vector params,
+                          String recordedMethod, long serializationTime)
+    {
+        CallRecorder recorder = callRecorder;
+        Object retval = null;
+        boolean failed = true;
+        long startTime = System.currentTimeMillis();
+
+        try
+        {
+            if (TRACE_CALLS)
             {
-                if (TRACE_CALLS)
+                StringBuffer trace = new StringBuffer(method+"(");
+                for (int i = 0; i < params.size(); i++)
                 {
-                    traceFile.print(method+"(");
-                    for (int i = 0; i < vparams.size(); i++)
-                    {
-                        traceFile.print(vparams.elementAt(i)+",");
-                    }
-                    traceFile.println(")");
+                    trace.append(params.elementAt(i)+",");
                 }
+                trace.append(")");
+                traceFile.println(trace);
+            }
 
-                Object retval = xmlrpc.execute(method,vparams);
+            retval = execute(method,params);
+            failed = false;
 
-                long stopTime = System.currentTimeMillis();
-                if (profileCalls)
-                {
-                    long thisTime = stopTime-startTime;
-                    profilerTime += thisTime;
-                    System.err.println("Profiler: "+thisTime);
-                }
+            profile(System.currentTimeMillis()-startTime);
 
-                return retval;
-            } catch (IOException e) {
-                RemoteConnectionException rce = new RemoteConnectionException();
-                if (e != null) rce.initCause(e);
-                throw rce;
-            } catch (Exception e) {
-                if (TRACE_CALLS)
-                {
-                    traceFile.println("execute exception ("+e.getClass()+
-                                      "): "+e.getMessage());
-                    e.printStackTrace(traceFile);
-                }
+            return retval;
+        } catch (IOException e) {
+            RemoteConnectionException rce = new RemoteConnectionException();
+            if (e != null) rce.initCause(e);
+            throw rce;
+        } catch (Exception e) {
+            if (TRACE_CALLS)
+            {
+                traceFile.println("execute exception ("+e.getClass()+
+                                  "): "+e.getMessage());
+                e.printStackTrace(traceFile);
+            }
 
-                long stopTime = System.currentTimeMillis();
-                if (profileCalls)
-                {
-                    long thisTime = stopTime-startTime;
-                    profilerTime += thisTime;
-                    System.err.println("Profiler: "+thisTime);
-                }
+            profile(System.currentTimeMillis()-startTime);
 
-                String msg = e.getMessage();
-                if (msg.startsWith("STALE SESSION") ||
-                    msg.startsWith("INVALID LOGIN"))
-                    throw new RemoteAuthenticationException(msg);
-                else
-                    throw new RemoteServerErrorException(msg);
-            } finally {
-                vparams.clear();
+            throw createException(e.getMessage());
+        } finally {
+            if (recorder != null)
+            {
+                long networkTime = System.currentTimeMillis()-startTime;
+                recorder.recordCall(recordedMethod,
+                                    serializationTime,networkTime,
+                                    estimateSize(params),
+                                    failed? -1: estimateSize(retval),
+                                    failed);
             }
         }
     }
 
+    /**
+     * Estimates the size of the XML-RPC encoding of a value, including
+     * its <code>value</code> and type tags.
+     */
+    private static long estimateSize(Object value)
+    {
+        // <value><string></string></value> and so on
+        if (value == null)
+            return 0;
+        if (value instanceof String)
+            return 32+((String) value).length();
+        if (value instanceof Integer)
+            return 24+value.toString().length();
+        if (value instanceof Boolean)
+            return 34;
+        if (value instanceof Double)
+            return 32+value.toString().length();
+        if (value instanceof byte[])
+            return 30+(((byte[]) value).length+2)/3*4;
+
+        if (value instanceof List)
+        {
+            // <value><array><data></data></array></value>
+            long size = 43;
+            List list = (List) value;
+            for (int i = 0; i < list.size(); i++)
+                size += estimateSize(list.get(i));
+            return size;
+        }
+
+        if (value instanceof Map)
+        {
+            // <value><struct></struct></value>, plus
+            // <member><name></name></member> for each member
+            long size = 32;
+            Iterator it = ((Map) value).entrySet().iterator();
+            while (it.hasNext())
+            {
+                Map.Entry entry = (Map.Entry) it.next();
+                size += 30+String.valueOf(entry.getKey()).length()+
+                    estimateSize(entry.getValue());
+            }
+            return size;
+        }
+
+        return 32+value.toString().length();
+    }
+
+    /**
+     * Creates the exception which represents the specified error
+     * message from the data server.
+     */
+    private RemoteException createException(String msg)
+    {
+        if (msg.startsWith("STALE SESSION") ||
+            msg.startsWith("INVALID LOGIN"))
+            return new RemoteAuthenticationException(msg);
+        else
+            return new RemoteServerErrorException(msg);
+    }
+
     // JAVADOC NOTICE:
     // The following public methods inherit their javadoc
     // documentation from the RemoteCaller interface.
@@ -286,9 +412,10 @@ public class XmlRpcCaller
                     traceFile.println("Login "+username+" ***");
                 }
 
+                Vector vparams = new Vector();
                 vparams.addElement(username);
                 vparams.addElement(password);
-                Object result = invoke("createSession");
+                Object result = invoke("createSession",vparams);
 
                 sessionKey = (result == null)? null: result.toString();
 
@@ -304,8 +431,9 @@ public class XmlRpcCaller
         {
             if (sessionKey != null)
             {
+                Vector vparams = new Vector();
                 vparams.addElement(sessionKey);
-                invoke("closeSession");
+                invoke("closeSession",vparams);
                 sessionKey = null;
 
                 if (TRACE_CALLS)
@@ -321,16 +449,14 @@ public class XmlRpcCaller
     }
 
     public boolean authenticate() {
-        synchronized(this)
+        Vector vparams = new Vector();
+        vparams.addElement(getSessionKey());
+        Object result = invoke("authenticateSession",vparams);
+        if (TRACE_CALLS)
         {
-            vparams.addElement(sessionKey);
-            Object result = invoke("authenticateSession");
-            if (TRACE_CALLS)
-            {
-                traceFile.println("Authenticate");
-            }
-            return result.toString().trim().equals("1");
+            traceFile.println("Authenticate");
         }
+        return result.toString().trim().equals("1");
     }
 
     public ServerVersion getServerVersion()
@@ -340,7 +466,7 @@ public class XmlRpcCaller
             Object result = null;
             try
             {
-                result = invoke("serverVersion");
+                result = invoke("serverVersion",new Vector());
             } catch (RemoteServerErrorException e) {
                 String message = e.getMessage();
 
@@ -390,20 +516,111 @@ public class XmlRpcCaller
 
     public Object dispatch(String method, Object[] params)
     {
-        synchronized(this)
+        long startTime = System.currentTimeMillis();
+        Vector vparams = createDispatchParams(method,params);
+        return invoke("dispatch",vparams,method,
+                      System.currentTimeMillis()-startTime);
+    }
+
+    /**
+     * Sends the calls as a single <code>system.multicall</code>
+     * request, each of whose elements is a call to the
+     * <code>dispatch</code> procedure.  A fault in one call is
+     * recorded in that call's {@link BatchResult}.  If the data server
+     * does not support multicall requests, the calls are sent one at
+     * a time instead, and so are all later batches.
+     */
+    public void dispatchBatch(List calls)
+    {
+        if (!multicallSupported || calls.size() < 2)
         {
-            if (sessionKey == null)
-                throw new IllegalArgumentException("Have not logged in");
+            super.dispatchBatch(calls);
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        Vector multicall = new Vector(calls.size());
+        for (int i = 0; i < calls.size(); i++)
+        {
+            BatchResult call = (BatchResult) calls.get(i);
+            Hashtable struct = new Hashtable();
+            struct.put("methodName","dispatch");
+            struct.put("params",createDispatchParams(call.getMethod(),
+                                                     call.getParams()));
+            multicall.addElement(struct);
+        }
+
+        Vector vparams = new Vector();
+        vparams.addElement(multicall);
+
+        Object result;
+        try
+        {
+            result = invoke("system.multicall",vparams,"system.multicall",
+                            System.currentTimeMillis()-startTime);
+        } catch (RemoteServerErrorException e) {
+            String message = e.getMessage();
+            if (message != null &&
+                (message.indexOf("no such method") >= 0 ||
+                 message.indexOf("Failed to locate method") >= 0 ||
+                 message.indexOf("is not supported") >= 0))
+                multicallSupported = false;
+
+            /* Nothing in the batch was executed, so the calls can
+             * safely be sent one at a time. */
+            super.dispatchBatch(calls);
+            return;
+        }
+
+        if (!(result instanceof List) ||
+            ((List) result).size() != calls.size())
+            throw new RemoteServerErrorException("Server returned an invalid multicall response");
 
-            addParameter(sessionKey);
-            addParameter(method);
-            if (params != null)
+        List results = (List) result;
+        for (int i = 0; i < calls.size(); i++)
+        {
+            BatchResult call = (BatchResult) calls.get(i);
+            Object value = results.get(i);
+
+            if (value instanceof Map)
             {
-                for (int i = 0; i < params.length; i++)
-                    addParameter(params[i]);
+                Object fault = ((Map) value).get("faultString");
+                call.fail(createException(String.valueOf(fault)));
+            } else if (value instanceof List &&
+                       ((List) value).size() == 1) {
+                call.complete(((List) value).get(0));
+            } else {
+                call.fail(new RemoteServerErrorException("Server returned an invalid multicall result for "+call.getMethod()));
             }
-            return invoke("dispatch");
         }
     }
 
+    /**
+     * Returns whether batches are sent as a single
+     * <code>system.multicall</code> request.  This is true until the
+     * data server reports that it does not support them.
+     */
+    public boolean isMulticallSupported() { return multicallSupported; }
+
+    /**
+     * Encodes the parameters of a call to the <code>dispatch</code>
+     * procedure.
+     */
+    private Vector createDispatchParams(String method, Object[] params)
+    {
+        String sessionKey = getSessionKey();
+        if (sessionKey == null)
+            throw new IllegalArgumentException("Have not logged in");
+
+        Vector vparams = new Vector();
+        vparams.addElement(encodeObject(sessionKey));
+        vparams.addElement(encodeObject(method));
+        if (params != null)
+        {
+            for (int i = 0; i < params.length; i++)
+                vparams.addElement(encodeObject(params[i]));
+        }
+        return vparams;
+    }
+
 }
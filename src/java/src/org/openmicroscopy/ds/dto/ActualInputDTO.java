@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class ActualInputDTO
     public ActualInputDTO() { super(); }
     public ActualInputDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ActualInputDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ActualInputDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "ActualInput"; }
     public Class getDTOType() { return ActualInput.class; }
 
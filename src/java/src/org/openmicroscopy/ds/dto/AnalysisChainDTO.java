@@ -40,6 +40,7 @@ package org.openmicroscopy.ds.dto;
 import org.openmicroscopy.ds.st.Experimenter;
 import org.openmicroscopy.ds.st.ExperimenterDTO;
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +51,14 @@ public class AnalysisChainDTO
     public AnalysisChainDTO() { super(); }
     public AnalysisChainDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(AnalysisChainDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new AnalysisChainDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "AnalysisChain"; }
     public Class getDTOType() { return AnalysisChain.class; }
 
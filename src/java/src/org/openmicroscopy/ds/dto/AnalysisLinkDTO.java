@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class AnalysisLinkDTO
     public AnalysisLinkDTO() { super(); }
     public AnalysisLinkDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(AnalysisLinkDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new AnalysisLinkDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "AnalysisLink"; }
     public Class getDTOType() { return AnalysisLink.class; }
 
@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class AnalysisNodeDTO
     public AnalysisNodeDTO() { super(); }
     public AnalysisNodeDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(AnalysisNodeDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new AnalysisNodeDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "AnalysisNode"; }
     public Class getDTOType() { return AnalysisNode.class; }
 
@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class AnalysisPathDTO
     public AnalysisPathDTO() { super(); }
     public AnalysisPathDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(AnalysisPathDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new AnalysisPathDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "AnalysisPath"; }
     public Class getDTOType() { return AnalysisPath.class; }
 
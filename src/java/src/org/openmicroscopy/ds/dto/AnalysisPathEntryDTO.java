@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class AnalysisPathEntryDTO
     public AnalysisPathEntryDTO() { super(); }
     public AnalysisPathEntryDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(AnalysisPathEntryDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new AnalysisPathEntryDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "AnalysisPathEntry"; }
     public Class getDTOType() { return AnalysisPathEntry.class; }
 
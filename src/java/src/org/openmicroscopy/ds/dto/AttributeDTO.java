@@ -76,6 +76,14 @@ public class AttributeDTO
     public AttributeDTO() { super(); }
     public AttributeDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(AttributeDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new AttributeDTO(); }
+            });
+    }
+
     // Inherited javadoc
     public String getDTOTypeName()
     {
@@ -0,0 +1,67 @@
+/*
+ * org.openmicroscopy.ds.dto.DTOFactory
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.dto;
+
+/**
+ * <p>Creates new instances of a single {@link MappedDTO} subclass.
+ * Each of the generated DTO classes registers a factory with the
+ * {@link MappedDTO#registerFactory} method when it is initialized, so
+ * that the {@link org.openmicroscopy.ds.Instantiator} and the {@link
+ * MappedDTO#parseChildElement} and {@link
+ * MappedDTO#parseListElement} methods can create DTO instances
+ * without using reflection.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see MappedDTO#getFactory
+ */
+
+public interface DTOFactory
+{
+    /**
+     * Creates a new instance of this factory's DTO class, without a
+     * backing map.
+     */
+    MappedDTO newInstance();
+}
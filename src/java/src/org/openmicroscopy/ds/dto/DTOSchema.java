@@ -0,0 +1,147 @@
+/*
+ * org.openmicroscopy.ds.dto.DTOSchema
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.dto;
+
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * <p>Assigns a slot index to each field name used by a single DTO
+ * class.  The {@link SlotMap} backing each instance of the class
+ * stores its values in arrays indexed by these slots, so the field
+ * names are stored once per class, rather than once per object.</p>
+ *
+ * <p>Slots are added the first time a field name is stored into any
+ * instance of the class, and are never removed.  Looking up a slot
+ * does not require any locking; adding a slot replaces the lookup
+ * table with an updated copy.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see SlotMap
+ */
+
+final class DTOSchema
+{
+    /** The name of the DTO class described by this schema. */
+    private String  name;
+
+    /** The slot index of each field name, as an {@link Integer}. */
+    private volatile Map  slots = new HashMap();
+
+    /** The field name of each slot. */
+    private volatile String[]  fieldNames = new String[0];
+
+    DTOSchema(String name)
+    {
+        super();
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the DTO class described by this schema.
+     */
+    String getName() { return name; }
+
+    /**
+     * Returns the number of slots in this schema.
+     */
+    int getSlotCount() { return fieldNames.length; }
+
+    /**
+     * Returns the field name of the specified slot.
+     */
+    String getFieldName(int slot) { return fieldNames[slot]; }
+
+    /**
+     * Returns the slot of the specified field name, or -1 if the
+     * field name does not have a slot yet.
+     */
+    int findSlot(Object fieldName)
+    {
+        Integer slot = (Integer) slots.get(fieldName);
+        return (slot == null)? -1: slot.intValue();
+    }
+
+    /**
+     * Returns the slot of the specified field name, adding a new slot
+     * if the field name does not have one yet.
+     */
+    int addSlot(String fieldName)
+    {
+        int slot = findSlot(fieldName);
+        if (slot >= 0)
+            return slot;
+
+        synchronized(this)
+        {
+            slot = findSlot(fieldName);
+            if (slot >= 0)
+                return slot;
+
+            slot = fieldNames.length;
+
+            String[] newNames = new String[slot+1];
+            System.arraycopy(fieldNames,0,newNames,0,slot);
+            newNames[slot] = fieldName;
+
+            Map newSlots = new HashMap(slots);
+            newSlots.put(fieldName,new Integer(slot));
+
+            // The names must be published first, so that a slot found
+            // in the lookup table always has a name.
+            fieldNames = newNames;
+            slots = newSlots;
+            return slot;
+        }
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public String toString()
+    {
+        return "DTOSchema ("+name+", "+fieldNames.length+" slots)";
+    }
+}
@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class DataColumnDTO
     public DataColumnDTO() { super(); }
     public DataColumnDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(DataColumnDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new DataColumnDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "DataColumn"; }
     public Class getDTOType() { return DataColumn.class; }
 
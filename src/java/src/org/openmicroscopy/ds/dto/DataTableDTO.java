@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class DataTableDTO
     public DataTableDTO() { super(); }
     public DataTableDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(DataTableDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new DataTableDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "DataTable"; }
     public Class getDTOType() { return DataTable.class; }
 
@@ -40,6 +40,7 @@ package org.openmicroscopy.ds.dto;
 import org.openmicroscopy.ds.st.Experimenter;
 import org.openmicroscopy.ds.st.ExperimenterDTO;
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +51,14 @@ public class DatasetDTO
     public DatasetDTO() { super(); }
     public DatasetDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(DatasetDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new DatasetDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "Dataset"; }
     public Class getDTOType() { return Dataset.class; }
 
@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class FeatureDTO
     public FeatureDTO() { super(); }
     public FeatureDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(FeatureDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new FeatureDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "Feature"; }
     public Class getDTOType() { return Feature.class; }
 
@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class FormalInputDTO
     public FormalInputDTO() { super(); }
     public FormalInputDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(FormalInputDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new FormalInputDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "FormalInput"; }
     public Class getDTOType() { return FormalInput.class; }
 
@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class FormalOutputDTO
     public FormalOutputDTO() { super(); }
     public FormalOutputDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(FormalOutputDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new FormalOutputDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "FormalOutput"; }
     public Class getDTOType() { return FormalOutput.class; }
 
@@ -42,6 +42,7 @@ import org.openmicroscopy.ds.st.ExperimenterDTO;
 import org.openmicroscopy.ds.st.Pixels;
 import org.openmicroscopy.ds.st.PixelsDTO;
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +53,14 @@ public class ImageDTO
     public ImageDTO() { super(); }
     public ImageDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ImageDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ImageDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "Image"; }
     public Class getDTOType() { return Image.class; }
 
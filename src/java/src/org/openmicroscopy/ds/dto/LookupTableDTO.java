@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class LookupTableDTO
     public LookupTableDTO() { super(); }
     public LookupTableDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(LookupTableDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new LookupTableDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "LookupTable"; }
     public Class getDTOType() { return LookupTable.class; }
 
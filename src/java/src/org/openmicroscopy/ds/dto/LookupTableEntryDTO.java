@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class LookupTableEntryDTO
     public LookupTableEntryDTO() { super(); }
     public LookupTableEntryDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(LookupTableEntryDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new LookupTableEntryDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "LookupTableEntry"; }
     public Class getDTOType() { return LookupTableEntry.class; }
 
@@ -45,9 +45,12 @@ package org.openmicroscopy.ds.dto;
 import org.openmicroscopy.ds.DataException;
 import org.openmicroscopy.ds.DataFactory;
 import org.openmicroscopy.ds.PrimitiveConverters;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * <p>Provides a base implementation of the remote framework DTO
@@ -73,6 +76,18 @@ import java.util.HashMap;
  * clients can no longer distinguish between values that have not been retrieved 
  * and those that do not exist. If this becomes a problem, the excpetion-throwing
  * behavior should be restored.</p>
+ *
+ * <p>Instances of the DTO classes which register a {@link DTOFactory}
+ * (which includes all of the generated DTO classes) are backed by a
+ * compact {@link Map} implementation rather than a {@link HashMap}.
+ * The field names are stored once per class, in a schema which
+ * assigns each field a slot, and each object stores its values in
+ * arrays indexed by those slots, with numeric and boolean values
+ * unboxed.  The map returned by {@link #getMap} supports all of the
+ * usual {@link Map} operations, but its keys must be {@link
+ * String}s.  The compact layout can be turned off for newly created
+ * DTOs with the {@link #setCompactStorage} method.</p>
+ *
  * @author Douglas Creager (dcreager@alum.mit.edu)
  * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
  * @since OME2.2
@@ -98,6 +113,21 @@ public abstract class MappedDTO
      */
     protected boolean tainted;
 
+    /**
+     * The names of the fields which have been modified by the {@link
+     * #setElement} method since this object was read from or saved to
+     * the database, or <code>null</code> if none have.
+     */
+    private Set dirtyFields;
+
+    /**
+     * Indicates whether every field should be considered modified.
+     * This is the case if the object was marked as tainted with the
+     * {@link #setTainted} method, in which case the modified fields
+     * are not known.
+     */
+    private boolean allFieldsDirty;
+
     /**
      * Indicates whether this object is new.  A new object is one that
      * was created in Java client code and has not been saved to the
@@ -114,7 +144,7 @@ public abstract class MappedDTO
     protected MappedDTO()
     {
         super();
-	this.elements = new HashMap();
+        this.elements = createMap(getClass());
     }
 
     /**
@@ -212,7 +242,19 @@ public abstract class MappedDTO
      * DTO object by the {@link DataFactory} class, and should
      * almost never be called directly.</p>
      */
-    public void setMap(Map elements) { this.elements = elements; }
+    public void setMap(Map elements)
+    {
+        if (elements != null && !(elements instanceof SlotMap))
+        {
+            Map compact = createMap(getClass());
+            if (compact instanceof SlotMap)
+            {
+                compact.putAll(elements);
+                elements = compact;
+            }
+        }
+        this.elements = elements;
+    }
 
     /**
      * Returns whether this object is tainted.  A tainted object is
@@ -227,7 +269,40 @@ public abstract class MappedDTO
      * the object as being tainted.  It should almost never be called
      * directly.
      */
-    public void setTainted(boolean tainted) { this.tainted = tainted; }
+    public void setTainted(boolean tainted)
+    {
+        this.tainted = tainted;
+        this.allFieldsDirty = tainted;
+        this.dirtyFields = null;
+    }
+
+    /**
+     * Returns the names of the fields which have been modified since
+     * this object was read from or saved to the database.  The
+     * returned set cannot be modified.  If this object was marked as
+     * tainted by the {@link #setTainted} method, the modified fields
+     * are not known, and <code>null</code> is returned; every field
+     * should be considered modified.  Fields modified directly
+     * through the {@link #getMap backing map} are not tracked.
+     */
+    public Set getDirtyFields()
+    {
+        if (allFieldsDirty)
+            return null;
+        if (dirtyFields == null)
+            return Collections.EMPTY_SET;
+        return Collections.unmodifiableSet(dirtyFields);
+    }
+
+    /**
+     * Returns whether the specified field has been modified since
+     * this object was read from or saved to the database.
+     */
+    public boolean isDirty(String key)
+    {
+        return allFieldsDirty ||
+            (dirtyFields != null && dirtyFields.contains(key));
+    }
 
     /**
      * Returns whether this object is new.  A new object is one that
@@ -243,6 +318,146 @@ public abstract class MappedDTO
      */
     public void setNew(boolean newObject) { this.newObject = newObject; }
 
+    /**
+     * The registered {@link DTOFactory} for each DTO class.  Like
+     * {@link #schemas}, this map is replaced rather than modified, so
+     * that it can be read without locking.
+     */
+    private static volatile Map factories = new HashMap();
+
+    /** Guards the replacement of the factory and schema maps. */
+    private static final Object registryLock = new Object();
+
+    /**
+     * The {@link DTOSchema} for each DTO class which has registered a
+     * factory.  This map is replaced rather than modified, so that it
+     * can be read without locking each time a DTO is created.
+     */
+    private static volatile Map schemas = new HashMap();
+
+    /**
+     * Whether newly created DTOs of the registered classes use the
+     * compact backing map.
+     */
+    private static volatile boolean compactStorage = true;
+
+    /**
+     * Registers the factory used to create instances of the specified
+     * DTO class.  Each of the generated DTO classes calls this method
+     * in its static initializer.  Registering a factory also gives
+     * the class a schema, so that its instances use the compact
+     * backing map.
+     */
+    protected static void registerFactory(Class dtoClazz,
+                                          DTOFactory factory)
+    {
+        synchronized(registryLock)
+        {
+            Map newFactories = new HashMap(factories);
+            newFactories.put(dtoClazz,factory);
+            factories = newFactories;
+            if (!schemas.containsKey(dtoClazz))
+            {
+                Map newSchemas = new HashMap(schemas);
+                newSchemas.put(dtoClazz,new DTOSchema(dtoClazz.getName()));
+                schemas = newSchemas;
+            }
+        }
+    }
+
+    /**
+     * Returns whether newly created DTOs are backed by the compact
+     * map, if their class has registered a factory.
+     */
+    public static boolean isCompactStorage() { return compactStorage; }
+
+    /**
+     * Sets whether newly created DTOs are backed by the compact map,
+     * if their class has registered a factory.  Existing DTOs are not
+     * affected.  The compact map is used by default.
+     */
+    public static void setCompactStorage(boolean compact)
+    {
+        compactStorage = compact;
+    }
+
+    /**
+     * Creates an empty backing map for an instance of the specified
+     * DTO class.
+     */
+    private static Map createMap(Class dtoClazz)
+    {
+        DTOSchema schema = compactStorage?
+            (DTOSchema) schemas.get(dtoClazz): null;
+        return (schema == null)? (Map) new HashMap(): new SlotMap(schema);
+    }
+
+    /**
+     * Returns the factory used to create instances of the specified
+     * DTO class.  If the class has not registered a factory yet, it is
+     * initialized, which registers the factory of any generated DTO
+     * class.  A DTO class which does not register a factory is given
+     * one which creates instances via reflection.
+     *
+     * @throws DataException if the class is not a subclass of
+     * <code>MappedDTO</code>
+     */
+    public static DTOFactory getFactory(Class dtoClazz)
+    {
+        DTOFactory factory = (DTOFactory) factories.get(dtoClazz);
+        if (factory != null)
+            return factory;
+
+        if (!MappedDTO.class.isAssignableFrom(dtoClazz))
+            throw new DataException("Specified class is not a MappedDTO subclass");
+
+        try
+        {
+            Class.forName(dtoClazz.getName(),true,dtoClazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            // The class was already loaded, so this can't happen.
+        }
+
+        synchronized(registryLock)
+        {
+            factory = (DTOFactory) factories.get(dtoClazz);
+            if (factory == null)
+            {
+                factory = new ReflectiveFactory(dtoClazz);
+                Map newFactories = new HashMap(factories);
+                newFactories.put(dtoClazz,factory);
+                factories = newFactories;
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * The factory used for DTO classes which do not register one.
+     */
+    private static class ReflectiveFactory
+        implements DTOFactory
+    {
+        private Class  dtoClazz;
+
+        private ReflectiveFactory(Class dtoClazz)
+        {
+            this.dtoClazz = dtoClazz;
+        }
+
+        public MappedDTO newInstance()
+        {
+            try
+            {
+                return (MappedDTO) dtoClazz.newInstance();
+            } catch (InstantiationException e) {
+                throw new DataException("Cannot create instance of "+dtoClazz);
+            } catch (IllegalAccessException e) {
+                throw new DataException("Cannot create instance of "+dtoClazz);
+            }
+        }
+    }
+
     /**
      * Helper method for parsing an element which is a child object.
      * This will turn the <code>struct</code> into an instance of the
@@ -253,45 +468,35 @@ public abstract class MappedDTO
      */
     protected Object parseChildElement(String element, Class dtoClazz)
     {
-        // It's an error if the specified class isn't a MappedDTO
-        // subclass.
-        if (!MappedDTO.class.isAssignableFrom(dtoClazz))
-            throw new DataException("Specified class is not a MappedDTO subclass");
-
         // If the desired element doesn't exist, complain
         if (!elements.containsKey(element))
             throw new DataException("The "+element+" field was not loaded");
 
-
-        try
+        Object o = elements.get(element);
+        if (o != null)
         {
-
-            Object o = elements.get(element);
-            if (o != null)
-            {
-                if (dtoClazz.isInstance(o))
-                    return o;
-		// Strings that match the null reference marker
-		// or have zero length
-		// should be interpreted as nulls.
-                if (o instanceof String && 
-               		( (((String) o).compareTo(NULL_REFERENCE) ==0) ||
-               		  ((String) o).length() ==0 )){
-                		return null;
-                }
-                else if (!(o instanceof Map))
-                    throw new DataException("Illegal type for element "+element);
-
-                Map m = (Map) o;
-                MappedDTO dto = (MappedDTO) dtoClazz.newInstance();
-                dto.setMap(m);
-                elements.put(element,dto);
-                return dto;
+            if (dtoClazz.isInstance(o))
+                return o;
+            // Strings that match the null reference marker
+            // or have zero length
+            // should be interpreted as nulls.
+            if (o instanceof String &&
+                ( (((String) o).compareTo(NULL_REFERENCE) ==0) ||
+                  ((String) o).length() ==0 )){
+                return null;
             }
-        } catch (InstantiationException e) {
-            throw new DataException("Cannot create instance of "+dtoClazz);
-        } catch (IllegalAccessException e) {
-            throw new DataException("Cannot create instance of "+dtoClazz);
+            else if (!(o instanceof Map))
+                throw new DataException("Illegal type for element "+element);
+
+            // It's an error if the specified class isn't a MappedDTO
+            // subclass.
+            DTOFactory factory = getFactory(dtoClazz);
+
+            Map m = (Map) o;
+            MappedDTO dto = factory.newInstance();
+            dto.setMap(m);
+            elements.put(element,dto);
+            return dto;
         }
         return null;
     }
@@ -306,61 +511,62 @@ public abstract class MappedDTO
      */
     protected List parseListElement(String element, Class dtoClazz)
     {
-        // It's an error if the specified class isn't a MappedDTO
-        // subclass.
-        if (!MappedDTO.class.isAssignableFrom(dtoClazz))
-            throw new DataException("Specified class is not a MappedDTO subclass");
-
         // If the desired element doesn't exist, complain
         if (!elements.containsKey(element))
             throw new DataException("The "+element+" field was not loaded");
 
-        try
-        {
-        		// has it been parsed?
-        	   Object obj = elements.get(element);
-        	   if (obj instanceof MappedDTOList) 
-        	   		return (MappedDTOList) obj;
-            
-        	   if (obj instanceof String) {
-        	   		String s = (String) obj;
-		// when we have a null, return an empty list.
-		if  (s.compareTo(NULL_REFERENCE) ==0 || s.length() == 0) {
-		    MappedDTOList newList = new MappedDTOList();
-		    elements.put(element,newList);
-		    return newList;
-		}
+        // has it been parsed?
+        Object obj = elements.get(element);
+        if (obj instanceof MappedDTOList)
+            return (MappedDTOList) obj;
+
+        if (obj instanceof String) {
+            String s = (String) obj;
+            // when we have a null, return an empty list.
+            if (s.compareTo(NULL_REFERENCE) ==0 || s.length() == 0) {
+                MappedDTOList newList = new MappedDTOList();
+                elements.put(element,newList);
+                return newList;
             }
-        	  
-        	   List list = (List) obj;
-            MappedDTOList newList = new MappedDTOList();
-            for (int i = 0; i < list.size(); i++)
+        }
+
+        // It's an error if the specified class isn't a MappedDTO
+        // subclass.
+        DTOFactory factory = getFactory(dtoClazz);
+
+        List list = (List) obj;
+        MappedDTOList newList = new MappedDTOList();
+        for (int i = 0; i < list.size(); i++)
+        {
+            Object o = list.get(i);
+            if (o != null)
             {
-                Object o = list.get(i);
-                if (o != null)
-                {
-                    if (!(o instanceof Map))
-                        throw new DataException("Illegal type for element "+
-                                                element);
-
-                    Map m = (Map) o;
-                    MappedDTO dto = (MappedDTO) dtoClazz.newInstance();
-                    dto.setMap(m);
-                    newList.add(dto);
-                }
+                if (!(o instanceof Map))
+                    throw new DataException("Illegal type for element "+
+                                            element);
+
+                Map m = (Map) o;
+                MappedDTO dto = factory.newInstance();
+                dto.setMap(m);
+                newList.add(dto);
             }
-            elements.put(element,newList);
-            return newList;
-        } catch (InstantiationException e) {
-            throw new DataException("Cannot create instance of "+dtoClazz);
-        } catch (IllegalAccessException e) {
-            throw new DataException("Cannot create instance of "+dtoClazz);
         }
+        elements.put(element,newList);
+        return newList;
     }
 
     protected int getIntElement(String key)
     {
-    	    Integer value = getIntegerElement(key);
+        if (elements instanceof SlotMap)
+        {
+            // Avoid boxing the value if it was stored as an int.
+            SlotMap slots = (SlotMap) elements;
+            int slot = slots.findSlot(key);
+            if (slot >= 0 && slots.getKind(slot) == SlotMap.INT)
+                return slots.getIntValue(slot);
+        }
+
+        Integer value = getIntegerElement(key);
         if (value == null)
             throw new DataException(key+" field is null");
         else
@@ -630,10 +836,26 @@ public abstract class MappedDTO
         return elements.get(key);
     }
 
+    /**
+     * Sets a value in the backing map, and marks the field as
+     * modified.  If the field was loaded and already has an equal
+     * value, the field is not marked as modified.
+     */
     protected void setElement(String key, Object value)
     {
-        elements.put(key,value);
+        boolean loaded = elements.containsKey(key);
+        Object old = elements.put(key,value);
+        if (loaded &&
+            ((old == null)? (value == null): old.equals(value)))
+            return;
+
         tainted = true;
+        if (!allFieldsDirty)
+        {
+            if (dirtyFields == null)
+                dirtyFields = new HashSet();
+            dirtyFields.add(key);
+        }
     }
 
     /**
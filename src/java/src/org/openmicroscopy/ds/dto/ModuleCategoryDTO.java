@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class ModuleCategoryDTO
     public ModuleCategoryDTO() { super(); }
     public ModuleCategoryDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ModuleCategoryDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ModuleCategoryDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "ModuleCategory"; }
     public Class getDTOType() { return ModuleCategory.class; }
 
@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class ModuleDTO
     public ModuleDTO() { super(); }
     public ModuleDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ModuleDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ModuleDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "Module"; }
     public Class getDTOType() { return Module.class; }
 
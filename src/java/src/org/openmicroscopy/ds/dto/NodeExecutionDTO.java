@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class NodeExecutionDTO
     public NodeExecutionDTO() { super(); }
     public NodeExecutionDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(NodeExecutionDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new NodeExecutionDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "NodeExecution"; }
     public Class getDTOType() { return NodeExecution.class; }
 
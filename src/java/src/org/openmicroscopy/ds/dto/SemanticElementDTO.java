@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class SemanticElementDTO
     public SemanticElementDTO() { super(); }
     public SemanticElementDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(SemanticElementDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new SemanticElementDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "SemanticElement"; }
     public Class getDTOType() { return SemanticElement.class; }
 
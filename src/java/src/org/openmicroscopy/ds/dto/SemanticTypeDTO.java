@@ -38,6 +38,7 @@
 package org.openmicroscopy.ds.dto;
 
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,14 @@ public class SemanticTypeDTO
     public SemanticTypeDTO() { super(); }
     public SemanticTypeDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(SemanticTypeDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new SemanticTypeDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "SemanticType"; }
     public Class getDTOType() { return SemanticType.class; }
 
@@ -0,0 +1,405 @@
+/*
+ * org.openmicroscopy.ds.dto.SlotMap
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.dto;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>A compact {@link Map} used to back instances of the generated
+ * DTO classes.  Instead of a hash table entry per field, each map
+ * stores its values in arrays indexed by the slots of its class's
+ * {@link DTOSchema}.  {@link Integer}, {@link Long}, {@link Float},
+ * {@link Double}, and {@link Boolean} values are unboxed into a
+ * primitive column; all other values, including <code>null</code>,
+ * are stored in an object column.  A byte per slot records which
+ * column holds the slot's value, if any.</p>
+ *
+ * <p>Primitive values are boxed again when they are read through the
+ * {@link Map} interface, so the values returned by {@link #get} are
+ * equal to, but not necessarily the same objects as, the values that
+ * were stored.  The keys of this map must be {@link String}s.</p>
+ *
+ * <p>Like {@link java.util.HashMap}, this class is not
+ * synchronized.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ * @see DTOSchema
+ * @see MappedDTO#getMap
+ */
+
+final class SlotMap
+    extends AbstractMap
+{
+    static final byte ABSENT = 0;
+    static final byte OBJECT = 1;
+    static final byte INT = 2;
+    static final byte LONG = 3;
+    static final byte FLOAT = 4;
+    static final byte DOUBLE = 5;
+    static final byte BOOLEAN = 6;
+
+    private static final byte[] NO_KINDS = new byte[0];
+
+    /** The schema which assigns the slots of this map. */
+    private DTOSchema  schema;
+
+    /** Which column, if any, holds the value of each slot. */
+    private byte[]  kinds = NO_KINDS;
+
+    /** The object column.  Only allocated when needed. */
+    private Object[]  objects;
+
+    /**
+     * The primitive column.  Floats and doubles are stored as their
+     * raw bits.  Only allocated when needed.
+     */
+    private long[]  primitives;
+
+    /** The number of slots with a value. */
+    private int  size;
+
+    private transient Set  entrySet;
+
+    SlotMap(DTOSchema schema)
+    {
+        super();
+        this.schema = schema;
+    }
+
+    /**
+     * Returns the schema which assigns the slots of this map.
+     */
+    DTOSchema getSchema() { return schema; }
+
+    /**
+     * Returns the slot of the specified key, or -1 if the key has no
+     * value in this map.
+     */
+    int findSlot(Object key)
+    {
+        int slot = schema.findSlot(key);
+        if (slot < 0 || slot >= kinds.length || kinds[slot] == ABSENT)
+            return -1;
+        return slot;
+    }
+
+    /**
+     * Returns which column holds the value of the specified slot.
+     */
+    byte getKind(int slot) { return kinds[slot]; }
+
+    /**
+     * Returns the value of an {@link #INT} slot without boxing it.
+     */
+    int getIntValue(int slot) { return (int) primitives[slot]; }
+
+    /**
+     * Returns the value of the specified slot, boxing it if
+     * necessary.
+     */
+    private Object getValue(int slot)
+    {
+        switch (kinds[slot])
+        {
+        case OBJECT:
+            return objects[slot];
+        case INT:
+            return new Integer((int) primitives[slot]);
+        case LONG:
+            return new Long(primitives[slot]);
+        case FLOAT:
+            return new Float(Float.intBitsToFloat((int) primitives[slot]));
+        case DOUBLE:
+            return new Double(Double.longBitsToDouble(primitives[slot]));
+        case BOOLEAN:
+            return (primitives[slot] != 0)? Boolean.TRUE: Boolean.FALSE;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Stores a value into the specified slot, unboxing it if
+     * possible.
+     */
+    private void setValue(int slot, Object value)
+    {
+        byte kind;
+        long bits = 0;
+
+        if (value instanceof Integer)
+        {
+            kind = INT;
+            bits = ((Integer) value).intValue();
+        } else if (value instanceof Long) {
+            kind = LONG;
+            bits = ((Long) value).longValue();
+        } else if (value instanceof Float) {
+            kind = FLOAT;
+            bits = Float.floatToIntBits(((Float) value).floatValue());
+        } else if (value instanceof Double) {
+            kind = DOUBLE;
+            bits = Double.doubleToLongBits(((Double) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            kind = BOOLEAN;
+            bits = ((Boolean) value).booleanValue()? 1: 0;
+        } else {
+            kind = OBJECT;
+        }
+
+        if (kind == OBJECT)
+        {
+            if (objects == null)
+                objects = new Object[kinds.length];
+            objects[slot] = value;
+        } else {
+            if (primitives == null)
+                primitives = new long[kinds.length];
+            primitives[slot] = bits;
+            if (objects != null)
+                objects[slot] = null;
+        }
+
+        if (kinds[slot] == ABSENT)
+            size++;
+        kinds[slot] = kind;
+    }
+
+    /**
+     * Grows the columns so that they can hold the specified slot.
+     * The columns are grown to the current size of the schema, so
+     * that maps for the same class are sized correctly after the
+     * first few have been filled in.
+     */
+    private void ensureCapacity(int slot)
+    {
+        if (slot < kinds.length)
+            return;
+
+        int length = Math.max(slot+1,schema.getSlotCount());
+
+        byte[] newKinds = new byte[length];
+        System.arraycopy(kinds,0,newKinds,0,kinds.length);
+        kinds = newKinds;
+
+        if (objects != null)
+        {
+            Object[] newObjects = new Object[length];
+            System.arraycopy(objects,0,newObjects,0,objects.length);
+            objects = newObjects;
+        }
+
+        if (primitives != null)
+        {
+            long[] newPrimitives = new long[length];
+            System.arraycopy(primitives,0,newPrimitives,0,primitives.length);
+            primitives = newPrimitives;
+        }
+    }
+
+    private void removeSlot(int slot)
+    {
+        kinds[slot] = ABSENT;
+        if (objects != null)
+            objects[slot] = null;
+        size--;
+    }
+
+    public int size() { return size; }
+
+    public boolean containsKey(Object key)
+    {
+        return findSlot(key) >= 0;
+    }
+
+    public Object get(Object key)
+    {
+        int slot = findSlot(key);
+        return (slot < 0)? null: getValue(slot);
+    }
+
+    public Object put(Object key, Object value)
+    {
+        if (!(key instanceof String))
+            throw new IllegalArgumentException("DTO field names must be Strings");
+
+        int slot = schema.addSlot((String) key);
+        ensureCapacity(slot);
+
+        Object old = getValue(slot);
+        setValue(slot,value);
+        return old;
+    }
+
+    public Object remove(Object key)
+    {
+        int slot = findSlot(key);
+        if (slot < 0)
+            return null;
+
+        Object old = getValue(slot);
+        removeSlot(slot);
+        return old;
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < kinds.length; i++)
+            kinds[i] = ABSENT;
+        objects = null;
+        primitives = null;
+        size = 0;
+    }
+
+    public Set entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new AbstractSet()
+                {
+                    public int size() { return size; }
+                    public Iterator iterator() { return new EntryIterator(); }
+                    public void clear() { SlotMap.this.clear(); }
+                };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Iterates over the slots which have a value.
+     */
+    private class EntryIterator
+        implements Iterator
+    {
+        private int  next = -1;
+        private int  current = -1;
+
+        EntryIterator()
+        {
+            super();
+            advance();
+        }
+
+        private void advance()
+        {
+            next++;
+            while (next < kinds.length && kinds[next] == ABSENT)
+                next++;
+        }
+
+        public boolean hasNext() { return next < kinds.length; }
+
+        public Object next()
+        {
+            if (next >= kinds.length)
+                throw new NoSuchElementException();
+            current = next;
+            advance();
+            return new Entry(current);
+        }
+
+        public void remove()
+        {
+            if (current < 0 || kinds[current] == ABSENT)
+                throw new IllegalStateException();
+            removeSlot(current);
+        }
+    }
+
+    /**
+     * A view of a single slot.
+     */
+    private class Entry
+        implements Map.Entry
+    {
+        private int  slot;
+
+        Entry(int slot)
+        {
+            super();
+            this.slot = slot;
+        }
+
+        public Object getKey() { return schema.getFieldName(slot); }
+
+        public Object getValue() { return SlotMap.this.getValue(slot); }
+
+        public Object setValue(Object value)
+        {
+            Object old = SlotMap.this.getValue(slot);
+            SlotMap.this.setValue(slot,value);
+            return old;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry e = (Map.Entry) o;
+            Object value = getValue();
+            return getKey().equals(e.getKey()) &&
+                ((value == null)?
+                 (e.getValue() == null):
+                 value.equals(e.getValue()));
+        }
+
+        public int hashCode()
+        {
+            Object value = getValue();
+            return getKey().hashCode() ^
+                ((value == null)? 0: value.hashCode());
+        }
+
+        public String toString()
+        {
+            return getKey()+"="+getValue();
+        }
+    }
+}
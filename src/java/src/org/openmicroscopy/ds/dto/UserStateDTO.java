@@ -40,6 +40,7 @@ package org.openmicroscopy.ds.dto;
 import org.openmicroscopy.ds.st.Experimenter;
 import org.openmicroscopy.ds.st.ExperimenterDTO;
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +51,14 @@ public class UserStateDTO
     public UserStateDTO() { super(); }
     public UserStateDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(UserStateDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new UserStateDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "UserState"; }
     public Class getDTOType() { return UserState.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.managers;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -46,6 +48,8 @@ import org.openmicroscopy.ds.DataServices;
 import org.openmicroscopy.ds.Instantiator;
 import org.openmicroscopy.ds.InstantiatingCaller;
 import org.openmicroscopy.ds.AbstractService;
+import org.openmicroscopy.ds.BatchResult;
+import org.openmicroscopy.ds.RemoteBatch;
 import org.openmicroscopy.ds.RemoteServerErrorException;
 import org.openmicroscopy.ds.dto.MappedDTO;
 import org.openmicroscopy.ds.dto.Dataset;
@@ -69,6 +73,8 @@ public class AnnotationManager
 
     protected Instantiator  instantiator = null;
 
+    protected int  annotationBatchSize = RemoteBatch.DEFAULT_MAXIMUM_SIZE;
+
     public AnnotationManager() { super(); }
 
     public void initializeService(DataServices services)
@@ -95,7 +101,8 @@ public class AnnotationManager
      * granularity.  Further, the target of each of the attributes
      * must be the same.  If either of these two conditions is not
      * met, this method will throw an {@link
-     * IllegalArgumentException}.</p>
+     * IllegalArgumentException}.  To annotate several targets at
+     * once, use the {@link #annotateAttributesByTarget} method.</p>
      *
      * <p>All of the attribute objects in the list must be new; i.e.,
      * created * with the
@@ -116,6 +123,159 @@ public class AnnotationManager
      *
      */
     public ModuleExecution annotateAttributes(List attributes)
+    {
+        Map newIDs = new IdentityHashMap();
+        Object[] params = createAnnotationParams(attributes,newIDs);
+        Object result = caller.dispatch("annotateAttributes",params);
+        return saveAnnotationResult(result,newIDs);
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which saves a
+     * list of annotation attributes, as in the {@link
+     * #annotateAttributes(List)} method.  The attributes are checked
+     * when the call is queued.  After the batch is executed, the
+     * attributes have their primary key IDs filled in, and the
+     * result's {@link BatchResult#getResult} method returns the
+     * annotation {@link ModuleExecution}.
+     */
+    public BatchResult annotateAttributes(RemoteBatch batch,
+                                          List attributes)
+    {
+        final Map newIDs = new IdentityHashMap();
+        Object[] params = createAnnotationParams(attributes,newIDs);
+        return batch.add(new BatchResult("annotateAttributes",params)
+            {
+                protected Object convert(Object raw)
+                {
+                    return saveAnnotationResult(raw,newIDs);
+                }
+            });
+    }
+
+    /**
+     * Returns the number of <code>annotateAttributes</code> calls which
+     * the {@link #annotateAttributesByTarget} method sends in a single
+     * request.
+     */
+    public int getAnnotationBatchSize() { return annotationBatchSize; }
+
+    /**
+     * Sets the number of <code>annotateAttributes</code> calls which
+     * the {@link #annotateAttributesByTarget} method sends in a single
+     * request.
+     */
+    public void setAnnotationBatchSize(int annotationBatchSize)
+    {
+        if (annotationBatchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive");
+        this.annotationBatchSize = annotationBatchSize;
+    }
+
+    /**
+     * <p>Creates annotation attributes with any mix of granularities
+     * and targets.  The attributes are grouped by their target (the
+     * dataset, image, or feature of each attribute, or nothing for
+     * global attributes), and each group is saved by its own
+     * annotation MEX, exactly as if it had been passed to the {@link
+     * #annotateAttributes(List)} method.  Rather than making a
+     * separate remote call for each group, though, the groups are
+     * sent together in a {@link RemoteBatch}, {@link
+     * #getAnnotationBatchSize} groups per request.</p>
+     *
+     * <p>The returned {@link Map} contains the annotation MEX of each
+     * group, keyed by the group's target {@link Dataset}, {@link
+     * Image}, or {@link Feature}; the MEX for the global attributes,
+     * if any, has a <code>null</code> key.  The targets are in the
+     * order in which they first appear in the list.</p>
+     *
+     * <p>Each group is saved in its own transaction.  If any group
+     * cannot be saved, the first error is thrown once all of the
+     * groups have been sent; the attributes of the groups which were
+     * saved are no longer new, and have their primary key IDs filled
+     * in.</p>
+     *
+     * @param attributes the {@link List} of attributes to save as
+     * annotations
+     */
+    public Map annotateAttributesByTarget(List attributes)
+    {
+        if (attributes == null)
+            throw new IllegalArgumentException("Attributes list is null");
+
+        Map groups = new LinkedHashMap();
+        for (Iterator it = attributes.iterator(); it.hasNext(); )
+        {
+            Object o = it.next();
+
+            if (!(o instanceof Attribute))
+                throw new IllegalArgumentException("List can only contain Attributes");
+            Attribute a = (Attribute) o;
+
+            Object target = getTarget(a);
+            List group = (List) groups.get(target);
+            if (group == null)
+            {
+                group = new ArrayList();
+                groups.put(target,group);
+            }
+            group.add(a);
+        }
+
+        RemoteBatch batch = new RemoteBatch(caller,annotationBatchSize);
+        Map results = new LinkedHashMap();
+        for (Iterator it = groups.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry) it.next();
+            results.put(entry.getKey(),
+                        annotateAttributes(batch,(List) entry.getValue()));
+        }
+
+        batch.execute();
+
+        Map mexes = new LinkedHashMap();
+        for (Iterator it = results.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry entry = (Map.Entry) it.next();
+            BatchResult result = (BatchResult) entry.getValue();
+            mexes.put(entry.getKey(),result.getResult());
+        }
+
+        return mexes;
+    }
+
+    /**
+     * Returns the target of an attribute, according to the
+     * granularity of its semantic type.
+     */
+    private Object getTarget(Attribute a)
+    {
+        String granularity = a.getSemanticType().getGranularity();
+        Object target;
+
+        if (granularity.equals("G"))
+            return null;
+        else if (granularity.equals("D"))
+            target = a.getDataset();
+        else if (granularity.equals("I"))
+            target = a.getImage();
+        else if (granularity.equals("F"))
+            target = a.getFeature();
+        else
+            throw new IllegalArgumentException("Unknown granularity "+granularity);
+
+        if (target == null)
+            throw new IllegalArgumentException("Attribute has no target");
+        return target;
+    }
+
+    /**
+     * Creates the parameters of an <code>annotateAttributes</code>
+     * call, checking that the attributes can be saved by a single
+     * annotation MEX.  Each attribute is added to the
+     * <code>newIDs</code> map, along with its temporary ID.
+     */
+    private Object[] createAnnotationParams(List attributes, Map newIDs)
     {
         if (attributes == null)
             throw new IllegalArgumentException("Attributes list is null");
@@ -126,7 +286,6 @@ public class AnnotationManager
         Feature feature = null;
 
         List params = new ArrayList(3+attributes.size()*2);
-        Map newIDs = new HashMap();
 
         // Fields specification
         params.add(null);
@@ -194,9 +353,16 @@ public class AnnotationManager
             params.add(instantiator.serializeForUpdate(ma,newIDs));
         }
 
-        Object result = caller.dispatch("annotateAttributes",
-                                        params.toArray());
+        return params.toArray();
+    }
 
+    /**
+     * Fills in the primary key IDs of the new attributes from the
+     * result of an <code>annotateAttributes</code> call, and returns
+     * the annotation MEX.
+     */
+    private ModuleExecution saveAnnotationResult(Object result, Map newIDs)
+    {
         // We should get back a map of the primary key ID's for each
         // of the objects which was new.
 
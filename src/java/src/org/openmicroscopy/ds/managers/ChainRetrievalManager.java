@@ -39,6 +39,7 @@ package org.openmicroscopy.ds.managers;
 import java.util.List;
 
 import org.openmicroscopy.ds.AbstractService;
+import org.openmicroscopy.ds.CatalogCache;
 import org.openmicroscopy.ds.DataServices;
 import org.openmicroscopy.ds.InstantiatingCaller;
 import org.openmicroscopy.ds.Instantiator;
@@ -60,6 +61,7 @@ public class ChainRetrievalManager
 	
 	protected InstantiatingCaller icaller = null;
     protected Instantiator  instantiator = null;
+    protected CatalogCache  catalogCache = null;
 
     public ChainRetrievalManager() { super(); }
     
@@ -81,6 +83,8 @@ public class ChainRetrievalManager
         icaller = (InstantiatingCaller)
             services.getService(InstantiatingCaller.class);
         instantiator = icaller.getInstantiator();
+        catalogCache = (CatalogCache)
+            services.getService(CatalogCache.class);
     }
 
     /**
@@ -90,7 +94,8 @@ public class ChainRetrievalManager
      * 		semantic types.
      */
     public List retrieveChains() {
-        return icaller.dispatchList(AnalysisChain.class,"retrieveChains",
-        			null);
+        Object result = catalogCache.dispatch("retrieveChains",null,
+                                              CatalogCache.CHAIN_TABLES);
+        return instantiator.instantiateList(AnalysisChain.class,result);
     }
 }
\ No newline at end of file
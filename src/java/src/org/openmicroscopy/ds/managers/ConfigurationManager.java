@@ -41,7 +41,11 @@ import java.util.Map;
 import org.openmicroscopy.ds.DataServices;
 import org.openmicroscopy.ds.FieldsSpecification;
 import org.openmicroscopy.ds.AbstractService;
+import org.openmicroscopy.ds.CatalogCache;
 import org.openmicroscopy.ds.InstantiatingCaller;
+import org.openmicroscopy.ds.RemoteBatch;
+import org.openmicroscopy.ds.BatchResult;
+import org.openmicroscopy.ds.dto.DataInterface;
 import org.openmicroscopy.ds.dto.Module;
 import org.openmicroscopy.ds.dto.AnalysisChain;
 
@@ -56,6 +60,7 @@ public class ConfigurationManager
     extends AbstractService
 {
     protected InstantiatingCaller icaller = null;
+    protected CatalogCache  catalogCache = null;
 
     public ConfigurationManager() { super(); }
 
@@ -64,109 +69,230 @@ public class ConfigurationManager
         super.initializeService(services);
         icaller = (InstantiatingCaller)
             services.getService(InstantiatingCaller.class);
+        catalogCache = (CatalogCache)
+            services.getService(CatalogCache.class);
+    }
+
+    /**
+     * Calls one of the configuration methods via the {@link
+     * CatalogCache}, so that the configured modules and chains are
+     * only downloaded again if the catalog has changed.  Which module
+     * or chain is configured is stored in the data server's
+     * configuration table, whose rows are updated in place, so these
+     * results are only cached in memory and not on disk.
+     */
+    private DataInterface dispatchCached(Class javaClass,
+                                         String method,
+                                         Object[] params,
+                                         Class[] tables)
+    {
+        Object result = catalogCache.dispatch(method,params,tables,false);
+        return icaller.getInstantiator().instantiateDTO(javaClass,result);
     }
 
     public Module getAnnotationModule()
     {
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configAnnotationModule",
-                             null);
+            dispatchCached(Module.class,
+                           "configAnnotationModule",
+                           null,
+                           CatalogCache.MODULE_TABLES);
     }
 
     public Module getAnnotationModule(FieldsSpecification fs)
     {
         Map fields = fs.getFieldsWanted();
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configAnnotationModule",
-                             new Object[] { fs });
+            dispatchCached(Module.class,
+                           "configAnnotationModule",
+                           new Object[] { fields },
+                           CatalogCache.MODULE_TABLES);
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which
+     * retrieves the annotation module.  After the batch is executed,
+     * the result's {@link BatchResult#getResult} method returns the
+     * {@link Module}.
+     */
+    public BatchResult getAnnotationModule(RemoteBatch batch,
+                                           FieldsSpecification fs)
+    {
+        Map fields = fs.getFieldsWanted();
+        return icaller.dispatch(batch,Module.class,
+                                "configAnnotationModule",
+                                new Object[] { fields });
     }
 
     public Module getOriginalFilesModule()
     {
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configOriginalFilesModule",
-                             null);
+            dispatchCached(Module.class,
+                           "configOriginalFilesModule",
+                           null,
+                           CatalogCache.MODULE_TABLES);
     }
 
     public Module getOriginalFilesModule(FieldsSpecification fs)
     {
         Map fields = fs.getFieldsWanted();
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configOriginalFilesModule",
-                             new Object[] { fs });
+            dispatchCached(Module.class,
+                           "configOriginalFilesModule",
+                           new Object[] { fields },
+                           CatalogCache.MODULE_TABLES);
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which
+     * retrieves the original files module.  After the batch is executed,
+     * the result's {@link BatchResult#getResult} method returns the
+     * {@link Module}.
+     */
+    public BatchResult getOriginalFilesModule(RemoteBatch batch,
+                                              FieldsSpecification fs)
+    {
+        Map fields = fs.getFieldsWanted();
+        return icaller.dispatch(batch,Module.class,
+                                "configOriginalFilesModule",
+                                new Object[] { fields });
     }
 
 
     public Module getGlobalImportModule()
     {
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configGlobalImportModule",
-                             null);
+            dispatchCached(Module.class,
+                           "configGlobalImportModule",
+                           null,
+                           CatalogCache.MODULE_TABLES);
     }
 
     public Module getGlobalImportModule(FieldsSpecification fs)
     {
         Map fields = fs.getFieldsWanted();
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configGlobalImportModule",
-                             new Object[] { fs });
+            dispatchCached(Module.class,
+                           "configGlobalImportModule",
+                           new Object[] { fields },
+                           CatalogCache.MODULE_TABLES);
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which
+     * retrieves the global import module.  After the batch is executed,
+     * the result's {@link BatchResult#getResult} method returns the
+     * {@link Module}.
+     */
+    public BatchResult getGlobalImportModule(RemoteBatch batch,
+                                             FieldsSpecification fs)
+    {
+        Map fields = fs.getFieldsWanted();
+        return icaller.dispatch(batch,Module.class,
+                                "configGlobalImportModule",
+                                new Object[] { fields });
     }
 
     public Module getDatasetImportModule()
     {
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configDatasetImportModule",
-                             null);
+            dispatchCached(Module.class,
+                           "configDatasetImportModule",
+                           null,
+                           CatalogCache.MODULE_TABLES);
     }
 
     public Module getDatasetImportModule(FieldsSpecification fs)
     {
         Map fields = fs.getFieldsWanted();
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configDatasetImportModule",
-                             new Object[] { fs });
+            dispatchCached(Module.class,
+                           "configDatasetImportModule",
+                           new Object[] { fields },
+                           CatalogCache.MODULE_TABLES);
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which
+     * retrieves the dataset import module.  After the batch is executed,
+     * the result's {@link BatchResult#getResult} method returns the
+     * {@link Module}.
+     */
+    public BatchResult getDatasetImportModule(RemoteBatch batch,
+                                              FieldsSpecification fs)
+    {
+        Map fields = fs.getFieldsWanted();
+        return icaller.dispatch(batch,Module.class,
+                                "configDatasetImportModule",
+                                new Object[] { fields });
     }
 
     public Module getImageImportModule()
     {
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configImageImportModule",
-                             null);
+            dispatchCached(Module.class,
+                           "configImageImportModule",
+                           null,
+                           CatalogCache.MODULE_TABLES);
     }
 
     public Module getImageImportModule(FieldsSpecification fs)
     {
         Map fields = fs.getFieldsWanted();
         return (Module)
-            icaller.dispatch(Module.class,
-                             "configImageImportModule",
-                             new Object[] { fs });
+            dispatchCached(Module.class,
+                           "configImageImportModule",
+                           new Object[] { fields },
+                           CatalogCache.MODULE_TABLES);
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which
+     * retrieves the image import module.  After the batch is executed,
+     * the result's {@link BatchResult#getResult} method returns the
+     * {@link Module}.
+     */
+    public BatchResult getImageImportModule(RemoteBatch batch,
+                                            FieldsSpecification fs)
+    {
+        Map fields = fs.getFieldsWanted();
+        return icaller.dispatch(batch,Module.class,
+                                "configImageImportModule",
+                                new Object[] { fields });
     }
 
     public AnalysisChain getImportChain()
     {
         return (AnalysisChain)
-            icaller.dispatch(AnalysisChain.class,
-                             "configImportChain",
-                             null);
+            dispatchCached(AnalysisChain.class,
+                           "configImportChain",
+                           null,
+                           CatalogCache.CHAIN_TABLES);
     }
 
     public AnalysisChain getImportChain(FieldsSpecification fs)
     {
         Map fields = fs.getFieldsWanted();
         return (AnalysisChain)
-            icaller.dispatch(AnalysisChain.class,
-                             "configImportChain",
-                             new Object[] { fs });
+            dispatchCached(AnalysisChain.class,
+                           "configImportChain",
+                           new Object[] { fields },
+                           CatalogCache.CHAIN_TABLES);
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which
+     * retrieves the import chain.  After the batch is executed,
+     * the result's {@link BatchResult#getResult} method returns the
+     * {@link AnalysisChain}.
+     */
+    public BatchResult getImportChain(RemoteBatch batch,
+                                      FieldsSpecification fs)
+    {
+        Map fields = fs.getFieldsWanted();
+        return icaller.dispatch(batch,AnalysisChain.class,
+                                "configImportChain",
+                                new Object[] { fields });
     }
 
 }
\ No newline at end of file
@@ -42,6 +42,8 @@ import java.util.ArrayList;
 
 import org.openmicroscopy.ds.DataServices;
 import org.openmicroscopy.ds.RemoteCaller;
+import org.openmicroscopy.ds.RemoteBatch;
+import org.openmicroscopy.ds.BatchResult;
 import org.openmicroscopy.ds.AbstractService;
 import org.openmicroscopy.ds.dto.Dataset;
 import org.openmicroscopy.ds.dto.Image;
@@ -160,6 +162,56 @@ public class DatasetManager
         if (image == null)
             throw new IllegalArgumentException("Images cannot be null");
 
+        caller.dispatch("addImageToDatasets",
+                        new Object[] {
+                            getDatasetIDs(datasets),
+                            new Integer(image.getID())
+                        });
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which adds
+     * a {@link Image} to a {@link List} of {@link Dataset}s.  This
+     * allows many images to be added to their datasets in a single
+     * round trip to the data server.  No error is thrown if the
+     * image already belongs to any of the datasets.
+     */
+    public BatchResult addImageToDatasets(RemoteBatch batch,
+                                          List datasets, Image image)
+    {
+        if (datasets == null)
+            throw new IllegalArgumentException("Dataset cannot be null");
+        if (image == null)
+            throw new IllegalArgumentException("Images cannot be null");
+
+        return batch.dispatch("addImageToDatasets",
+                              new Object[] {
+                                  getDatasetIDs(datasets),
+                                  new Integer(image.getID())
+                              });
+    }
+
+    /**
+     * Queues a call in the specified {@link RemoteBatch} which adds
+     * a {@link Image} to a {@link List} of {@link Dataset}s.  No
+     * error is thrown if the image already belongs to any of the
+     * datasets.
+     */
+    public BatchResult addImageToDatasets(RemoteBatch batch,
+                                          List datasetIDs, int imageID)
+    {
+        if (datasetIDs == null)
+            throw new IllegalArgumentException("Dataset IDs cannot be null");
+
+        return batch.dispatch("addImageToDatasets",
+                              new Object[] {
+                                  datasetIDs,
+                                  new Integer(imageID)
+                              });
+    }
+
+    private List getDatasetIDs(List datasets)
+    {
         List list = new ArrayList(datasets.size());
         Iterator it = datasets.iterator();
         while (it.hasNext())
@@ -170,12 +222,7 @@ public class DatasetManager
             else
                 throw new IllegalArgumentException("List must contain Datasets");
         }
- 
-        caller.dispatch("addImageToDatasets",
-                        new Object[] {
-                            list,
-                            new Integer(image.getID())
-                        });
+        return list;
     }
 
     /**
@@ -62,6 +62,7 @@ public class HistoryManager
 	
 	protected InstantiatingCaller icaller = null;
     protected Instantiator  instantiator = null;
+    protected ProvenanceGraph  provenanceGraph = new ProvenanceGraph();
 
     public HistoryManager() { super(); }
     
@@ -190,4 +191,47 @@ public class HistoryManager
                     });
     }
 
+    /**
+     * Returns the {@link ProvenanceGraph} which the
+     * <code>loadMexDataHistory</code> and
+     * <code>loadChainDataHistory</code> methods merge histories into.
+     */
+    public ProvenanceGraph getProvenanceGraph() { return provenanceGraph; }
+
+    /**
+     * Merges the data history of a module execution into the
+     * {@link #getProvenanceGraph provenance graph}, and returns the
+     * graph.  If the history of the module execution is already
+     * known, because it or one of its descendants has been loaded
+     * before, the data server is not called.
+     */
+    public ProvenanceGraph loadMexDataHistory(Integer mexID)
+    {
+        if (mexID == null)
+            throw new IllegalArgumentException("Module execution ID cannot be null");
+
+        if (!provenanceGraph.isHistoryComplete(mexID.intValue()))
+        {
+            provenanceGraph.merge(getMexDataHistory(mexID),true);
+            provenanceGraph.setHistoryComplete(mexID.intValue());
+        }
+        return provenanceGraph;
+    }
+
+    /**
+     * Merges the data history of a chain execution into the {@link
+     * #getProvenanceGraph provenance graph}, and returns the graph.
+     * The history is always retrieved from the data server, since the
+     * chain execution might still be running; only the parts of it
+     * which are not already in the graph are added.
+     */
+    public ProvenanceGraph loadChainDataHistory(Integer chexID)
+    {
+        if (chexID == null)
+            throw new IllegalArgumentException("Chain execution ID cannot be null");
+
+        provenanceGraph.merge(getChainDataHistory(chexID),true);
+        return provenanceGraph;
+    }
+
 }
\ No newline at end of file
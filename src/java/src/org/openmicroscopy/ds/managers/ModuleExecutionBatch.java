@@ -0,0 +1,343 @@
+/*
+ * org.openmicroscopy.ds.managers.ModuleExecutionBatch
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2004 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.managers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmicroscopy.ds.Criteria;
+import org.openmicroscopy.ds.DataFactory;
+import org.openmicroscopy.ds.DuplicateObjectException;
+import org.openmicroscopy.ds.UnitOfWork;
+import org.openmicroscopy.ds.dto.ActualInput;
+import org.openmicroscopy.ds.dto.AnalysisNode;
+import org.openmicroscopy.ds.dto.ChainExecution;
+import org.openmicroscopy.ds.dto.DataInterface;
+import org.openmicroscopy.ds.dto.Dataset;
+import org.openmicroscopy.ds.dto.FormalInput;
+import org.openmicroscopy.ds.dto.Image;
+import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.Module;
+import org.openmicroscopy.ds.dto.ModuleExecution;
+import org.openmicroscopy.ds.dto.NodeExecution;
+
+/**
+ * <p>Creates module executions, node executions, and actual inputs,
+ * and saves all of them to the database at once.  The methods of
+ * this class create the same objects as the methods of the same name
+ * in {@link ModuleExecutionManager}, but rather than marking each
+ * object in the {@link DataFactory}, they collect the objects in a
+ * separate {@link UnitOfWork}.  The {@link #commit} method saves all
+ * of them with a single <code>updateObjects</code> call, in which the
+ * new objects can refer to each other.  This makes it possible to
+ * set up an analysis of thousands of images with a handful of remote
+ * calls, rather than several per image.</p>
+ *
+ * <p>The {@link ModuleExecutionManager#addActualInput} methods
+ * query the database for an existing copy of each actual input.  In
+ * a batch, this check is made for all of the actual inputs at once,
+ * when the batch is committed.  Actual inputs of new module
+ * executions cannot have existing copies, so they are only checked
+ * against each other.</p>
+ *
+ * <p>Batches are created by the {@link
+ * ModuleExecutionManager#createBatch} method.  A batch is not
+ * thread-safe.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class ModuleExecutionBatch
+{
+    private ModuleExecutionManager  manager;
+    private DataFactory  factory;
+    private UnitOfWork  unitOfWork;
+
+    /**
+     * The actual inputs of new module executions in this batch, keyed
+     * by the module execution which they provide input to.
+     */
+    private Map  inputsByMEX = new IdentityHashMap();
+
+    /**
+     * The actual inputs of existing module executions in this batch,
+     * keyed by the ID of the module execution which they provide
+     * input to.  The batch might contain several copies of the same
+     * module execution, so they share a single list.
+     */
+    private Map  inputsByID = new HashMap();
+
+    ModuleExecutionBatch(ModuleExecutionManager manager,
+                         DataFactory factory)
+    {
+        super();
+        this.manager = manager;
+        this.factory = factory;
+        this.unitOfWork = new UnitOfWork(factory);
+        unitOfWork.setChunkSize(0);
+    }
+
+    /**
+     * Creates a new module execution of the given module with global
+     * dependence, as in {@link
+     * ModuleExecutionManager#createMEX(Module,String,String)}.
+     */
+    public ModuleExecution createMEX(Module module,
+                                     String iteratorTag,
+                                     String newFeatureTag)
+    {
+        if (module == null)
+            throw new IllegalArgumentException("Module cannot be null");
+
+        return add(manager.newMEX(module,"G",null,null,
+                                  iteratorTag,newFeatureTag));
+    }
+
+    /**
+     * Creates a new module execution of the given module with
+     * dataset dependence, as in {@link
+     * ModuleExecutionManager#createMEX(Module,Dataset,String,String)}.
+     */
+    public ModuleExecution createMEX(Module module,
+                                     Dataset dataset,
+                                     String iteratorTag,
+                                     String newFeatureTag)
+    {
+        if (module == null)
+            throw new IllegalArgumentException("Module cannot be null");
+        if (dataset == null)
+            throw new IllegalArgumentException("Dataset cannot be null");
+
+        return add(manager.newMEX(module,"D",dataset,null,
+                                  iteratorTag,newFeatureTag));
+    }
+
+    /**
+     * Creates a new module execution of the given module with image
+     * dependence, as in {@link
+     * ModuleExecutionManager#createMEX(Module,Image,String,String)}.
+     */
+    public ModuleExecution createMEX(Module module,
+                                     Image image,
+                                     String iteratorTag,
+                                     String newFeatureTag)
+    {
+        if (module == null)
+            throw new IllegalArgumentException("Module cannot be null");
+        if (image == null)
+            throw new IllegalArgumentException("Image cannot be null");
+
+        return add(manager.newMEX(module,"I",null,image,
+                                  iteratorTag,newFeatureTag));
+    }
+
+    /**
+     * Adds an actual input to a module execution, as in {@link
+     * ModuleExecutionManager#addActualInput(ModuleExecution,ModuleExecution,FormalInput)}.
+     * Either module execution can be one which was created by this
+     * batch.
+     *
+     * @throws DuplicateObjectException if this batch already contains
+     * the same actual input, even for a different copy of the same
+     * module execution
+     */
+    public ActualInput addActualInput(ModuleExecution outputMEX,
+                                      ModuleExecution inputMEX,
+                                      FormalInput formalInput)
+    {
+        ModuleExecutionManager.
+            checkActualInput(outputMEX,inputMEX,formalInput);
+
+        List inputs = getInputs(inputMEX);
+        for (int i = 0; i < inputs.size(); i++)
+        {
+            ActualInput ai = (ActualInput) inputs.get(i);
+            if (ai.getFormalInput().getID() == formalInput.getID() &&
+                isSameObject(ai.getInputMEX(),outputMEX))
+                throw new DuplicateObjectException("That actual input already exists");
+        }
+
+        ActualInput ai = manager.newActualInput(outputMEX,inputMEX,
+                                                formalInput);
+        inputs.add(ai);
+        unitOfWork.mark(ai);
+        return ai;
+    }
+
+    /**
+     * Creates a node execution, as in {@link
+     * ModuleExecutionManager#createNEX}.
+     */
+    public NodeExecution createNEX(ModuleExecution mex,
+                                   ChainExecution chex,
+                                   AnalysisNode node)
+    {
+        NodeExecution nex = manager.newNEX(mex,chex,node);
+        unitOfWork.mark(nex);
+        return nex;
+    }
+
+    /**
+     * Returns the number of objects which will be saved when this
+     * batch is committed.
+     */
+    public int getObjectCount() { return unitOfWork.getMarkedCount(); }
+
+    /**
+     * <p>Saves all of the objects in this batch to the database, with
+     * a single call to {@link DataFactory#updateList}.  The new objects
+     * are given their real primary key IDs.</p>
+     *
+     * <p>Before anything is saved, the actual inputs of existing
+     * module executions are checked against the database with a
+     * single query.  If any of them already exists, nothing is saved.
+     * Once the batch has been committed, it is empty, and can be used
+     * again.</p>
+     *
+     * @throws DuplicateObjectException if one of the actual inputs
+     * already exists in the database
+     */
+    public void commit()
+    {
+        checkExistingInputs();
+        unitOfWork.flush();
+        inputsByMEX.clear();
+        inputsByID.clear();
+    }
+
+    /**
+     * Discards all of the objects in this batch without saving them.
+     */
+    public void clear()
+    {
+        unitOfWork.clear();
+        inputsByMEX.clear();
+        inputsByID.clear();
+    }
+
+    private ModuleExecution add(ModuleExecution mex)
+    {
+        unitOfWork.mark(mex);
+        return mex;
+    }
+
+    /**
+     * Returns the list of actual inputs of a module execution, which
+     * is shared by every copy of an existing module execution.
+     */
+    private List getInputs(ModuleExecution mex)
+    {
+        Map map = inputsByMEX;
+        Object key = mex;
+        if (!isNew(mex))
+        {
+            map = inputsByID;
+            key = new Integer(mex.getID());
+        }
+
+        List inputs = (List) map.get(key);
+        if (inputs == null)
+        {
+            inputs = new ArrayList();
+            map.put(key,inputs);
+        }
+        return inputs;
+    }
+
+    private static boolean isNew(DataInterface object)
+    {
+        return (object instanceof MappedDTO) && ((MappedDTO) object).isNew();
+    }
+
+    private static boolean isSameObject(ModuleExecution a, ModuleExecution b)
+    {
+        if (a == b)
+            return true;
+        if (isNew(a) || isNew(b))
+            return false;
+        return a.getID() == b.getID();
+    }
+
+    /**
+     * Checks whether any of the actual inputs of existing module
+     * executions are already in the database.
+     */
+    private void checkExistingInputs()
+    {
+        if (inputsByID.size() == 0)
+            return;
+
+        List ids = new ArrayList(inputsByID.keySet());
+
+        Criteria crit = new Criteria();
+        crit.addWantedField("id");
+        crit.addWantedField("module_execution");
+        crit.addWantedField("formal_input");
+        crit.addWantedField("input_module_execution");
+        crit.addWantedField("module_execution","id");
+        crit.addWantedField("formal_input","id");
+        crit.addWantedField("input_module_execution","id");
+        crit.addFilter("module_execution","in",ids);
+
+        List found = factory.retrieveList(ActualInput.class,crit);
+        for (int i = 0; found != null && i < found.size(); i++)
+        {
+            ActualInput old = (ActualInput) found.get(i);
+            List inputs = (List) inputsByID.
+                get(new Integer(old.getModuleExecution().getID()));
+            for (int j = 0; inputs != null && j < inputs.size(); j++)
+            {
+                ActualInput ai = (ActualInput) inputs.get(j);
+                if (ai.getFormalInput().getID() ==
+                    old.getFormalInput().getID() &&
+                    isSameObject(ai.getInputMEX(),old.getInputMEX()))
+                    throw new DuplicateObjectException("That actual input already exists");
+            }
+        }
+    }
+}
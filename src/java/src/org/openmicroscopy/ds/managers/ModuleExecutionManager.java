@@ -36,6 +36,10 @@
 
 package org.openmicroscopy.ds.managers;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import org.openmicroscopy.ds.DataServices;
 import org.openmicroscopy.ds.RemoteCaller;
@@ -152,22 +156,8 @@ public class ModuleExecutionManager
         if (module == null)
             throw new IllegalArgumentException("Module cannot be null");
 
-        if (iteratorTag == null || iteratorTag.equals(""))
-            iteratorTag = module.getDefaultIterator();
-
-        if (newFeatureTag == null || newFeatureTag.equals(""))
-            newFeatureTag = module.getNewFeatureTag();
-
-        ModuleExecution mex = (ModuleExecution)
-            factory.createNew(ModuleExecution.class);
-        mex.setModule(module);
-        mex.setDependence("G");
-        mex.setDataset(null);
-        mex.setImage(null);
-        mex.setIteratorTag(iteratorTag);
-        mex.setNewFeatureTag(newFeatureTag);
-        mex.setTimestamp("now");
-        mex.setStatus("UNFINISHED");
+        ModuleExecution mex = newMEX(module,"G",null,null,
+                                     iteratorTag,newFeatureTag);
         factory.markForUpdate(mex);
         return mex;
     }
@@ -224,22 +214,8 @@ public class ModuleExecutionManager
         if (dataset == null)
             throw new IllegalArgumentException("Dataset cannot be null");
 
-        if (iteratorTag == null || iteratorTag.equals(""))
-            iteratorTag = module.getDefaultIterator();
-
-        if (newFeatureTag == null || newFeatureTag.equals(""))
-            newFeatureTag = module.getNewFeatureTag();
-
-        ModuleExecution mex = (ModuleExecution)
-            factory.createNew(ModuleExecution.class);
-        mex.setModule(module);
-        mex.setDependence("D");
-        mex.setDataset(dataset);
-        mex.setImage(null);
-        mex.setIteratorTag(iteratorTag);
-        mex.setNewFeatureTag(newFeatureTag);
-        mex.setTimestamp("now");
-        mex.setStatus("UNFINISHED");
+        ModuleExecution mex = newMEX(module,"D",dataset,null,
+                                     iteratorTag,newFeatureTag);
         factory.markForUpdate(mex);
 
         return mex;
@@ -297,6 +273,25 @@ public class ModuleExecutionManager
         if (image == null)
             throw new IllegalArgumentException("Image cannot be null");
 
+        ModuleExecution mex = newMEX(module,"I",null,image,
+                                     iteratorTag,newFeatureTag);
+        factory.markForUpdate(mex);
+
+        return mex;
+    }
+
+    /**
+     * Creates a new, unmarked module execution with the specified
+     * dependence, filling in the iterator and new feature tags from
+     * the module if they are not given.
+     */
+    ModuleExecution newMEX(Module module,
+                           String dependence,
+                           Dataset dataset,
+                           Image image,
+                           String iteratorTag,
+                           String newFeatureTag)
+    {
         if (iteratorTag == null || iteratorTag.equals(""))
             iteratorTag = module.getDefaultIterator();
 
@@ -306,15 +301,13 @@ public class ModuleExecutionManager
         ModuleExecution mex = (ModuleExecution)
             factory.createNew(ModuleExecution.class);
         mex.setModule(module);
-        mex.setDependence("I");
-        mex.setDataset(null);
+        mex.setDependence(dependence);
+        mex.setDataset(dataset);
         mex.setImage(image);
         mex.setIteratorTag(iteratorTag);
         mex.setNewFeatureTag(newFeatureTag);
         mex.setTimestamp("now");
         mex.setStatus("UNFINISHED");
-        factory.markForUpdate(mex);
-
         return mex;
     }
 
@@ -357,12 +350,7 @@ public class ModuleExecutionManager
                                       FormalInput formalInput)
     {
 	ActualInput ai;
-        if (outputMEX == null)
-            throw new IllegalArgumentException("Output MEX cannot be null");
-        if (inputMEX == null)
-            throw new IllegalArgumentException("Input MEX cannot be null");
-        if (formalInput == null)
-            throw new IllegalArgumentException("Formal input cannot be null");
+        checkActualInput(outputMEX,inputMEX,formalInput);
 	Criteria crit = new Criteria();
 	crit.addWantedField("id");
 	crit.addFilter("module_execution",inputMEX);
@@ -374,10 +362,7 @@ public class ModuleExecutionManager
 	if (ai != null) 
 	    throw new DuplicateObjectException("That actual input already exists"); 
 
-        ai = (ActualInput) factory.createNew(ActualInput.class);
-        ai.setModuleExecution(inputMEX);
-        ai.setFormalInput(formalInput);
-        ai.setInputMEX(outputMEX);
+        ai = newActualInput(outputMEX,inputMEX,formalInput);
         factory.markForUpdate(ai);
 
         return ai;
@@ -440,9 +425,52 @@ public class ModuleExecutionManager
         return addActualInput(outputMEX,inputMEX,formalInput);
     }
 
+    /**
+     * Checks the parameters of the <code>addActualInput</code>
+     * methods.
+     */
+    static void checkActualInput(ModuleExecution outputMEX,
+                                 ModuleExecution inputMEX,
+                                 FormalInput formalInput)
+    {
+        if (outputMEX == null)
+            throw new IllegalArgumentException("Output MEX cannot be null");
+        if (inputMEX == null)
+            throw new IllegalArgumentException("Input MEX cannot be null");
+        if (formalInput == null)
+            throw new IllegalArgumentException("Formal input cannot be null");
+    }
+
+    /**
+     * Creates a new, unmarked actual input.
+     */
+    ActualInput newActualInput(ModuleExecution outputMEX,
+                               ModuleExecution inputMEX,
+                               FormalInput formalInput)
+    {
+        ActualInput ai = (ActualInput) factory.createNew(ActualInput.class);
+        ai.setModuleExecution(inputMEX);
+        ai.setFormalInput(formalInput);
+        ai.setInputMEX(outputMEX);
+        return ai;
+    }
+
     public NodeExecution createNEX(ModuleExecution mex,
                                    ChainExecution chex,
                                    AnalysisNode node)
+    {
+        NodeExecution nex = newNEX(mex,chex,node);
+        factory.markForUpdate(nex);
+
+        return nex;
+    }
+
+    /**
+     * Creates a new, unmarked node execution.
+     */
+    NodeExecution newNEX(ModuleExecution mex,
+                         ChainExecution chex,
+                         AnalysisNode node)
     {
         if (mex == null)
             throw new IllegalArgumentException("MEX cannot be null");
@@ -456,9 +484,76 @@ public class ModuleExecutionManager
         nex.setModuleExecution(mex);
         nex.setChainExecution(chex);
         nex.setNode(node);
-        factory.markForUpdate(nex);
-
         return nex;
     }
 
+    /**
+     * Creates a new {@link ModuleExecutionBatch}, which creates
+     * module executions, node executions, and actual inputs, and
+     * saves all of them at once.
+     */
+    public ModuleExecutionBatch createBatch()
+    {
+        return new ModuleExecutionBatch(this,factory);
+    }
+
+    /**
+     * <p>Creates and saves an image-dependent module execution of the
+     * given module for each of the specified images, as in the {@link
+     * #createMEX(Module,Image,String,String)} method.  If a chain
+     * execution and node are given, a node execution is created for
+     * each module execution, too.  The objects are saved with a single
+     * call to the data server, via a {@link ModuleExecutionBatch}.</p>
+     *
+     * <p>The <code>inputs</code> parameter specifies the actual inputs
+     * of the new module executions.  Its keys are {@link
+     * FormalInput}s of the module.  Each value is either a {@link
+     * ModuleExecution}, which provides that input for all of the
+     * images, or a {@link List} of module executions, which provides
+     * it for the image at the same position of the
+     * <code>images</code> list.  It can be <code>null</code> if the
+     * module executions have no inputs.</p>
+     *
+     * @return a {@link List} of the new {@link ModuleExecution}s, in
+     * the same order as the images
+     */
+    public List createImageMEXes(Module module,
+                                 List images,
+                                 String iteratorTag,
+                                 String newFeatureTag,
+                                 Map inputs,
+                                 ChainExecution chex,
+                                 AnalysisNode node)
+    {
+        if (images == null)
+            throw new IllegalArgumentException("List of images cannot be null");
+
+        ModuleExecutionBatch batch = createBatch();
+        List mexes = new ArrayList(images.size());
+        for (int i = 0; i < images.size(); i++)
+        {
+            ModuleExecution mex =
+                batch.createMEX(module,(Image) images.get(i),
+                                iteratorTag,newFeatureTag);
+            mexes.add(mex);
+
+            if (chex != null || node != null)
+                batch.createNEX(mex,chex,node);
+
+            Iterator it = (inputs == null)? null: inputs.entrySet().iterator();
+            while (it != null && it.hasNext())
+            {
+                Map.Entry entry = (Map.Entry) it.next();
+                Object value = entry.getValue();
+                ModuleExecution outputMEX = (ModuleExecution)
+                    ((value instanceof List)? ((List) value).get(i): value);
+                batch.addActualInput(outputMEX,mex,
+                                     (FormalInput) entry.getKey());
+            }
+        }
+
+        batch.commit();
+        return mexes;
+    }
+
 }
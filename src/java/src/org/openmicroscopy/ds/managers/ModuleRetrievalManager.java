@@ -39,6 +39,7 @@ package org.openmicroscopy.ds.managers;
 import java.util.List;
 
 import org.openmicroscopy.ds.AbstractService;
+import org.openmicroscopy.ds.CatalogCache;
 import org.openmicroscopy.ds.DataServices;
 import org.openmicroscopy.ds.InstantiatingCaller;
 import org.openmicroscopy.ds.Instantiator;
@@ -60,6 +61,7 @@ public class ModuleRetrievalManager
 	
 	protected InstantiatingCaller icaller = null;
     protected Instantiator  instantiator = null;
+    protected CatalogCache  catalogCache = null;
 
     public ModuleRetrievalManager() { super(); }
     
@@ -81,6 +83,8 @@ public class ModuleRetrievalManager
         icaller = (InstantiatingCaller)
             services.getService(InstantiatingCaller.class);
         instantiator = icaller.getInstantiator();
+        catalogCache = (CatalogCache)
+            services.getService(CatalogCache.class);
     }
 
     /**
@@ -88,7 +92,8 @@ public class ModuleRetrievalManager
      * @return A list of module objects
      */
     public List retrieveModules() {
-        return icaller.dispatchList(Module.class,"retrieveModules",
-        			null);
+        Object result = catalogCache.dispatch("retrieveModules",null,
+                                              CatalogCache.MODULE_TABLES);
+        return instantiator.instantiateList(Module.class,result);
     }
 }
\ No newline at end of file
@@ -0,0 +1,485 @@
+/*
+ * org.openmicroscopy.ds.managers.ProvenanceGraph
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2004 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.managers;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmicroscopy.ds.DataException;
+import org.openmicroscopy.ds.dto.ActualInput;
+import org.openmicroscopy.ds.dto.ModuleExecution;
+
+/**
+ * <p>A client-side index of the data dependencies between module
+ * executions.  The graph is built from the results of the {@link
+ * HistoryManager#getMexDataHistory} and {@link
+ * HistoryManager#getChainDataHistory} methods: each module execution
+ * in a history is a node, and each of its actual inputs is an edge
+ * from the module execution which produced the input.  Histories
+ * which overlap are merged into the same graph, so each node and
+ * edge is stored once, no matter how many histories it appears
+ * in.</p>
+ *
+ * <p>Nodes are stored in arrays indexed by an internal node number,
+ * and the edges of each node are stored as arrays of node numbers,
+ * so that traversals do not create any objects per node.  All of the
+ * queries take and return module execution IDs.</p>
+ *
+ * <p>Since a history contains everything upstream of a module
+ * execution, the ancestors of a node are known exactly once its
+ * history has been merged; the {@link #isHistoryComplete} method
+ * reports whether this is the case.  The descendants of a node,
+ * however, only include the module executions which appear in some
+ * merged history.</p>
+ *
+ * <p>The methods of this class are synchronized.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class ProvenanceGraph
+{
+    private static final int[] EMPTY = new int[0];
+
+    /** Maps a module execution ID to its node number. */
+    private Map  nodes = new HashMap();
+
+    private int  nodeCount = 0;
+    private int[]  mexIDs = new int[16];
+    private ModuleExecution[]  mexes = new ModuleExecution[16];
+    private boolean[]  complete = new boolean[16];
+
+    /** The node numbers of the inputs of each node. */
+    private int[][]  parents = new int[16][];
+    private int[]  parentCounts = new int[16];
+
+    /** The node numbers of the nodes which use each node's outputs. */
+    private int[][]  children = new int[16][];
+    private int[]  childCounts = new int[16];
+
+    private int  edgeCount = 0;
+
+    /**
+     * Marks used to find the nodes visited by a traversal, without
+     * clearing an array before each one.
+     */
+    private int[]  visited = new int[16];
+    private int  visitMark = 0;
+
+    public ProvenanceGraph()
+    {
+        super();
+    }
+
+    /**
+     * Merges a list of module executions into the graph.  Each module
+     * execution should have its <code>inputs</code> field loaded,
+     * along with the <code>input_module_execution</code> field of
+     * each input, as in the results of the {@link HistoryManager}
+     * methods.  Module executions whose inputs are not loaded are
+     * added to the graph without any edges.
+     *
+     * @param history a {@link List} of {@link ModuleExecution}s
+     * @param complete whether the list contains everything upstream
+     * of each of its module executions
+     */
+    public synchronized void merge(List history, boolean complete)
+    {
+        for (int i = 0; i < history.size(); i++)
+        {
+            ModuleExecution mex = (ModuleExecution) history.get(i);
+            int node = getNode(mex.getID());
+            mexes[node] = mex;
+
+            List inputs;
+            try
+            {
+                inputs = mex.getInputs();
+            } catch (DataException e) {
+                continue;
+            }
+
+            for (int j = 0; inputs != null && j < inputs.size(); j++)
+            {
+                ModuleExecution inputMEX =
+                    ((ActualInput) inputs.get(j)).getInputMEX();
+                if (inputMEX != null)
+                    addEdge(getNode(inputMEX.getID()),node);
+            }
+
+            if (complete)
+                this.complete[node] = true;
+        }
+    }
+
+    /**
+     * Records that everything upstream of the specified module
+     * execution has been merged into the graph.
+     */
+    public synchronized void setHistoryComplete(int mexID)
+    {
+        complete[getNode(mexID)] = true;
+    }
+
+    /**
+     * Returns whether everything upstream of the specified module
+     * execution has been merged into the graph.
+     */
+    public synchronized boolean isHistoryComplete(int mexID)
+    {
+        Integer node = (Integer) nodes.get(new Integer(mexID));
+        return node != null && complete[node.intValue()];
+    }
+
+    /**
+     * Returns whether the graph contains the specified module
+     * execution.
+     */
+    public synchronized boolean contains(int mexID)
+    {
+        return nodes.containsKey(new Integer(mexID));
+    }
+
+    /**
+     * Returns the most recently merged {@link ModuleExecution} with
+     * the specified ID, or <code>null</code> if it has only been seen
+     * as the input of another module execution.
+     */
+    public synchronized ModuleExecution getModuleExecution(int mexID)
+    {
+        Integer node = (Integer) nodes.get(new Integer(mexID));
+        return (node == null)? null: mexes[node.intValue()];
+    }
+
+    /**
+     * Returns the number of module executions in the graph.
+     */
+    public synchronized int getNodeCount() { return nodeCount; }
+
+    /**
+     * Returns the number of distinct data dependencies in the graph.
+     */
+    public synchronized int getEdgeCount() { return edgeCount; }
+
+    /**
+     * Returns the IDs of the module executions which provide the
+     * inputs of the specified module execution.
+     */
+    public synchronized int[] getParents(int mexID)
+    {
+        int node = findNode(mexID);
+        return (node < 0)? EMPTY: toIDs(parents[node],parentCounts[node]);
+    }
+
+    /**
+     * Returns the IDs of the module executions which use the outputs
+     * of the specified module execution.
+     */
+    public synchronized int[] getChildren(int mexID)
+    {
+        int node = findNode(mexID);
+        return (node < 0)? EMPTY: toIDs(children[node],childCounts[node]);
+    }
+
+    /**
+     * Returns the IDs of all of the module executions upstream of the
+     * specified module execution, nearest first.
+     */
+    public synchronized int[] getAncestors(int mexID)
+    {
+        int node = findNode(mexID);
+        if (node < 0)
+            return EMPTY;
+        return toIDs(traverse(node,parents,parentCounts),-1);
+    }
+
+    /**
+     * Returns the IDs of all of the module executions downstream of
+     * the specified module execution, nearest first.
+     */
+    public synchronized int[] getDescendants(int mexID)
+    {
+        int node = findNode(mexID);
+        if (node < 0)
+            return EMPTY;
+        return toIDs(traverse(node,children,childCounts),-1);
+    }
+
+    /**
+     * Returns the IDs of the module executions which would have to be
+     * executed again if the specified module execution were re-run:
+     * the module execution itself, followed by its descendants.  The
+     * IDs are in an order in which they could be executed, with each
+     * module execution after all of its affected inputs.
+     */
+    public synchronized int[] getAffected(int mexID)
+    {
+        int node = findNode(mexID);
+        if (node < 0)
+            return EMPTY;
+
+        int[] descendants = traverse(node,children,childCounts);
+        int count = descendants[0];
+
+        // The traversal marked the descendants with visitMark; count
+        // the affected inputs of each of them and the start node, and
+        // then emit them in topological order.
+
+        int mark = visitMark;
+        visited[node] = mark;
+
+        int[] pending = new int[nodeCount];
+        for (int i = 1; i <= count; i++)
+        {
+            int child = descendants[i];
+            for (int j = 0; j < parentCounts[child]; j++)
+                if (visited[parents[child][j]] == mark)
+                    pending[child]++;
+        }
+
+        int[] order = new int[count+1];
+        int head = 0, tail = 0;
+        order[tail++] = node;
+        while (head < tail)
+        {
+            int current = order[head++];
+            for (int j = 0; j < childCounts[current]; j++)
+            {
+                int child = children[current][j];
+                if (--pending[child] == 0)
+                    order[tail++] = child;
+            }
+        }
+
+        int[] ids = new int[tail];
+        for (int i = 0; i < tail; i++)
+            ids[i] = mexIDs[order[i]];
+        return ids;
+    }
+
+    /**
+     * Removes all of the module executions from the graph.
+     */
+    public synchronized void clear()
+    {
+        nodes.clear();
+        for (int i = 0; i < nodeCount; i++)
+        {
+            mexes[i] = null;
+            complete[i] = false;
+            parents[i] = null;
+            parentCounts[i] = 0;
+            children[i] = null;
+            childCounts[i] = 0;
+            visited[i] = 0;
+        }
+        nodeCount = 0;
+        edgeCount = 0;
+        visitMark = 0;
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "ProvenanceGraph ("+nodeCount+" executions, "+
+            edgeCount+" dependencies)";
+    }
+
+    private int findNode(int mexID)
+    {
+        Integer node = (Integer) nodes.get(new Integer(mexID));
+        return (node == null)? -1: node.intValue();
+    }
+
+    /**
+     * Returns the node number of the specified module execution,
+     * adding a node if necessary.
+     */
+    private int getNode(int mexID)
+    {
+        Integer id = new Integer(mexID);
+        Integer node = (Integer) nodes.get(id);
+        if (node != null)
+            return node.intValue();
+
+        if (nodeCount == mexIDs.length)
+            grow(nodeCount*2);
+
+        mexIDs[nodeCount] = mexID;
+        nodes.put(id,new Integer(nodeCount));
+        return nodeCount++;
+    }
+
+    private void grow(int capacity)
+    {
+        int[] newIDs = new int[capacity];
+        System.arraycopy(mexIDs,0,newIDs,0,nodeCount);
+        mexIDs = newIDs;
+
+        ModuleExecution[] newMexes = new ModuleExecution[capacity];
+        System.arraycopy(mexes,0,newMexes,0,nodeCount);
+        mexes = newMexes;
+
+        boolean[] newComplete = new boolean[capacity];
+        System.arraycopy(complete,0,newComplete,0,nodeCount);
+        complete = newComplete;
+
+        int[][] newParents = new int[capacity][];
+        System.arraycopy(parents,0,newParents,0,nodeCount);
+        parents = newParents;
+
+        int[][] newChildren = new int[capacity][];
+        System.arraycopy(children,0,newChildren,0,nodeCount);
+        children = newChildren;
+
+        parentCounts = grow(parentCounts,capacity);
+        childCounts = grow(childCounts,capacity);
+        visited = grow(visited,capacity);
+    }
+
+    private int[] grow(int[] array, int capacity)
+    {
+        int[] result = new int[capacity];
+        System.arraycopy(array,0,result,0,nodeCount);
+        return result;
+    }
+
+    /**
+     * Adds an edge from one node to another, unless it already
+     * exists.
+     */
+    private void addEdge(int parent, int child)
+    {
+        int[] existing = parents[child];
+        for (int i = 0; i < parentCounts[child]; i++)
+            if (existing[i] == parent)
+                return;
+
+        parents[child] = append(parents[child],parentCounts[child]++,parent);
+        children[parent] = append(children[parent],childCounts[parent]++,
+                                  child);
+        edgeCount++;
+    }
+
+    private static int[] append(int[] array, int size, int value)
+    {
+        if (array == null)
+        {
+            array = new int[4];
+        } else if (size == array.length) {
+            int[] newArray = new int[size*2];
+            System.arraycopy(array,0,newArray,0,size);
+            array = newArray;
+        }
+        array[size] = value;
+        return array;
+    }
+
+    /**
+     * Finds the nodes reachable from the specified node along the
+     * specified edges, in breadth-first order, marking each of them
+     * with a new {@link #visitMark}.  The start node is not included.
+     * Element 0 of the returned array is the number of nodes found;
+     * the nodes follow it.
+     */
+    private int[] traverse(int start, int[][] edges, int[] edgeCounts)
+    {
+        if (++visitMark == 0)
+        {
+            for (int i = 0; i < nodeCount; i++)
+                visited[i] = 0;
+            visitMark = 1;
+        }
+
+        int[] queue = new int[nodeCount+1];
+        int head = 1, tail = 1;
+        visited[start] = visitMark;
+        queue[0] = 0;
+
+        int current = start;
+        while (true)
+        {
+            for (int j = 0; j < edgeCounts[current]; j++)
+            {
+                int next = edges[current][j];
+                if (visited[next] != visitMark)
+                {
+                    visited[next] = visitMark;
+                    queue[tail++] = next;
+                }
+            }
+
+            if (head == tail)
+                break;
+            current = queue[head++];
+        }
+
+        queue[0] = tail-1;
+        return queue;
+    }
+
+    /**
+     * Converts node numbers into module execution IDs.  If
+     * <code>count</code> is -1, the array is in the format returned
+     * by {@link #traverse}.
+     */
+    private int[] toIDs(int[] array, int count)
+    {
+        int offset = 0;
+        if (count < 0)
+        {
+            count = array[0];
+            offset = 1;
+        }
+
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++)
+            ids[i] = mexIDs[array[i+offset]];
+        return ids;
+    }
+}
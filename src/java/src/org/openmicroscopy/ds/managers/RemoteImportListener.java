@@ -0,0 +1,80 @@
+/*
+ * org.openmicroscopy.ds.managers.RemoteImportListener
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2004 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.managers;
+
+import java.util.List;
+
+/**
+ * Receives notifications from a {@link RemoteImportOrchestrator} as
+ * its imports complete.  The methods are called from the thread
+ * which is running the orchestrator, so a slow listener delays the
+ * tracking of the other imports.
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public interface RemoteImportListener
+{
+    /**
+     * Called when an import has finished successfully.
+     *
+     * @param mexID the ID of the import's module execution
+     * @param fileIDs the original file IDs which were imported
+     * @param images the imported images, as returned by {@link
+     * RemoteImportManager#getImportedImages}
+     */
+    public void importFinished(int mexID, List fileIDs, List images);
+
+    /**
+     * Called when an import could not be started, or when it ended
+     * with an error.
+     *
+     * @param mexID the ID of the import's module execution, or -1 if
+     * the import could not be started
+     * @param fileIDs the original file IDs which were to be imported
+     * @param message the error message reported by the data server
+     */
+    public void importFailed(int mexID, List fileIDs, String message);
+}
@@ -38,7 +38,9 @@ package org.openmicroscopy.ds.managers;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
 
 import org.openmicroscopy.ds.DataServices;
 import org.openmicroscopy.ds.DataFactory;
@@ -183,6 +185,49 @@ public class RemoteImportManager
         return status.equals("FINISHED");
     }
 
+    /**
+     * Retrieves the status of several remote imports at once.  The
+     * module executions are requested with an <code>IN</code> filter,
+     * in chunks of at most {@link DataFactory#getLoadChunkSize} IDs,
+     * so that any number of imports can be tracked with a handful of
+     * remote calls.  The returned {@link Map} is keyed by the module
+     * execution ID, as an {@link Integer}; each value is a {@link
+     * ModuleExecution} with its <code>id</code>,
+     * <code>status</code>, and <code>error_message</code> fields
+     * loaded.  IDs which do not exist are not included in the map.
+     *
+     * @param mexIDs a {@link List} of {@link Integer} module
+     * execution IDs, as returned by {@link #startRemoteImport}
+     */
+    public Map getRemoteImportStatus(List mexIDs)
+    {
+        if (mexIDs == null)
+            throw new IllegalArgumentException("List of MEX ID's cannot be null");
+
+        Map result = new HashMap();
+        int chunkSize = factory.getLoadChunkSize();
+        for (int start = 0; start < mexIDs.size(); start += chunkSize)
+        {
+            List chunk = mexIDs.subList(start,Math.min(start+chunkSize,
+                                                       mexIDs.size()));
+
+            Criteria crit = new Criteria();
+            crit.addFilter("id","in",new ArrayList(chunk));
+            crit.addWantedField("id");
+            crit.addWantedField("status");
+            crit.addWantedField("error_message");
+
+            List mexes = factory.retrieveList(ModuleExecution.class,crit);
+            for (int i = 0; mexes != null && i < mexes.size(); i++)
+            {
+                ModuleExecution mex = (ModuleExecution) mexes.get(i);
+                result.put(new Integer(mex.getID()),mex);
+            }
+        }
+
+        return result;
+    }
+
     public List getImportedImageIDs(int mexID)
     {
         Criteria crit = new Criteria();
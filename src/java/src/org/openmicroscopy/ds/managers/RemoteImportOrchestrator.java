@@ -0,0 +1,600 @@
+/*
+ * org.openmicroscopy.ds.managers.RemoteImportOrchestrator
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2004 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.managers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.openmicroscopy.ds.FieldsSpecification;
+import org.openmicroscopy.ds.dto.Dataset;
+import org.openmicroscopy.ds.dto.ModuleExecution;
+
+/**
+ * <p>Runs a large number of remote imports, keeping a bounded number
+ * of them active on the data server at once.  Imports are queued
+ * with the {@link #submit} methods, and are started with {@link
+ * RemoteImportManager#startRemoteImport} as earlier ones finish.
+ * The status of all of the active imports is read with a single
+ * {@link RemoteImportManager#getRemoteImportStatus} call per tick,
+ * rather than with one {@link
+ * RemoteImportManager#isRemoteImportFinished} call per import.</p>
+ *
+ * <p>The interval between ticks adapts to the progress of the
+ * imports.  It starts at {@link #getMinimumInterval}; it is doubled,
+ * up to {@link #getMaximumInterval}, after each tick in which no
+ * import finished, and it is reset to the minimum after each tick in
+ * which one did.</p>
+ *
+ * <p>When an import finishes, its images are retrieved with {@link
+ * RemoteImportManager#getImportedImages} and passed to the {@link
+ * RemoteImportListener}.  Imports which cannot be started, which end
+ * with an error, or whose images cannot be retrieved are reported to
+ * the listener as failures; they do not stop the other imports.  So
+ * is an import which is missing from {@link #MAXIMUM_STATUS_MISSES}
+ * status queries in a row, since it will never be seen to
+ * complete.</p>
+ *
+ * <p>The imports are run by the {@link #run} method, which returns
+ * once every submitted import has completed.  It can be called
+ * directly, or from a separate {@link Thread}.  Imports can be
+ * submitted while it is running.  Interrupting the thread which is
+ * running it has the same effect as calling {@link #cancel}.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class RemoteImportOrchestrator
+    implements Runnable
+{
+    /**
+     * The default maximum number of imports which are active at once.
+     */
+    public static final int DEFAULT_MAXIMUM_ACTIVE = 8;
+
+    /**
+     * The default minimum interval between ticks, in milliseconds.
+     */
+    public static final long DEFAULT_MINIMUM_INTERVAL = 500;
+
+    /**
+     * The default maximum interval between ticks, in milliseconds.
+     */
+    public static final long DEFAULT_MAXIMUM_INTERVAL = 30*1000;
+
+    /**
+     * The number of consecutive status queries which can fail before
+     * {@link #run} gives up.
+     */
+    public static final int MAXIMUM_STATUS_ERRORS = 5;
+
+    /**
+     * The number of consecutive status queries which can omit an
+     * import before it is reported as a failure.
+     */
+    public static final int MAXIMUM_STATUS_MISSES = 5;
+
+    private static final FieldsSpecification DEFAULT_IMAGE_SPEC;
+    static
+    {
+        DEFAULT_IMAGE_SPEC = new FieldsSpecification();
+        DEFAULT_IMAGE_SPEC.addWantedField("id");
+        DEFAULT_IMAGE_SPEC.addWantedField("name");
+    }
+
+    private RemoteImportManager  manager;
+    private RemoteImportListener  listener;
+    private FieldsSpecification  imageSpec = DEFAULT_IMAGE_SPEC;
+
+    private int  maximumActive = DEFAULT_MAXIMUM_ACTIVE;
+    private long  minimumInterval = DEFAULT_MINIMUM_INTERVAL;
+    private long  maximumInterval = DEFAULT_MAXIMUM_INTERVAL;
+    private long  timeout = 0;
+
+    /** The imports which have not been started yet. */
+    private LinkedList  queued = new LinkedList();
+
+    /** The imports which are running, keyed by their MEX ID. */
+    private Map  active = new HashMap();
+
+    private boolean  cancelled = false;
+
+    private int  startedCount;
+    private int  finishedCount;
+    private int  failedCount;
+    private int  statusQueryCount;
+
+    /**
+     * Creates a new <code>RemoteImportOrchestrator</code> which starts
+     * and tracks imports with the specified {@link
+     * RemoteImportManager}, and reports their completion to the
+     * specified {@link RemoteImportListener}.
+     */
+    public RemoteImportOrchestrator(RemoteImportManager manager,
+                                    RemoteImportListener listener)
+    {
+        super();
+        if (manager == null)
+            throw new IllegalArgumentException("Manager cannot be null");
+        if (listener == null)
+            throw new IllegalArgumentException("Listener cannot be null");
+        this.manager = manager;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the maximum number of imports which are active on the
+     * data server at once.
+     */
+    public synchronized int getMaximumActive() { return maximumActive; }
+
+    /**
+     * Sets the maximum number of imports which are active on the data
+     * server at once.
+     */
+    public synchronized void setMaximumActive(int maximumActive)
+    {
+        if (maximumActive <= 0)
+            throw new IllegalArgumentException("Maximum must be positive");
+        this.maximumActive = maximumActive;
+    }
+
+    /**
+     * Returns the minimum interval between ticks, in milliseconds.
+     */
+    public synchronized long getMinimumInterval() { return minimumInterval; }
+
+    /**
+     * Returns the maximum interval between ticks, in milliseconds.
+     */
+    public synchronized long getMaximumInterval() { return maximumInterval; }
+
+    /**
+     * Sets the range of intervals between ticks, in milliseconds.
+     */
+    public synchronized void setIntervals(long minimumInterval,
+                                          long maximumInterval)
+    {
+        if (minimumInterval <= 0 || maximumInterval < minimumInterval)
+            throw new IllegalArgumentException("Invalid intervals");
+        this.minimumInterval = minimumInterval;
+        this.maximumInterval = maximumInterval;
+    }
+
+    /**
+     * Returns the number of milliseconds after which {@link #run}
+     * gives up on the active imports, or 0 if it waits for them
+     * indefinitely.
+     */
+    public synchronized long getTimeout() { return timeout; }
+
+    /**
+     * Sets the number of milliseconds after which {@link #run} gives
+     * up on the active imports.  When the timeout expires, each of
+     * them is reported to the listener as a failure, and
+     * <code>run</code> returns; the imports which are still queued
+     * are kept.  A value of 0, the default, disables the timeout.
+     */
+    public synchronized void setTimeout(long timeout)
+    {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the fields which are loaded for the images passed to
+     * the listener.
+     */
+    public synchronized FieldsSpecification getImageSpec()
+    {
+        return imageSpec;
+    }
+
+    /**
+     * Sets the fields which are loaded for the images passed to the
+     * listener.  By default, only the images' <code>id</code> and
+     * <code>name</code> fields are loaded.
+     */
+    public synchronized void setImageSpec(FieldsSpecification imageSpec)
+    {
+        if (imageSpec == null)
+            throw new IllegalArgumentException("Spec cannot be null");
+        this.imageSpec = imageSpec;
+    }
+
+    /**
+     * Queues an import of the specified original files.
+     *
+     * @param fileIDs a {@link List} of {@link Long} original file IDs
+     */
+    public void submit(List fileIDs)
+    {
+        submit(null,fileIDs);
+    }
+
+    /**
+     * Queues an import of the specified original files into a
+     * dataset.
+     *
+     * @param dataset the dataset to import into, or <code>null</code>
+     * @param fileIDs a {@link List} of {@link Long} original file IDs
+     */
+    public synchronized void submit(Dataset dataset, List fileIDs)
+    {
+        if (fileIDs == null)
+            throw new IllegalArgumentException("List of file ID's cannot be null");
+        queued.add(new Import(dataset,new ArrayList(fileIDs)));
+        notifyAll();
+    }
+
+    /**
+     * Causes {@link #run} to return after the current tick, or as
+     * soon as it is called, if it is not running yet.  Imports which
+     * are active on the data server continue to run there, but are
+     * no longer tracked; queued imports are not started.  Once
+     * <code>run</code> has returned, it can be called again to
+     * resume.
+     */
+    public synchronized void cancel()
+    {
+        cancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of imports which have not been started yet.
+     */
+    public synchronized int getQueuedCount() { return queued.size(); }
+
+    /**
+     * Returns the number of imports which are active on the data
+     * server.
+     */
+    public synchronized int getActiveCount() { return active.size(); }
+
+    /**
+     * Returns the number of imports which have been started.
+     */
+    public synchronized int getStartedCount() { return startedCount; }
+
+    /**
+     * Returns the number of imports which have finished successfully.
+     */
+    public synchronized int getFinishedCount() { return finishedCount; }
+
+    /**
+     * Returns the number of imports which have failed.
+     */
+    public synchronized int getFailedCount() { return failedCount; }
+
+    /**
+     * Returns the number of status queries which have been sent to
+     * the data server.
+     */
+    public synchronized int getStatusQueryCount() { return statusQueryCount; }
+
+    /**
+     * Starts and tracks the submitted imports, returning once all of
+     * them have completed, once {@link #cancel} is called or the
+     * calling thread is interrupted, or once the {@link #getTimeout
+     * timeout} expires.  If the thread is interrupted, its
+     * interrupted status is left set when this method returns.
+     *
+     * @throws RuntimeException if {@link #MAXIMUM_STATUS_ERRORS}
+     * status queries in a row fail; each of the active imports is
+     * reported to the listener as a failure first, since they can no
+     * longer be tracked.  The imports which are still queued are
+     * kept, so <code>run</code> can be called again.
+     */
+    public void run()
+    {
+        long interval, deadline;
+        synchronized(this)
+        {
+            interval = minimumInterval;
+            deadline = (timeout > 0)? System.currentTimeMillis()+timeout: 0;
+        }
+        int statusErrors = 0;
+
+        while (true)
+        {
+            startQueued();
+
+            List mexIDs;
+            synchronized(this)
+            {
+                if (Thread.currentThread().isInterrupted())
+                    cancelled = true;
+                if (cancelled)
+                {
+                    // The cancellation has taken effect, so a later
+                    // call resumes.
+                    cancelled = false;
+                    return;
+                }
+                if (active.size() == 0)
+                    return;
+                mexIDs = new ArrayList(active.keySet());
+            }
+
+            if (deadline > 0 && System.currentTimeMillis() >= deadline)
+            {
+                abandonActive("Timed out waiting for the import");
+                return;
+            }
+
+            sleep(interval);
+
+            Map statuses;
+            try
+            {
+                statuses = manager.getRemoteImportStatus(mexIDs);
+                statusErrors = 0;
+            } catch (RuntimeException e) {
+                if (++statusErrors >= MAXIMUM_STATUS_ERRORS)
+                {
+                    abandonActive("Could not read import status: "+
+                                  e.getMessage());
+                    throw e;
+                }
+                statuses = null;
+            }
+
+            synchronized(this)
+            {
+                statusQueryCount++;
+            }
+
+            boolean progress = (statuses != null) &&
+                completeImports(mexIDs,statuses);
+
+            synchronized(this)
+            {
+                if (progress)
+                    interval = minimumInterval;
+                else
+                    interval = Math.min(interval*2,maximumInterval);
+            }
+        }
+    }
+
+    /**
+     * Starts queued imports until the maximum number are active.
+     */
+    private void startQueued()
+    {
+        while (true)
+        {
+            Import job;
+            synchronized(this)
+            {
+                if (cancelled || queued.size() == 0 ||
+                    active.size() >= maximumActive)
+                    return;
+                job = (Import) queued.removeFirst();
+            }
+
+            try
+            {
+                job.mexID = (job.dataset == null)?
+                    manager.startRemoteImport(job.fileIDs):
+                    manager.startRemoteImport(job.dataset,job.fileIDs);
+            } catch (RuntimeException e) {
+                synchronized(this)
+                {
+                    failedCount++;
+                }
+                listener.importFailed(-1,job.fileIDs,e.getMessage());
+                continue;
+            }
+
+            synchronized(this)
+            {
+                startedCount++;
+                active.put(new Integer(job.mexID),job);
+            }
+        }
+    }
+
+    /**
+     * Reports the imports which have completed, according to the
+     * statuses returned by a status query.  Returns whether any
+     * import completed.
+     */
+    private boolean completeImports(List mexIDs, Map statuses)
+    {
+        boolean progress = false;
+
+        Iterator it = mexIDs.iterator();
+        while (it.hasNext())
+        {
+            Integer mexID = (Integer) it.next();
+            ModuleExecution mex = (ModuleExecution) statuses.get(mexID);
+            if (mex == null)
+            {
+                // The data server does not know this ID, so the
+                // import will never be seen to complete.
+                Import missing;
+                synchronized(this)
+                {
+                    missing = (Import) active.get(mexID);
+                    if (missing == null ||
+                        ++missing.statusMisses < MAXIMUM_STATUS_MISSES)
+                        continue;
+                    active.remove(mexID);
+                }
+                progress = true;
+                fail(missing,"Import "+mexID+" is not known to the data server");
+                continue;
+            }
+
+            String status = mex.getStatus();
+            if (!"FINISHED".equals(status) && !"ERROR".equals(status))
+            {
+                synchronized(this)
+                {
+                    Import running = (Import) active.get(mexID);
+                    if (running != null)
+                        running.statusMisses = 0;
+                }
+                continue;
+            }
+
+            Import job;
+            synchronized(this)
+            {
+                job = (Import) active.remove(mexID);
+            }
+            progress = true;
+
+            if ("ERROR".equals(status))
+            {
+                fail(job,mex.getErrorMessage());
+                continue;
+            }
+
+            List images;
+            try
+            {
+                images = manager.getImportedImages(job.mexID,getImageSpec());
+            } catch (RuntimeException e) {
+                fail(job,e.getMessage());
+                continue;
+            }
+
+            synchronized(this)
+            {
+                finishedCount++;
+            }
+            listener.importFinished(job.mexID,job.fileIDs,images);
+        }
+
+        return progress;
+    }
+
+    private void fail(Import job, String message)
+    {
+        synchronized(this)
+        {
+            failedCount++;
+        }
+        listener.importFailed(job.mexID,job.fileIDs,message);
+    }
+
+    /**
+     * Reports each of the active imports as a failure, and stops
+     * tracking them.
+     */
+    private void abandonActive(String message)
+    {
+        List jobs;
+        synchronized(this)
+        {
+            jobs = new ArrayList(active.values());
+            active.clear();
+        }
+
+        Iterator it = jobs.iterator();
+        while (it.hasNext())
+            fail((Import) it.next(),message);
+    }
+
+    /**
+     * Waits for the specified number of milliseconds, returning early
+     * if {@link #cancel} is called.  If the calling thread is
+     * interrupted, the orchestrator is cancelled, and the thread's
+     * interrupted status is restored.
+     */
+    private synchronized void sleep(long millis)
+    {
+        long end = System.currentTimeMillis()+millis;
+        long remaining = millis;
+        while (!cancelled && remaining > 0)
+        {
+            try
+            {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+                return;
+            }
+            remaining = end-System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "RemoteImportOrchestrator ("+queued.size()+" queued, "+
+            active.size()+" active, "+finishedCount+" finished, "+
+            failedCount+" failed, "+statusQueryCount+" status queries)";
+    }
+
+    /**
+     * A single submitted import.
+     */
+    private static final class Import
+    {
+        final Dataset  dataset;
+        final List  fileIDs;
+        int  mexID = -1;
+
+        /** The number of consecutive status queries which omitted it. */
+        int  statusMisses;
+
+        Import(Dataset dataset, List fileIDs)
+        {
+            this.dataset = dataset;
+            this.fileIDs = fileIDs;
+        }
+    }
+}
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.LightSource;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class ArcDTO
     public ArcDTO() { super(); }
     public ArcDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ArcDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ArcDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Arc"; }
     public Class getDTOType() { return Arc.class; }
 
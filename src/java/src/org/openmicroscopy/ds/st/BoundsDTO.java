@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class BoundsDTO
     public BoundsDTO() { super(); }
     public BoundsDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(BoundsDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new BoundsDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Bounds"; }
     public Class getDTOType() { return Bounds.class; }
 
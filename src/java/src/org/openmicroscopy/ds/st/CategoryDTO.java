@@ -41,6 +41,8 @@ import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.CategoryGroup;
 import org.openmicroscopy.ds.st.Classification;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +53,14 @@ public class CategoryDTO
     public CategoryDTO() { super(); }
     public CategoryDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(CategoryDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new CategoryDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Category"; }
     public Class getDTOType() { return Category.class; }
 
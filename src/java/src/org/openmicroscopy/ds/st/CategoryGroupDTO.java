@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Category;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class CategoryGroupDTO
     public CategoryGroupDTO() { super(); }
     public CategoryGroupDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(CategoryGroupDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new CategoryGroupDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@CategoryGroup"; }
     public Class getDTOType() { return CategoryGroup.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Category;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class ClassificationDTO
     public ClassificationDTO() { super(); }
     public ClassificationDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ClassificationDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ClassificationDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Classification"; }
     public Class getDTOType() { return Classification.class; }
 
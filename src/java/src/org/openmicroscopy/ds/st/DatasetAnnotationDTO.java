@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class DatasetAnnotationDTO
     public DatasetAnnotationDTO() { super(); }
     public DatasetAnnotationDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(DatasetAnnotationDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new DatasetAnnotationDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@DatasetAnnotation"; }
     public Class getDTOType() { return DatasetAnnotation.class; }
 
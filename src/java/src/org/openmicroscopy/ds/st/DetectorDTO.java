@@ -41,6 +41,8 @@ import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Instrument;
 import org.openmicroscopy.ds.st.LogicalChannel;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +53,14 @@ public class DetectorDTO
     public DetectorDTO() { super(); }
     public DetectorDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(DetectorDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new DetectorDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Detector"; }
     public Class getDTOType() { return Detector.class; }
 
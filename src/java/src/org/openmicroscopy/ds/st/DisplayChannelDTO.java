@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.DisplayOptions;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class DisplayChannelDTO
     public DisplayChannelDTO() { super(); }
     public DisplayChannelDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(DisplayChannelDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new DisplayChannelDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@DisplayChannel"; }
     public Class getDTOType() { return DisplayChannel.class; }
 
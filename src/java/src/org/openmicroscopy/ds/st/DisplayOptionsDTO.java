@@ -42,6 +42,8 @@ import org.openmicroscopy.ds.st.DisplayChannel;
 import org.openmicroscopy.ds.st.DisplayROI;
 import org.openmicroscopy.ds.st.Pixels;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +54,14 @@ public class DisplayOptionsDTO
     public DisplayOptionsDTO() { super(); }
     public DisplayOptionsDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(DisplayOptionsDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new DisplayOptionsDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@DisplayOptions"; }
     public Class getDTOType() { return DisplayOptions.class; }
 
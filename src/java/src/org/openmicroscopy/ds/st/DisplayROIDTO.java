@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.DisplayOptions;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class DisplayROIDTO
     public DisplayROIDTO() { super(); }
     public DisplayROIDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(DisplayROIDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new DisplayROIDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@DisplayROI"; }
     public Class getDTOType() { return DisplayROI.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Filter;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class EmissionFilterDTO
     public EmissionFilterDTO() { super(); }
     public EmissionFilterDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(EmissionFilterDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new EmissionFilterDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@EmissionFilter"; }
     public Class getDTOType() { return EmissionFilter.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Filter;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class ExcitationFilterDTO
     public ExcitationFilterDTO() { super(); }
     public ExcitationFilterDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ExcitationFilterDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ExcitationFilterDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@ExcitationFilter"; }
     public Class getDTOType() { return ExcitationFilter.class; }
 
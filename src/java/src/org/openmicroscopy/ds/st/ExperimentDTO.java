@@ -41,6 +41,8 @@ import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Experimenter;
 import org.openmicroscopy.ds.st.ImageExperiment;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +53,14 @@ public class ExperimentDTO
     public ExperimentDTO() { super(); }
     public ExperimentDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ExperimentDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ExperimentDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Experiment"; }
     public Class getDTOType() { return Experiment.class; }
 
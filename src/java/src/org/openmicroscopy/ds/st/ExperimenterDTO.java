@@ -43,6 +43,8 @@ import org.openmicroscopy.ds.st.ExperimenterGroup;
 import org.openmicroscopy.ds.st.Group;
 import org.openmicroscopy.ds.st.RenderingSettings;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +55,14 @@ public class ExperimenterDTO
     public ExperimenterDTO() { super(); }
     public ExperimenterDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ExperimenterDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ExperimenterDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Experimenter"; }
     public Class getDTOType() { return Experimenter.class; }
 
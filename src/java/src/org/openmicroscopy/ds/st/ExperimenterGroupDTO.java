@@ -41,6 +41,8 @@ import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Experimenter;
 import org.openmicroscopy.ds.st.Group;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +53,14 @@ public class ExperimenterGroupDTO
     public ExperimenterGroupDTO() { super(); }
     public ExperimenterGroupDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ExperimenterGroupDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ExperimenterGroupDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@ExperimenterGroup"; }
     public Class getDTOType() { return ExperimenterGroup.class; }
 
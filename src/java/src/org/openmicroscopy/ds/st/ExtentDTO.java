@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class ExtentDTO
     public ExtentDTO() { super(); }
     public ExtentDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ExtentDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ExtentDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Extent"; }
     public Class getDTOType() { return Extent.class; }
 
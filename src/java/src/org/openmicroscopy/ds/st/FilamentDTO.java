@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.LightSource;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class FilamentDTO
     public FilamentDTO() { super(); }
     public FilamentDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(FilamentDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new FilamentDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Filament"; }
     public Class getDTOType() { return Filament.class; }
 
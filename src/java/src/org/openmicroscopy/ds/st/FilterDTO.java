@@ -46,6 +46,8 @@ import org.openmicroscopy.ds.st.Instrument;
 import org.openmicroscopy.ds.st.LogicalChannel;
 import org.openmicroscopy.ds.st.OTF;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -56,6 +58,14 @@ public class FilterDTO
     public FilterDTO() { super(); }
     public FilterDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(FilterDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new FilterDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Filter"; }
     public Class getDTOType() { return Filter.class; }
 
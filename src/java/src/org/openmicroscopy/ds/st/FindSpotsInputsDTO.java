@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class FindSpotsInputsDTO
     public FindSpotsInputsDTO() { super(); }
     public FindSpotsInputsDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(FindSpotsInputsDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new FindSpotsInputsDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@FindSpotsInputs"; }
     public Class getDTOType() { return FindSpotsInputs.class; }
 
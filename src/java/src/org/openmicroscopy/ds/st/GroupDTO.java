@@ -42,6 +42,8 @@ import org.openmicroscopy.ds.st.Experimenter;
 import org.openmicroscopy.ds.st.ExperimenterGroup;
 import org.openmicroscopy.ds.st.ImageGroup;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +54,14 @@ public class GroupDTO
     public GroupDTO() { super(); }
     public GroupDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(GroupDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new GroupDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Group"; }
     public Class getDTOType() { return Group.class; }
 
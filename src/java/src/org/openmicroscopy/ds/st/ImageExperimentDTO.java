@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Experiment;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class ImageExperimentDTO
     public ImageExperimentDTO() { super(); }
     public ImageExperimentDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ImageExperimentDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ImageExperimentDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@ImageExperiment"; }
     public Class getDTOType() { return ImageExperiment.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Group;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class ImageGroupDTO
     public ImageGroupDTO() { super(); }
     public ImageGroupDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ImageGroupDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ImageGroupDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@ImageGroup"; }
     public Class getDTOType() { return ImageGroup.class; }
 
@@ -41,6 +41,8 @@ import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Instrument;
 import org.openmicroscopy.ds.st.Objective;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +53,14 @@ public class ImageInstrumentDTO
     public ImageInstrumentDTO() { super(); }
     public ImageInstrumentDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ImageInstrumentDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ImageInstrumentDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@ImageInstrument"; }
     public Class getDTOType() { return ImageInstrument.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Plate;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class ImagePlateDTO
     public ImagePlateDTO() { super(); }
     public ImagePlateDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ImagePlateDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ImagePlateDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@ImagePlate"; }
     public Class getDTOType() { return ImagePlate.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class ImageTestSignatureDTO
     public ImageTestSignatureDTO() { super(); }
     public ImageTestSignatureDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ImageTestSignatureDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ImageTestSignatureDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@ImageTestSignature"; }
     public Class getDTOType() { return ImageTestSignature.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class ImagingEnvironmentDTO
     public ImagingEnvironmentDTO() { super(); }
     public ImagingEnvironmentDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ImagingEnvironmentDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ImagingEnvironmentDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@ImagingEnvironment"; }
     public Class getDTOType() { return ImagingEnvironment.class; }
 
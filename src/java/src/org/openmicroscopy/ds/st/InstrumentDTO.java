@@ -45,6 +45,8 @@ import org.openmicroscopy.ds.st.LightSource;
 import org.openmicroscopy.ds.st.OTF;
 import org.openmicroscopy.ds.st.Objective;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -55,6 +57,14 @@ public class InstrumentDTO
     public InstrumentDTO() { super(); }
     public InstrumentDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(InstrumentDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new InstrumentDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Instrument"; }
     public Class getDTOType() { return Instrument.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.LightSource;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class LaserDTO
     public LaserDTO() { super(); }
     public LaserDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(LaserDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new LaserDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Laser"; }
     public Class getDTOType() { return Laser.class; }
 
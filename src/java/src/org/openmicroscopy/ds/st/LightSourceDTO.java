@@ -44,6 +44,8 @@ import org.openmicroscopy.ds.st.Instrument;
 import org.openmicroscopy.ds.st.Laser;
 import org.openmicroscopy.ds.st.LogicalChannel;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -54,6 +56,14 @@ public class LightSourceDTO
     public LightSourceDTO() { super(); }
     public LightSourceDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(LightSourceDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new LightSourceDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@LightSource"; }
     public Class getDTOType() { return LightSource.class; }
 
@@ -44,6 +44,8 @@ import org.openmicroscopy.ds.st.LightSource;
 import org.openmicroscopy.ds.st.OTF;
 import org.openmicroscopy.ds.st.PixelChannelComponent;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -54,6 +56,14 @@ public class LogicalChannelDTO
     public LogicalChannelDTO() { super(); }
     public LogicalChannelDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(LogicalChannelDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new LogicalChannelDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@LogicalChannel"; }
     public Class getDTOType() { return LogicalChannel.class; }
 
@@ -44,6 +44,8 @@ import org.openmicroscopy.ds.st.LogicalChannel;
 import org.openmicroscopy.ds.st.Objective;
 import org.openmicroscopy.ds.st.Repository;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -54,6 +56,14 @@ public class OTFDTO
     public OTFDTO() { super(); }
     public OTFDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(OTFDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new OTFDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@OTF"; }
     public Class getDTOType() { return OTF.class; }
 
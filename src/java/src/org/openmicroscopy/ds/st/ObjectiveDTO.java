@@ -42,6 +42,8 @@ import org.openmicroscopy.ds.st.ImageInstrument;
 import org.openmicroscopy.ds.st.Instrument;
 import org.openmicroscopy.ds.st.OTF;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +54,14 @@ public class ObjectiveDTO
     public ObjectiveDTO() { super(); }
     public ObjectiveDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ObjectiveDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ObjectiveDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Objective"; }
     public Class getDTOType() { return Objective.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Repository;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class OriginalFileDTO
     public OriginalFileDTO() { super(); }
     public OriginalFileDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(OriginalFileDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new OriginalFileDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@OriginalFile"; }
     public Class getDTOType() { return OriginalFile.class; }
 
@@ -41,6 +41,8 @@ import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.LogicalChannel;
 import org.openmicroscopy.ds.st.Pixels;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +53,14 @@ public class PixelChannelComponentDTO
     public PixelChannelComponentDTO() { super(); }
     public PixelChannelComponentDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PixelChannelComponentDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PixelChannelComponentDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PixelChannelComponent"; }
     public Class getDTOType() { return PixelChannelComponent.class; }
 
@@ -42,6 +42,8 @@ import org.openmicroscopy.ds.st.DisplayOptions;
 import org.openmicroscopy.ds.st.PixelChannelComponent;
 import org.openmicroscopy.ds.st.Repository;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +54,14 @@ public class PixelsDTO
     public PixelsDTO() { super(); }
     public PixelsDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PixelsDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PixelsDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Pixels"; }
     public Class getDTOType() { return Pixels.class; }
 
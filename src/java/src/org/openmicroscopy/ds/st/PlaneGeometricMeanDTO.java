@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class PlaneGeometricMeanDTO
     public PlaneGeometricMeanDTO() { super(); }
     public PlaneGeometricMeanDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlaneGeometricMeanDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlaneGeometricMeanDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PlaneGeometricMean"; }
     public Class getDTOType() { return PlaneGeometricMean.class; }
 
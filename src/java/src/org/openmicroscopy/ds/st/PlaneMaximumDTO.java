@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class PlaneMaximumDTO
     public PlaneMaximumDTO() { super(); }
     public PlaneMaximumDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlaneMaximumDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlaneMaximumDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PlaneMaximum"; }
     public Class getDTOType() { return PlaneMaximum.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class PlaneSum_XiDTO
     public PlaneSum_XiDTO() { super(); }
     public PlaneSum_XiDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlaneSum_XiDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlaneSum_XiDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PlaneSum_Xi"; }
     public Class getDTOType() { return PlaneSum_Xi.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class PlaneSum_YiDTO
     public PlaneSum_YiDTO() { super(); }
     public PlaneSum_YiDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlaneSum_YiDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlaneSum_YiDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PlaneSum_Yi"; }
     public Class getDTOType() { return PlaneSum_Yi.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class PlaneSum_ZiDTO
     public PlaneSum_ZiDTO() { super(); }
     public PlaneSum_ZiDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlaneSum_ZiDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlaneSum_ZiDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PlaneSum_Zi"; }
     public Class getDTOType() { return PlaneSum_Zi.class; }
 
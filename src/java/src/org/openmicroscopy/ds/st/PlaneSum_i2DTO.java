@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class PlaneSum_i2DTO
     public PlaneSum_i2DTO() { super(); }
     public PlaneSum_i2DTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlaneSum_i2DTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlaneSum_i2DTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PlaneSum_i2"; }
     public Class getDTOType() { return PlaneSum_i2.class; }
 
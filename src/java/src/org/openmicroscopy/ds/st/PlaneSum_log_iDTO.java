@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class PlaneSum_log_iDTO
     public PlaneSum_log_iDTO() { super(); }
     public PlaneSum_log_iDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlaneSum_log_iDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlaneSum_log_iDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PlaneSum_log_i"; }
     public Class getDTOType() { return PlaneSum_log_i.class; }
 
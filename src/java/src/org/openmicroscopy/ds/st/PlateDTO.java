@@ -42,6 +42,8 @@ import org.openmicroscopy.ds.st.ImagePlate;
 import org.openmicroscopy.ds.st.PlateScreen;
 import org.openmicroscopy.ds.st.Screen;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -52,6 +54,14 @@ public class PlateDTO
     public PlateDTO() { super(); }
     public PlateDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlateDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlateDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Plate"; }
     public Class getDTOType() { return Plate.class; }
 
@@ -41,6 +41,8 @@ import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Plate;
 import org.openmicroscopy.ds.st.Screen;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +53,14 @@ public class PlateScreenDTO
     public PlateScreenDTO() { super(); }
     public PlateScreenDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(PlateScreenDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new PlateScreenDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@PlateScreen"; }
     public Class getDTOType() { return PlateScreen.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Experimenter;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class RenderingSettingsDTO
     public RenderingSettingsDTO() { super(); }
     public RenderingSettingsDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(RenderingSettingsDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new RenderingSettingsDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@RenderingSettings"; }
     public Class getDTOType() { return RenderingSettings.class; }
 
@@ -43,6 +43,8 @@ import org.openmicroscopy.ds.st.OriginalFile;
 import org.openmicroscopy.ds.st.Pixels;
 import org.openmicroscopy.ds.st.Thumbnail;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +55,14 @@ public class RepositoryDTO
     public RepositoryDTO() { super(); }
     public RepositoryDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(RepositoryDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new RepositoryDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Repository"; }
     public Class getDTOType() { return Repository.class; }
 
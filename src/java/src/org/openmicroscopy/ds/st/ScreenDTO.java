@@ -41,6 +41,8 @@ import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Plate;
 import org.openmicroscopy.ds.st.PlateScreen;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +53,14 @@ public class ScreenDTO
     public ScreenDTO() { super(); }
     public ScreenDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ScreenDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ScreenDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Screen"; }
     public Class getDTOType() { return Screen.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class StackGeometricSigmaDTO
     public StackGeometricSigmaDTO() { super(); }
     public StackGeometricSigmaDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(StackGeometricSigmaDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new StackGeometricSigmaDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@StackGeometricSigma"; }
     public Class getDTOType() { return StackGeometricSigma.class; }
 
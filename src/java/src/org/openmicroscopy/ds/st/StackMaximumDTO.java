@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class StackMaximumDTO
     public StackMaximumDTO() { super(); }
     public StackMaximumDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(StackMaximumDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new StackMaximumDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@StackMaximum"; }
     public Class getDTOType() { return StackMaximum.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class StackMinimumDTO
     public StackMinimumDTO() { super(); }
     public StackMinimumDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(StackMinimumDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new StackMinimumDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@StackMinimum"; }
     public Class getDTOType() { return StackMinimum.class; }
 
@@ -39,6 +39,8 @@ package org.openmicroscopy.ds.st;
 
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +51,14 @@ public class ThresholdDTO
     public ThresholdDTO() { super(); }
     public ThresholdDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ThresholdDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ThresholdDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Threshold"; }
     public Class getDTOType() { return Threshold.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Repository;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class ThumbnailDTO
     public ThumbnailDTO() { super(); }
     public ThumbnailDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(ThumbnailDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ThumbnailDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Thumbnail"; }
     public Class getDTOType() { return Thumbnail.class; }
 
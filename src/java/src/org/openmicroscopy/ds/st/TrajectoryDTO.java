@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.TrajectoryEntry;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class TrajectoryDTO
     public TrajectoryDTO() { super(); }
     public TrajectoryDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(TrajectoryDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new TrajectoryDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@Trajectory"; }
     public Class getDTOType() { return Trajectory.class; }
 
@@ -40,6 +40,8 @@ package org.openmicroscopy.ds.st;
 import org.openmicroscopy.ds.dto.Attribute;
 import org.openmicroscopy.ds.st.Trajectory;
 import org.openmicroscopy.ds.dto.AttributeDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +52,14 @@ public class TrajectoryEntryDTO
     public TrajectoryEntryDTO() { super(); }
     public TrajectoryEntryDTO(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(TrajectoryEntryDTO.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new TrajectoryEntryDTO(); }
+            });
+    }
+
     public String getDTOTypeName() { return "@TrajectoryEntry"; }
     public Class getDTOType() { return TrajectoryEntry.class; }
 
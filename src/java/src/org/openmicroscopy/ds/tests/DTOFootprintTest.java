@@ -0,0 +1,145 @@
+/*
+ * org.openmicroscopy.ds.tests.DTOFootprintTest
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.tests;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.openmicroscopy.ds.Instantiator;
+import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.st.PlaneMean;
+
+/**
+ * A test program for evaluating the memory used by DTO objects.  It
+ * instantiates a number of <code>PlaneMean</code> attributes, first
+ * with the compact backing map and then with a {@link
+ * java.util.HashMap}, and reports the heap used by each set of
+ * objects and the time taken to read all of their fields.  No data
+ * server is needed.
+ *
+ * <p>Usage: <code>DTOFootprintTest [rows]</code></p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class DTOFootprintTest
+{
+    private static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++)
+        {
+            System.gc();
+            try
+            {
+                Thread.sleep(100);
+            } catch (InterruptedException e) { }
+        }
+        return runtime.totalMemory()-runtime.freeMemory();
+    }
+
+    private static List instantiate(Instantiator instantiator, int rows)
+    {
+        List list = new ArrayList(rows);
+        for (int i = 0; i < rows; i++)
+        {
+            Hashtable map = new Hashtable();
+            map.put("id",new Integer(i));
+            map.put("Mean",new Double(i/7.0));
+            map.put("TheZ",new Integer(i % 20));
+            map.put("TheC",new Integer(i % 3));
+            map.put("TheT",new Integer(i % 100));
+            map.put("pixels","REF:Pixels:1");
+            map.put("module_execution","REF:ModuleExecution:1");
+            list.add(instantiator.instantiateDTO("PlaneMean",map));
+        }
+        return list;
+    }
+
+    private static long timeAccess(List list)
+    {
+        long start = System.currentTimeMillis();
+        double total = 0;
+        for (int i = 0; i < list.size(); i++)
+        {
+            PlaneMean mean = (PlaneMean) list.get(i);
+            total += mean.getID()+mean.getMean().floatValue()+
+                mean.getTheZ().intValue()+mean.getTheC().intValue()+
+                mean.getTheT().intValue();
+        }
+        if (total < 0)
+            System.err.println(total);
+        return System.currentTimeMillis()-start;
+    }
+
+    private static void measure(String label, int rows)
+    {
+        Instantiator instantiator = new Instantiator();
+
+        long before = usedMemory();
+        List list = instantiate(instantiator,rows);
+        long after = usedMemory();
+
+        timeAccess(list);
+        long time = timeAccess(list);
+
+        System.err.println(label+": "+((after-before)/rows)+
+                           " bytes per object, "+time+" ms to read "+
+                           rows+" objects");
+        if (list.size() != rows)
+            System.err.println("Lost objects");
+    }
+
+    public static void main(String[] args)
+    {
+        int rows = (args.length > 0)? Integer.parseInt(args[0]): 200000;
+
+        MappedDTO.setCompactStorage(true);
+        measure("Compact",rows);
+        MappedDTO.setCompactStorage(false);
+        measure("HashMap",rows);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * org.openmicroscopy.ds.tests.InstantiationTimingTest
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.tests;
+
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.openmicroscopy.ds.Instantiator;
+import org.openmicroscopy.ds.dto.DatasetDTO;
+import org.openmicroscopy.ds.dto.Image;
+import org.openmicroscopy.ds.dto.ImageDTO;
+import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.MappedDTOList;
+import org.openmicroscopy.ds.st.ExperimenterDTO;
+
+/**
+ * A test program for evaluating the performance of DTO
+ * instantiation.  It builds a <code>retrieveList</code> result of the
+ * same shape that the XML-RPC layer would return, and times how long
+ * it takes to turn it into DTO objects, both via the {@link
+ * Instantiator} and via the reflective instantiation which it
+ * replaced.  Both paths create the same objects and read each
+ * image's owner and datasets through its accessors, so that only the
+ * way in which each object is created differs.  No data server is
+ * needed.
+ *
+ * <p>Usage: <code>InstantiationTimingTest [rows [iterations]]</code></p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class InstantiationTimingTest
+{
+    private static List createPayload(int rows)
+    {
+        Vector list = new Vector(rows);
+        for (int i = 0; i < rows; i++)
+        {
+            Hashtable owner = new Hashtable();
+            owner.put("id",new Integer(i % 50));
+            owner.put("FirstName","First");
+            owner.put("LastName","Last");
+
+            Vector datasets = new Vector(2);
+            for (int j = 0; j < 2; j++)
+            {
+                Hashtable dataset = new Hashtable();
+                dataset.put("id",new Integer(i*2+j));
+                dataset.put("name","Dataset "+j);
+                datasets.add(dataset);
+            }
+
+            Hashtable image = new Hashtable();
+            image.put("id",new Integer(i));
+            image.put("name","Image "+i);
+            image.put("owner",owner);
+            image.put("datasets",datasets);
+            list.add(image);
+        }
+        return list;
+    }
+
+    private static long timeInstantiator(Instantiator instantiator,
+                                         List payload)
+    {
+        long start = System.currentTimeMillis();
+        List images = instantiator.instantiateList(Image.class,payload);
+        for (int i = 0; i < images.size(); i++)
+        {
+            Image image = (Image) images.get(i);
+            image.getOwner();
+            image.getDatasets();
+        }
+        return System.currentTimeMillis()-start;
+    }
+
+    /**
+     * Instantiates the same objects as the {@link Instantiator} and
+     * the accessors of {@link ImageDTO} do, but creates each object
+     * by reflection.  The children are stored in the image's own map,
+     * just as the accessors store them, so that calling the
+     * accessors afterwards returns them without parsing them again.
+     */
+    private static long timeReflection(List payload)
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < payload.size(); i++)
+        {
+            MappedDTO image = (MappedDTO) ImageDTO.class.newInstance();
+            image.setMap((Map) payload.get(i));
+            payload.set(i,image);
+        }
+
+        for (int i = 0; i < payload.size(); i++)
+        {
+            ImageDTO image = (ImageDTO) payload.get(i);
+            Map map = image.getMap();
+
+            MappedDTO owner = (MappedDTO) ExperimenterDTO.class.newInstance();
+            owner.setMap((Map) map.get("owner"));
+            map.put("owner",owner);
+
+            List datasets = (List) map.get("datasets");
+            MappedDTOList list = new MappedDTOList();
+            for (int j = 0; j < datasets.size(); j++)
+            {
+                MappedDTO dataset = (MappedDTO) DatasetDTO.class.newInstance();
+                dataset.setMap((Map) datasets.get(j));
+                list.add(dataset);
+            }
+            map.put("datasets",list);
+
+            image.getOwner();
+            image.getDatasets();
+        }
+        return System.currentTimeMillis()-start;
+    }
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        int rows = (args.length > 0)? Integer.parseInt(args[0]): 100000;
+        int iterations = (args.length > 1)? Integer.parseInt(args[1]): 10;
+
+        Instantiator instantiator = new Instantiator();
+
+        System.err.println("Instantiating "+rows+" images, "+
+                           iterations+" times");
+        for (int i = 0; i < iterations; i++)
+        {
+            long reflection = timeReflection(createPayload(rows));
+            long factories = timeInstantiator(instantiator,
+                                              createPayload(rows));
+            System.err.println("Reflection: "+reflection+" ms   "+
+                               "Factories: "+factories+" ms");
+        }
+    }
+}
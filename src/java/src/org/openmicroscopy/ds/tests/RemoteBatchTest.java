@@ -0,0 +1,362 @@
+/*
+ * org.openmicroscopy.ds.tests.RemoteBatchTest
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+package org.openmicroscopy.ds.tests;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Vector;
+
+import org.openmicroscopy.ds.BatchResult;
+import org.openmicroscopy.ds.RemoteAuthenticationException;
+import org.openmicroscopy.ds.RemoteBatch;
+import org.openmicroscopy.ds.RemoteConnectionException;
+import org.openmicroscopy.ds.RemoteServerErrorException;
+import org.openmicroscopy.ds.XmlRpcCaller;
+
+/**
+ * A test program for the {@link RemoteBatch} class and the
+ * <code>system.multicall</code> support of the {@link XmlRpcCaller}.
+ * The batches are sent through a caller which answers each XML-RPC
+ * request itself instead of contacting a data server.  It checks
+ * that an error in one call of a batch is reported only by that
+ * call, that a server without multicall support falls back to
+ * single calls, that large batches are split into requests of the
+ * maximum size, that a request which fails outright fails only the
+ * calls it contained, that calls left without a result are failed,
+ * and that <code>executeAndCheck</code> throws the first error.  No
+ * data server is needed; the program exits with a non-zero status if
+ * a check fails.
+ *
+ * <p>The scripted server knows three methods: <code>echo</code>
+ * returns its parameter, <code>fail</code> returns a fault, and
+ * <code>stale</code> returns a stale session fault.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class RemoteBatchTest
+{
+    /**
+     * A caller which answers each XML-RPC request itself, and records
+     * the name of each request it receives.
+     */
+    private static class ScriptedCaller
+        extends XmlRpcCaller
+    {
+        List  requests = new ArrayList();
+        boolean  multicall = true;
+        int  disconnectAt = -1;
+
+        ScriptedCaller()
+            throws Exception
+        {
+            super(new URL("http://localhost:1/"));
+            setSessionKey("session");
+        }
+
+        protected Object execute(String method, Vector params)
+            throws Exception
+        {
+            requests.add(method);
+            if (requests.size()-1 == disconnectAt)
+                throw new IOException("Connection refused");
+
+            if (method.equals("dispatch"))
+                return answer(params);
+
+            if (!method.equals("system.multicall"))
+                throw new Exception("no such method "+method);
+            if (!multicall)
+                throw new Exception("no such method system.multicall");
+
+            Vector calls = (Vector) params.elementAt(0);
+            Vector results = new Vector();
+            for (int i = 0; i < calls.size(); i++)
+            {
+                Hashtable call = (Hashtable) calls.elementAt(i);
+                try
+                {
+                    Vector result = new Vector();
+                    result.addElement(answer((Vector) call.get("params")));
+                    results.addElement(result);
+                } catch (Exception e) {
+                    Hashtable fault = new Hashtable();
+                    fault.put("faultCode",new Integer(1));
+                    fault.put("faultString",e.getMessage());
+                    results.addElement(fault);
+                }
+            }
+            return results;
+        }
+
+        /**
+         * Answers a call to the <code>dispatch</code> procedure,
+         * whose parameters are the session key, the method name and
+         * the method's own parameters.
+         */
+        private Object answer(Vector params)
+            throws Exception
+        {
+            String method = (String) params.elementAt(1);
+            if (method.equals("echo"))
+                return params.elementAt(2);
+            if (method.equals("stale"))
+                throw new Exception("STALE SESSION");
+            throw new Exception("Error calling "+method);
+        }
+
+        int count(String method)
+        {
+            int count = 0;
+            for (int i = 0; i < requests.size(); i++)
+                if (requests.get(i).equals(method))
+                    count++;
+            return count;
+        }
+    }
+
+    /**
+     * A caller which only completes the first call of each batch.
+     */
+    private static class ForgetfulCaller
+        extends ScriptedCaller
+    {
+        ForgetfulCaller()
+            throws Exception
+        {
+            super();
+        }
+
+        public void dispatchBatch(List calls)
+        {
+            BatchResult first = (BatchResult) calls.get(0);
+            first.complete(dispatch(first.getMethod(),first.getParams()));
+        }
+    }
+
+    private static int failures = 0;
+
+    private static void check(boolean condition, String message)
+    {
+        if (condition)
+        {
+            System.out.println("ok      "+message);
+        } else {
+            System.out.println("FAILED  "+message);
+            failures++;
+        }
+    }
+
+    private static BatchResult echo(RemoteBatch batch, int value)
+    {
+        return batch.dispatch("echo",new Object[] {new Integer(value)});
+    }
+
+    private static boolean returns(BatchResult result, int value)
+    {
+        return result.isDone() && !result.isFailed() &&
+            result.getInteger().intValue() == value;
+    }
+
+    private static boolean fails(BatchResult result, Class exceptionClass)
+    {
+        return result.isDone() && result.isFailed() &&
+            exceptionClass.isInstance(result.getException());
+    }
+
+    private static void testPartialFailure()
+        throws Exception
+    {
+        ScriptedCaller caller = new ScriptedCaller();
+        RemoteBatch batch = new RemoteBatch(caller);
+
+        BatchResult first = echo(batch,1);
+        BatchResult failed = batch.dispatch("fail",null);
+        BatchResult stale = batch.dispatch("stale",null);
+        BatchResult last = echo(batch,4);
+        batch.execute();
+
+        check(caller.requests.size() == 1 &&
+              caller.count("system.multicall") == 1,
+              "a batch is sent as a single multicall request");
+        check(returns(first,1) && returns(last,4),
+              "the calls around a failed call succeed");
+        check(fails(failed,RemoteServerErrorException.class) &&
+              failed.getException().getMessage().equals("Error calling fail"),
+              "a fault is reported by its own call");
+        check(fails(stale,RemoteAuthenticationException.class),
+              "a stale session fault is an authentication error");
+        check(batch.getPendingCount() == 0,
+              "an executed batch has no pending calls");
+    }
+
+    private static void testFallback()
+        throws Exception
+    {
+        ScriptedCaller caller = new ScriptedCaller();
+        caller.multicall = false;
+        RemoteBatch batch = new RemoteBatch(caller);
+
+        BatchResult first = echo(batch,1);
+        BatchResult failed = batch.dispatch("fail",null);
+        BatchResult last = echo(batch,3);
+        batch.execute();
+
+        check(!caller.isMulticallSupported(),
+              "an unsupported multicall is remembered");
+        check(caller.count("dispatch") == 3,
+              "the calls are sent one at a time instead");
+        check(returns(first,1) && returns(last,3) &&
+              fails(failed,RemoteServerErrorException.class),
+              "single calls still fail independently");
+
+        caller.requests.clear();
+        echo(batch,5);
+        echo(batch,6);
+        batch.execute();
+        check(caller.count("system.multicall") == 0,
+              "later batches do not try multicall again");
+    }
+
+    private static void testChunks()
+        throws Exception
+    {
+        ScriptedCaller caller = new ScriptedCaller();
+        RemoteBatch batch = new RemoteBatch(caller,2);
+
+        BatchResult[] results = new BatchResult[5];
+        for (int i = 0; i < results.length; i++)
+            results[i] = echo(batch,i);
+        batch.execute();
+
+        check(caller.count("system.multicall") == 2 &&
+              caller.count("dispatch") == 1,
+              "five calls are sent as requests of at most two calls");
+        boolean all = true;
+        for (int i = 0; i < results.length; i++)
+            all &= returns(results[i],i);
+        check(all,"every call of a split batch gets its own result");
+    }
+
+    private static void testConnectionFailure()
+        throws Exception
+    {
+        ScriptedCaller caller = new ScriptedCaller();
+        caller.disconnectAt = 0;
+        RemoteBatch batch = new RemoteBatch(caller,2);
+
+        BatchResult first = echo(batch,1);
+        BatchResult second = echo(batch,2);
+        BatchResult third = echo(batch,3);
+        BatchResult fourth = echo(batch,4);
+        batch.execute();
+
+        check(fails(first,RemoteConnectionException.class) &&
+              fails(second,RemoteConnectionException.class),
+              "a request which cannot be sent fails all of its calls");
+        check(returns(third,3) && returns(fourth,4),
+              "the next request of the batch is still sent");
+    }
+
+    private static void testUnansweredCalls()
+        throws Exception
+    {
+        ForgetfulCaller caller = new ForgetfulCaller();
+        RemoteBatch batch = new RemoteBatch(caller);
+
+        BatchResult first = echo(batch,1);
+        BatchResult second = echo(batch,2);
+        batch.execute();
+
+        check(returns(first,1),"an answered call succeeds");
+        check(fails(second,RemoteServerErrorException.class) &&
+              second.getException().getMessage().
+              startsWith("No result was returned"),
+              "an unanswered call fails instead of staying pending");
+    }
+
+    private static void testExecuteAndCheck()
+        throws Exception
+    {
+        ScriptedCaller caller = new ScriptedCaller();
+        RemoteBatch batch = new RemoteBatch(caller);
+
+        BatchResult first = echo(batch,1);
+        BatchResult failed = batch.dispatch("fail",null);
+        batch.dispatch("stale",null);
+
+        RuntimeException thrown = null;
+        try
+        {
+            batch.executeAndCheck();
+        } catch (RuntimeException e) {
+            thrown = e;
+        }
+        check(thrown != null && thrown == failed.getException(),
+              "executeAndCheck throws the first error");
+        check(returns(first,1),
+              "executeAndCheck still executes the other calls");
+    }
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        testPartialFailure();
+        testFallback();
+        testChunks();
+        testConnectionFailure();
+        testUnansweredCalls();
+        testExecuteAndCheck();
+
+        if (failures > 0)
+        {
+            System.out.println(failures+" check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+}
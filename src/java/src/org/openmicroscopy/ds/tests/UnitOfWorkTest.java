@@ -0,0 +1,239 @@
+/*
+ * org.openmicroscopy.ds.tests.UnitOfWorkTest
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.ds.tests;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.openmicroscopy.ds.DataException;
+import org.openmicroscopy.ds.DataFactory;
+import org.openmicroscopy.ds.UnitOfWork;
+import org.openmicroscopy.ds.dto.DatasetDTO;
+import org.openmicroscopy.ds.dto.MappedDTO;
+
+/**
+ * A test program for the {@link UnitOfWork} class.  It saves the
+ * marked objects with a factory which records each
+ * <code>updateObjects</code> call instead of contacting a data
+ * server, and which rejects a chunk that refers to a new object
+ * which has not been saved, as the data server would.  It checks
+ * that marking is deduplicated, that a long chain of new objects is
+ * saved referents first, and that an automatic flush waits for the
+ * new objects which the marked ones refer to.  No data server is
+ * needed; the program exits with a non-zero status if a check
+ * fails.
+ *
+ * <p>Usage: <code>UnitOfWorkTest [chainLength]</code></p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class UnitOfWorkTest
+{
+    /**
+     * A factory which records the objects saved by each
+     * <code>updateObjects</code> call, and gives the new ones IDs.
+     */
+    private static class RecordingFactory
+        extends DataFactory
+    {
+        List  calls = new ArrayList();
+        int  nextID = 1;
+
+        public void updateList(List list)
+        {
+            Map saved = new IdentityHashMap();
+            for (int i = 0; i < list.size(); i++)
+            {
+                MappedDTO dto = (MappedDTO) list.get(i);
+                Iterator it = dto.getMap().values().iterator();
+                while (it.hasNext())
+                {
+                    Object value = it.next();
+                    if (value instanceof MappedDTO &&
+                        ((MappedDTO) value).isNew() &&
+                        !saved.containsKey(value))
+                        throw new DataException("Object refers to an unsaved new object");
+                }
+                saved.put(dto,dto);
+            }
+
+            for (int i = 0; i < list.size(); i++)
+            {
+                MappedDTO dto = (MappedDTO) list.get(i);
+                if (dto.isNew())
+                {
+                    dto.getMap().put("id",new Integer(nextID++));
+                    dto.setNew(false);
+                }
+            }
+            calls.add(new ArrayList(list));
+        }
+    }
+
+    private static int failures = 0;
+
+    private static void check(boolean condition, String message)
+    {
+        if (condition)
+        {
+            System.out.println("ok      "+message);
+        } else {
+            System.out.println("FAILED  "+message);
+            failures++;
+        }
+    }
+
+    private static DatasetDTO newDataset(String name, MappedDTO parent)
+    {
+        DatasetDTO dto = new DatasetDTO();
+        dto.setNew(true);
+        dto.setName(name);
+        if (parent != null)
+            dto.getMap().put("parent",parent);
+        return dto;
+    }
+
+    private static void testDeduplication()
+    {
+        RecordingFactory factory = new RecordingFactory();
+        UnitOfWork work = new UnitOfWork(factory);
+
+        DatasetDTO a = newDataset("a",null);
+        work.mark(a);
+        work.mark(a);
+        work.mark(a);
+        check(work.getMarkedCount() == 1,"marking an object twice has no effect");
+
+        work.flush();
+        check(factory.calls.size() == 1 &&
+              ((List) factory.calls.get(0)).size() == 1,
+              "a deduplicated object is saved once");
+        check(work.getMarkedCount() == 0,"a flush unmarks the saved objects");
+    }
+
+    private static void testLongChain(int length)
+    {
+        RecordingFactory factory = new RecordingFactory();
+        UnitOfWork work = new UnitOfWork(factory);
+        work.setChunkSize(1000);
+
+        // Build the chain so that each object refers to the one
+        // created before it, and mark them newest first, so that
+        // every object is marked before the object it refers to.
+        DatasetDTO[] chain = new DatasetDTO[length];
+        for (int i = 0; i < length; i++)
+            chain[i] = newDataset("d"+i,(i == 0)? null: chain[i-1]);
+        for (int i = length-1; i >= 0; i--)
+            work.mark(chain[i]);
+
+        boolean saved = false;
+        try
+        {
+            work.flush();
+            saved = true;
+        } catch (StackOverflowError e) {
+            // Reported below
+        } catch (DataException e) {
+            // Reported below
+        }
+        check(saved,"a chain of "+length+" new objects is saved");
+
+        int total = 0;
+        for (int i = 0; i < factory.calls.size(); i++)
+            total += ((List) factory.calls.get(i)).size();
+        check(total == length,"every object in the chain is saved once");
+        check(factory.calls.size() == (length+999)/1000,
+              "the chain is saved in chunks of 1000");
+    }
+
+    private static void testDeferredAutoFlush()
+    {
+        RecordingFactory factory = new RecordingFactory();
+        UnitOfWork work = new UnitOfWork(factory);
+        work.setAutoFlushThreshold(2);
+
+        DatasetDTO referent = newDataset("referent",null);
+        DatasetDTO referrer = newDataset("referrer",referent);
+        DatasetDTO other = newDataset("other",null);
+
+        work.mark(referrer);
+        boolean deferred = false;
+        try
+        {
+            work.mark(other);
+            deferred = (factory.calls.size() == 0);
+        } catch (DataException e) {
+            // Reported below
+        }
+        check(deferred,"the automatic flush waits for an unmarked referent");
+
+        work.mark(referent);
+        check(factory.calls.size() == 1,
+              "the automatic flush happens once the referent is marked");
+        List saved = (List) factory.calls.get(0);
+        check(saved.indexOf(referent) < saved.indexOf(referrer),
+              "the referent is saved before its referrer");
+    }
+
+    public static void main(String[] args)
+    {
+        int length = (args.length > 0)? Integer.parseInt(args[0]): 100000;
+
+        testDeduplication();
+        testLongChain(length);
+        testDeferredAutoFlush();
+
+        if (failures > 0)
+        {
+            System.out.println(failures+" check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+}
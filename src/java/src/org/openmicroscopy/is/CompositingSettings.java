@@ -244,6 +244,45 @@ public class CompositingSettings
         this.theT = theT;
     }
 
+    /**
+     * Creates a <code>CompositingSettings</code> instance which is a
+     * copy of an existing one.
+     */
+    public CompositingSettings(CompositingSettings settings)
+    {
+        super();
+        this.theZ = settings.theZ;
+        this.theT = settings.theT;
+        this.resize = settings.resize;
+        this.sizeX = settings.sizeX;
+        this.sizeY = settings.sizeY;
+        this.levelBasis = settings.levelBasis;
+
+        this.grayChannelOn = settings.grayChannelOn;
+        this.grayChannel = settings.grayChannel;
+        this.grayBlackLevel = settings.grayBlackLevel;
+        this.grayWhiteLevel = settings.grayWhiteLevel;
+        this.grayGamma = settings.grayGamma;
+
+        this.redChannelOn = settings.redChannelOn;
+        this.redChannel = settings.redChannel;
+        this.redBlackLevel = settings.redBlackLevel;
+        this.redWhiteLevel = settings.redWhiteLevel;
+        this.redGamma = settings.redGamma;
+
+        this.greenChannelOn = settings.greenChannelOn;
+        this.greenChannel = settings.greenChannel;
+        this.greenBlackLevel = settings.greenBlackLevel;
+        this.greenWhiteLevel = settings.greenWhiteLevel;
+        this.greenGamma = settings.greenGamma;
+
+        this.blueChannelOn = settings.blueChannelOn;
+        this.blueChannel = settings.blueChannel;
+        this.blueBlackLevel = settings.blueBlackLevel;
+        this.blueWhiteLevel = settings.blueWhiteLevel;
+        this.blueGamma = settings.blueGamma;
+    }
+
     public static CompositingSettings
     createDefaultPGISettings(int sizeZ, int sizeC, int sizeT)
     {
@@ -318,6 +357,9 @@ public class CompositingSettings
 
     public boolean isResized() { return resize; }
 
+    public int getSizeX() { return sizeX; }
+    public int getSizeY() { return sizeY; }
+
     public String getSizeSpec()
     {
         return
@@ -404,6 +446,26 @@ public class CompositingSettings
     public boolean isGreenChannelOn() { return greenChannelOn; }
     public boolean isBlueChannelOn() { return blueChannelOn; }
 
+    public int getGrayChannel() { return grayChannel; }
+    public float getGrayBlackLevel() { return grayBlackLevel; }
+    public float getGrayWhiteLevel() { return grayWhiteLevel; }
+    public float getGrayGamma() { return grayGamma; }
+
+    public int getRedChannel() { return redChannel; }
+    public float getRedBlackLevel() { return redBlackLevel; }
+    public float getRedWhiteLevel() { return redWhiteLevel; }
+    public float getRedGamma() { return redGamma; }
+
+    public int getGreenChannel() { return greenChannel; }
+    public float getGreenBlackLevel() { return greenBlackLevel; }
+    public float getGreenWhiteLevel() { return greenWhiteLevel; }
+    public float getGreenGamma() { return greenGamma; }
+
+    public int getBlueChannel() { return blueChannel; }
+    public float getBlueBlackLevel() { return blueBlackLevel; }
+    public float getBlueWhiteLevel() { return blueWhiteLevel; }
+    public float getBlueGamma() { return blueGamma; }
+
     public String getGrayChannelSpec()
     {
         return
@@ -439,4 +501,104 @@ public class CompositingSettings
             Float.toString(blueWhiteLevel)+","+
             Float.toString(blueGamma);
     }
+
+    /**
+     * Returns whether these settings would produce the same image as
+     * another set of settings.  Only the values which are sent to the
+     * image server are compared; the size of an image which is not
+     * resized, and the channel and levels of an inactive channel, are
+     * ignored.
+     */
+    public boolean equals(Object o)
+    {
+        if (o == this) return true;
+        if (!(o instanceof CompositingSettings)) return false;
+        CompositingSettings cs = (CompositingSettings) o;
+
+        if (theZ != cs.theZ || theT != cs.theT ||
+            levelBasis != cs.levelBasis || resize != cs.resize)
+            return false;
+        if (resize && (sizeX != cs.sizeX || sizeY != cs.sizeY))
+            return false;
+
+        if (grayChannelOn != cs.grayChannelOn ||
+            redChannelOn != cs.redChannelOn ||
+            greenChannelOn != cs.greenChannelOn ||
+            blueChannelOn != cs.blueChannelOn)
+            return false;
+
+        if (grayChannelOn &&
+            !sameChannel(grayChannel,grayBlackLevel,
+                         grayWhiteLevel,grayGamma,
+                         cs.grayChannel,cs.grayBlackLevel,
+                         cs.grayWhiteLevel,cs.grayGamma))
+            return false;
+        if (redChannelOn &&
+            !sameChannel(redChannel,redBlackLevel,
+                         redWhiteLevel,redGamma,
+                         cs.redChannel,cs.redBlackLevel,
+                         cs.redWhiteLevel,cs.redGamma))
+            return false;
+        if (greenChannelOn &&
+            !sameChannel(greenChannel,greenBlackLevel,
+                         greenWhiteLevel,greenGamma,
+                         cs.greenChannel,cs.greenBlackLevel,
+                         cs.greenWhiteLevel,cs.greenGamma))
+            return false;
+        if (blueChannelOn &&
+            !sameChannel(blueChannel,blueBlackLevel,
+                         blueWhiteLevel,blueGamma,
+                         cs.blueChannel,cs.blueBlackLevel,
+                         cs.blueWhiteLevel,cs.blueGamma))
+            return false;
+
+        return true;
+    }
+
+    private static boolean sameChannel(int channel1, float black1,
+                                       float white1, float gamma1,
+                                       int channel2, float black2,
+                                       float white2, float gamma2)
+    {
+        return
+            channel1 == channel2 &&
+            Float.floatToIntBits(black1) == Float.floatToIntBits(black2) &&
+            Float.floatToIntBits(white1) == Float.floatToIntBits(white2) &&
+            Float.floatToIntBits(gamma1) == Float.floatToIntBits(gamma2);
+    }
+
+    /**
+     * Returns a hash code which is consistent with {@link #equals}.
+     */
+    public int hashCode()
+    {
+        int h = theZ;
+        h = h*31 + theT;
+        h = h*31 + levelBasis;
+        if (resize)
+            h = (h*31 + sizeX)*31 + sizeY;
+        if (grayChannelOn)
+            h = h*31 + channelHash(grayChannel,grayBlackLevel,
+                                   grayWhiteLevel,grayGamma);
+        if (redChannelOn)
+            h = h*37 + channelHash(redChannel,redBlackLevel,
+                                   redWhiteLevel,redGamma);
+        if (greenChannelOn)
+            h = h*41 + channelHash(greenChannel,greenBlackLevel,
+                                   greenWhiteLevel,greenGamma);
+        if (blueChannelOn)
+            h = h*43 + channelHash(blueChannel,blueBlackLevel,
+                                   blueWhiteLevel,blueGamma);
+        return h;
+    }
+
+    private static int channelHash(int channel, float black,
+                                   float white, float gamma)
+    {
+        int h = channel;
+        h = h*31 + Float.floatToIntBits(black);
+        h = h*31 + Float.floatToIntBits(white);
+        h = h*31 + Float.floatToIntBits(gamma);
+        return h;
+    }
 }
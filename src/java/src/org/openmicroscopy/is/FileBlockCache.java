@@ -0,0 +1,369 @@
+/*
+ * org.openmicroscopy.is.FileBlockCache
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.is;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+
+/**
+ * <p>A bounded cache of fixed-size blocks read from files stored on
+ * an image server.  Each block is keyed by the image server ID of its
+ * file and by its block index (the offset of the block divided by the
+ * block size).  Blocks from any number of files can be held at the
+ * same time; when the total size of the cached blocks exceeds the
+ * cache's byte budget, the least recently used blocks are
+ * evicted.</p>
+ *
+ * <p>Since files on the image server cannot be modified once they
+ * have been uploaded, cached blocks never become stale.  The cache
+ * also remembers the length of each file it has seen, so that blocks
+ * at the end of a file can be sized correctly without an additional
+ * <code>FileInfo</code> call.</p>
+ *
+ * <p>All of the methods of this class are synchronized, so a single
+ * instance can be shared by any number of threads.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ * @see ImageServer#readFile
+ */
+
+public class FileBlockCache
+{
+    /**
+     * The default size of each cached block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /**
+     * The default byte budget of the cache.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 1024*1024;
+
+    /** The size of each cached block. */
+    private int  blockSize;
+
+    /** The maximum number of bytes of block data to keep. */
+    private long maximumSize;
+
+    /**
+     * The cached blocks, keyed by {@link BlockKey}.  This map is kept
+     * in access order, so its first entry is always the least
+     * recently used block.
+     */
+    private LinkedHashMap  blocks;
+
+    /**
+     * The lengths of the files that have been seen by this cache,
+     * keyed by file ID.
+     */
+    private Map  fileLengths;
+
+    /** The number of bytes of block data currently cached. */
+    private long currentSize;
+
+    /** The number of block lookups which were satisfied by the cache. */
+    private long hitCount;
+
+    /** The number of block lookups which were not. */
+    private long missCount;
+
+    /** The number of blocks which have been evicted. */
+    private long evictionCount;
+
+    /**
+     * Creates a new cache with the default block size and byte
+     * budget.
+     */
+    public FileBlockCache()
+    {
+        this(DEFAULT_BLOCK_SIZE,DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new cache with the specified block size and byte
+     * budget.  The byte budget must be at least as large as a single
+     * block.
+     *
+     * @param blockSize the size of each cached block
+     * @param maximumSize the maximum number of bytes of block data to
+     * keep in the cache
+     */
+    public FileBlockCache(int blockSize, long maximumSize)
+    {
+        super();
+
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Block size must be positive");
+        if (maximumSize < blockSize)
+            throw new IllegalArgumentException("Cache must be able to hold at least one block");
+
+        this.blockSize = blockSize;
+        this.maximumSize = maximumSize;
+        this.blocks = new LinkedHashMap(16,0.75f,true);
+        this.fileLengths = new HashMap();
+    }
+
+    /**
+     * Returns the size of each cached block.
+     * @return the size of each cached block
+     */
+    public int getBlockSize() { return blockSize; }
+
+    /**
+     * Returns the maximum number of bytes of block data that will be
+     * kept in the cache.
+     * @return the byte budget of the cache
+     */
+    public long getMaximumSize() { return maximumSize; }
+
+    /**
+     * Returns the specified block, or <code>null</code> if it is not
+     * in the cache.  The returned array must not be modified.
+     *
+     * @param fileID the image server ID of the file
+     * @param blockIndex the index of the block within the file
+     * @return the cached block, or <code>null</code>
+     */
+    public synchronized byte[] getBlock(long fileID, long blockIndex)
+    {
+        byte[] block = (byte[]) blocks.get(new BlockKey(fileID,blockIndex));
+        if (block == null)
+            missCount++;
+        else
+            hitCount++;
+        return block;
+    }
+
+    /**
+     * Returns whether the specified block is in the cache.  Unlike
+     * {@link #getBlock}, this method does not affect the eviction
+     * order or the hit and miss counters.
+     *
+     * @param fileID the image server ID of the file
+     * @param blockIndex the index of the block within the file
+     * @return whether the block is currently cached
+     */
+    public synchronized boolean containsBlock(long fileID, long blockIndex)
+    {
+        return blocks.containsKey(new BlockKey(fileID,blockIndex));
+    }
+
+    /**
+     * Adds a block to the cache, evicting the least recently used
+     * blocks if necessary to stay within the cache's byte budget.
+     * The array must not be modified after it has been added to the
+     * cache.
+     *
+     * @param fileID the image server ID of the file
+     * @param blockIndex the index of the block within the file
+     * @param block the contents of the block
+     */
+    public synchronized void putBlock(long fileID, long blockIndex,
+                                      byte[] block)
+    {
+        if (block == null)
+            throw new IllegalArgumentException("Block cannot be null");
+
+        byte[] old = (byte[])
+            blocks.put(new BlockKey(fileID,blockIndex),block);
+        if (old != null)
+            currentSize -= old.length;
+        currentSize += block.length;
+
+        Iterator it = blocks.values().iterator();
+        while (currentSize > maximumSize && it.hasNext())
+        {
+            byte[] eldest = (byte[]) it.next();
+            it.remove();
+            currentSize -= eldest.length;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Returns the length of the specified file, if it is known to the
+     * cache.
+     *
+     * @param fileID the image server ID of the file
+     * @return the length of the file, or -1 if it is not known
+     */
+    public synchronized long getFileLength(long fileID)
+    {
+        Long length = (Long) fileLengths.get(new Long(fileID));
+        return (length == null)? -1: length.longValue();
+    }
+
+    /**
+     * Records the length of the specified file.
+     *
+     * @param fileID the image server ID of the file
+     * @param length the length of the file in bytes
+     */
+    public synchronized void putFileLength(long fileID, long length)
+    {
+        fileLengths.put(new Long(fileID),new Long(length));
+    }
+
+    /**
+     * Removes all of the cached blocks for the specified file.
+     *
+     * @param fileID the image server ID of the file
+     */
+    public synchronized void invalidateFile(long fileID)
+    {
+        Iterator it = blocks.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry entry = (Map.Entry) it.next();
+            BlockKey key = (BlockKey) entry.getKey();
+            if (key.fileID == fileID)
+            {
+                currentSize -= ((byte[]) entry.getValue()).length;
+                it.remove();
+            }
+        }
+        fileLengths.remove(new Long(fileID));
+    }
+
+    /**
+     * Removes all of the blocks from the cache.  The hit and miss
+     * counters are not reset.
+     */
+    public synchronized void clear()
+    {
+        blocks.clear();
+        fileLengths.clear();
+        currentSize = 0;
+    }
+
+    /**
+     * Resets the hit, miss, and eviction counters to zero.
+     */
+    public synchronized void resetStatistics()
+    {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    /**
+     * Returns the number of block lookups which were satisfied by the
+     * cache.
+     */
+    public synchronized long getHitCount() { return hitCount; }
+
+    /**
+     * Returns the number of block lookups which were not satisfied by
+     * the cache.
+     */
+    public synchronized long getMissCount() { return missCount; }
+
+    /**
+     * Returns the number of blocks which have been evicted to keep
+     * the cache within its byte budget.
+     */
+    public synchronized long getEvictionCount() { return evictionCount; }
+
+    /**
+     * Returns the fraction of block lookups which were satisfied by
+     * the cache, or 0 if there have not been any lookups.
+     */
+    public synchronized double getHitRate()
+    {
+        long total = hitCount+missCount;
+        return (total == 0)? 0.0: ((double) hitCount)/total;
+    }
+
+    /**
+     * Returns the number of blocks currently in the cache.
+     */
+    public synchronized int getBlockCount() { return blocks.size(); }
+
+    /**
+     * Returns the number of bytes of block data currently in the
+     * cache.
+     */
+    public synchronized long getCurrentSize() { return currentSize; }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "FileBlockCache ("+blocks.size()+" blocks, "+
+            currentSize+"/"+maximumSize+" bytes, "+
+            hitCount+" hits, "+missCount+" misses)";
+    }
+
+    /**
+     * The key used to identify a single cached block.
+     */
+    private static final class BlockKey
+    {
+        final long fileID;
+        final long blockIndex;
+
+        BlockKey(long fileID, long blockIndex)
+        {
+            this.fileID = fileID;
+            this.blockIndex = blockIndex;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof BlockKey)) return false;
+            BlockKey key = (BlockKey) o;
+            return (key.fileID == fileID) && (key.blockIndex == blockIndex);
+        }
+
+        public int hashCode()
+        {
+            long h = fileID*31 + blockIndex;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * org.openmicroscopy.is.FileUpload
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.is;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>Records the progress of a chunked upload of a single file to an
+ * image server.  The file is split into fixed-size chunks, which are
+ * written into a pending file on the image server by separate
+ * requests, several of which can be in flight at once.  Each chunk is
+ * verified against its SHA-1 digest as it is written, and the
+ * finished file is verified against the digest of the entire local
+ * file.</p>
+ *
+ * <p>If an upload fails partway through, the chunks which were
+ * successfully written are remembered by this object.  Passing the
+ * same object to {@link ImageServer#uploadFile(FileUpload)} again
+ * will only send the remaining chunks.  An upload can only be resumed
+ * against the image server which it was started on, and only if the
+ * local file has not changed in the meantime.</p>
+ *
+ * <p>The methods of this class are synchronized, so the progress of
+ * an upload can be monitored from another thread.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ * @see ImageServer#uploadFile(FileUpload)
+ */
+
+public class FileUpload
+{
+    /**
+     * The default size of each uploaded chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024*1024;
+
+    /** The file being uploaded. */
+    private File file;
+
+    /** The length of the file when the upload was created. */
+    private long length;
+
+    /** The size of each chunk. */
+    private int chunkSize;
+
+    /** Whether each chunk has been written and verified. */
+    private boolean[] chunksUploaded;
+
+    /** The number of chunks which have been written and verified. */
+    private int uploadedCount;
+
+    /** The SHA-1 digest of the local file, once it is known. */
+    private String sha1;
+
+    /** The image server ID of the pending file, or -1. */
+    private long pendingFileID = -1;
+
+    /**
+     * The image server ID of the file once it has been finished, but
+     * before it has been verified, or -1.
+     */
+    private long unverifiedFileID = -1;
+
+    /** The image server ID of the finished file, or -1. */
+    private long fileID = -1;
+
+    /**
+     * Creates a new upload of the specified file, using the default
+     * chunk size.
+     *
+     * @param file the file to upload
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public FileUpload(File file)
+        throws FileNotFoundException
+    {
+        this(file,DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new upload of the specified file, using the specified
+     * chunk size.
+     *
+     * @param file the file to upload
+     * @param chunkSize the size of each uploaded chunk
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public FileUpload(File file, int chunkSize)
+        throws FileNotFoundException
+    {
+        super();
+
+        if (file == null)
+            throw new IllegalArgumentException("File cannot be null");
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive");
+        if (!file.isFile())
+            throw new FileNotFoundException(file.getPath());
+
+        this.file = file;
+        this.length = file.length();
+        this.chunkSize = chunkSize;
+
+        long count = (length+chunkSize-1)/chunkSize;
+        if (count > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Chunk size is too small for this file");
+        this.chunksUploaded = new boolean[(int) count];
+    }
+
+    /**
+     * Returns the file being uploaded.
+     */
+    public File getFile() { return file; }
+
+    /**
+     * Returns the length of the file being uploaded.
+     */
+    public long getLength() { return length; }
+
+    /**
+     * Returns the size of each uploaded chunk.
+     */
+    public int getChunkSize() { return chunkSize; }
+
+    /**
+     * Returns the number of chunks in the file.
+     */
+    public int getChunkCount() { return chunksUploaded.length; }
+
+    /**
+     * Returns the offset of the specified chunk within the file.
+     */
+    public long getChunkOffset(int chunk)
+    {
+        return ((long) chunk)*chunkSize;
+    }
+
+    /**
+     * Returns the length of the specified chunk.  Every chunk except
+     * the last is {@link #getChunkSize} bytes long.
+     */
+    public int getChunkLength(int chunk)
+    {
+        return (int) Math.min(chunkSize,length-getChunkOffset(chunk));
+    }
+
+    /**
+     * Returns whether the specified chunk has been written to the
+     * image server and verified.
+     */
+    public synchronized boolean isChunkUploaded(int chunk)
+    {
+        return chunksUploaded[chunk];
+    }
+
+    /**
+     * Returns the number of chunks which have been written to the
+     * image server and verified.
+     */
+    public synchronized int getUploadedChunkCount() { return uploadedCount; }
+
+    /**
+     * Returns the number of bytes which have been written to the
+     * image server and verified.
+     */
+    public synchronized long getBytesUploaded()
+    {
+        long bytes = 0;
+        for (int i = 0; i < chunksUploaded.length; i++)
+            if (chunksUploaded[i])
+                bytes += getChunkLength(i);
+        return bytes;
+    }
+
+    /**
+     * Returns the image server ID of the pending file which the chunks
+     * are written into, or -1 if it has not been created yet.
+     */
+    public synchronized long getPendingFileID() { return pendingFileID; }
+
+    /**
+     * Returns whether the upload has finished and been verified.
+     */
+    public synchronized boolean isFinished() { return fileID >= 0; }
+
+    /**
+     * Returns the image server ID of the uploaded file, or -1 if the
+     * upload has not finished.  This can differ from the ID of the
+     * pending file, if the image server already contained an
+     * identical file.
+     */
+    public synchronized long getFileID() { return fileID; }
+
+    /**
+     * Returns the SHA-1 digest of the local file, as a hex string,
+     * calculating it if necessary.
+     *
+     * @throws ImageServerException if the file cannot be read
+     */
+    public synchronized String getSHA1()
+        throws ImageServerException
+    {
+        if (sha1 == null)
+        {
+            MessageDigest md = createDigest();
+            byte[] buf = new byte[65536];
+            FileInputStream in = null;
+
+            try
+            {
+                in = new FileInputStream(file);
+                int count;
+                while ((count = in.read(buf)) >= 0)
+                    md.update(buf,0,count);
+            } catch (IOException e) {
+                throw new ImageServerException("Could not read "+file+": "+
+                                               e.getMessage());
+            } finally {
+                try
+                {
+                    if (in != null) in.close();
+                } catch (IOException e) { }
+            }
+
+            sha1 = toHex(md.digest());
+        }
+
+        return sha1;
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "FileUpload ("+file+", "+uploadedCount+"/"+
+            chunksUploaded.length+" chunks)";
+    }
+
+    /**
+     * <b>Non-public method:</b> Reads the specified chunk from the
+     * local file.
+     */
+    byte[] readChunk(int chunk)
+        throws ImageServerException
+    {
+        byte[] buf = new byte[getChunkLength(chunk)];
+        RandomAccessFile in = null;
+
+        try
+        {
+            in = new RandomAccessFile(file,"r");
+            if (in.length() != length)
+                throw new ImageServerException(file+" has changed since the upload was started");
+            in.seek(getChunkOffset(chunk));
+            in.readFully(buf);
+        } catch (IOException e) {
+            throw new ImageServerException("Could not read "+file+": "+
+                                           e.getMessage());
+        } finally {
+            try
+            {
+                if (in != null) in.close();
+            } catch (IOException e) { }
+        }
+
+        return buf;
+    }
+
+    /**
+     * <b>Non-public method:</b> Records the ID of the pending file on
+     * the image server.
+     */
+    synchronized void setPendingFileID(long pendingFileID)
+    {
+        this.pendingFileID = pendingFileID;
+    }
+
+    /**
+     * <b>Non-public method:</b> Records that the specified chunk has
+     * been written and verified.
+     */
+    synchronized void setChunkUploaded(int chunk)
+    {
+        if (!chunksUploaded[chunk])
+        {
+            chunksUploaded[chunk] = true;
+            uploadedCount++;
+        }
+    }
+
+    /**
+     * <b>Non-public method:</b> Forgets the pending file and the
+     * chunks written to it, so that the next attempt starts over.
+     */
+    synchronized void reset()
+    {
+        for (int i = 0; i < chunksUploaded.length; i++)
+            chunksUploaded[i] = false;
+        uploadedCount = 0;
+        pendingFileID = -1;
+        unverifiedFileID = -1;
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns the ID of the file which was
+     * finished on the image server but has not been verified yet, or
+     * -1.
+     */
+    synchronized long getUnverifiedFileID() { return unverifiedFileID; }
+
+    /**
+     * <b>Non-public method:</b> Records the ID of the file which was
+     * finished on the image server, before it is verified.  A retry
+     * after a failed verification uses this file rather than
+     * finishing the pending file again.
+     */
+    synchronized void setUnverifiedFileID(long unverifiedFileID)
+    {
+        this.unverifiedFileID = unverifiedFileID;
+    }
+
+    /**
+     * <b>Non-public method:</b> Records the ID of the finished file.
+     */
+    synchronized void setFileID(long fileID)
+    {
+        this.fileID = fileID;
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns the SHA-1 digest of the
+     * specified data, as a hex string.
+     */
+    static String digest(byte[] buf)
+        throws ImageServerException
+    {
+        MessageDigest md = createDigest();
+        md.update(buf);
+        return toHex(md.digest());
+    }
+
+    private static MessageDigest createDigest()
+        throws ImageServerException
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ImageServerException("SHA-1 is not available");
+        }
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static String toHex(byte[] digest)
+    {
+        char[] result = new char[digest.length*2];
+        for (int i = 0; i < digest.length; i++)
+        {
+            result[2*i] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+            result[2*i+1] = HEX_DIGITS[digest[i] & 0x0F];
+        }
+        return new String(result);
+    }
+}
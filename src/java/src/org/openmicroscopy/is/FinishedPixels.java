@@ -0,0 +1,177 @@
+/*
+ * org.openmicroscopy.is.FinishedPixels
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.is;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openmicroscopy.ds.st.Pixels;
+
+/**
+ * <p>Tracks which pixels files are finished, for the caches which
+ * can only store data read from finished pixels.  A pixels file which
+ * is found to be finished is remembered until it is invalidated.  A
+ * pixels file which is found not to be finished is remembered for
+ * the {@link #getUnfinishedLifetime unfinished lifetime}, so that a
+ * client reading a pixels file while it is being imported does not
+ * ask the image server again on every read.</p>
+ *
+ * <p>All of the methods of this class are synchronized, but the
+ * image server is not contacted while the lock is held.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ */
+
+class FinishedPixels
+{
+    /**
+     * The default number of milliseconds for which a pixels file is
+     * remembered as unfinished.
+     */
+    static final long DEFAULT_UNFINISHED_LIFETIME = 2000;
+
+    /**
+     * The pixels files which are known to be finished, as {@link
+     * PixelsCache.Key} objects with no coordinates.
+     */
+    private Set  finished = new HashSet();
+
+    /**
+     * The times at which pixels files were found not to be finished,
+     * as {@link Long}s keyed by {@link PixelsCache.Key}.
+     */
+    private Map  unfinished = new HashMap();
+
+    private long  unfinishedLifetime = DEFAULT_UNFINISHED_LIFETIME;
+
+    FinishedPixels()
+    {
+        super();
+    }
+
+    synchronized long getUnfinishedLifetime() { return unfinishedLifetime; }
+
+    synchronized void setUnfinishedLifetime(long unfinishedLifetime)
+    {
+        if (unfinishedLifetime < 0)
+            throw new IllegalArgumentException("Lifetime cannot be negative");
+        this.unfinishedLifetime = unfinishedLifetime;
+    }
+
+    /**
+     * Returns whether the specified pixels file is known to be
+     * finished, without contacting the image server.
+     */
+    synchronized boolean isKnownFinished(Pixels pixels)
+    {
+        return finished.contains(new PixelsCache.Key(pixels));
+    }
+
+    /**
+     * Returns whether the specified pixels file is finished.  The
+     * image server is only asked if the pixels file is not known to
+     * be finished, and was not found to be unfinished within the
+     * unfinished lifetime.
+     */
+    boolean isFinished(Pixels pixels, ImageServer is)
+        throws ImageServerException
+    {
+        PixelsCache.Key key = new PixelsCache.Key(pixels);
+        synchronized (this)
+        {
+            if (finished.contains(key))
+                return true;
+            Long checked = (Long) unfinished.get(key);
+            if (checked != null &&
+                System.currentTimeMillis()-checked.longValue() < unfinishedLifetime)
+                return false;
+        }
+
+        boolean result = is.isPixelsFinished(key.pixelsID);
+
+        synchronized (this)
+        {
+            if (result)
+            {
+                finished.add(key);
+                unfinished.remove(key);
+            } else {
+                unfinished.put(key,new Long(System.currentTimeMillis()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records that the specified pixels file is finished.
+     */
+    synchronized void setFinished(Pixels pixels)
+    {
+        PixelsCache.Key key = new PixelsCache.Key(pixels);
+        finished.add(key);
+        unfinished.remove(key);
+    }
+
+    /**
+     * Forgets what is known about the specified pixels file.
+     */
+    synchronized void invalidate(Pixels pixels)
+    {
+        PixelsCache.Key key = new PixelsCache.Key(pixels);
+        finished.remove(key);
+        unfinished.remove(key);
+    }
+
+    /**
+     * Forgets what is known about every pixels file.
+     */
+    synchronized void clear()
+    {
+        finished.clear();
+        unfinished.clear();
+    }
+}
@@ -42,25 +42,32 @@
 
 package org.openmicroscopy.is;
 
-//AF - import for tmp hack, to be removed.
-import java.io.InputStream; 
-
-
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.FileNotFoundException;
-import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.MultipartPostMethod;
 import org.apache.commons.httpclient.methods.multipart.FilePart;
 import org.apache.commons.httpclient.methods.multipart.ByteArrayPartSource;
 
+import org.openmicroscopy.ds.CallRecorder;
+
 /**
  * <p>A concrete subclass of {@link ImageServer} which provides an
  * HTTP connection to an OMEIS instance.  There is no public
@@ -92,6 +99,19 @@ public class HttpImageServer
      */
     private HttpClient  client;
 
+    /**
+     * Whether the image server supports the <code>GetPlanes</code>
+     * method.  This is <code>null</code> until the first call to
+     * {@link #getPlanes} determines it.
+     */
+    private Boolean  getPlanesSupported = null;
+
+    /**
+     * The error which OMEIS reports when it is called with a method
+     * which it does not provide.
+     */
+    private static final String UNKNOWN_METHOD_ERROR = "Method doesn't exist";
+
     /**
      * <b>Non-public method:</b> Creates a new instance connected to
      * an image server at the specified URL.
@@ -111,6 +131,7 @@ public class HttpImageServer
     {
         this.url = url;
         this.client = createHttpClient();
+        updateConnectionLimits(getMaxRequestsInFlight());
     }
 
     /**
@@ -127,6 +148,33 @@ public class HttpImageServer
         return client;
     }
 
+    /**
+     * Ensures that the connection manager will allow enough
+     * simultaneous connections to the image server for the requested
+     * number of asynchronous requests, plus one for synchronous
+     * calls.
+     */
+    private void updateConnectionLimits(int maxRequestsInFlight)
+    {
+        HttpConnectionManager hcm = client.getHttpConnectionManager();
+        if (hcm instanceof MultiThreadedHttpConnectionManager)
+        {
+            MultiThreadedHttpConnectionManager cm =
+                (MultiThreadedHttpConnectionManager) hcm;
+            int connections = maxRequestsInFlight+1;
+            if (cm.getMaxConnectionsPerHost() < connections)
+                cm.setMaxConnectionsPerHost(connections);
+            if (cm.getMaxTotalConnections() < connections)
+                cm.setMaxTotalConnections(connections);
+        }
+    }
+
+    public synchronized void setMaxRequestsInFlight(int maxRequestsInFlight)
+    {
+        super.setMaxRequestsInFlight(maxRequestsInFlight);
+        updateConnectionLimits(maxRequestsInFlight);
+    }
+
     /**
      * Creates the HTTP method object for this instance to use.  Can
      * be overridden if a class other than the default should be used.
@@ -138,14 +186,58 @@ public class HttpImageServer
         return post;
     }
 
-    private MultipartPostMethod startCall()
+    /**
+     * The calls which are being recorded by the {@link CallRecorder},
+     * keyed by their HTTP method objects.  Calls are only added to
+     * this map while a recorder is installed.
+     */
+    private Map  recordedCalls = new IdentityHashMap();
+
+    /**
+     * The recorded state of a single call.
+     */
+    private static final class RecordedCall
+    {
+        final String  method;
+        final long  startTime;
+        long  executeTime;
+        boolean  failed;
+
+        RecordedCall(String method)
+        {
+            this.method = method;
+            this.startTime = System.currentTimeMillis();
+            this.executeTime = startTime;
+        }
+    }
+
+    private MultipartPostMethod startCall(String method)
     {
-        return createPostMethod();
+        MultipartPostMethod post = createPostMethod();
+        post.addParameter("Method",method);
+
+        if (getCallRecorder() != null)
+        {
+            synchronized(recordedCalls)
+            {
+                recordedCalls.put(post,new RecordedCall(method));
+            }
+        }
+
+        return post;
     }
 
     private void executeCall(MultipartPostMethod post)
         throws ImageServerException
     {
+        RecordedCall call;
+        synchronized(recordedCalls)
+        {
+            call = (RecordedCall) recordedCalls.get(post);
+        }
+        if (call != null)
+            call.executeTime = System.currentTimeMillis();
+
         int status = 0;
 
         try
@@ -154,18 +246,183 @@ public class HttpImageServer
             status = client.executeMethod(post);
         } catch (IOException e) {
             e.printStackTrace();
+            failCall(call,post);
             throw new ImageServerException(e.getMessage());
         }
 
         if (status != HttpStatus.SC_OK)
         {
+            String body = post.getResponseBodyAsString();
+            failCall(call,post);
+
+            if (body != null && body.indexOf(UNKNOWN_METHOD_ERROR) >= 0)
+                throw new UnknownMethodException(body.trim());
             throw new ImageServerException(HttpStatus.getStatusText(status));
         }
     }
 
+    /**
+     * Records a call which failed to execute.  This is done
+     * immediately, since not every caller releases the connection of
+     * a failed call.
+     */
+    private void failCall(RecordedCall call, MultipartPostMethod post)
+    {
+        if (call != null)
+        {
+            call.failed = true;
+            recordCall(post);
+        }
+    }
+
     private void finishCall(MultipartPostMethod post)
     {
         post.releaseConnection();
+        recordCall(post);
+    }
+
+    /**
+     * Passes a call to the {@link CallRecorder}, if it is being
+     * recorded.  The time between the start of the call and its
+     * execution is recorded as serialization time; the time spent
+     * executing the call and reading its response is recorded as
+     * network time.
+     */
+    private void recordCall(MultipartPostMethod post)
+    {
+        RecordedCall call;
+        synchronized(recordedCalls)
+        {
+            call = (RecordedCall) recordedCalls.remove(post);
+        }
+
+        CallRecorder recorder = getCallRecorder();
+        if (call == null || recorder == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        recorder.recordCall(call.method,
+                            call.executeTime-call.startTime,
+                            now-call.executeTime,
+                            getContentLength(post.getRequestHeader("Content-Length")),
+                            getContentLength(post.getResponseHeader("Content-Length")),
+                            call.failed);
+    }
+
+    /**
+     * Returns the value of a <code>Content-Length</code> header, or
+     * -1 if it is missing or invalid.
+     */
+    private static long getContentLength(Header header)
+    {
+        if (header == null)
+            return -1;
+        try
+        {
+            return Long.parseLong(header.getValue().trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The size of the chunks passed to a {@link PixelsChunkHandler}
+     * by the streaming <code>get*</code> methods.
+     */
+    private static final int CHUNK_SIZE = 65536;
+
+    /**
+     * The chunk arrays used by the streaming <code>get*</code>
+     * methods.  Each thread gets its own array, which is reused for
+     * every streaming call made by that thread.
+     */
+    private static final ThreadLocal chunkBuffers = new ThreadLocal()
+        {
+            protected Object initialValue()
+            {
+                return new byte[CHUNK_SIZE];
+            }
+        };
+
+    /**
+     * Helper method -- reads the body of an executed call directly
+     * into the given buffer, starting at its current position.
+     *
+     * @return the number of bytes read
+     * @throws ImageServerException if the response does not fit into
+     * the remaining space in the buffer
+     */
+    private int readResponse(MultipartPostMethod post, ByteBuffer buf)
+        throws ImageServerException
+    {
+        try
+        {
+            InputStream in = post.getResponseBodyAsStream();
+            if (in == null)
+                return 0;
+
+            // The channel is not closed here; the underlying stream
+            // is released along with the connection in finishCall.
+            ReadableByteChannel channel = Channels.newChannel(in);
+            int total = 0;
+            while (buf.hasRemaining())
+            {
+                int count = channel.read(buf);
+                if (count < 0)
+                    return total;
+                total += count;
+            }
+
+            // The buffer is full, so the response had better be done.
+            if (in.read() >= 0)
+                throw new ImageServerException("Buffer too small: response is longer than "+total+" bytes");
+
+            return total;
+        } catch (IOException e) {
+            throw new ImageServerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method -- passes the body of an executed call to the
+     * given handler, one chunk at a time.
+     *
+     * @return the number of bytes read
+     */
+    private long readResponse(MultipartPostMethod post,
+                              PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        try
+        {
+            InputStream in = post.getResponseBodyAsStream();
+            if (in == null)
+                return 0;
+
+            byte[] chunk = (byte[]) chunkBuffers.get();
+            long position = 0;
+            int count;
+            while ((count = in.read(chunk,0,chunk.length)) >= 0)
+            {
+                if (count == 0) continue;
+                handler.handleChunk(chunk,0,count,position);
+                position += count;
+            }
+
+            return position;
+        } catch (IOException e) {
+            throw new ImageServerException(e.getMessage());
+        }
+    }
+
+    /**
+     * Helper method -- returns the <code>BigEndian</code> parameter
+     * value which requests pixels in the byte order of the given
+     * buffer.
+     */
+    private static String getEndianParameter(ByteBuffer buf)
+    {
+        return (buf.order() == ByteOrder.BIG_ENDIAN)? "1": "0";
     }
 
     /**
@@ -272,19 +529,41 @@ public class HttpImageServer
     }
 
     /**
-     * Returns the next token from the tokenizer as a <code>double</code>.
+     * Parses a single field of a response as an <code>int</code>.
      *
      * @throws ImageServerException if the conversion fails
      */
-    private double getDoubleToken(StringTokenizer token)
+    private int parseInt(String value)
         throws ImageServerException
     {
-        String value = token.nextToken();
-        if (value.equalsIgnoreCase("nan")) return Double.NaN;
         try
         {
-            double doubleValue = Double.parseDouble(value);
-            return doubleValue;
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ImageServerException("Invalid response: expected number, got "+
+                                           value);
+        }
+    }
+
+    /**
+     * Parses a single field of a response as a <code>double</code>.
+     *
+     * @throws ImageServerException if the conversion fails
+     */
+    private double parseDouble(String value)
+        throws ImageServerException
+    {
+        // The image server prints special values with printf, which
+        // Double.parseDouble does not understand.
+        if (value.equalsIgnoreCase("nan") || value.equalsIgnoreCase("-nan"))
+            return Double.NaN;
+        if (value.equalsIgnoreCase("inf"))
+            return Double.POSITIVE_INFINITY;
+        if (value.equalsIgnoreCase("-inf"))
+            return Double.NEGATIVE_INFINITY;
+        try
+        {
+            return Double.parseDouble(value);
         } catch (NumberFormatException e) {
             throw new ImageServerException("Invalid response: expected number, got "+
                                            value);
@@ -332,10 +611,9 @@ public class HttpImageServer
             sizeT+","+
             bytesPerPixel;
 
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("NewPixels");
         try
         {
-            post.addParameter("Method","NewPixels");
             post.addParameter("Dims",dims);
             post.addParameter("IsSigned",isSigned? "1": "0");
             post.addParameter("IsFloat",isFloat? "1": "0");
@@ -352,10 +630,9 @@ public class HttpImageServer
     public PixelsFileFormat getPixelsInfo(long pixelsID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("PixelsInfo");
         try
         {
-            post.addParameter("Method","PixelsInfo");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             executeCall(post);
 
@@ -389,10 +666,9 @@ public class HttpImageServer
     public String getPixelsSHA1(long pixelsID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("PixelsSHA1");
         try
         {
-            post.addParameter("Method","PixelsSHA1");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             executeCall(post);
 
@@ -405,10 +681,9 @@ public class HttpImageServer
     public String getPixelsServerPath(long pixelsID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("GetLocalPath");
         try
         {
-            post.addParameter("Method","GetLocalPath");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             executeCall(post);
 
@@ -421,10 +696,9 @@ public class HttpImageServer
     public boolean isPixelsFinished(long pixelsID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("PixelsInfo");
         try
         {
-            post.addParameter("Method","PixelsInfo");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             executeCall(post);
 
@@ -456,10 +730,9 @@ public class HttpImageServer
                             boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("GetPixels");
         try
         {
-            post.addParameter("Method","GetPixels");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("BigEndian",bigEndian? "1": "0");
             executeCall(post);
@@ -475,10 +748,9 @@ public class HttpImageServer
                            boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("GetStack");
         try
         {
-            post.addParameter("Method","GetStack");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theC",Integer.toString(theC));
             post.addParameter("theT",Integer.toString(theT));
@@ -491,22 +763,29 @@ public class HttpImageServer
         }        
     }
 
-//AF - tmp hacked version, *don't* code against it!
+    /**
+     * @deprecated This was a temporary hack.  Use the {@link
+     * #getStack(long,int,int,ByteBuffer)} or {@link
+     * #getStack(long,int,int,boolean,PixelsChunkHandler)} methods
+     * instead.
+     */
     public InputStream getStackStream(long pixelsID,
                            int theC, int theT,
                            boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("GetStack");
         try
         {
-            post.addParameter("Method","GetStack");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theC",Integer.toString(theC));
             post.addParameter("theT",Integer.toString(theT));
             post.addParameter("BigEndian",bigEndian? "1": "0");
             executeCall(post);
 
+            // The connection is released when the stream is closed,
+            // so the call has to be recorded now.
+            recordCall(post);
             return post.getResponseBodyAsStream();
 		} catch (IOException ioe) {
 			throw new ImageServerException("IO Exception: "+ioe);
@@ -522,10 +801,9 @@ public class HttpImageServer
                            boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("GetPlane");
         try
         {
-            post.addParameter("Method","GetPlane");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theZ",Integer.toString(theZ));
             post.addParameter("theC",Integer.toString(theC));
@@ -549,10 +827,9 @@ public class HttpImageServer
             x0+","+y0+","+z0+","+c0+","+t0+","+
             x1+","+y1+","+z1+","+c1+","+t1;
 
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("GetROI");
         try
         {
-            post.addParameter("Method","GetROI");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("ROI",roi);
             post.addParameter("BigEndian",bigEndian? "1": "0");
@@ -564,13 +841,312 @@ public class HttpImageServer
         }        
     }
 
+    public int getPixels(long pixelsID, ByteBuffer buf)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("GetPixels");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("BigEndian",getEndianParameter(buf));
+            executeCall(post);
+
+            return readResponse(post,buf);
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public long getPixels(long pixelsID, boolean bigEndian,
+                          PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("GetPixels");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("BigEndian",bigEndian? "1": "0");
+            executeCall(post);
+
+            return readResponse(post,handler);
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public int getStack(long pixelsID,
+                        int theC, int theT,
+                        ByteBuffer buf)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("GetStack");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("theC",Integer.toString(theC));
+            post.addParameter("theT",Integer.toString(theT));
+            post.addParameter("BigEndian",getEndianParameter(buf));
+            executeCall(post);
+
+            return readResponse(post,buf);
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public long getStack(long pixelsID,
+                         int theC, int theT,
+                         boolean bigEndian,
+                         PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("GetStack");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("theC",Integer.toString(theC));
+            post.addParameter("theT",Integer.toString(theT));
+            post.addParameter("BigEndian",bigEndian? "1": "0");
+            executeCall(post);
+
+            return readResponse(post,handler);
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public int getPlane(long pixelsID,
+                        int theZ, int theC, int theT,
+                        ByteBuffer buf)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("GetPlane");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("theZ",Integer.toString(theZ));
+            post.addParameter("theC",Integer.toString(theC));
+            post.addParameter("theT",Integer.toString(theT));
+            post.addParameter("BigEndian",getEndianParameter(buf));
+            executeCall(post);
+
+            return readResponse(post,buf);
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public long getPlane(long pixelsID,
+                         int theZ, int theC, int theT,
+                         boolean bigEndian,
+                         PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("GetPlane");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("theZ",Integer.toString(theZ));
+            post.addParameter("theC",Integer.toString(theC));
+            post.addParameter("theT",Integer.toString(theT));
+            post.addParameter("BigEndian",bigEndian? "1": "0");
+            executeCall(post);
+
+            return readResponse(post,handler);
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public int getROI(long pixelsID,
+                      int x0,int y0,int z0,int c0,int t0,
+                      int x1,int y1,int z1,int c1,int t1,
+                      ByteBuffer buf)
+        throws ImageServerException
+    {
+        String roi =
+            x0+","+y0+","+z0+","+c0+","+t0+","+
+            x1+","+y1+","+z1+","+c1+","+t1;
+
+        MultipartPostMethod post = startCall("GetROI");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("ROI",roi);
+            post.addParameter("BigEndian",getEndianParameter(buf));
+            executeCall(post);
+
+            return readResponse(post,buf);
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public long getROI(long pixelsID,
+                       int x0,int y0,int z0,int c0,int t0,
+                       int x1,int y1,int z1,int c1,int t1,
+                       boolean bigEndian,
+                       PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        String roi =
+            x0+","+y0+","+z0+","+c0+","+t0+","+
+            x1+","+y1+","+z1+","+c1+","+t1;
+
+        MultipartPostMethod post = startCall("GetROI");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("ROI",roi);
+            post.addParameter("BigEndian",bigEndian? "1": "0");
+            executeCall(post);
+
+            return readResponse(post,handler);
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    /**
+     * <p>Fetches all of the requested planes with a single
+     * <code>GetPlanes</code> call, and splits the response into
+     * separate arrays.  Older image servers do not provide the
+     * <code>GetPlanes</code> method; once the image server reports
+     * that it does not know the method, this call and all subsequent
+     * ones use the pipelined implementation in {@link ImageServer}
+     * instead.</p>
+     */
+    public byte[][] getPlanes(long pixelsID,
+                              int[][] zctList,
+                              boolean bigEndian)
+        throws ImageServerException
+    {
+        checkPlaneList(zctList);
+        if (zctList.length == 0)
+            return new byte[0][];
+
+        Boolean supported;
+        synchronized (this) { supported = getPlanesSupported; }
+
+        if (supported == Boolean.FALSE)
+            return super.getPlanes(pixelsID,zctList,bigEndian);
+
+        byte[][] result;
+        try
+        {
+            result = getPlanesBatch(pixelsID,zctList,bigEndian);
+        } catch (UnknownMethodException e) {
+            // Any other error might be transient, so only this one
+            // shows that the server does not understand GetPlanes.
+            synchronized (this) { getPlanesSupported = Boolean.FALSE; }
+            return super.getPlanes(pixelsID,zctList,bigEndian);
+        }
+
+        synchronized (this) { getPlanesSupported = Boolean.TRUE; }
+        return result;
+    }
+
+    /**
+     * Helper method -- performs a <code>GetPlanes</code> call.  When
+     * the image server sends the length of the response, each plane
+     * is read from the response straight into its own array.
+     */
+    private byte[][] getPlanesBatch(long pixelsID,
+                                    int[][] zctList,
+                                    boolean bigEndian)
+        throws ImageServerException
+    {
+        StringBuffer planes = new StringBuffer();
+        for (int i = 0; i < zctList.length; i++)
+        {
+            if (i > 0) planes.append(';');
+            planes.append(zctList[i][0]).append(',');
+            planes.append(zctList[i][1]).append(',');
+            planes.append(zctList[i][2]);
+        }
+
+        MultipartPostMethod post = startCall("GetPlanes");
+        try
+        {
+            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("Planes",planes.toString());
+            post.addParameter("BigEndian",bigEndian? "1": "0");
+            executeCall(post);
+
+            // The planes are sent back to back, so each one is an
+            // equal share of the response.
+            long length =
+                getContentLength(post.getResponseHeader("Content-Length"));
+            if (length < 0)
+                return splitPlanes(post.getResponseBody(),zctList.length);
+            if (length % zctList.length != 0)
+                throw new ImageServerException("Invalid response: GetPlanes returned a partial plane");
+
+            int planeSize = (int) (length/zctList.length);
+            InputStream in = post.getResponseBodyAsStream();
+            byte[][] result = new byte[zctList.length][];
+            for (int i = 0; i < zctList.length; i++)
+            {
+                result[i] = new byte[planeSize];
+                if (!readFully(in,result[i]))
+                    throw new ImageServerException("Invalid response: GetPlanes returned a partial plane");
+            }
+            return result;
+        } catch (IOException e) {
+            throw new ImageServerException(e.getMessage());
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    /**
+     * Helper method -- splits a <code>GetPlanes</code> response whose
+     * length was not known in advance into separate planes.
+     */
+    private static byte[][] splitPlanes(byte[] body, int planeCount)
+        throws ImageServerException
+    {
+        if (body == null || body.length % planeCount != 0)
+            throw new ImageServerException("Invalid response: GetPlanes returned a partial plane");
+
+        int planeSize = body.length/planeCount;
+        byte[][] result = new byte[planeCount][];
+        for (int i = 0; i < planeCount; i++)
+        {
+            result[i] = new byte[planeSize];
+            System.arraycopy(body,i*planeSize,result[i],0,planeSize);
+        }
+        return result;
+    }
+
+    /**
+     * Helper method -- fills an array from a stream.
+     *
+     * @return <code>false</code> if the stream ended first
+     */
+    private static boolean readFully(InputStream in, byte[] buf)
+        throws IOException
+    {
+        if (in == null)
+            return buf.length == 0;
+
+        int total = 0;
+        while (total < buf.length)
+        {
+            int count = in.read(buf,total,buf.length-total);
+            if (count < 0)
+                return false;
+            total += count;
+        }
+        return true;
+    }
+
     public void setPixels(long pixelsID, byte[] buf, boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("SetPixels");
         try
         {
-            post.addParameter("Method","SetPixels");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("UploadSize",Long.toString(buf.length));
             post.addParameter("BigEndian",bigEndian? "1": "0");
@@ -587,10 +1163,9 @@ public class HttpImageServer
     public void setPixels(long pixelsID, File file, boolean bigEndian)
         throws ImageServerException, FileNotFoundException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("SetPixels");
         try
         {
-            post.addParameter("Method","SetPixels");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("BigEndian",bigEndian? "1": "0");
             post.addParameter("Pixels",file);
@@ -607,10 +1182,9 @@ public class HttpImageServer
                          byte[] buf, boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("SetStack");
         try
         {
-            post.addParameter("Method","SetStack");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theC",Integer.toString(theC));
             post.addParameter("theT",Integer.toString(theT));
@@ -631,10 +1205,9 @@ public class HttpImageServer
                          File file, boolean bigEndian)
         throws ImageServerException, FileNotFoundException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("SetStack");
         try
         {
-            post.addParameter("Method","SetStack");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theC",Integer.toString(theC));
             post.addParameter("theT",Integer.toString(theT));
@@ -653,10 +1226,9 @@ public class HttpImageServer
                          byte[] buf, boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("SetPlane");
         try
         {
-            post.addParameter("Method","SetPlane");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theZ",Integer.toString(theZ));
             post.addParameter("theC",Integer.toString(theC));
@@ -678,10 +1250,9 @@ public class HttpImageServer
                          File file, boolean bigEndian)
         throws ImageServerException, FileNotFoundException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("SetPlane");
         try
         {
-            post.addParameter("Method","SetPlane");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theZ",Integer.toString(theZ));
             post.addParameter("theC",Integer.toString(theC));
@@ -706,10 +1277,9 @@ public class HttpImageServer
             x0+","+y0+","+z0+","+c0+","+t0+","+
             x1+","+y1+","+z1+","+c1+","+t1;
 
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("SetROI");
         try
         {
-            post.addParameter("Method","SetROI");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("ROI",roi);
             post.addParameter("UploadSize",Long.toString(buf.length));
@@ -734,10 +1304,9 @@ public class HttpImageServer
             x0+","+y0+","+z0+","+c0+","+t0+","+
             x1+","+y1+","+z1+","+c1+","+t1;
 
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("SetROI");
         try
         {
-            post.addParameter("Method","SetROI");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("ROI",roi);
             post.addParameter("BigEndian",bigEndian? "1": "0");
@@ -753,10 +1322,9 @@ public class HttpImageServer
     public long finishPixels(long pixelsID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("FinishPixels");
         try
         {
-            post.addParameter("Method","FinishPixels");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             executeCall(post);
 
@@ -769,23 +1337,21 @@ public class HttpImageServer
     public BufferedImage getComposite(long pixelsID, CompositingSettings settings)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        return decodeImage(getCompositeBytes(pixelsID,settings));
+    }
+
+    public byte[] getCompositeBytes(long pixelsID, CompositingSettings settings)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("Composite");
         try
         {
-            post.addParameter("Method","Composite");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("Format","JPEG");
             addCompositingSettings(post,settings);
             executeCall(post);
 
-            byte[]  imageBuf = post.getResponseBody();
-            ByteArrayInputStream  is = new ByteArrayInputStream(imageBuf);
-            try
-            {
-                return ImageIO.read(is);
-            } catch (IOException e) {
-                throw new ImageServerException("Cannot read byte array stream?");
-            }
+            return post.getResponseBody();
         } finally {
             finishCall(post);
         }
@@ -794,10 +1360,9 @@ public class HttpImageServer
     public void setThumbnail(long pixelsID, CompositingSettings settings)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("Composite");
         try
         {
-            post.addParameter("Method","Composite");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("SetThumb","1");
             addCompositingSettings(post,settings);
@@ -812,47 +1377,44 @@ public class HttpImageServer
     public BufferedImage getThumbnail(long pixelsID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        return decodeImage(getThumbnailBytes(pixelsID));
+    }
+
+    public BufferedImage getThumbnail(long pixelsID,
+                                      int sizeX, int sizeY)
+        throws ImageServerException
+    {
+        return decodeImage(getThumbnailBytes(pixelsID,sizeX,sizeY));
+    }
+
+    public byte[] getThumbnailBytes(long pixelsID)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("GetThumb");
         try
         {
-            post.addParameter("Method","GetThumb");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             executeCall(post);
 
-            byte[]  imageBuf = post.getResponseBody();
-            ByteArrayInputStream  is = new ByteArrayInputStream(imageBuf);
-            try
-            {
-                return ImageIO.read(is);
-            } catch (IOException e) {
-                throw new ImageServerException("Cannot read byte array stream?");
-            }
+            return post.getResponseBody();
         } finally {
             finishCall(post);
         }
     }
 
-    public BufferedImage getThumbnail(long pixelsID,
-                                      int sizeX, int sizeY)
+    public byte[] getThumbnailBytes(long pixelsID,
+                                    int sizeX, int sizeY)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("GetThumb");
         try
         {
-            post.addParameter("Method","GetThumb");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             String size = Integer.toString(sizeX)+","+Integer.toString(sizeY);
             post.addParameter("Size",size);
             executeCall(post);
 
-            byte[]  imageBuf = post.getResponseBody();
-            ByteArrayInputStream  is = new ByteArrayInputStream(imageBuf);
-            try
-            {
-                return ImageIO.read(is);
-            } catch (IOException e) {
-                throw new ImageServerException("Cannot read byte array stream?");
-            }
+            return post.getResponseBody();
         } finally {
             finishCall(post);
         }
@@ -861,10 +1423,9 @@ public class HttpImageServer
     public long uploadFile(File file)
         throws ImageServerException, FileNotFoundException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("UploadFile");
         try
         {
-            post.addParameter("Method","UploadFile");
             post.addParameter("File",file);
             executeCall(post);
 
@@ -873,16 +1434,68 @@ public class HttpImageServer
             throw new ImageServerException("Illegal response: Invalid file ID");
         } finally {
             finishCall(post);
-        }        
+        }
+    }
+
+    public long newFile(String name, long length)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("NewFile");
+        try
+        {
+            post.addParameter("Name",name);
+            post.addParameter("Size",Long.toString(length));
+            executeCall(post);
+
+            return Long.parseLong(post.getResponseBodyAsString().trim());
+        } catch (NumberFormatException e) {
+            throw new ImageServerException("Illegal response: Invalid file ID");
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public String writeFile(long fileID, long offset, byte[] buf)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("WriteFile");
+        try
+        {
+            post.addParameter("FileID",Long.toString(fileID));
+            post.addParameter("Offset",Long.toString(offset));
+            post.addPart(new FilePart("File",
+                                      new ByteArrayPartSource("file",buf)));
+            executeCall(post);
+
+            return post.getResponseBodyAsString().trim();
+        } finally {
+            finishCall(post);
+        }
+    }
+
+    public long finishFile(long fileID)
+        throws ImageServerException
+    {
+        MultipartPostMethod post = startCall("FinishFile");
+        try
+        {
+            post.addParameter("FileID",Long.toString(fileID));
+            executeCall(post);
+
+            return Long.parseLong(post.getResponseBodyAsString().trim());
+        } catch (NumberFormatException e) {
+            throw new ImageServerException("Illegal response: Invalid file ID");
+        } finally {
+            finishCall(post);
+        }
     }
 
     public FileInfo getFileInfo(long fileID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("FileInfo");
         try
         {
-            post.addParameter("Method","FileInfo");
             post.addParameter("FileID",Long.toString(fileID));
             executeCall(post);
  
@@ -910,10 +1523,9 @@ public class HttpImageServer
     public String getFileSHA1(long fileID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("FileSHA1");
         try
         {
-            post.addParameter("Method","FileSHA1");
             post.addParameter("FileID",Long.toString(fileID));
             executeCall(post);
 
@@ -926,10 +1538,9 @@ public class HttpImageServer
     public String getFileServerPath(long fileID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("GetLocalPath");
         try
         {
-            post.addParameter("Method","GetLocalPath");
             post.addParameter("FileID",Long.toString(fileID));
             executeCall(post);
 
@@ -944,10 +1555,9 @@ public class HttpImageServer
                                          final int  length)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("ReadFile");
         try
         {
-            post.addParameter("Method","ReadFile");
             post.addParameter("FileID",Long.toString(fileID));
             post.addParameter("Offset",Long.toString(offset));
             post.addParameter("Length",Integer.toString(length));
@@ -965,10 +1575,9 @@ public class HttpImageServer
                              final boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("ConvertStack");
         try
         {
-            post.addParameter("Method","ConvertStack");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theC",Integer.toString(theC));
             post.addParameter("theT",Integer.toString(theT));
@@ -989,10 +1598,9 @@ public class HttpImageServer
                              final boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("ConvertPlane");
         try
         {
-            post.addParameter("Method","ConvertPlane");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theZ",Integer.toString(theZ));
             post.addParameter("theC",Integer.toString(theC));
@@ -1015,10 +1623,9 @@ public class HttpImageServer
                                      final long fileID)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("ConvertTIFF");
         try
         {
-            post.addParameter("Method","ConvertTIFF");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theZ",Integer.toString(theZ));
             post.addParameter("theC",Integer.toString(theC));
@@ -1040,10 +1647,9 @@ public class HttpImageServer
                                      final int directory)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("ConvertTIFF");
         try
         {
-            post.addParameter("Method","ConvertTIFF");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theZ",Integer.toString(theZ));
             post.addParameter("theC",Integer.toString(theC));
@@ -1065,10 +1671,9 @@ public class HttpImageServer
                             final boolean bigEndian)
         throws ImageServerException
     {
-        MultipartPostMethod post = startCall();
+        MultipartPostMethod post = startCall("ConvertRows");
         try
         {
-            post.addParameter("Method","ConvertRows");
             post.addParameter("PixelsID",Long.toString(pixelsID));
             post.addParameter("theY",Integer.toString(theY));
             post.addParameter("nRows",Integer.toString(numRows));
@@ -1089,154 +1694,141 @@ public class HttpImageServer
     public PlaneStatistics getPlaneStatistics(long pixelsID)
         throws ImageServerException
     {
-        PixelsFileFormat pff = getPixelsInfo(pixelsID);
-        int sizeZ = pff.getSizeZ();
-        int sizeC = pff.getSizeC();
-        int sizeT = pff.getSizeT();
-
-        MultipartPostMethod post = startCall();
-        try
-        {
-            post.addParameter("Method","GetPlaneStats");
-            post.addParameter("PixelsID",Long.toString(pixelsID));
-            executeCall(post);
-
-            double[][][]
-                minimum = new double[sizeZ][sizeC][sizeT],
-                maximum = new double[sizeZ][sizeC][sizeT],
-                mean = new double[sizeZ][sizeC][sizeT],
-                sigma = new double[sizeZ][sizeC][sizeT],
-                geomean = new double[sizeZ][sizeC][sizeT],
-                geosigma = new double[sizeZ][sizeC][sizeT],
-                centroidX = new double[sizeZ][sizeC][sizeT],
-                centroidY = new double[sizeZ][sizeC][sizeT],
-                sumI = new double[sizeZ][sizeC][sizeT],
-                sumI2 = new double[sizeZ][sizeC][sizeT],
-                sumLogI = new double[sizeZ][sizeC][sizeT],
-                sumXI = new double[sizeZ][sizeC][sizeT],
-                sumYI = new double[sizeZ][sizeC][sizeT],
-                sumZI = new double[sizeZ][sizeC][sizeT];
-
-            String result = post.getResponseBodyAsString();
-            StringTokenizer rtoken = new StringTokenizer(result,"\r\n");
-
-            while (rtoken.hasMoreTokens())
-            {
-                String line = rtoken.nextToken();
-                StringTokenizer ltoken = new StringTokenizer(line,"\t");
-
-                int theC = getIntToken(ltoken);
-                int theT = getIntToken(ltoken);
-                int theZ = getIntToken(ltoken);
-                minimum[theZ][theC][theT] = getDoubleToken(ltoken);
-                maximum[theZ][theC][theT] = getDoubleToken(ltoken);
-                mean[theZ][theC][theT] = getDoubleToken(ltoken);
-                geomean[theZ][theC][theT] = getDoubleToken(ltoken);
-                geosigma[theZ][theC][theT] = getDoubleToken(ltoken);
-                centroidX[theZ][theC][theT] = getDoubleToken(ltoken);
-                centroidY[theZ][theC][theT] = getDoubleToken(ltoken);
-                sumI[theZ][theC][theT] = getDoubleToken(ltoken);
-                sumI2[theZ][theC][theT] = getDoubleToken(ltoken);
-                sumLogI[theZ][theC][theT] = getDoubleToken(ltoken);
-                sumXI[theZ][theC][theT] = getDoubleToken(ltoken);
-                sumYI[theZ][theC][theT] = getDoubleToken(ltoken);
-                sumZI[theZ][theC][theT] = getDoubleToken(ltoken);
-            }
-
-            return new PlaneStatistics(minimum,
-                                       maximum,
-                                       mean,
-                                       sigma,
-                                       geomean,
-                                       geosigma,
-                                       centroidX,
-                                       centroidY,
-                                       sumI,
-                                       sumI2,
-                                       sumLogI,
-                                       sumXI,
-                                       sumYI,
-                                       sumZI);
-        } finally {
-            finishCall(post);
-        }
+        return getPlaneStatisticsTable(pixelsID,null).toPlaneStatistics();
     }
 
     public StackStatistics getStackStatistics(long pixelsID)
         throws ImageServerException
     {
-        PixelsFileFormat pff = getPixelsInfo(pixelsID);
-        int sizeC = pff.getSizeC();
-        int sizeT = pff.getSizeT();
+        return getStackStatisticsTable(pixelsID,null).toStackStatistics();
+    }
+
+    /**
+     * The statistics in each column of a <code>GetPlaneStats</code>
+     * response, after the C, T, and Z indices.
+     */
+    private static final int[] PLANE_STATISTICS_COLUMNS =
+    { StatisticsTable.MINIMUM,
+      StatisticsTable.MAXIMUM,
+      StatisticsTable.MEAN,
+      StatisticsTable.SIGMA,
+      StatisticsTable.GEOMETRIC_MEAN,
+      StatisticsTable.GEOMETRIC_SIGMA,
+      StatisticsTable.CENTROID_X,
+      StatisticsTable.CENTROID_Y,
+      StatisticsTable.SUM_I,
+      StatisticsTable.SUM_I2,
+      StatisticsTable.SUM_LOG_I,
+      StatisticsTable.SUM_XI,
+      StatisticsTable.SUM_YI,
+      StatisticsTable.SUM_ZI };
 
-        MultipartPostMethod post = startCall();
+    /**
+     * The statistics in each column of a <code>GetStackStats</code>
+     * response, after the C and T indices.
+     */
+    private static final int[] STACK_STATISTICS_COLUMNS =
+    { StatisticsTable.MINIMUM,
+      StatisticsTable.MAXIMUM,
+      StatisticsTable.MEAN,
+      StatisticsTable.SIGMA,
+      StatisticsTable.GEOMETRIC_MEAN,
+      StatisticsTable.GEOMETRIC_SIGMA,
+      StatisticsTable.CENTROID_X,
+      StatisticsTable.CENTROID_Y,
+      StatisticsTable.CENTROID_Z,
+      StatisticsTable.SUM_I,
+      StatisticsTable.SUM_I2,
+      StatisticsTable.SUM_LOG_I,
+      StatisticsTable.SUM_XI,
+      StatisticsTable.SUM_YI,
+      StatisticsTable.SUM_ZI };
+
+    protected void loadStatistics(StatisticsTable table, int[] statistics)
+        throws ImageServerException
+    {
+        boolean stack = table.isStack();
+        int[] layout = stack?
+            STACK_STATISTICS_COLUMNS:
+            PLANE_STATISTICS_COLUMNS;
+        int indexCount = stack? 2: 3;
+
+        // The response is parsed line by line, and only the requested
+        // columns are converted to numbers; the rest are skipped.
+        double[][] columns = new double[StatisticsTable.STATISTIC_COUNT][];
+        for (int i = 0; i < statistics.length; i++)
+            columns[statistics[i]] = new double[table.getEntryCount()];
+
+        double[][] targets = new double[layout.length][];
+        int lastField = 0;
+        for (int i = 0; i < layout.length; i++)
+        {
+            targets[i] = columns[layout[i]];
+            if (targets[i] != null)
+                lastField = indexCount+i;
+        }
+
+        MultipartPostMethod post = startCall(stack? "GetStackStats": "GetPlaneStats");
         try
         {
-            post.addParameter("Method","GetStackStats");
-            post.addParameter("PixelsID",Long.toString(pixelsID));
+            post.addParameter("PixelsID",Long.toString(table.getPixelsID()));
             executeCall(post);
 
-            double[][]
-                minimum = new double[sizeC][sizeT],
-                maximum = new double[sizeC][sizeT],
-                mean = new double[sizeC][sizeT],
-                sigma = new double[sizeC][sizeT],
-                geomean = new double[sizeC][sizeT],
-                geosigma = new double[sizeC][sizeT],
-                centroidX = new double[sizeC][sizeT],
-                centroidY = new double[sizeC][sizeT],
-                centroidZ = new double[sizeC][sizeT],
-                sumI = new double[sizeC][sizeT],
-                sumI2 = new double[sizeC][sizeT],
-                sumLogI = new double[sizeC][sizeT],
-                sumXI = new double[sizeC][sizeT],
-                sumYI = new double[sizeC][sizeT],
-                sumZI = new double[sizeC][sizeT];
-
-            String result = post.getResponseBodyAsString();
-            StringTokenizer rtoken = new StringTokenizer(result,"\r\n");
-
-            while (rtoken.hasMoreTokens())
+            BufferedReader in = new BufferedReader
+                (new InputStreamReader(post.getResponseBodyAsStream()));
+            String line;
+            while ((line = in.readLine()) != null)
             {
-                String line = rtoken.nextToken();
-                StringTokenizer ltoken = new StringTokenizer(line,"\t");
-
-                int theC = getIntToken(ltoken);
-                int theT = getIntToken(ltoken);
-                minimum[theC][theT] = getDoubleToken(ltoken);
-                maximum[theC][theT] = getDoubleToken(ltoken);
-                mean[theC][theT] = getDoubleToken(ltoken);
-                geomean[theC][theT] = getDoubleToken(ltoken);
-                geosigma[theC][theT] = getDoubleToken(ltoken);
-                centroidX[theC][theT] = getDoubleToken(ltoken);
-                centroidY[theC][theT] = getDoubleToken(ltoken);
-                centroidZ[theC][theT] = getDoubleToken(ltoken);
-                sumI[theC][theT] = getDoubleToken(ltoken);
-                sumI2[theC][theT] = getDoubleToken(ltoken);
-                sumLogI[theC][theT] = getDoubleToken(ltoken);
-                sumXI[theC][theT] = getDoubleToken(ltoken);
-                sumYI[theC][theT] = getDoubleToken(ltoken);
-                sumZI[theC][theT] = getDoubleToken(ltoken);
+                if (line.length() == 0) continue;
+
+                int theC = 0, theT = 0, theZ = 0, index = -1;
+                int start = 0;
+                for (int field = 0; field <= lastField; field++)
+                {
+                    if (start > line.length())
+                        throw new ImageServerException("Invalid response: too few statistics in "+
+                                                       line);
+                    int end = line.indexOf('\t',start);
+                    if (end < 0) end = line.length();
+
+                    if (field < indexCount)
+                    {
+                        int value = parseInt(line.substring(start,end));
+                        if (field == 0)
+                            theC = value;
+                        else if (field == 1)
+                            theT = value;
+                        else
+                            theZ = value;
+                    } else {
+                        if (index < 0)
+                        {
+                            try
+                            {
+                                index = table.getIndex(theZ,theC,theT);
+                            } catch (IndexOutOfBoundsException e) {
+                                throw new ImageServerException("Invalid response: "+
+                                                               e.getMessage());
+                            }
+                        }
+
+                        double[] target = targets[field-indexCount];
+                        if (target != null)
+                            target[index] = parseDouble(line.substring(start,end));
+                    }
+
+                    start = end+1;
+                }
             }
-
-            return new StackStatistics(minimum,
-                                       maximum,
-                                       mean,
-                                       sigma,
-                                       geomean,
-                                       geosigma,
-                                       centroidX,
-                                       centroidY,
-                                       centroidZ,
-                                       sumI,
-                                       sumI2,
-                                       sumLogI,
-                                       sumXI,
-                                       sumYI,
-                                       sumZI);
+        } catch (IOException e) {
+            throw new ImageServerException("Could not read statistics: "+
+                                           e.getMessage());
         } finally {
             finishCall(post);
         }
+
+        for (int i = 0; i < statistics.length; i++)
+            table.setColumn(statistics[i],columns[statistics[i]]);
     }
 
 }
\ No newline at end of file
@@ -38,7 +38,16 @@ package org.openmicroscopy.is;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.awt.image.BufferedImage;
+import javax.imageio.ImageIO;
+
+import org.openmicroscopy.ds.CallRecorder;
 
 /**
  * <p>Defines methods for interacting with an OME image server.  There
@@ -372,6 +381,567 @@ public abstract class ImageServer
                                   boolean bigEndian)
         throws ImageServerException;
 
+    /**
+     * <p>Reads the entire pixel file for the given pixel ID into a
+     * caller-supplied buffer.  The pixels are read directly from the
+     * image server's response into the buffer, starting at its
+     * current position; no intermediate array is allocated.  The
+     * buffer may be a direct buffer.</p>
+     *
+     * <p>The pixels are requested in the byte order of the buffer
+     * (as returned by {@link ByteBuffer#order()}), so that the
+     * buffer's typed accessors can be used to read the pixel values
+     * immediately.  The image server will take care of performing the
+     * appropriate conversion for you.</p>
+     *
+     * <p>On return, the buffer's position will have been advanced
+     * past the pixels that were read.  If the buffer does not have
+     * enough space remaining to hold the entire response, an
+     * exception is thrown.  The {@link PixelsFileFormat#getPixelsSize}
+     * method can be used to determine the required size.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param buf the buffer to read the pixels into
+     * @return the number of bytes read into the buffer
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the buffer is too small
+     */
+    public abstract int getPixels(long pixelsID, ByteBuffer buf)
+        throws ImageServerException;
+
+    /**
+     * <p>Reads the entire pixel file for the given pixel ID, passing
+     * the pixels to the specified handler as they are read from the
+     * image server.  No array is allocated to hold the entire
+     * response.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param handler the handler which will receive the pixels
+     * @return the number of bytes read
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the handler throws an exception
+     */
+    public abstract long getPixels(long pixelsID, boolean bigEndian,
+                                   PixelsChunkHandler handler)
+        throws ImageServerException;
+
+    /**
+     * <p>Reads a stack of pixels into a caller-supplied buffer.  The
+     * stack is specified by its C and T coordinates, which have
+     * 0-based indices.  The pixels are requested in the byte order of
+     * the buffer, and are read directly from the image server's
+     * response into the buffer, starting at its current
+     * position.</p>
+     *
+     * @see #getPixels(long,ByteBuffer)
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param theC the C parameter of the desired stack
+     * @param theT the T parameter of the desired stack
+     * @param buf the buffer to read the pixels into
+     * @return the number of bytes read into the buffer
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the buffer is too small
+     */
+    public abstract int getStack(long pixelsID,
+                                 int theC, int theT,
+                                 ByteBuffer buf)
+        throws ImageServerException;
+
+    /**
+     * <p>Reads a stack of pixels, passing the pixels to the specified
+     * handler as they are read from the image server.  The stack is
+     * specified by its C and T coordinates, which have 0-based
+     * indices.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param theC the C parameter of the desired stack
+     * @param theT the T parameter of the desired stack
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param handler the handler which will receive the pixels
+     * @return the number of bytes read
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the handler throws an exception
+     */
+    public abstract long getStack(long pixelsID,
+                                  int theC, int theT,
+                                  boolean bigEndian,
+                                  PixelsChunkHandler handler)
+        throws ImageServerException;
+
+    /**
+     * <p>Reads a plane of pixels into a caller-supplied buffer.  The
+     * plane is specified by its Z, C and T coordinates, which have
+     * 0-based indices.  The pixels are requested in the byte order of
+     * the buffer, and are read directly from the image server's
+     * response into the buffer, starting at its current position.
+     * Client code which reads many planes can therefore reuse a
+     * single buffer (obtained, for instance, via {@link
+     * ByteBuffer#allocateDirect}) for all of them.</p>
+     *
+     * @see #getPixels(long,ByteBuffer)
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param theZ the Z parameter of the desired plane
+     * @param theC the C parameter of the desired plane
+     * @param theT the T parameter of the desired plane
+     * @param buf the buffer to read the pixels into
+     * @return the number of bytes read into the buffer
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the buffer is too small
+     */
+    public abstract int getPlane(long pixelsID,
+                                 int theZ, int theC, int theT,
+                                 ByteBuffer buf)
+        throws ImageServerException;
+
+    /**
+     * <p>Reads a plane of pixels, passing the pixels to the specified
+     * handler as they are read from the image server.  The plane is
+     * specified by its Z, C and T coordinates, which have 0-based
+     * indices.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param theZ the Z parameter of the desired plane
+     * @param theC the C parameter of the desired plane
+     * @param theT the T parameter of the desired plane
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param handler the handler which will receive the pixels
+     * @return the number of bytes read
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the handler throws an exception
+     */
+    public abstract long getPlane(long pixelsID,
+                                  int theZ, int theC, int theT,
+                                  boolean bigEndian,
+                                  PixelsChunkHandler handler)
+        throws ImageServerException;
+
+    /**
+     * <p>Reads an arbitrary hyper-rectangular region of an image into
+     * a caller-supplied buffer.  The region is specified in the same
+     * way as for the {@link
+     * #getROI(long,int,int,int,int,int,int,int,int,int,int,boolean)}
+     * method.  The pixels are requested in the byte order of the
+     * buffer, and are read directly from the image server's response
+     * into the buffer, starting at its current position.</p>
+     *
+     * @see #getPixels(long,ByteBuffer)
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param buf the buffer to read the pixels into
+     * @return the number of bytes read into the buffer
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the buffer is too small
+     */
+    public abstract int getROI(long pixelsID,
+                               int x0,int y0,int z0,int c0,int t0,
+                               int x1,int y1,int z1,int c1,int t1,
+                               ByteBuffer buf)
+        throws ImageServerException;
+
+    /**
+     * <p>Reads an arbitrary hyper-rectangular region of an image,
+     * passing the pixels to the specified handler as they are read
+     * from the image server.  The region is specified in the same
+     * way as for the {@link
+     * #getROI(long,int,int,int,int,int,int,int,int,int,int,boolean)}
+     * method.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param handler the handler which will receive the pixels
+     * @return the number of bytes read
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the handler throws an exception
+     */
+    public abstract long getROI(long pixelsID,
+                                int x0,int y0,int z0,int c0,int t0,
+                                int x1,int y1,int z1,int c1,int t1,
+                                boolean bigEndian,
+                                PixelsChunkHandler handler)
+        throws ImageServerException;
+
+    /**
+     * <p>Reverses the byte order of each pixel in a buffer, in place.
+     * The pixels between the buffer's position and its limit are
+     * swapped, and the buffer's byte order is switched to match, so
+     * that its typed accessors continue to return the correct pixel
+     * values.  The buffer's position and limit are not changed.</p>
+     *
+     * <p>This can be used to convert a buffer which has already been
+     * filled with pixels in one byte order to the other, without
+     * copying it or reading it again from the image server.</p>
+     *
+     * @param buf the buffer to convert
+     * @param bytesPerPixel the number of bytes used to store a single
+     * pixel
+     */
+    public static void swapBytes(ByteBuffer buf, int bytesPerPixel)
+    {
+        int start = buf.position();
+        int end = buf.limit();
+
+        if ((end-start) % bytesPerPixel != 0)
+            throw new IllegalArgumentException("Buffer does not contain a whole number of pixels");
+
+        if (bytesPerPixel == 2)
+        {
+            for (int i = start; i < end; i += 2)
+            {
+                byte b = buf.get(i);
+                buf.put(i,buf.get(i+1));
+                buf.put(i+1,b);
+            }
+        } else if (bytesPerPixel == 4) {
+            for (int i = start; i < end; i += 4)
+            {
+                byte b0 = buf.get(i);
+                byte b1 = buf.get(i+1);
+                buf.put(i,buf.get(i+3));
+                buf.put(i+1,buf.get(i+2));
+                buf.put(i+2,b1);
+                buf.put(i+3,b0);
+            }
+        } else if (bytesPerPixel != 1) {
+            throw new IllegalArgumentException("Invalid bytes per pixel: "+
+                                               bytesPerPixel);
+        }
+
+        buf.order(buf.order() == ByteOrder.BIG_ENDIAN?
+                  ByteOrder.LITTLE_ENDIAN:
+                  ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * The pipeline used to execute this instance's asynchronous
+     * requests.  Created on demand by the {@link #getPipeline}
+     * method.
+     */
+    private RequestPipeline  pipeline;
+
+    /**
+     * The number of requests which this instance's pipeline will
+     * allow to be in flight at once.
+     */
+    private int  maxRequestsInFlight = RequestPipeline.DEFAULT_MAX_IN_FLIGHT;
+
+    /**
+     * Returns the pipeline used to execute this instance's
+     * asynchronous requests, creating it if necessary.
+     */
+    protected synchronized RequestPipeline getPipeline()
+    {
+        if (pipeline == null)
+            pipeline = new RequestPipeline("ImageServer",maxRequestsInFlight);
+        return pipeline;
+    }
+
+    /**
+     * Returns the number of asynchronous requests which can be in
+     * flight at once.
+     * @return the maximum number of requests in flight
+     */
+    public synchronized int getMaxRequestsInFlight()
+    {
+        return maxRequestsInFlight;
+    }
+
+    /**
+     * <p>Sets the number of asynchronous requests which can be in
+     * flight at once.  Higher values allow more network latency to be
+     * hidden, at the cost of more simultaneous connections to the
+     * image server.  Once this many requests are executing, and as
+     * many again are queued, the <code>*Async</code> methods block
+     * until a request finishes.</p>
+     *
+     * @param maxRequestsInFlight the maximum number of requests in
+     * flight
+     */
+    public synchronized void setMaxRequestsInFlight(int maxRequestsInFlight)
+    {
+        if (maxRequestsInFlight <= 0)
+            throw new IllegalArgumentException("Must allow at least one request in flight");
+        this.maxRequestsInFlight = maxRequestsInFlight;
+        if (pipeline != null)
+            pipeline.setMaxInFlight(maxRequestsInFlight);
+    }
+
+    /**
+     * The recorder which records each call made to the image server,
+     * or <code>null</code>.
+     */
+    private volatile CallRecorder  callRecorder;
+
+    /**
+     * Returns the {@link CallRecorder} which records each call made to
+     * the image server, or <code>null</code>.
+     */
+    public CallRecorder getCallRecorder() { return callRecorder; }
+
+    /**
+     * Sets the {@link CallRecorder} which records each call made to
+     * the image server, under the name of its OMEIS method (for
+     * instance, <code>GetPlane</code>).  A value of <code>null</code>,
+     * the default, disables recording.
+     *
+     * @param callRecorder the recorder to use
+     */
+    public void setCallRecorder(CallRecorder callRecorder)
+    {
+        this.callRecorder = callRecorder;
+    }
+
+    /**
+     * <p>Submits an arbitrary request for asynchronous execution on
+     * this instance's pipeline.  This can be used to pipeline any
+     * image server call for which there is no <code>*Async</code>
+     * method.  If the pipeline is full, this method blocks until
+     * there is room for the request.</p>
+     *
+     * @param request the request to execute
+     * @return the request
+     * @throws ImageServerException if the calling thread is
+     * interrupted while waiting for room in the pipeline
+     */
+    public ImageServerRequest submitRequest(ImageServerRequest request)
+        throws ImageServerException
+    {
+        return getPipeline().submit(request);
+    }
+
+    /**
+     * <p>Asynchronously retrieves a pixel array of the specified
+     * plane.  The request is sent to the image server as soon as
+     * there is room in the pipeline; this method returns immediately
+     * unless the pipeline is full.  The result of the request is the
+     * <code>byte[]</code> that would be returned by the {@link
+     * #getPlane(long,int,int,int,boolean)} method.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param theZ the Z parameter of the desired plane
+     * @param theC the C parameter of the desired plane
+     * @param theT the T parameter of the desired plane
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param callback the callback to notify when the request
+     * finishes, or <code>null</code>
+     * @return the pending request
+     * @throws ImageServerException if the calling thread is
+     * interrupted while waiting for room in the pipeline
+     */
+    public ImageServerRequest getPlaneAsync(final long pixelsID,
+                                            final int theZ,
+                                            final int theC,
+                                            final int theT,
+                                            final boolean bigEndian,
+                                            ImageServerCallback callback)
+        throws ImageServerException
+    {
+        return submitRequest(new ImageServerRequest(callback)
+            {
+                protected Object execute()
+                    throws ImageServerException
+                {
+                    return getPlane(pixelsID,theZ,theC,theT,bigEndian);
+                }
+            });
+    }
+
+    /**
+     * <p>Asynchronously reads a plane of pixels into a caller-supplied
+     * buffer.  The result of the request is an {@link Integer}
+     * containing the number of bytes read.  The buffer must not be
+     * used by the caller until the request has finished.</p>
+     *
+     * @see #getPlane(long,int,int,int,ByteBuffer)
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param theZ the Z parameter of the desired plane
+     * @param theC the C parameter of the desired plane
+     * @param theT the T parameter of the desired plane
+     * @param buf the buffer to read the pixels into
+     * @param callback the callback to notify when the request
+     * finishes, or <code>null</code>
+     * @return the pending request
+     * @throws ImageServerException if the calling thread is
+     * interrupted while waiting for room in the pipeline
+     */
+    public ImageServerRequest getPlaneAsync(final long pixelsID,
+                                            final int theZ,
+                                            final int theC,
+                                            final int theT,
+                                            final ByteBuffer buf,
+                                            ImageServerCallback callback)
+        throws ImageServerException
+    {
+        return submitRequest(new ImageServerRequest(callback)
+            {
+                protected Object execute()
+                    throws ImageServerException
+                {
+                    return new Integer(getPlane(pixelsID,theZ,theC,theT,buf));
+                }
+            });
+    }
+
+    /**
+     * <p>Asynchronously retrieves a pixel array of the specified
+     * stack.  The result of the request is the <code>byte[]</code>
+     * that would be returned by the {@link
+     * #getStack(long,int,int,boolean)} method.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param theC the C parameter of the desired stack
+     * @param theT the T parameter of the desired stack
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param callback the callback to notify when the request
+     * finishes, or <code>null</code>
+     * @return the pending request
+     * @throws ImageServerException if the calling thread is
+     * interrupted while waiting for room in the pipeline
+     */
+    public ImageServerRequest getStackAsync(final long pixelsID,
+                                            final int theC,
+                                            final int theT,
+                                            final boolean bigEndian,
+                                            ImageServerCallback callback)
+        throws ImageServerException
+    {
+        return submitRequest(new ImageServerRequest(callback)
+            {
+                protected Object execute()
+                    throws ImageServerException
+                {
+                    return getStack(pixelsID,theC,theT,bigEndian);
+                }
+            });
+    }
+
+    /**
+     * <p>Asynchronously retrieves a pixel array of an arbitrary
+     * hyper-rectangular region of an image.  The result of the
+     * request is the <code>byte[]</code> that would be returned by
+     * the {@link
+     * #getROI(long,int,int,int,int,int,int,int,int,int,int,boolean)}
+     * method.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param callback the callback to notify when the request
+     * finishes, or <code>null</code>
+     * @return the pending request
+     * @throws ImageServerException if the calling thread is
+     * interrupted while waiting for room in the pipeline
+     */
+    public ImageServerRequest getROIAsync(final long pixelsID,
+                                          final int x0, final int y0,
+                                          final int z0, final int c0,
+                                          final int t0,
+                                          final int x1, final int y1,
+                                          final int z1, final int c1,
+                                          final int t1,
+                                          final boolean bigEndian,
+                                          ImageServerCallback callback)
+        throws ImageServerException
+    {
+        return submitRequest(new ImageServerRequest(callback)
+            {
+                protected Object execute()
+                    throws ImageServerException
+                {
+                    return getROI(pixelsID,
+                                  x0,y0,z0,c0,t0,
+                                  x1,y1,z1,c1,t1,
+                                  bigEndian);
+                }
+            });
+    }
+
+    /**
+     * <p>Returns pixel arrays for several planes at once.  Each plane
+     * is specified by a <code>{theZ, theC, theT}</code> triple in the
+     * <code>zctList</code> array; the planes are returned in the same
+     * order.  This is more efficient than calling {@link
+     * #getPlane(long,int,int,int,boolean)} for each plane, especially
+     * for many small planes, since the planes are fetched with as few
+     * round trips to the image server as possible.</p>
+     *
+     * <p>This default implementation fetches each plane separately,
+     * but keeps several requests in flight at once via the
+     * instance's request pipeline (see {@link
+     * #setMaxRequestsInFlight}).  Subclasses which can fetch several
+     * planes with a single call override it.</p>
+     *
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param zctList the Z, C and T parameters of the desired planes
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @return an array of pixels for each of the specified planes
+     * @throws ImageServerException if there was an error contacting
+     * the image server or if the pixels ID does not exist or is not
+     * readable
+     */
+    public byte[][] getPlanes(long pixelsID,
+                              int[][] zctList,
+                              boolean bigEndian)
+        throws ImageServerException
+    {
+        checkPlaneList(zctList);
+
+        ImageServerRequest[] requests =
+            new ImageServerRequest[zctList.length];
+        for (int i = 0; i < zctList.length; i++)
+            requests[i] = getPlaneAsync(pixelsID,
+                                        zctList[i][0],
+                                        zctList[i][1],
+                                        zctList[i][2],
+                                        bigEndian,
+                                        null);
+
+        byte[][] result = new byte[zctList.length][];
+        for (int i = 0; i < requests.length; i++)
+            result[i] = (byte[]) requests[i].waitForResult();
+        return result;
+    }
+
+    /**
+     * Helper method -- ensures that each entry in a list of planes
+     * is a <code>{theZ, theC, theT}</code> triple.
+     */
+    protected static void checkPlaneList(int[][] zctList)
+    {
+        if (zctList == null)
+            throw new IllegalArgumentException("Plane list cannot be null");
+        for (int i = 0; i < zctList.length; i++)
+            if (zctList[i] == null || zctList[i].length != 3)
+                throw new IllegalArgumentException("Each plane must be specified by a {theZ,theC,theT} triple");
+    }
+
     /**
      * <p>Sends an entire array of pixels for the given pixels ID.
      * The pixels are specified by a byte array, which should be a raw
@@ -629,6 +1199,221 @@ public abstract class ImageServer
     public abstract StackStatistics getStackStatistics(long pixelsID)
         throws ImageServerException;
 
+    /**
+     * The default byte budget of the statistics cache of each image
+     * server instance.
+     * @see #setMaximumStatisticsCacheSize
+     */
+    public static final long MAXIMUM_STATISTICS_CACHE_SIZE = 16*1024*1024;
+
+    /** The byte budget of the statistics cache. */
+    private long  maximumStatisticsCacheSize = MAXIMUM_STATISTICS_CACHE_SIZE;
+
+    /**
+     * The cached statistics tables, keyed by {@link StatisticsKey}.
+     * This map is kept in access order, so its first entry is always
+     * the least recently used table.
+     */
+    private LinkedHashMap  statisticsTables = new LinkedHashMap(16,0.75f,true);
+
+    /**
+     * <p>Returns a {@link StatisticsTable} containing the specified
+     * plane statistics of a pixels file.  Only the statistics which
+     * are asked for are parsed and stored; a <code>null</code> array
+     * asks for all of them.  The table is cached, so later calls for
+     * the same pixels file only contact the image server if they ask
+     * for statistics which have not been loaded yet.</p>
+     *
+     * @param pixelsID the pixels ID of a finished pixels file
+     * @param statistics the statistics to load (see the constants in
+     * {@link StatisticsTable}), or <code>null</code> for all of them
+     * @return the plane statistics of the pixels file
+     * @throws ImageServerException if there was an error contacting
+     * the image server or if the pixels ID does not exist
+     */
+    public StatisticsTable getPlaneStatisticsTable(long pixelsID,
+                                                   int[] statistics)
+        throws ImageServerException
+    {
+        return getStatisticsTable(pixelsID,false,statistics);
+    }
+
+    /**
+     * <p>Returns a {@link StatisticsTable} containing the specified
+     * stack statistics of a pixels file.  Only the statistics which
+     * are asked for are parsed and stored; a <code>null</code> array
+     * asks for all of them.  The table is cached, so later calls for
+     * the same pixels file only contact the image server if they ask
+     * for statistics which have not been loaded yet.</p>
+     *
+     * @param pixelsID the pixels ID of a finished pixels file
+     * @param statistics the statistics to load (see the constants in
+     * {@link StatisticsTable}), or <code>null</code> for all of them
+     * @return the stack statistics of the pixels file
+     * @throws ImageServerException if there was an error contacting
+     * the image server or if the pixels ID does not exist
+     */
+    public StatisticsTable getStackStatisticsTable(long pixelsID,
+                                                   int[] statistics)
+        throws ImageServerException
+    {
+        return getStatisticsTable(pixelsID,true,statistics);
+    }
+
+    /**
+     * Removes any cached statistics for the specified pixels file.
+     *
+     * @param pixelsID the pixels ID of a pixels file
+     */
+    public void invalidateStatistics(long pixelsID)
+    {
+        synchronized (statisticsTables)
+        {
+            statisticsTables.remove(new StatisticsKey(pixelsID,false));
+            statisticsTables.remove(new StatisticsKey(pixelsID,true));
+        }
+    }
+
+    /**
+     * Removes all of the cached statistics.
+     */
+    public void clearStatisticsCache()
+    {
+        synchronized (statisticsTables)
+        {
+            statisticsTables.clear();
+        }
+    }
+
+    /**
+     * Returns the byte budget of the statistics cache of this image
+     * server instance.
+     * @return the maximum size of the statistics cache, in bytes
+     */
+    public long getMaximumStatisticsCacheSize()
+    {
+        synchronized (statisticsTables)
+        {
+            return maximumStatisticsCacheSize;
+        }
+    }
+
+    /**
+     * Sets the byte budget of the statistics cache of this image
+     * server instance.  If the cache is already larger than this, the
+     * least recently used tables are discarded at once.
+     * @param maximumSize the maximum size of the statistics cache, in
+     * bytes
+     */
+    public void setMaximumStatisticsCacheSize(long maximumSize)
+    {
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("Maximum size cannot be negative");
+
+        synchronized (statisticsTables)
+        {
+            maximumStatisticsCacheSize = maximumSize;
+            trimStatisticsCache();
+        }
+    }
+
+    /**
+     * Discards the least recently used statistics tables until the
+     * cache fits in its byte budget.  The caller must hold the lock
+     * on the cache.
+     */
+    private void trimStatisticsCache()
+    {
+        long size = 0;
+        Iterator it = statisticsTables.values().iterator();
+        while (it.hasNext())
+            size += ((StatisticsTable) it.next()).getSize();
+
+        it = statisticsTables.values().iterator();
+        while (size > maximumStatisticsCacheSize && it.hasNext())
+        {
+            StatisticsTable eldest = (StatisticsTable) it.next();
+            it.remove();
+            size -= eldest.getSize();
+        }
+    }
+
+    private StatisticsTable getStatisticsTable(long pixelsID,
+                                               boolean stack,
+                                               int[] statistics)
+        throws ImageServerException
+    {
+        StatisticsKey key = new StatisticsKey(pixelsID,stack);
+        StatisticsTable table;
+        synchronized (statisticsTables)
+        {
+            table = (StatisticsTable) statisticsTables.get(key);
+        }
+
+        if (table == null)
+        {
+            PixelsFileFormat pff = getPixelsInfo(pixelsID);
+            table = new StatisticsTable(pixelsID,stack,
+                                        pff.getSizeZ(),
+                                        pff.getSizeC(),
+                                        pff.getSizeT());
+        }
+
+        int[] missing = table.getMissing(statistics);
+        if (missing.length > 0)
+            loadStatistics(table,missing);
+
+        synchronized (statisticsTables)
+        {
+            statisticsTables.put(key,table);
+            trimStatisticsCache();
+        }
+
+        return table;
+    }
+
+    /**
+     * Reads the specified statistics from the image server, and
+     * stores them in the columns of a statistics table.
+     *
+     * @param table the table to fill in
+     * @param statistics the statistics to read, none of which have
+     * been loaded yet
+     * @throws ImageServerException if there was an error contacting
+     * the image server or if the pixels ID does not exist
+     */
+    protected abstract void loadStatistics(StatisticsTable table,
+                                           int[] statistics)
+        throws ImageServerException;
+
+    /**
+     * The key used to identify a cached statistics table.
+     */
+    private static final class StatisticsKey
+    {
+        final long pixelsID;
+        final boolean stack;
+
+        StatisticsKey(long pixelsID, boolean stack)
+        {
+            this.pixelsID = pixelsID;
+            this.stack = stack;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof StatisticsKey)) return false;
+            StatisticsKey key = (StatisticsKey) o;
+            return (key.pixelsID == pixelsID) && (key.stack == stack);
+        }
+
+        public int hashCode()
+        {
+            int h = (int) (pixelsID ^ (pixelsID >>> 32));
+            return stack? ~h: h;
+        }
+    }
+
     /**
      * Composites a single plane of a multi-channel image into a
      * grayscale or RGB image, according to the state of the
@@ -685,6 +1470,73 @@ public abstract class ImageServer
                                                int sizeX, int sizeY)
         throws ImageServerException;
 
+    /**
+     * Composites a single plane of a multi-channel image into a
+     * grayscale or RGB image, returning the image in its encoded
+     * (JPEG) form.  This avoids decoding the image in client code
+     * which only needs to pass it along, such as a web gallery.
+     *
+     * @see #getComposite
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param settings a {@link CompositingSettings} object describing
+     * the compositing which should be performed
+     * @return the encoded image
+     */
+    public abstract byte[] getCompositeBytes(long pixelsID,
+                                             CompositingSettings settings)
+        throws ImageServerException;
+
+    /**
+     * Returns a thumbnail for the specified image in its encoded
+     * form.
+     *
+     * @see #getThumbnail(long)
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @return the encoded thumbnail
+     */
+    public abstract byte[] getThumbnailBytes(long pixelsID)
+        throws ImageServerException;
+
+    /**
+     * Returns a thumbnail for the specified image of the requested
+     * size in its encoded form.
+     *
+     * @see #getThumbnail(long,int,int)
+     * @param pixelsID the pixels ID of a previously created pixels
+     * file
+     * @param sizeX the width of the desired thumbnail
+     * @param sizeY the height of the desired thumbnail
+     * @return the encoded thumbnail
+     */
+    public abstract byte[] getThumbnailBytes(long pixelsID,
+                                             int sizeX, int sizeY)
+        throws ImageServerException;
+
+    /**
+     * Decodes an image returned by one of the {@link
+     * #getCompositeBytes} or {@link #getThumbnailBytes} methods.
+     *
+     * @param imageBuf the encoded image
+     * @return the decoded image
+     * @throws ImageServerException if the image cannot be decoded
+     */
+    public static BufferedImage decodeImage(byte[] imageBuf)
+        throws ImageServerException
+    {
+        ByteArrayInputStream  is = new ByteArrayInputStream(imageBuf);
+        try
+        {
+            BufferedImage image = ImageIO.read(is);
+            if (image == null)
+                throw new ImageServerException("Invalid response: unrecognized image format");
+            return image;
+        } catch (IOException e) {
+            throw new ImageServerException("Cannot read byte array stream?");
+        }
+    }
+
     /**
      * <p>Transfers the specified file to the image server, returning
      * a file ID.  This ID can then be used in calls to the
@@ -701,6 +1553,220 @@ public abstract class ImageServer
     public abstract long uploadFile(File file)
         throws ImageServerException, FileNotFoundException;
 
+    /**
+     * <p>Transfers a file to the image server in chunks, returning a
+     * file ID.  The chunks are written into a pending file created by
+     * the {@link #newFile} method; up to {@link
+     * #getMaxRequestsInFlight} of them are sent at once.  Each chunk
+     * is verified against its SHA-1 digest as it is written, and the
+     * finished file is verified against the digest of the local
+     * file.</p>
+     *
+     * <p>If this method throws an exception, the chunks which were
+     * successfully written are recorded in the {@link FileUpload}
+     * object.  Calling this method again with the same object will
+     * resume the upload, sending only the remaining chunks.  If the
+     * <code>FinishFile</code> call fails, the pending file might no
+     * longer exist, so the next call starts the upload over.  If the
+     * file was finished but could not be verified, only the
+     * verification is retried.  Calling it with an upload which has
+     * already finished simply returns the ID of the uploaded file.</p>
+     *
+     * <p>Files which fit in a single chunk, and all files sent to
+     * image servers which report that they do not have a
+     * <code>NewFile</code> method, are sent with a single {@link #uploadFile(File)} call
+     * instead, and then verified in the same way.</p>
+     *
+     * @param upload the file to upload, and the progress of any
+     * previous attempt to upload it
+     * @return the ID of the uploaded file
+     * @throws ImageServerException if there was an error contacting
+     * the image server, uploading the file, or verifying it
+     * @throws FileNotFoundException if the specified file cannot be
+     * read
+     */
+    public long uploadFile(FileUpload upload)
+        throws ImageServerException, FileNotFoundException
+    {
+        if (upload == null)
+            throw new IllegalArgumentException("Upload cannot be null");
+        if (upload.isFinished())
+            return upload.getFileID();
+
+        String sha1 = upload.getSHA1();
+        long fileID = upload.getUnverifiedFileID();
+
+        // If an earlier attempt finished the file but could not verify
+        // it, the pending file no longer exists, so only the
+        // verification is retried.
+        if (fileID < 0 &&
+            upload.getChunkCount() > 1 && upload.getPendingFileID() < 0)
+        {
+            try
+            {
+                upload.setPendingFileID(newFile(upload.getFile().getName(),
+                                                upload.getLength()));
+            } catch (UnknownMethodException e) {
+                // Older image servers can only accept the file in a
+                // single piece.
+                fileID = uploadFile(upload.getFile());
+                upload.setUnverifiedFileID(fileID);
+            }
+        }
+
+        if (fileID < 0)
+        {
+            if (upload.getPendingFileID() < 0)
+            {
+                fileID = uploadFile(upload.getFile());
+            } else {
+                uploadChunks(upload);
+                try
+                {
+                    fileID = finishFile(upload.getPendingFileID());
+                } catch (ImageServerException e) {
+                    // A failed FinishFile call might still have
+                    // finished or deleted the pending file, so it
+                    // cannot be finished again.
+                    upload.reset();
+                    throw e;
+                }
+            }
+            upload.setUnverifiedFileID(fileID);
+        }
+
+        String serverSHA1 = getFileSHA1(fileID);
+        if (!sha1.equalsIgnoreCase(serverSHA1))
+        {
+            // The pending file has been finished, so a retry has to
+            // start from scratch.
+            upload.reset();
+            throw new ImageServerException("Uploaded file does not match "+
+                                           upload.getFile()+" (SHA-1 "+
+                                           serverSHA1+", expected "+
+                                           sha1+")");
+        }
+
+        upload.setFileID(fileID);
+        return fileID;
+    }
+
+    /**
+     * Helper method -- writes each chunk of an upload which has not
+     * already been written, using the request pipeline.  All of the
+     * requests are allowed to finish before any error is reported, so
+     * that every chunk which was written is recorded.
+     */
+    private void uploadChunks(final FileUpload upload)
+        throws ImageServerException
+    {
+        final long pendingFileID = upload.getPendingFileID();
+        ImageServerRequest[] requests =
+            new ImageServerRequest[upload.getChunkCount()];
+        ImageServerException error = null;
+
+        try
+        {
+            for (int i = 0; i < requests.length; i++)
+            {
+                if (upload.isChunkUploaded(i))
+                    continue;
+
+                final int chunk = i;
+                requests[i] = submitRequest(new ImageServerRequest()
+                    {
+                        protected Object execute()
+                            throws ImageServerException
+                        {
+                            byte[] buf = upload.readChunk(chunk);
+                            String expected = FileUpload.digest(buf);
+                            String actual =
+                                writeFile(pendingFileID,
+                                          upload.getChunkOffset(chunk),
+                                          buf);
+                            if (!expected.equalsIgnoreCase(actual))
+                                throw new ImageServerException("Chunk "+chunk+" of "+upload.getFile()+" was corrupted during upload");
+
+                            upload.setChunkUploaded(chunk);
+                            return null;
+                        }
+                    });
+            }
+        } catch (ImageServerException e) {
+            error = e;
+        }
+
+        for (int i = 0; i < requests.length; i++)
+        {
+            if (requests[i] == null)
+                continue;
+
+            try
+            {
+                requests[i].waitForResult();
+            } catch (ImageServerException e) {
+                if (error == null)
+                    error = e;
+            }
+        }
+
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * <p>Creates a new pending file of the specified length on the
+     * image server, returning its file ID.  The contents of the file
+     * are sent with the {@link #writeFile} method, in any order and
+     * from any number of threads.  The file cannot be read, or used
+     * in any <code>convert*</code> calls, until the {@link
+     * #finishFile} method is called.</p>
+     *
+     * <p>Most client code should use the {@link
+     * #uploadFile(FileUpload)} method instead of calling this method
+     * directly.</p>
+     *
+     * @param name the original name of the file
+     * @param length the length of the file in bytes
+     * @return the ID of the pending file
+     * @throws ImageServerException if there was an error contacting
+     * the image server or creating the file
+     */
+    public abstract long newFile(String name, long length)
+        throws ImageServerException;
+
+    /**
+     * Writes a range of bytes into a pending file, returning the
+     * SHA-1 digest of the range as it was received by the image
+     * server.
+     *
+     * @param fileID the ID of a pending file created by the {@link
+     * #newFile} method
+     * @param offset the offset into the file to start writing at
+     * @param buf the data to write
+     * @return the SHA-1 digest of the data written, as a hex string
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the file has already been finished, or if
+     * the range extends past the end of the file
+     */
+    public abstract String writeFile(long fileID, long offset, byte[] buf)
+        throws ImageServerException;
+
+    /**
+     * Finishes a pending file, making it available for reading.  If
+     * the image server already contains a file with the same
+     * contents, the ID of that file is returned, and the pending file
+     * is discarded.
+     *
+     * @param fileID the ID of a pending file created by the {@link
+     * #newFile} method
+     * @return the ID of the finished file
+     * @throws ImageServerException if there was an error contacting
+     * the image server or finishing the file
+     */
+    public abstract long finishFile(long fileID)
+        throws ImageServerException;
+
     /**
      * Returns the original filename and length of a previously
      * uploaded file.
@@ -738,7 +1804,7 @@ public abstract class ImageServer
      * Reads a portion of an uploaded file, without using any caching.
      * This is usually not the method you should use to read from an
      * image server file; the {@link #readFile} method implements a
-     * limited form of caching and can be much more efficient.
+     * block cache and can be much more efficient.
      *
      * @see #readFile
      * @param fileID the ID of the previously uploaded file
@@ -761,56 +1827,70 @@ public abstract class ImageServer
     public static int MAXIMUM_READ_TO_USE_CACHE = 2048;
 
     /**
-     * The size of the cache used by the {@link #readFile} method.
+     * The block size used by the default read cache of each image
+     * server instance.
      * @see #readFile
+     * @see #setReadCache
      */
-    public static int CACHE_SIZE = 4096;
-
-    /** Whether the read cache is currently filled. */
-    private boolean  cacheFilled = false;
+    public static int CACHE_SIZE = FileBlockCache.DEFAULT_BLOCK_SIZE;
 
-    /** The actual data of the read cache. */
-    private byte[]   cache;
-
-    /** The image server ID of the file in the read cache. */
-    private long     cachedFileID;
+    /**
+     * The byte budget of the default read cache of each image server
+     * instance.
+     * @see #readFile
+     * @see #setReadCache
+     */
+    public static long MAXIMUM_CACHE_SIZE = FileBlockCache.DEFAULT_MAXIMUM_SIZE;
 
-    /** The {@link FileInfo} object describing the file in the read cache. */
-    private FileInfo cachedFileInfo;
+    /** The block cache used by the {@link #readFile} method. */
+    private FileBlockCache  readCache =
+        new FileBlockCache(CACHE_SIZE,MAXIMUM_CACHE_SIZE);
 
-    /** The offset into the file of the start of the read cache. */
-    private long     cacheStart;
+    /**
+     * Returns the block cache used by the {@link #readFile} method.
+     * This can be used to inspect the cache's hit and miss counters.
+     * @return the read cache of this image server instance
+     */
+    public FileBlockCache getReadCache() { return readCache; }
 
-    /** The length of the read cache. */
-    private int      cacheLength;
+    /**
+     * Sets the block cache used by the {@link #readFile} method.
+     * This can be used to change the block size or byte budget of the
+     * cache.  Any data in the existing cache is discarded.
+     * @param readCache the new read cache
+     */
+    public void setReadCache(FileBlockCache readCache)
+    {
+        if (readCache == null)
+            throw new IllegalArgumentException("Read cache cannot be null");
+        this.readCache = readCache;
+    }
 
     /**
      * <p>Reads a portion of an uploaded file.  The method implements
-     * a limited form of caching, so that client code can read small,
-     * spatially related portions of the file without generating too
-     * many I/O calls to the image server.</p>
+     * a block cache, so that client code can read small, spatially
+     * related portions of the file without generating too many I/O
+     * calls to the image server.</p>
      *
      * <p>The caching is only used if the <code>length</code>
-     * parameter is less than the value of the {@link
-     * #MAXIMUM_READ_TO_USE_CACHE} field.  If it is, the actual
-     * <code>ReadFile</code> call sent to the image server will read a
-     * full block of {@link #CACHE_SIZE} bytes, centered around the
-     * region requested.  Subsequent calls which request data fully
-     * enclosed within the full region will return that data without
-     * generating another image server call.  If the data requested by
-     * the subsequent call does not fall within the cached region, a
-     * new block is read, and the existing one is thrown away.  Note
-     * that this means that interleaving reads from two separate files
-     * will eliminate the benefit of the cache.</p>
-     *
-     * <p>If the requested length is 2K or more, the caching mechanism
-     * will be completely bypassed.  Any previously cached data will
-     * not be modified.</p>
-     *
-     * <p><b>This method is not thread-safe</b>; it is up to the
-     * caller to perform any necessary synchronization.  If multiple
-     * threads try to call this method simultaneously, Bad Things
-     * could happen.</p>
+     * parameter is no more than the value of the {@link
+     * #MAXIMUM_READ_TO_USE_CACHE} field.  If it is, the request is
+     * satisfied from the fixed-size blocks of the image server's
+     * {@link FileBlockCache}.  Any blocks which are not already in the
+     * cache are read from the image server with a single
+     * <code>ReadFile</code> call, and are added to the cache.  Blocks
+     * from several files can be cached at once, so interleaving reads
+     * from separate files does not eliminate the benefit of the
+     * cache.  The least recently used blocks are evicted once the
+     * cache's byte budget is reached.</p>
+     *
+     * <p>If the requested length is larger than {@link
+     * #MAXIMUM_READ_TO_USE_CACHE}, the caching mechanism will be
+     * completely bypassed.  Any previously cached data will not be
+     * modified.</p>
+     *
+     * <p>This method is thread-safe; any number of threads can read
+     * from the same or from different files simultaneously.</p>
      *
      * @param fileID the ID of the previously uploaded file
      * @param offset the offset into the file to start reading from
@@ -823,57 +1903,90 @@ public abstract class ImageServer
                            final long offset, final int length)
         throws ImageServerException
     {
-        if (length <= MAXIMUM_READ_TO_USE_CACHE)
+        if (length > MAXIMUM_READ_TO_USE_CACHE || offset < 0 || length <= 0)
+            return readFileWithoutCaching(fileID,offset,length);
+
+        // Grab a reference to the cache, in case another thread
+        // replaces it while we're reading.
+        final FileBlockCache cache = readCache;
+
+        long fileSize = cache.getFileLength(fileID);
+        if (fileSize < 0)
         {
-            if (!cacheFilled ||
-                cachedFileID != fileID ||
-                offset < cacheStart ||
-                offset+length >= cacheStart+cacheLength)
-            {
-                // This is a cache miss, or the cache has not been
-                // filled yet.
+            fileSize = getFileInfo(fileID).getLength();
+            cache.putFileLength(fileID,fileSize);
+        }
 
-                // If the current cache is also from this file,
-                // there's no need to re-read its length.
-                if (!cacheFilled || cachedFileID != fileID)
-                {
-                    cachedFileInfo = getFileInfo(fileID);
-                }
+        // Let the image server report reads past the end of the file.
+        if (offset+length > fileSize)
+            return readFileWithoutCaching(fileID,offset,length);
+
+        final int  blockSize = cache.getBlockSize();
+        final long firstBlock = offset/blockSize;
+        final long lastBlock = (offset+length-1)/blockSize;
+        final byte[] result = new byte[length];
 
-                // Calculate the bounds of an appropriate cache block,
-                // centered on the requested region.  Ensure that it
-                // does not go past the end of the file.
-                long fileSize = cachedFileInfo.getLength();
-                int extra = CACHE_SIZE-length;
-                long realOffset = offset - (extra/2);
-                if (realOffset < 0) realOffset = 0;
-                long realEnd = realOffset + CACHE_SIZE;
-                if (realEnd > fileSize) realEnd = fileSize;
-                // This should not overflow, since it should have a
-                // maxmimum value of CACHE_SIZE, which is an int.
-                int realSize = (int) (realEnd-realOffset);
-
-                cacheFilled = true;
-                cache = readFileWithoutCaching(fileID,realOffset,realSize);
-                cachedFileID = fileID;
-                cacheStart = realOffset;
-                cacheLength = realSize;
+        long blockIndex = firstBlock;
+        while (blockIndex <= lastBlock)
+        {
+            byte[] block = cache.getBlock(fileID,blockIndex);
+            if (block != null)
+            {
+                copyBlock(block,blockIndex*blockSize,result,offset);
+                blockIndex++;
+                continue;
             }
 
-            // We have either just loaded in an appropriate cache, or
-            // the cache was already filled correctly.  Return the
-            // requested data.
+            // This is a cache miss.  Find the run of consecutive
+            // missing blocks, and read all of them with a single call.
+            long runEnd = blockIndex;
+            while (runEnd < lastBlock &&
+                   !cache.containsBlock(fileID,runEnd+1))
+                runEnd++;
 
-            final byte[] result = new byte[length];
-            for (int i = 0, j = (int) (offset-cacheStart); 
-                 i < length; 
-                 i++, j++)
-                result[i] = cache[j];
+            long runStart = blockIndex*blockSize;
+            long runStop = (runEnd+1)*blockSize;
+            if (runStop > fileSize) runStop = fileSize;
+            // This should not overflow, since the run is never longer
+            // than MAXIMUM_READ_TO_USE_CACHE plus two blocks.
+            byte[] run = readFileWithoutCaching(fileID,runStart,
+                                                (int) (runStop-runStart));
 
-            return result;
-        } else {
-            return readFileWithoutCaching(fileID,offset,length);
+            for (long i = blockIndex; i <= runEnd; i++)
+            {
+                int blockStart = (int) ((i-blockIndex)*blockSize);
+                int blockLength = Math.min(blockSize,run.length-blockStart);
+                if (blockLength <= 0)
+                    throw new ImageServerException("Invalid response: short read from file "+fileID);
+
+                block = new byte[blockLength];
+                System.arraycopy(run,blockStart,block,0,blockLength);
+                cache.putBlock(fileID,i,block);
+                copyBlock(block,i*blockSize,result,offset);
+            }
+
+            blockIndex = runEnd+1;
         }
+
+        return result;
+    }
+
+    /**
+     * Helper method -- copies the portion of a cached block which
+     * overlaps the requested region into the result array.
+     */
+    private static void copyBlock(byte[] block, long blockStart,
+                                  byte[] result, long resultStart)
+        throws ImageServerException
+    {
+        long start = Math.max(blockStart,resultStart);
+        long end = Math.min(blockStart+block.length,
+                            resultStart+result.length);
+        if (end <= start)
+            throw new ImageServerException("Invalid response: short read from file");
+        System.arraycopy(block,(int) (start-blockStart),
+                         result,(int) (start-resultStart),
+                         (int) (end-start));
     }
 
     /**
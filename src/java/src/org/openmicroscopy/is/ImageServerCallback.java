@@ -0,0 +1,80 @@
+/*
+ * org.openmicroscopy.is.ImageServerCallback
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.is;
+
+/**
+ * Receives notification when an asynchronous image server request
+ * finishes.  Instances of this interface can be passed to the
+ * <code>*Async</code> methods of {@link ImageServer} and {@link
+ * PixelsFactory}.  Exactly one of the two methods will be called for
+ * each request.  The methods are called from one of the image
+ * server's pipeline threads, so they should return quickly; any
+ * lengthy processing should be handed off to another thread.
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ * @see ImageServerRequest
+ */
+
+public interface ImageServerCallback
+{
+    /**
+     * Called when a request completes successfully.
+     *
+     * @param request the request which completed
+     * @param result the result of the request; its type depends on
+     * the method which created the request
+     */
+    public void requestCompleted(ImageServerRequest request,
+                                 Object result);
+
+    /**
+     * Called when a request fails.
+     *
+     * @param request the request which failed
+     * @param e the exception describing the failure
+     */
+    public void requestFailed(ImageServerRequest request,
+                              ImageServerException e);
+}
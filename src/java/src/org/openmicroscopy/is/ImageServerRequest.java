@@ -0,0 +1,201 @@
+/*
+ * org.openmicroscopy.is.ImageServerRequest
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.is;
+
+/**
+ * <p>Represents a single image server call which is executed
+ * asynchronously by a {@link RequestPipeline}.  Subclasses implement
+ * the {@link #execute} method to perform the actual call; the
+ * <code>*Async</code> methods of {@link ImageServer} create the
+ * appropriate subclass for each method.</p>
+ *
+ * <p>Client code can wait for the request to finish with the {@link
+ * #waitForResult} method, or can be notified when it finishes by
+ * providing an {@link ImageServerCallback} when the request is
+ * created.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ */
+
+public abstract class ImageServerRequest
+{
+    /** The callback to notify when the request finishes. */
+    private ImageServerCallback callback;
+
+    /** Whether the request has finished. */
+    private boolean done = false;
+
+    /** The result of the request, if it completed successfully. */
+    private Object result;
+
+    /** The exception thrown by the request, if it failed. */
+    private ImageServerException exception;
+
+    /**
+     * Creates a new request which does not notify a callback when it
+     * finishes.
+     */
+    protected ImageServerRequest()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a new request which will notify the specified callback
+     * when it finishes.
+     *
+     * @param callback the callback to notify, or <code>null</code>
+     */
+    protected ImageServerRequest(ImageServerCallback callback)
+    {
+        super();
+        this.callback = callback;
+    }
+
+    /**
+     * Performs the image server call.  This method is called from
+     * one of the pipeline's threads.
+     *
+     * @return the result of the call
+     * @throws ImageServerException if the call fails
+     */
+    protected abstract Object execute()
+        throws ImageServerException;
+
+    /**
+     * <b>Non-public method:</b> Executes the request, records its
+     * result, and notifies any waiting threads and the callback.
+     */
+    void run()
+    {
+        Object result = null;
+        ImageServerException exception = null;
+
+        try
+        {
+            result = execute();
+        } catch (ImageServerException e) {
+            exception = e;
+        } catch (RuntimeException e) {
+            exception = new ImageServerException(e.toString());
+        }
+
+        finish(result,exception);
+    }
+
+    /**
+     * <b>Non-public method:</b> Marks the request as finished without
+     * executing it.  Used when a request cannot be queued.
+     */
+    void fail(ImageServerException e)
+    {
+        finish(null,e);
+    }
+
+    private void finish(Object result, ImageServerException exception)
+    {
+        synchronized (this)
+        {
+            this.result = result;
+            this.exception = exception;
+            this.done = true;
+            notifyAll();
+        }
+
+        if (callback != null)
+        {
+            try
+            {
+                if (exception == null)
+                    callback.requestCompleted(this,result);
+                else
+                    callback.requestFailed(this,exception);
+            } catch (RuntimeException e) {
+                // A broken callback should not kill the pipeline
+                // thread that called it.
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the request has finished, either successfully
+     * or not.
+     */
+    public synchronized boolean isDone() { return done; }
+
+    /**
+     * Returns whether the request finished with an exception.  If the
+     * request has not finished yet, this method returns
+     * <code>false</code>.
+     */
+    public synchronized boolean isFailed() { return exception != null; }
+
+    /**
+     * Waits for the request to finish, and returns its result.
+     *
+     * @return the result of the request; its type depends on the
+     * method which created the request
+     * @throws ImageServerException if the request failed, or if the
+     * calling thread was interrupted while waiting
+     */
+    public synchronized Object waitForResult()
+        throws ImageServerException
+    {
+        while (!done)
+        {
+            try
+            {
+                wait();
+            } catch (InterruptedException e) {
+                throw new ImageServerException("Interrupted while waiting for image server request");
+            }
+        }
+
+        if (exception != null)
+            throw exception;
+        return result;
+    }
+}
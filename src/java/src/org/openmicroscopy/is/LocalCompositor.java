@@ -0,0 +1,781 @@
+/*
+ * org.openmicroscopy.is.LocalCompositor
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+
+
+
+
+package org.openmicroscopy.is;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * <p>Composites the planes of a pixels file into grayscale or RGB
+ * images on the client, rather than sending a <code>Composite</code>
+ * request to the image server for each change in the compositing
+ * settings.  The raw planes are fetched once, with the {@link
+ * ImageServer#getPlane(long,int,int,int,boolean)} method, and kept in
+ * a bounded cache; each call to {@link #composite} then only has to
+ * map the cached pixels through a lookup table for each active
+ * channel.  This is fast enough to follow the black and white level
+ * sliders of an interactive viewer.</p>
+ *
+ * <p>The mapping is the same one that the image server performs.
+ * The black and white levels of each channel are interpreted
+ * according to the level basis of the {@link CompositingSettings},
+ * clamped to the range of the channel's pixel values, and used to
+ * scale the pixels linearly into the range 0-255.  By default, the
+ * statistics of the entire stack are used, as they are by the image
+ * server; {@link #setUsePlaneStatistics} switches to the statistics
+ * of the displayed plane instead.  Unlike the image server, this
+ * class also applies each channel's gamma value; a gamma of 1.0
+ * gives exactly the same image that the image server would.  If the
+ * settings specify a resized image, the plane is resampled with
+ * nearest-neighbor interpolation.</p>
+ *
+ * <p>The composited image is written into a {@link BufferedImage}
+ * which is reused by later calls, as long as the image size and type
+ * do not change.  The rows of the image are split into bands which
+ * are composited in parallel.  The methods of this class are
+ * synchronized, so only one image is composited at a time.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ * @see PixelsFactory#createCompositor
+ */
+
+public class LocalCompositor
+{
+    /**
+     * The default number of bands composited at once.
+     */
+    public static final int DEFAULT_PARALLELISM =
+        Math.max(1,Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The default number of bytes of plane data to keep.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 64*1024*1024;
+
+    /** The indices of the four channel slots. */
+    private static final int GRAY = 0, RED = 1, GREEN = 2, BLUE = 3;
+
+    /** The bit offset of each slot within an RGB pixel. */
+    private static final int[] SHIFTS = { 0, 16, 8, 0 };
+
+    /** The representations of a cached plane. */
+    private static final int BYTES = 0, SHORTS = 1, INTS = 2, FLOATS = 3;
+
+    /** The image server which the pixels file lives on. */
+    private ImageServer is;
+
+    /** The image server ID of the pixels file. */
+    private long pixelsID;
+
+    /** The dimensions and pixel type of the pixels file. */
+    private PixelsFileFormat format;
+
+    /** Whether the levels are relative to the plane statistics. */
+    private boolean usePlaneStatistics = false;
+
+    /** The pipeline used to fetch planes and composite bands. */
+    private RequestPipeline pipeline;
+
+    /** The maximum number of bytes of plane data to keep. */
+    private long maximumSize;
+
+    /**
+     * The cached planes, keyed by {@link PlaneKey}.  This map is kept
+     * in access order, so its first entry is always the least
+     * recently used plane.
+     */
+    private LinkedHashMap planes = new LinkedHashMap(16,0.75f,true);
+
+    /** The number of bytes of plane data currently cached. */
+    private long currentSize;
+
+    /** The lookup table of each channel slot. */
+    private ChannelMap[] maps = new ChannelMap[4];
+
+    /** The most recently composited image. */
+    private BufferedImage image;
+
+    /** The time taken by the most recent call to {@link #composite}. */
+    private long lastCompositeTime;
+
+    /**
+     * Creates a new compositor for the specified pixels file, with
+     * the default parallelism and plane cache size.
+     *
+     * @param is the image server which the pixels file lives on
+     * @param pixelsID the image server ID of a finished pixels file
+     */
+    public LocalCompositor(ImageServer is, long pixelsID)
+    {
+        this(is,pixelsID,DEFAULT_PARALLELISM,DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new compositor for the specified pixels file.
+     *
+     * @param is the image server which the pixels file lives on
+     * @param pixelsID the image server ID of a finished pixels file
+     * @param parallelism the number of bands to composite at once
+     * @param maximumSize the maximum number of bytes of plane data to
+     * keep
+     */
+    public LocalCompositor(ImageServer is, long pixelsID,
+                           int parallelism, long maximumSize)
+    {
+        super();
+
+        if (is == null)
+            throw new IllegalArgumentException("Image server cannot be null");
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("Maximum size cannot be negative");
+
+        this.is = is;
+        this.pixelsID = pixelsID;
+        this.pipeline = new RequestPipeline("LocalCompositor",parallelism);
+        this.maximumSize = maximumSize;
+        for (int i = 0; i < maps.length; i++)
+            maps[i] = new ChannelMap();
+    }
+
+    /**
+     * Returns the image server ID of the pixels file.
+     */
+    public long getPixelsID() { return pixelsID; }
+
+    /**
+     * Returns the number of bands composited at once.
+     */
+    public int getParallelism() { return pipeline.getMaxInFlight(); }
+
+    /**
+     * Sets the number of bands composited at once.
+     */
+    public void setParallelism(int parallelism)
+    {
+        pipeline.setMaxInFlight(parallelism);
+    }
+
+    /**
+     * Returns whether the black and white levels are interpreted
+     * relative to the statistics of the displayed plane, rather than
+     * of the entire stack.
+     */
+    public synchronized boolean getUsePlaneStatistics()
+    {
+        return usePlaneStatistics;
+    }
+
+    /**
+     * Sets whether the black and white levels are interpreted
+     * relative to the statistics of the displayed plane, rather than
+     * of the entire stack.  The image server always uses the stack
+     * statistics.
+     */
+    public synchronized void setUsePlaneStatistics(boolean usePlaneStatistics)
+    {
+        this.usePlaneStatistics = usePlaneStatistics;
+    }
+
+    /**
+     * Returns the most recently composited image, or
+     * <code>null</code> if nothing has been composited yet.
+     */
+    public synchronized BufferedImage getImage() { return image; }
+
+    /**
+     * Returns the time taken by the most recent call to {@link
+     * #composite}, in milliseconds.
+     */
+    public synchronized long getLastCompositeTime()
+    {
+        return lastCompositeTime;
+    }
+
+    /**
+     * Returns the number of planes currently cached.
+     */
+    public synchronized int getPlaneCount() { return planes.size(); }
+
+    /**
+     * Returns the number of bytes of plane data currently cached.
+     */
+    public synchronized long getCurrentSize() { return currentSize; }
+
+    /**
+     * Removes all of the cached planes.
+     */
+    public synchronized void clear()
+    {
+        planes.clear();
+        currentSize = 0;
+    }
+
+    /**
+     * <p>Composites a single plane of the pixels file according to
+     * the specified settings.  The planes of any active channels
+     * which are not already cached are fetched from the image server,
+     * in parallel.</p>
+     *
+     * <p>The returned image is reused by the next call to this method
+     * if it has the same size and type, so it will be overwritten.
+     * Callers which need to keep an image should copy it.</p>
+     *
+     * @param settings the compositing settings to apply
+     * @return the composited image
+     * @throws ImageServerException if the planes or statistics could
+     * not be retrieved from the image server
+     */
+    public synchronized BufferedImage composite(CompositingSettings settings)
+        throws ImageServerException
+    {
+        if (settings == null)
+            throw new IllegalArgumentException("Settings cannot be null");
+
+        long start = System.currentTimeMillis();
+        PixelsFileFormat format = getFormat();
+
+        int theZ = settings.getTheZ();
+        int theT = settings.getTheT();
+        if (theZ < 0 || theZ >= format.getSizeZ() ||
+            theT < 0 || theT >= format.getSizeT())
+            throw new ImageServerException("Malformed coordinates (Z,T).  ("+
+                                           theZ+","+theT+") must be >= (0,0) and < ("+
+                                           format.getSizeZ()+","+
+                                           format.getSizeT()+")");
+
+        boolean isRGB = !settings.isGrayChannelOn();
+        int[] channels = new int[4];
+        boolean[] active = new boolean[4];
+        if (!isRGB)
+        {
+            active[GRAY] = true;
+            channels[GRAY] = settings.getGrayChannel();
+        } else {
+            active[RED] = settings.isRedChannelOn();
+            channels[RED] = settings.getRedChannel();
+            active[GREEN] = settings.isGreenChannelOn();
+            channels[GREEN] = settings.getGreenChannel();
+            active[BLUE] = settings.isBlueChannelOn();
+            channels[BLUE] = settings.getBlueChannel();
+        }
+
+        for (int i = 0; i < 4; i++)
+            if (active[i] &&
+                (channels[i] < 0 || channels[i] >= format.getSizeC()))
+                throw new ImageServerException("Invalid channel "+channels[i]);
+
+        Object[] data = getPlanes(theZ,theT,channels,active);
+
+        if (!isRGB)
+        {
+            updateMap(GRAY,data[GRAY],theZ,channels[GRAY],theT,
+                      settings.getLevelBasis(),
+                      settings.getGrayBlackLevel(),
+                      settings.getGrayWhiteLevel(),
+                      settings.getGrayGamma());
+        } else {
+            if (active[RED])
+                updateMap(RED,data[RED],theZ,channels[RED],theT,
+                          settings.getLevelBasis(),
+                          settings.getRedBlackLevel(),
+                          settings.getRedWhiteLevel(),
+                          settings.getRedGamma());
+            if (active[GREEN])
+                updateMap(GREEN,data[GREEN],theZ,channels[GREEN],theT,
+                          settings.getLevelBasis(),
+                          settings.getGreenBlackLevel(),
+                          settings.getGreenWhiteLevel(),
+                          settings.getGreenGamma());
+            if (active[BLUE])
+                updateMap(BLUE,data[BLUE],theZ,channels[BLUE],theT,
+                          settings.getLevelBasis(),
+                          settings.getBlueBlackLevel(),
+                          settings.getBlueWhiteLevel(),
+                          settings.getBlueGamma());
+        }
+
+        int sizeX = format.getSizeX();
+        int sizeY = format.getSizeY();
+        int width = sizeX, height = sizeY;
+        if (settings.isResized() &&
+            settings.getSizeX() > 0 && settings.getSizeY() > 0)
+        {
+            width = settings.getSizeX();
+            height = settings.getSizeY();
+        }
+
+        int type = isRGB?
+            BufferedImage.TYPE_INT_RGB:
+            BufferedImage.TYPE_BYTE_GRAY;
+        if (image == null ||
+            image.getType() != type ||
+            image.getWidth() != width ||
+            image.getHeight() != height)
+            image = new BufferedImage(width,height,type);
+
+        int[] xMap = new int[width];
+        for (int x = 0; x < width; x++)
+            xMap[x] = (int) (((long) x)*sizeX/width);
+        int[] yMap = new int[height];
+        for (int y = 0; y < height; y++)
+            yMap[y] = (int) (((long) y)*sizeY/height);
+
+        compositeBands(isRGB,active,data,xMap,yMap);
+
+        lastCompositeTime = System.currentTimeMillis()-start;
+        return image;
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "LocalCompositor ("+pixelsID+", "+planes.size()+" planes, "+
+            currentSize+"/"+maximumSize+" bytes)";
+    }
+
+    private PixelsFileFormat getFormat()
+        throws ImageServerException
+    {
+        if (format == null)
+            format = is.getPixelsInfo(pixelsID);
+        return format;
+    }
+
+    /**
+     * Returns the cached planes of the active channels, fetching any
+     * which are missing.
+     */
+    private Object[] getPlanes(final int theZ, final int theT,
+                               int[] channels, boolean[] active)
+        throws ImageServerException
+    {
+        Object[] data = new Object[4];
+        ImageServerRequest[] requests = new ImageServerRequest[4];
+
+        for (int i = 0; i < 4; i++)
+        {
+            if (!active[i]) continue;
+
+            final int theC = channels[i];
+            data[i] = planes.get(new PlaneKey(theZ,theC,theT));
+            if (data[i] != null) continue;
+
+            // The same channel might be displayed in more than one
+            // slot.
+            for (int j = 0; j < i; j++)
+                if (active[j] && channels[j] == theC)
+                {
+                    data[i] = data[j];
+                    requests[i] = requests[j];
+                    break;
+                }
+            if (data[i] != null || requests[i] != null) continue;
+
+            requests[i] = pipeline.submit(new ImageServerRequest()
+                {
+                    protected Object execute()
+                        throws ImageServerException
+                    {
+                        return decodePlane(is.getPlane(pixelsID,
+                                                       theZ,theC,theT,
+                                                       true));
+                    }
+                });
+        }
+
+        ImageServerException error = null;
+        for (int i = 0; i < 4; i++)
+        {
+            if (requests[i] == null) continue;
+            try
+            {
+                data[i] = requests[i].waitForResult();
+                putPlane(new PlaneKey(theZ,channels[i],theT),data[i]);
+            } catch (ImageServerException e) {
+                if (error == null) error = e;
+            }
+        }
+        if (error != null)
+            throw error;
+
+        return data;
+    }
+
+    /**
+     * Converts a big-endian plane into the array type which matches
+     * the pixel type of the pixels file.
+     */
+    private Object decodePlane(byte[] raw)
+    {
+        int bytesPerPixel = format.getBytesPerPixel();
+        ByteBuffer buf = ByteBuffer.wrap(raw);
+
+        if (bytesPerPixel == 1)
+        {
+            return raw;
+        } else if (bytesPerPixel == 2) {
+            short[] plane = new short[raw.length/2];
+            buf.asShortBuffer().get(plane);
+            return plane;
+        } else if (format.isFloat()) {
+            float[] plane = new float[raw.length/4];
+            buf.asFloatBuffer().get(plane);
+            return plane;
+        } else {
+            int[] plane = new int[raw.length/4];
+            buf.asIntBuffer().get(plane);
+            return plane;
+        }
+    }
+
+    private void putPlane(PlaneKey key, Object plane)
+    {
+        long size = (long) format.getPlaneSize();
+        if (size > maximumSize)
+            return;
+
+        if (planes.put(key,plane) != null)
+            currentSize -= size;
+        currentSize += size;
+
+        Iterator it = planes.values().iterator();
+        while (currentSize > maximumSize && it.hasNext())
+        {
+            it.next();
+            it.remove();
+            currentSize -= size;
+        }
+    }
+
+    /**
+     * Updates the lookup table of a channel slot for the specified
+     * levels, which are resolved against the pixels statistics in the
+     * same way that the image server resolves them.
+     */
+    private void updateMap(int slot, Object plane,
+                           int theZ, int theC, int theT,
+                           int levelBasis,
+                           float black, float white, float gamma)
+        throws ImageServerException
+    {
+        StatisticsTable stats;
+        int theZ0 = theZ;
+        if (usePlaneStatistics)
+        {
+            stats = is.getPlaneStatisticsTable(pixelsID,
+                                               StatisticsTable.LEVEL_STATISTICS);
+        } else {
+            stats = is.getStackStatisticsTable(pixelsID,
+                                               StatisticsTable.LEVEL_STATISTICS);
+            theZ0 = 0;
+        }
+
+        int index = stats.getIndex(theZ0,theC,theT);
+        double min = stats.getColumn(StatisticsTable.MINIMUM)[index];
+        double max = stats.getColumn(StatisticsTable.MAXIMUM)[index];
+        double mean = stats.getColumn(StatisticsTable.MEAN)[index];
+        double sigma = stats.getColumn(StatisticsTable.SIGMA)[index];
+        double geomean = stats.getColumn(StatisticsTable.GEOMETRIC_MEAN)[index];
+        double geosigma = stats.getColumn(StatisticsTable.GEOMETRIC_SIGMA)[index];
+
+        float blk = black, wht = white;
+        if (levelBasis == CompositingSettings.GEOMETRIC_MEAN)
+        {
+            blk = (float) (geomean + black*geosigma);
+            wht = (float) (geomean + white*geosigma);
+        } else if (levelBasis == CompositingSettings.MEAN) {
+            blk = (float) (mean + black*sigma);
+            wht = (float) (mean + white*sigma);
+        }
+
+        if (blk < min) blk = (float) min;
+        if (blk > max) blk = (float) max;
+        if (wht < min) wht = (float) min;
+        if (wht > max) wht = (float) max;
+        if (wht <= blk) wht = blk+1;
+
+        if (!(gamma > 0.0F)) gamma = 1.0F;
+
+        maps[slot].update(planeType(plane),format.isSigned(),blk,wht,gamma);
+    }
+
+    private static int planeType(Object plane)
+    {
+        if (plane instanceof byte[]) return BYTES;
+        if (plane instanceof short[]) return SHORTS;
+        if (plane instanceof float[]) return FLOATS;
+        return INTS;
+    }
+
+    /**
+     * Composites the image in bands of rows, which are processed in
+     * parallel.
+     */
+    private void compositeBands(final boolean isRGB,
+                                final boolean[] active,
+                                final Object[] data,
+                                final int[] xMap,
+                                final int[] yMap)
+        throws ImageServerException
+    {
+        final int height = yMap.length;
+        int bandCount = Math.min(getParallelism(),height);
+        if (bandCount <= 1)
+        {
+            compositeRows(isRGB,active,data,xMap,yMap,0,height);
+            return;
+        }
+
+        ImageServerRequest[] requests = new ImageServerRequest[bandCount];
+        for (int i = 0; i < bandCount; i++)
+        {
+            final int y0 = (int) (((long) height)*i/bandCount);
+            final int y1 = (int) (((long) height)*(i+1)/bandCount);
+            requests[i] = pipeline.submit(new ImageServerRequest()
+                {
+                    protected Object execute()
+                    {
+                        compositeRows(isRGB,active,data,xMap,yMap,y0,y1);
+                        return null;
+                    }
+                });
+        }
+
+        ImageServerException error = null;
+        for (int i = 0; i < bandCount; i++)
+        {
+            try
+            {
+                requests[i].waitForResult();
+            } catch (ImageServerException e) {
+                if (error == null) error = e;
+            }
+        }
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * Composites the rows from <code>y0</code> (inclusive) to
+     * <code>y1</code> (exclusive) of the current image.
+     */
+    private void compositeRows(boolean isRGB, boolean[] active,
+                               Object[] data, int[] xMap, int[] yMap,
+                               int y0, int y1)
+    {
+        int width = xMap.length;
+        int sizeX = format.getSizeX();
+        int[] row = new int[width];
+
+        if (isRGB)
+        {
+            int[] pixels = ((DataBufferInt) image.getRaster().
+                            getDataBuffer()).getData();
+            for (int y = y0; y < y1; y++)
+            {
+                int offset = y*width;
+                int srcOffset = yMap[y]*sizeX;
+                for (int x = 0; x < width; x++)
+                    pixels[offset+x] = 0;
+                for (int i = RED; i <= BLUE; i++)
+                {
+                    if (!active[i]) continue;
+                    maps[i].mapRow(data[i],srcOffset,xMap,row);
+                    int shift = SHIFTS[i];
+                    for (int x = 0; x < width; x++)
+                        pixels[offset+x] |= row[x] << shift;
+                }
+            }
+        } else {
+            byte[] pixels = ((DataBufferByte) image.getRaster().
+                             getDataBuffer()).getData();
+            for (int y = y0; y < y1; y++)
+            {
+                int offset = y*width;
+                maps[GRAY].mapRow(data[GRAY],yMap[y]*sizeX,xMap,row);
+                for (int x = 0; x < width; x++)
+                    pixels[offset+x] = (byte) row[x];
+            }
+        }
+    }
+
+    /**
+     * Maps the pixel values of a single channel into the range 0-255.
+     * For 8- and 16-bit pixels, the mapping is precomputed as a
+     * lookup table covering every possible pixel value; the table is
+     * only rebuilt when the levels or gamma change.
+     */
+    private static final class ChannelMap
+    {
+        private int type = -1;
+        private boolean signed;
+        private float black, white, gamma;
+
+        /** The scale factor applied after subtracting the black level. */
+        private float scale;
+
+        /** The gamma correction of each scaled value. */
+        private int[] gammaTable = new int[256];
+
+        /** The lookup table for 8- and 16-bit pixels, or null. */
+        private int[] lut;
+
+        void update(int type, boolean signed,
+                    float black, float white, float gamma)
+        {
+            if (this.type == type && this.signed == signed &&
+                this.black == black && this.white == white &&
+                this.gamma == gamma)
+                return;
+
+            this.type = type;
+            this.signed = signed;
+            this.black = black;
+            this.white = white;
+            this.gamma = gamma;
+            this.scale = 255.0F / (white-black);
+
+            for (int i = 0; i < 256; i++)
+                gammaTable[i] = (gamma == 1.0F)? i:
+                    (int) Math.round(255.0*Math.pow(i/255.0,1.0/gamma));
+
+            if (type == BYTES || type == SHORTS)
+            {
+                int size = (type == BYTES)? 256: 65536;
+                if (lut == null || lut.length != size)
+                    lut = new int[size];
+                for (int i = 0; i < size; i++)
+                {
+                    int value;
+                    if (!signed)
+                        value = i;
+                    else if (type == BYTES)
+                        value = (byte) i;
+                    else
+                        value = (short) i;
+                    lut[i] = map(value);
+                }
+            } else {
+                lut = null;
+            }
+        }
+
+        private int map(float value)
+        {
+            float scaled = (value-black)*scale;
+            if (scaled < 0) scaled = 0;
+            if (scaled > 255) scaled = 255;
+            return gammaTable[(int) scaled];
+        }
+
+        void mapRow(Object plane, int srcOffset, int[] xMap, int[] row)
+        {
+            int width = xMap.length;
+
+            if (type == BYTES)
+            {
+                byte[] p = (byte[]) plane;
+                for (int x = 0; x < width; x++)
+                    row[x] = lut[p[srcOffset+xMap[x]] & 0xFF];
+            } else if (type == SHORTS) {
+                short[] p = (short[]) plane;
+                for (int x = 0; x < width; x++)
+                    row[x] = lut[p[srcOffset+xMap[x]] & 0xFFFF];
+            } else if (type == FLOATS) {
+                float[] p = (float[]) plane;
+                for (int x = 0; x < width; x++)
+                    row[x] = map(p[srcOffset+xMap[x]]);
+            } else {
+                int[] p = (int[]) plane;
+                if (signed)
+                    for (int x = 0; x < width; x++)
+                        row[x] = map(p[srcOffset+xMap[x]]);
+                else
+                    for (int x = 0; x < width; x++)
+                        row[x] = map(p[srcOffset+xMap[x]] & 0xFFFFFFFFL);
+            }
+        }
+    }
+
+    /**
+     * The key used to identify a single cached plane.
+     */
+    private static final class PlaneKey
+    {
+        final int theZ, theC, theT;
+
+        PlaneKey(int theZ, int theC, int theT)
+        {
+            this.theZ = theZ;
+            this.theC = theC;
+            this.theT = theT;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof PlaneKey)) return false;
+            PlaneKey key = (PlaneKey) o;
+            return
+                key.theZ == theZ &&
+                key.theC == theC &&
+                key.theT == theT;
+        }
+
+        public int hashCode()
+        {
+            return (theZ*31 + theC)*31 + theT;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * org.openmicroscopy.is.PixelsCache
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+
+package org.openmicroscopy.is;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openmicroscopy.ds.st.Pixels;
+
+/**
+ * <p>A bounded cache of pixel arrays retrieved from an image server.
+ * Each cached array is keyed by the repository and image server ID
+ * of its pixels file, by the stack, plane, or region which it
+ * contains, and by its byte order.  When the total size of the cached
+ * arrays exceeds the cache's byte budget, the least recently used
+ * arrays are evicted.</p>
+ *
+ * <p>The cache is used by {@link PixelsFactory} once it has been
+ * installed with the {@link PixelsFactory#setPixelsCache} method.
+ * Only pixels files which have been finished are cached; since a
+ * finished pixels file cannot be modified, cached arrays never become
+ * stale.  A pixels file which the image server reports is not
+ * finished is not asked about again for the {@link
+ * #getUnfinishedLifetime unfinished lifetime}, so that reading a
+ * pixels file while it is being written does not cost an extra
+ * request per read.  The cache stores its own copy of each array, and returns a
+ * new copy on each hit, so client code is free to modify the arrays
+ * it receives.</p>
+ *
+ * <p>The cached arrays can optionally be stored in direct
+ * {@link ByteBuffer}s, outside of the Java heap.  This allows a large
+ * cache without increasing the heap size, at the cost of an extra
+ * copy on each hit.</p>
+ *
+ * <p>All of the methods of this class are synchronized, so a single
+ * instance can be shared by any number of threads.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ */
+
+public class PixelsCache
+{
+    /**
+     * The default byte budget of the cache.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 64*1024*1024;
+
+    /** Key type for a cached stack. */
+    static final int STACK = 0;
+
+    /** Key type for a cached plane. */
+    static final int PLANE = 1;
+
+    /** Key type for a cached region. */
+    static final int ROI = 2;
+
+    /** The maximum number of bytes of pixel data to keep. */
+    private long maximumSize;
+
+    /** Whether the cached arrays are stored outside of the heap. */
+    private boolean offHeap;
+
+    /**
+     * The cached arrays, keyed by {@link Key}.  The values are
+     * <code>byte[]</code>s, or direct {@link ByteBuffer}s if the
+     * cache is off-heap.  This map is kept in access order, so its
+     * first entry is always the least recently used array.
+     */
+    private LinkedHashMap  entries;
+
+    /** Which pixels files are finished, and can therefore be cached. */
+    private FinishedPixels  finishedPixels;
+
+    /** The number of bytes of pixel data currently cached. */
+    private long currentSize;
+
+    /** The number of lookups which were satisfied by the cache. */
+    private long hitCount;
+
+    /** The number of lookups which were not. */
+    private long missCount;
+
+    /** The number of arrays which have been evicted. */
+    private long evictionCount;
+
+    /**
+     * Creates a new cache with the default byte budget, which stores
+     * its arrays on the heap.
+     */
+    public PixelsCache()
+    {
+        this(DEFAULT_MAXIMUM_SIZE,false);
+    }
+
+    /**
+     * Creates a new cache with the specified byte budget.
+     *
+     * @param maximumSize the maximum number of bytes of pixel data to
+     * keep in the cache
+     * @param offHeap whether to store the cached arrays in direct
+     * buffers, outside of the Java heap
+     */
+    public PixelsCache(long maximumSize, boolean offHeap)
+    {
+        super();
+
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("Maximum size must be positive");
+
+        this.maximumSize = maximumSize;
+        this.offHeap = offHeap;
+        this.entries = new LinkedHashMap(16,0.75f,true);
+        this.finishedPixels = new FinishedPixels();
+    }
+
+    /**
+     * Returns the maximum number of bytes of pixel data that will be
+     * kept in the cache.
+     */
+    public long getMaximumSize() { return maximumSize; }
+
+    /**
+     * Returns whether the cached arrays are stored outside of the
+     * Java heap.
+     */
+    public boolean isOffHeap() { return offHeap; }
+
+    /**
+     * <b>Non-public method:</b> Returns a copy of the specified
+     * array, or <code>null</code> if it is not in the cache.
+     */
+    synchronized byte[] get(Key key)
+    {
+        Object value = entries.get(key);
+        if (value == null)
+        {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        if (offHeap)
+        {
+            ByteBuffer buf = ((ByteBuffer) value).duplicate();
+            byte[] result = new byte[buf.remaining()];
+            buf.get(result);
+            return result;
+        } else {
+            return (byte[]) ((byte[]) value).clone();
+        }
+    }
+
+    /**
+     * <b>Non-public method:</b> Adds a copy of the specified array to
+     * the cache, evicting the least recently used arrays if necessary
+     * to stay within the cache's byte budget.  Arrays larger than the
+     * byte budget are not cached.
+     */
+    synchronized void put(Key key, byte[] data)
+    {
+        if (data == null)
+            throw new IllegalArgumentException("Data cannot be null");
+        if (data.length > maximumSize)
+            return;
+
+        Object value;
+        if (offHeap)
+        {
+            ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+            buf.put(data);
+            buf.flip();
+            value = buf;
+        } else {
+            value = data.clone();
+        }
+
+        Object old = entries.put(key,value);
+        if (old != null)
+            currentSize -= sizeOf(old);
+        currentSize += data.length;
+
+        Iterator it = entries.values().iterator();
+        while (currentSize > maximumSize && it.hasNext())
+        {
+            Object eldest = it.next();
+            it.remove();
+            currentSize -= sizeOf(eldest);
+            evictionCount++;
+        }
+    }
+
+    private static int sizeOf(Object value)
+    {
+        if (value instanceof ByteBuffer)
+            return ((ByteBuffer) value).capacity();
+        else
+            return ((byte[]) value).length;
+    }
+
+    /**
+     * Returns the number of milliseconds for which a pixels file
+     * which is not finished is remembered as such.
+     */
+    public long getUnfinishedLifetime()
+    {
+        return finishedPixels.getUnfinishedLifetime();
+    }
+
+    /**
+     * Sets the number of milliseconds for which a pixels file which
+     * is not finished is remembered as such.  Within this time, reads
+     * from the pixels file are sent straight to the image server,
+     * without asking it again whether the file is finished.  A value
+     * of 0 asks on every read.
+     */
+    public void setUnfinishedLifetime(long unfinishedLifetime)
+    {
+        finishedPixels.setUnfinishedLifetime(unfinishedLifetime);
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns whether the specified pixels
+     * file is finished, and can therefore be cached, asking the image
+     * server if necessary.
+     */
+    boolean isFinished(Pixels pixels, ImageServer is)
+        throws ImageServerException
+    {
+        return finishedPixels.isFinished(pixels,is);
+    }
+
+    /**
+     * <b>Non-public method:</b> Records that the specified pixels
+     * file is finished, and can therefore be cached.
+     */
+    void setFinished(Pixels pixels)
+    {
+        finishedPixels.setFinished(pixels);
+    }
+
+    /**
+     * Removes all of the cached arrays for the specified pixels file.
+     *
+     * @param pixels a {@link Pixels} attribute
+     */
+    public synchronized void invalidatePixels(Pixels pixels)
+    {
+        Key pixelsKey = new Key(pixels);
+
+        Iterator it = entries.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry entry = (Map.Entry) it.next();
+            Key key = (Key) entry.getKey();
+            if (key.repositoryID == pixelsKey.repositoryID &&
+                key.pixelsID == pixelsKey.pixelsID)
+            {
+                currentSize -= sizeOf(entry.getValue());
+                it.remove();
+            }
+        }
+        finishedPixels.invalidate(pixels);
+    }
+
+    /**
+     * Removes all of the arrays from the cache.  The hit and miss
+     * counters are not reset.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        finishedPixels.clear();
+        currentSize = 0;
+    }
+
+    /**
+     * Resets the hit, miss, and eviction counters to zero.
+     */
+    public synchronized void resetStatistics()
+    {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    /**
+     * Returns the number of lookups which were satisfied by the
+     * cache.
+     */
+    public synchronized long getHitCount() { return hitCount; }
+
+    /**
+     * Returns the number of lookups which were not satisfied by the
+     * cache.
+     */
+    public synchronized long getMissCount() { return missCount; }
+
+    /**
+     * Returns the number of arrays which have been evicted to keep
+     * the cache within its byte budget.
+     */
+    public synchronized long getEvictionCount() { return evictionCount; }
+
+    /**
+     * Returns the fraction of lookups which were satisfied by the
+     * cache, or 0 if there have not been any lookups.
+     */
+    public synchronized double getHitRate()
+    {
+        long total = hitCount+missCount;
+        return (total == 0)? 0.0: ((double) hitCount)/total;
+    }
+
+    /**
+     * Returns the number of arrays currently in the cache.
+     */
+    public synchronized int getEntryCount() { return entries.size(); }
+
+    /**
+     * Returns the number of bytes of pixel data currently in the
+     * cache.
+     */
+    public synchronized long getCurrentSize() { return currentSize; }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "PixelsCache ("+entries.size()+" entries, "+
+            currentSize+"/"+maximumSize+" bytes, "+
+            hitCount+" hits, "+missCount+" misses)";
+    }
+
+    /**
+     * The key used to identify a single cached array.  Keys with no
+     * coordinates identify an entire pixels file.
+     */
+    static final class Key
+    {
+        final int     repositoryID;
+        final long    pixelsID;
+        final int     type;
+        final int[]   coords;
+        final boolean bigEndian;
+
+        Key(Pixels pixels)
+        {
+            this(pixels,-1,null,false);
+        }
+
+        Key(Pixels pixels, int type, int[] coords, boolean bigEndian)
+        {
+            this.repositoryID = pixels.getRepository().getID();
+            this.pixelsID = pixels.getImageServerID().longValue();
+            this.type = type;
+            this.coords = coords;
+            this.bigEndian = bigEndian;
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return
+                (key.repositoryID == repositoryID) &&
+                (key.pixelsID == pixelsID) &&
+                (key.type == type) &&
+                (key.bigEndian == bigEndian) &&
+                Arrays.equals(key.coords,coords);
+        }
+
+        public int hashCode()
+        {
+            long h = pixelsID*31 + repositoryID;
+            h = h*31 + type;
+            if (coords != null)
+                for (int i = 0; i < coords.length; i++)
+                    h = h*31 + coords[i];
+            h = h*2 + (bigEndian? 1: 0);
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
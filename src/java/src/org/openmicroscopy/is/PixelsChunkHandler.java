@@ -0,0 +1,83 @@
+/*
+ * org.openmicroscopy.is.PixelsChunkHandler
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.is;
+
+/**
+ * <p>Receives pixels from the image server as they are read from the
+ * network.  The streaming <code>get*</code> methods of {@link
+ * ImageServer} and {@link PixelsFactory} pass the response to an
+ * instance of this interface in a series of chunks, rather than
+ * collecting the entire response into a single array.  This allows
+ * client code to process pixels (or copy them into its own storage)
+ * without allocating a new array for each plane or stack.</p>
+ *
+ * <p>The array passed to the {@link #handleChunk} method is reused
+ * for subsequent chunks, so implementations must not retain a
+ * reference to it once the method returns.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ */
+
+public interface PixelsChunkHandler
+{
+    /**
+     * Called for each chunk of pixels read from the image server.
+     * The chunks are delivered in order; the <code>position</code>
+     * parameter gives the offset of the chunk's first byte from the
+     * start of the response.  Chunks are not guaranteed to be aligned
+     * to pixel boundaries.
+     *
+     * @param chunk the array containing the chunk's bytes
+     * @param offset the offset into <code>chunk</code> of the first
+     * byte
+     * @param length the number of bytes in the chunk
+     * @param position the offset of the chunk within the response
+     * @throws ImageServerException if the handler cannot process the
+     * chunk; this aborts the read
+     */
+    public void handleChunk(byte[] chunk, int offset, int length,
+                            long position)
+        throws ImageServerException;
+}
@@ -0,0 +1,503 @@
+/*
+ * org.openmicroscopy.is.PixelsConversion
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+
+package org.openmicroscopy.is;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import org.openmicroscopy.ds.st.Pixels;
+import org.openmicroscopy.ds.st.OriginalFile;
+
+/**
+ * <p>Copies the pixels of a new pixels file from one or more uploaded
+ * original files, running several of the image server's
+ * <code>convert*</code> calls at once.  Each call to one of the
+ * <code>add*</code> methods describes where a stack, plane, or set of
+ * rows lives in an {@link OriginalFile}; the {@link #execute} method
+ * then performs all of the conversions, and finishes the pixels file
+ * with a single {@link PixelsFactory#finishPixels} call.</p>
+ *
+ * <p>The conversions are independent, and are executed in no
+ * particular order.  Up to {@link #getParallelism} of them are sent
+ * to the image server at once.  If any of them fail, the pixels file
+ * is not finished, and <code>execute</code> throws the first error
+ * it encountered.  The conversions which succeeded are remembered,
+ * so calling <code>execute</code> again will only retry the ones
+ * which failed.</p>
+ *
+ * <pre>
+ *     PixelsConversion conversion = factory.createConversion(pixels);
+ *     for (int t = 0; t &lt; sizeT; t++)
+ *         for (int c = 0; c &lt; sizeC; c++)
+ *             for (int z = 0; z &lt; sizeZ; z++)
+ *                 conversion.addPlane(z,c,t,file,offset(z,c,t),bigEndian);
+ *     conversion.setParallelism(8);
+ *     conversion.execute();
+ * </pre>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ * @see PixelsFactory#createConversion
+ */
+
+public class PixelsConversion
+{
+    /**
+     * The default number of conversions which are sent to the image
+     * server at once.
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /** The factory used to perform each conversion. */
+    private PixelsFactory factory;
+
+    /** The pixels file being populated. */
+    private Pixels pixels;
+
+    /** The conversions to perform, as {@link Step} objects. */
+    private List steps = new ArrayList();
+
+    /** The number of conversions to send at once. */
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    /** The listener to notify of progress, or <code>null</code>. */
+    private PixelsConversionListener listener;
+
+    /** The number of steps which have completed successfully. */
+    private int completedCount = 0;
+
+    /** The number of pixels written by the completed steps. */
+    private long pixelsWritten = 0;
+
+    /** Whether the pixels file has been finished. */
+    private boolean finished = false;
+
+    /**
+     * Creates a new, empty conversion for the specified pixels file.
+     * The pixels file should have been created via the {@link
+     * PixelsFactory#newPixels} method, and must not have been
+     * finished.
+     *
+     * @param factory the factory used to perform each conversion
+     * @param pixels the pixels file to populate
+     */
+    public PixelsConversion(PixelsFactory factory, Pixels pixels)
+    {
+        super();
+
+        if (factory == null)
+            throw new IllegalArgumentException("Factory cannot be null");
+        if (pixels == null)
+            throw new IllegalArgumentException("Pixels cannot be null");
+
+        this.factory = factory;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Returns the pixels file being populated.
+     */
+    public Pixels getPixels() { return pixels; }
+
+    /**
+     * Returns the number of conversions which are sent to the image
+     * server at once.
+     */
+    public synchronized int getParallelism() { return parallelism; }
+
+    /**
+     * Sets the number of conversions which are sent to the image
+     * server at once.  If this is larger than the image server's
+     * {@link ImageServer#getMaxRequestsInFlight}, the latter is
+     * raised to match when the conversion is executed, so that enough
+     * connections are available.
+     *
+     * @param parallelism the number of conversions to send at once
+     */
+    public synchronized void setParallelism(int parallelism)
+    {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the listener which is notified of the conversion's
+     * progress.
+     */
+    public synchronized PixelsConversionListener getListener()
+    {
+        return listener;
+    }
+
+    /**
+     * Sets the listener which is notified of the conversion's
+     * progress.
+     *
+     * @param listener the listener to notify, or <code>null</code>
+     */
+    public synchronized void setListener(PixelsConversionListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the number of conversions which have been added.
+     */
+    public synchronized int getStepCount() { return steps.size(); }
+
+    /**
+     * Returns the number of conversions which have completed
+     * successfully.
+     */
+    public synchronized int getCompletedStepCount() { return completedCount; }
+
+    /**
+     * Returns the number of pixels written by the conversions which
+     * have completed successfully, as reported by the image server.
+     */
+    public synchronized long getPixelsWritten() { return pixelsWritten; }
+
+    /**
+     * Returns whether the pixels file has been finished.
+     */
+    public synchronized boolean isFinished() { return finished; }
+
+    /**
+     * Adds a conversion which copies a single XYZ stack.
+     *
+     * @see PixelsFactory#convertStack
+     * @param theC the C index of the desired stack
+     * @param theT the T index of the desired stack
+     * @param file an {@link OriginalFile} attribute
+     * @param offset the offset into the file to start reading from
+     * @param bigEndian the endianness of the pixels in the uploaded
+     * file
+     */
+    public void addStack(final int theC, final int theT,
+                         final OriginalFile file, final long offset,
+                         final boolean bigEndian)
+    {
+        addStep(new Step(file)
+            {
+                long convert()
+                    throws ImageServerException
+                {
+                    return factory.convertStack(pixels,theC,theT,
+                                                file,offset,bigEndian);
+                }
+            });
+    }
+
+    /**
+     * Adds a conversion which copies a single XY plane.
+     *
+     * @see PixelsFactory#convertPlane
+     * @param theZ the Z index of the desired plane
+     * @param theC the C index of the desired plane
+     * @param theT the T index of the desired plane
+     * @param file an {@link OriginalFile} attribute
+     * @param offset the offset into the file to start reading from
+     * @param bigEndian the endianness of the pixels in the uploaded
+     * file
+     */
+    public void addPlane(final int theZ, final int theC, final int theT,
+                         final OriginalFile file, final long offset,
+                         final boolean bigEndian)
+    {
+        addStep(new Step(file)
+            {
+                long convert()
+                    throws ImageServerException
+                {
+                    return factory.convertPlane(pixels,theZ,theC,theT,
+                                                file,offset,bigEndian);
+                }
+            });
+    }
+
+    /**
+     * Adds a conversion which copies a single XY plane from a TIFF
+     * file containing exactly one plane.
+     *
+     * @see PixelsFactory#convertPlaneFromTIFF(Pixels,int,int,int,OriginalFile)
+     * @param theZ the Z index of the desired plane
+     * @param theC the C index of the desired plane
+     * @param theT the T index of the desired plane
+     * @param file an {@link OriginalFile} attribute
+     */
+    public void addPlaneFromTIFF(final int theZ,
+                                 final int theC,
+                                 final int theT,
+                                 final OriginalFile file)
+    {
+        addStep(new Step(file)
+            {
+                long convert()
+                    throws ImageServerException
+                {
+                    return factory.convertPlaneFromTIFF(pixels,
+                                                        theZ,theC,theT,
+                                                        file);
+                }
+            });
+    }
+
+    /**
+     * Adds a conversion which copies a single XY plane from the
+     * specified directory entry of a TIFF file.
+     *
+     * @see PixelsFactory#convertPlaneFromTIFF(Pixels,int,int,int,OriginalFile,int)
+     * @param theZ the Z index of the desired plane
+     * @param theC the C index of the desired plane
+     * @param theT the T index of the desired plane
+     * @param file an {@link OriginalFile} attribute
+     * @param directory the index into the TIFF directory of the plane
+     * to copy
+     */
+    public void addPlaneFromTIFF(final int theZ,
+                                 final int theC,
+                                 final int theT,
+                                 final OriginalFile file,
+                                 final int directory)
+    {
+        addStep(new Step(file)
+            {
+                long convert()
+                    throws ImageServerException
+                {
+                    return factory.convertPlaneFromTIFF(pixels,
+                                                        theZ,theC,theT,
+                                                        file,directory);
+                }
+            });
+    }
+
+    /**
+     * Adds a conversion which copies a subset of the rows of a single
+     * XY plane.
+     *
+     * @see PixelsFactory#convertRows
+     * @param theY the first row of the desired region
+     * @param numRows the number of rows in the desired region
+     * @param theZ the Z index of the desired region
+     * @param theC the C index of the desired region
+     * @param theT the T index of the desired region
+     * @param file an {@link OriginalFile} attribute
+     * @param offset the offset into the file to start reading from
+     * @param bigEndian the endianness of the pixels in the uploaded
+     * file
+     */
+    public void addRows(final int theY, final int numRows,
+                        final int theZ, final int theC, final int theT,
+                        final OriginalFile file, final long offset,
+                        final boolean bigEndian)
+    {
+        addStep(new Step(file)
+            {
+                long convert()
+                    throws ImageServerException
+                {
+                    return factory.convertRows(pixels,theY,numRows,
+                                               theZ,theC,theT,
+                                               file,offset,bigEndian);
+                }
+            });
+    }
+
+    private synchronized void addStep(Step step)
+    {
+        if (finished)
+            throw new IllegalStateException("Pixels have already been finished");
+        steps.add(step);
+    }
+
+    /**
+     * <p>Performs each of the conversions which have not already
+     * completed, and then finishes the pixels file.  This method
+     * blocks until all of the conversions have been attempted.</p>
+     *
+     * <p>If any of the conversions fail, the pixels file is not
+     * finished, and the first error is thrown once the remaining
+     * conversions have been attempted.  Calling this method again
+     * retries only the failed conversions.  Once the pixels file has
+     * been finished, this method does nothing.</p>
+     *
+     * @return the total number of pixels written, as reported by the
+     * image server
+     * @throws ImageServerException if any of the conversions, or the
+     * final {@link PixelsFactory#finishPixels} call, fail
+     */
+    public long execute()
+        throws ImageServerException
+    {
+        Step[] pending;
+        int threads;
+
+        synchronized (this)
+        {
+            if (finished)
+                return pixelsWritten;
+
+            List list = new ArrayList();
+            for (int i = 0; i < steps.size(); i++)
+            {
+                Step step = (Step) steps.get(i);
+                if (!step.done)
+                    list.add(step);
+            }
+            pending = (Step[]) list.toArray(new Step[list.size()]);
+            threads = parallelism;
+        }
+
+        ImageServer is = factory.getImageServer(pixels);
+        if (is.getMaxRequestsInFlight() < threads)
+            is.setMaxRequestsInFlight(threads);
+
+        RequestPipeline pipeline =
+            new RequestPipeline("PixelsConversion",threads);
+        ImageServerRequest[] requests = new ImageServerRequest[pending.length];
+        ImageServerException error = null;
+
+        try
+        {
+            for (int i = 0; i < pending.length; i++)
+            {
+                final Step step = pending[i];
+                requests[i] = pipeline.submit(new ImageServerRequest()
+                    {
+                        protected Object execute()
+                            throws ImageServerException
+                        {
+                            try
+                            {
+                                stepCompleted(step,step.convert());
+                            } catch (ImageServerException e) {
+                                stepFailed(e);
+                                throw e;
+                            }
+                            return null;
+                        }
+                    });
+            }
+        } catch (ImageServerException e) {
+            error = e;
+        }
+
+        for (int i = 0; i < requests.length; i++)
+        {
+            if (requests[i] == null)
+                continue;
+
+            try
+            {
+                requests[i].waitForResult();
+            } catch (ImageServerException e) {
+                if (error == null)
+                    error = e;
+            }
+        }
+
+        if (error != null)
+            throw error;
+
+        factory.finishPixels(pixels);
+
+        synchronized (this)
+        {
+            finished = true;
+            return pixelsWritten;
+        }
+    }
+
+    private void stepCompleted(Step step, long written)
+    {
+        int completed, total;
+        PixelsConversionListener listener;
+
+        synchronized (this)
+        {
+            step.done = true;
+            completedCount++;
+            pixelsWritten += written;
+
+            completed = completedCount;
+            total = steps.size();
+            listener = this.listener;
+        }
+
+        if (listener != null)
+            listener.stepCompleted(this,completed,total);
+    }
+
+    private void stepFailed(ImageServerException e)
+    {
+        PixelsConversionListener listener = getListener();
+        if (listener != null)
+            listener.stepFailed(this,e);
+    }
+
+    /**
+     * A single conversion.
+     */
+    private abstract static class Step
+    {
+        /** Whether the conversion has completed successfully. */
+        boolean done = false;
+
+        Step(OriginalFile file)
+        {
+            if (file == null)
+                throw new IllegalArgumentException("Original file cannot be null");
+        }
+
+        /**
+         * Performs the conversion, returning the number of pixels
+         * written.
+         */
+        abstract long convert()
+            throws ImageServerException;
+    }
+}
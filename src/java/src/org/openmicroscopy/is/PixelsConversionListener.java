@@ -0,0 +1,81 @@
+/*
+ * org.openmicroscopy.is.PixelsConversionListener
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.is;
+
+/**
+ * Receives progress notifications from a {@link PixelsConversion}.
+ * The methods are called from the conversion's worker threads, so
+ * they should return quickly, and must be thread-safe.
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ */
+
+public interface PixelsConversionListener
+{
+    /**
+     * Called each time a step of the conversion finishes
+     * successfully.
+     *
+     * @param conversion the conversion being executed
+     * @param stepsCompleted the number of steps which have completed
+     * successfully, including those completed by any previous call to
+     * {@link PixelsConversion#execute}
+     * @param totalSteps the total number of steps in the conversion
+     */
+    public void stepCompleted(PixelsConversion conversion,
+                              int stepsCompleted,
+                              int totalSteps);
+
+    /**
+     * Called when a step of the conversion fails.  The remaining
+     * steps are still executed, but the pixels file will not be
+     * finished.
+     *
+     * @param conversion the conversion being executed
+     * @param e the exception describing the failure
+     */
+    public void stepFailed(PixelsConversion conversion,
+                           ImageServerException e);
+}
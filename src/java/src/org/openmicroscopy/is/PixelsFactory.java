@@ -36,11 +36,10 @@
 
 package org.openmicroscopy.is;
 
-//AF - import for tmp hack, to be removed.
 import java.io.InputStream;
-
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
 
 import java.awt.image.BufferedImage;
 
@@ -94,6 +93,18 @@ public class PixelsFactory
      */
     private DataFactory factory;
 
+    /**
+     * The cache of pixel arrays retrieved by this factory, or
+     * <code>null</code> if pixel arrays are not cached.
+     */
+    private PixelsCache pixelsCache;
+
+    /**
+     * The cache of composites and thumbnails retrieved by this
+     * factory, or <code>null</code> if they are not cached.
+     */
+    private RenderCache renderCache;
+
     public PixelsFactory() { super(); }
 
     /**
@@ -125,20 +136,106 @@ public class PixelsFactory
         throws ImageServerException
     {
         Integer id = new Integer(rep.getID());
-        ImageServer is = (ImageServer) imageServers.get(id);
 
-        if (is == null)
+        synchronized (imageServers)
         {
-            String url = rep.getImageServerURL();
-            if (url == null || url.equals(""))
-                throw new ImageServerException("Repository contains a null image server URL");
+            ImageServer is = (ImageServer) imageServers.get(id);
+
+            if (is == null)
+            {
+                String url = rep.getImageServerURL();
+                if (url == null || url.equals(""))
+                    throw new ImageServerException("Repository contains a null image server URL");
+
+                is = ImageServer.
+                    getHTTPImageServer(url,factory.getSessionKey());
+                imageServers.put(id,is);
+            }
 
-            is = ImageServer.
-                getHTTPImageServer(url,factory.getSessionKey());
-            imageServers.put(id,is);
+            return is;
         }
+    }
+
+    /**
+     * Returns the cache used to store the pixel arrays retrieved by
+     * this factory, or <code>null</code> if pixel arrays are not
+     * cached.
+     */
+    public synchronized PixelsCache getPixelsCache()
+    {
+        return pixelsCache;
+    }
+
+    /**
+     * <p>Sets the cache used to store the pixel arrays retrieved by
+     * this factory.  By default, there is no cache, and every request
+     * for pixels is sent to the image server.</p>
+     *
+     * <p>Once a cache is installed, the arrays returned by the
+     * <code>byte[]</code> versions of the {@link
+     * #getStack(Pixels,int,int,boolean) getStack}, {@link
+     * #getPlane(Pixels,int,int,int,boolean) getPlane}, {@link
+     * #getPlanes getPlanes}, and {@link
+     * #getROI(Pixels,int,int,int,int,int,int,int,int,int,int,boolean)
+     * getROI} methods are cached, as long as the pixels file has been
+     * finished.  The streaming and asynchronous methods always
+     * contact the image server.  A single cache can be shared by
+     * several factories.</p>
+     *
+     * @param pixelsCache the cache to use, or <code>null</code> to
+     * disable caching
+     */
+    public synchronized void setPixelsCache(PixelsCache pixelsCache)
+    {
+        this.pixelsCache = pixelsCache;
+    }
+
+    /**
+     * Returns the cache used to store the composites and thumbnails
+     * retrieved by this factory, or <code>null</code> if they are not
+     * cached.
+     */
+    public synchronized RenderCache getRenderCache()
+    {
+        return renderCache;
+    }
 
-        return is;
+    /**
+     * <p>Sets the cache used to store the composites and thumbnails
+     * retrieved by this factory.  By default, there is no cache, and
+     * every composite and thumbnail is rendered by the image
+     * server.</p>
+     *
+     * <p>Once a cache is installed, requests for a composite with the
+     * same {@link CompositingSettings} values, or for a thumbnail of
+     * the same size, are answered from the cache.  The decoded images
+     * returned by the {@link #getComposite} and {@link
+     * #getThumbnail(Pixels)} methods are then shared, and must not be
+     * modified.  A single cache can be shared by several
+     * factories.</p>
+     *
+     * @param renderCache the cache to use, or <code>null</code> to
+     * disable caching
+     */
+    public synchronized void setRenderCache(RenderCache renderCache)
+    {
+        this.renderCache = renderCache;
+    }
+
+    /**
+     * Helper method -- returns the pixels cache, if the pixel arrays
+     * of the specified pixels file can be cached.  Only finished
+     * pixels files are cached.  The cache remembers which pixels
+     * files are finished, and for a short time which are not, so the
+     * image server is only asked occasionally.
+     */
+    private PixelsCache getCacheFor(Pixels pixels, ImageServer is)
+        throws ImageServerException
+    {
+        PixelsCache cache = getPixelsCache();
+        if (cache == null || !cache.isFinished(pixels,is))
+            return null;
+        return cache;
     }
 
     /**
@@ -162,6 +259,16 @@ public class PixelsFactory
         }
     }
 
+    /**
+     * <b>Non-public method:</b> Returns the image server which
+     * contains the specified pixels file.
+     */
+    ImageServer getImageServer(Pixels pixels)
+        throws ImageServerException
+    {
+        return activatePixels(pixels);
+    }
+
     /**
      * Retrieves or creates an {@link ImageServer} object for
      * retrieving information about the given OriginalFile attribute.
@@ -428,10 +535,28 @@ public class PixelsFactory
         throws ImageServerException
     {
         ImageServer is = activatePixels(pixels);
-        return is.getStack(pixels.getImageServerID().longValue(),theC,theT,bigEndian);
+        PixelsCache cache = getCacheFor(pixels,is);
+        if (cache == null)
+            return is.getStack(pixels.getImageServerID().longValue(),theC,theT,bigEndian);
+
+        PixelsCache.Key key =
+            new PixelsCache.Key(pixels,PixelsCache.STACK,
+                                new int[] {theC,theT},bigEndian);
+        byte[] result = cache.get(key);
+        if (result == null)
+        {
+            result = is.getStack(pixels.getImageServerID().longValue(),theC,theT,bigEndian);
+            cache.put(key,result);
+        }
+        return result;
     }
 
-//AF - tmp hacked version, *don't* code against it!
+    /**
+     * @deprecated This was a temporary hack.  Use the {@link
+     * #getStack(Pixels,int,int,ByteBuffer)} or {@link
+     * #getStack(Pixels,int,int,boolean,PixelsChunkHandler)} methods
+     * instead.
+     */
     public InputStream getStackStream(Pixels pixels,
                            int theC, int theT,
                            boolean bigEndian)
@@ -470,7 +595,91 @@ public class PixelsFactory
         throws ImageServerException
     {
         ImageServer is = activatePixels(pixels);
-        return is.getPlane(pixels.getImageServerID().longValue(),theZ,theC,theT,bigEndian);
+        PixelsCache cache = getCacheFor(pixels,is);
+        if (cache == null)
+            return is.getPlane(pixels.getImageServerID().longValue(),theZ,theC,theT,bigEndian);
+
+        PixelsCache.Key key =
+            new PixelsCache.Key(pixels,PixelsCache.PLANE,
+                                new int[] {theZ,theC,theT},bigEndian);
+        byte[] result = cache.get(key);
+        if (result == null)
+        {
+            result = is.getPlane(pixels.getImageServerID().longValue(),theZ,theC,theT,bigEndian);
+            cache.put(key,result);
+        }
+        return result;
+    }
+
+    /**
+     * <p>This method returns pixel arrays for several planes at once.
+     * Each plane is specified by a <code>{theZ, theC, theT}</code>
+     * triple in the <code>zctList</code> array; the planes are
+     * returned in the same order.  Client code which needs many
+     * planes (to build a projection or a montage, for instance)
+     * should use this method rather than calling {@link
+     * #getPlane(Pixels,int,int,int,boolean)} once per plane.  The
+     * planes are fetched with a single image server call if the image
+     * server supports it, or with pipelined individual calls if it
+     * does not.</p>
+     *
+     * @see ImageServer#getPlanes
+     * @param pixels a {@link Pixels} attribute
+     * @param zctList the Z, C and T parameters of the desired planes
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @return an array of pixels for each of the specified planes
+     * @throws ImageServerException if there was an error contacting
+     * the image server or if the pixels ID does not exist or is not
+     * readable
+     */
+    public byte[][] getPlanes(Pixels pixels,
+                              int[][] zctList,
+                              boolean bigEndian)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        PixelsCache cache = getCacheFor(pixels,is);
+        if (cache == null)
+            return is.getPlanes(pixels.getImageServerID().longValue(),
+                                zctList,bigEndian);
+
+        ImageServer.checkPlaneList(zctList);
+
+        // Only the planes which aren't cached are requested from the
+        // image server.
+        byte[][] result = new byte[zctList.length][];
+        PixelsCache.Key[] keys = new PixelsCache.Key[zctList.length];
+        int[] missing = new int[zctList.length];
+        int missingCount = 0;
+
+        for (int i = 0; i < zctList.length; i++)
+        {
+            keys[i] = new PixelsCache.Key(pixels,PixelsCache.PLANE,
+                                          (int[]) zctList[i].clone(),
+                                          bigEndian);
+            result[i] = cache.get(keys[i]);
+            if (result[i] == null)
+                missing[missingCount++] = i;
+        }
+
+        if (missingCount > 0)
+        {
+            int[][] missingList = new int[missingCount][];
+            for (int i = 0; i < missingCount; i++)
+                missingList[i] = zctList[missing[i]];
+
+            byte[][] fetched =
+                is.getPlanes(pixels.getImageServerID().longValue(),
+                             missingList,bigEndian);
+            for (int i = 0; i < missingCount; i++)
+            {
+                result[missing[i]] = fetched[i];
+                cache.put(keys[missing[i]],fetched[i]);
+            }
+        }
+
+        return result;
     }
 
     /**
@@ -499,11 +708,372 @@ public class PixelsFactory
                          int x1,int y1,int z1,int c1,int t1,
                          boolean bigEndian)
         throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        PixelsCache cache = getCacheFor(pixels,is);
+        if (cache == null)
+            return is.getROI(pixels.getImageServerID().longValue(),
+                             x0,y0,z0,c0,t0,x1,y1,z1,c1,t1,
+                             bigEndian);
+
+        PixelsCache.Key key =
+            new PixelsCache.Key(pixels,PixelsCache.ROI,
+                                new int[] {x0,y0,z0,c0,t0,
+                                           x1,y1,z1,c1,t1},
+                                bigEndian);
+        byte[] result = cache.get(key);
+        if (result == null)
+        {
+            result = is.getROI(pixels.getImageServerID().longValue(),
+                               x0,y0,z0,c0,t0,x1,y1,z1,c1,t1,
+                               bigEndian);
+            cache.put(key,result);
+        }
+        return result;
+    }
+
+    /**
+     * <p>This method reads the entire pixel file for the given pixel
+     * ID into a caller-supplied buffer, which may be a direct buffer.
+     * The pixels are requested in the byte order of the buffer, and
+     * are read straight from the image server's response into the
+     * buffer, starting at its current position; no intermediate array
+     * is allocated.  On return, the buffer's position will have been
+     * advanced past the pixels that were read.</p>
+     *
+     * @see ImageServer#getPixels(long,ByteBuffer)
+     * @param pixels a {@link Pixels} attribute
+     * @param buf the buffer to read the pixels into
+     * @return the number of bytes read into the buffer
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the buffer is too small
+     */
+    public int getPixels(Pixels pixels, ByteBuffer buf)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getPixels(pixels.getImageServerID().longValue(),buf);
+    }
+
+    /**
+     * <p>This method reads the entire pixel file for the given pixel
+     * ID, passing the pixels to the specified handler as they are
+     * read from the image server.</p>
+     *
+     * @see ImageServer#getPixels(long,boolean,PixelsChunkHandler)
+     * @param pixels a {@link Pixels} attribute
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param handler the handler which will receive the pixels
+     * @return the number of bytes read
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the handler throws an exception
+     */
+    public long getPixels(Pixels pixels, boolean bigEndian,
+                          PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getPixels(pixels.getImageServerID().longValue(),
+                            bigEndian,handler);
+    }
+
+    /**
+     * <p>This method reads a stack of pixels into a caller-supplied
+     * buffer.  The stack is specified by its C and T coordinates,
+     * which have 0-based indices.  The pixels are requested in the
+     * byte order of the buffer.</p>
+     *
+     * @see ImageServer#getStack(long,int,int,ByteBuffer)
+     * @param pixels a {@link Pixels} attribute
+     * @param theC the C parameter of the desired stack
+     * @param theT the T parameter of the desired stack
+     * @param buf the buffer to read the pixels into
+     * @return the number of bytes read into the buffer
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the buffer is too small
+     */
+    public int getStack(Pixels pixels,
+                        int theC, int theT,
+                        ByteBuffer buf)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getStack(pixels.getImageServerID().longValue(),
+                           theC,theT,buf);
+    }
+
+    /**
+     * <p>This method reads a stack of pixels, passing the pixels to
+     * the specified handler as they are read from the image
+     * server.</p>
+     *
+     * @see ImageServer#getStack(long,int,int,boolean,PixelsChunkHandler)
+     * @param pixels a {@link Pixels} attribute
+     * @param theC the C parameter of the desired stack
+     * @param theT the T parameter of the desired stack
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param handler the handler which will receive the pixels
+     * @return the number of bytes read
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the handler throws an exception
+     */
+    public long getStack(Pixels pixels,
+                         int theC, int theT,
+                         boolean bigEndian,
+                         PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getStack(pixels.getImageServerID().longValue(),
+                           theC,theT,bigEndian,handler);
+    }
+
+    /**
+     * <p>This method reads a plane of pixels into a caller-supplied
+     * buffer.  The plane is specified by its Z, C and T coordinates,
+     * which have 0-based indices.  The pixels are requested in the
+     * byte order of the buffer.  Client code which reads many planes
+     * can reuse a single buffer for all of them.</p>
+     *
+     * @see ImageServer#getPlane(long,int,int,int,ByteBuffer)
+     * @param pixels a {@link Pixels} attribute
+     * @param theZ the Z parameter of the desired plane
+     * @param theC the C parameter of the desired plane
+     * @param theT the T parameter of the desired plane
+     * @param buf the buffer to read the pixels into
+     * @return the number of bytes read into the buffer
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the buffer is too small
+     */
+    public int getPlane(Pixels pixels,
+                        int theZ, int theC, int theT,
+                        ByteBuffer buf)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getPlane(pixels.getImageServerID().longValue(),
+                           theZ,theC,theT,buf);
+    }
+
+    /**
+     * <p>This method reads a plane of pixels, passing the pixels to
+     * the specified handler as they are read from the image
+     * server.</p>
+     *
+     * @see ImageServer#getPlane(long,int,int,int,boolean,PixelsChunkHandler)
+     * @param pixels a {@link Pixels} attribute
+     * @param theZ the Z parameter of the desired plane
+     * @param theC the C parameter of the desired plane
+     * @param theT the T parameter of the desired plane
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param handler the handler which will receive the pixels
+     * @return the number of bytes read
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the handler throws an exception
+     */
+    public long getPlane(Pixels pixels,
+                         int theZ, int theC, int theT,
+                         boolean bigEndian,
+                         PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getPlane(pixels.getImageServerID().longValue(),
+                           theZ,theC,theT,bigEndian,handler);
+    }
+
+    /**
+     * <p>This method reads an arbitrary hyper-rectangular region of an
+     * image into a caller-supplied buffer.  The region is specified
+     * by two coordinate vectors, which have 0-based indices.  The
+     * pixels are requested in the byte order of the buffer.</p>
+     *
+     * @see ImageServer#getROI(long,int,int,int,int,int,int,int,int,int,int,ByteBuffer)
+     * @param pixels a {@link Pixels} attribute
+     * @param buf the buffer to read the pixels into
+     * @return the number of bytes read into the buffer
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the buffer is too small
+     */
+    public int getROI(Pixels pixels,
+                      int x0,int y0,int z0,int c0,int t0,
+                      int x1,int y1,int z1,int c1,int t1,
+                      ByteBuffer buf)
+        throws ImageServerException
     {
         ImageServer is = activatePixels(pixels);
         return is.getROI(pixels.getImageServerID().longValue(),
                          x0,y0,z0,c0,t0,x1,y1,z1,c1,t1,
-                         bigEndian);
+                         buf);
+    }
+
+    /**
+     * <p>This method reads an arbitrary hyper-rectangular region of an
+     * image, passing the pixels to the specified handler as they are
+     * read from the image server.</p>
+     *
+     * @see ImageServer#getROI(long,int,int,int,int,int,int,int,int,int,int,boolean,PixelsChunkHandler)
+     * @param pixels a {@link Pixels} attribute
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param handler the handler which will receive the pixels
+     * @return the number of bytes read
+     * @throws ImageServerException if there was an error contacting
+     * the image server, if the pixels ID does not exist or is not
+     * readable, or if the handler throws an exception
+     */
+    public long getROI(Pixels pixels,
+                       int x0,int y0,int z0,int c0,int t0,
+                       int x1,int y1,int z1,int c1,int t1,
+                       boolean bigEndian,
+                       PixelsChunkHandler handler)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getROI(pixels.getImageServerID().longValue(),
+                         x0,y0,z0,c0,t0,x1,y1,z1,c1,t1,
+                         bigEndian,handler);
+    }
+
+    /**
+     * <p>Asynchronously retrieves a pixel array of the specified
+     * plane.  The request is executed by the pipeline of the
+     * repository's {@link ImageServer}, which keeps several requests
+     * in flight at once; see {@link ImageServer#setMaxRequestsInFlight}.
+     * This method returns immediately unless the pipeline is full.
+     * The result of the request is the <code>byte[]</code> that would
+     * be returned by the {@link #getPlane(Pixels,int,int,int,boolean)}
+     * method.</p>
+     *
+     * @see ImageServer#getPlaneAsync(long,int,int,int,boolean,ImageServerCallback)
+     * @param pixels a {@link Pixels} attribute
+     * @param theZ the Z parameter of the desired plane
+     * @param theC the C parameter of the desired plane
+     * @param theT the T parameter of the desired plane
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param callback the callback to notify when the request
+     * finishes, or <code>null</code>
+     * @return the pending request
+     * @throws ImageServerException if the pixels do not contain
+     * enough information to contact the image server, or if the
+     * calling thread is interrupted while waiting for room in the
+     * pipeline
+     */
+    public ImageServerRequest getPlaneAsync(Pixels pixels,
+                                            int theZ, int theC, int theT,
+                                            boolean bigEndian,
+                                            ImageServerCallback callback)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getPlaneAsync(pixels.getImageServerID().longValue(),
+                                theZ,theC,theT,bigEndian,callback);
+    }
+
+    /**
+     * <p>Asynchronously reads a plane of pixels into a caller-supplied
+     * buffer.  The result of the request is an {@link Integer}
+     * containing the number of bytes read.  The buffer must not be
+     * used by the caller until the request has finished.</p>
+     *
+     * @see ImageServer#getPlaneAsync(long,int,int,int,ByteBuffer,ImageServerCallback)
+     * @param pixels a {@link Pixels} attribute
+     * @param theZ the Z parameter of the desired plane
+     * @param theC the C parameter of the desired plane
+     * @param theT the T parameter of the desired plane
+     * @param buf the buffer to read the pixels into
+     * @param callback the callback to notify when the request
+     * finishes, or <code>null</code>
+     * @return the pending request
+     * @throws ImageServerException if the pixels do not contain
+     * enough information to contact the image server, or if the
+     * calling thread is interrupted while waiting for room in the
+     * pipeline
+     */
+    public ImageServerRequest getPlaneAsync(Pixels pixels,
+                                            int theZ, int theC, int theT,
+                                            ByteBuffer buf,
+                                            ImageServerCallback callback)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getPlaneAsync(pixels.getImageServerID().longValue(),
+                                theZ,theC,theT,buf,callback);
+    }
+
+    /**
+     * <p>Asynchronously retrieves a pixel array of the specified
+     * stack.  The result of the request is the <code>byte[]</code>
+     * that would be returned by the {@link
+     * #getStack(Pixels,int,int,boolean)} method.</p>
+     *
+     * @see ImageServer#getStackAsync
+     * @param pixels a {@link Pixels} attribute
+     * @param theC the C parameter of the desired stack
+     * @param theT the T parameter of the desired stack
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param callback the callback to notify when the request
+     * finishes, or <code>null</code>
+     * @return the pending request
+     * @throws ImageServerException if the pixels do not contain
+     * enough information to contact the image server, or if the
+     * calling thread is interrupted while waiting for room in the
+     * pipeline
+     */
+    public ImageServerRequest getStackAsync(Pixels pixels,
+                                            int theC, int theT,
+                                            boolean bigEndian,
+                                            ImageServerCallback callback)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getStackAsync(pixels.getImageServerID().longValue(),
+                                theC,theT,bigEndian,callback);
+    }
+
+    /**
+     * <p>Asynchronously retrieves a pixel array of an arbitrary
+     * hyper-rectangular region of an image.  The result of the
+     * request is the <code>byte[]</code> that would be returned by
+     * the {@link
+     * #getROI(Pixels,int,int,int,int,int,int,int,int,int,int,boolean)}
+     * method.</p>
+     *
+     * @see ImageServer#getROIAsync
+     * @param pixels a {@link Pixels} attribute
+     * @param bigEndian whether the returns pixels should be in
+     * big-endian order
+     * @param callback the callback to notify when the request
+     * finishes, or <code>null</code>
+     * @return the pending request
+     * @throws ImageServerException if the pixels do not contain
+     * enough information to contact the image server, or if the
+     * calling thread is interrupted while waiting for room in the
+     * pipeline
+     */
+    public ImageServerRequest getROIAsync(Pixels pixels,
+                                          int x0,int y0,int z0,int c0,int t0,
+                                          int x1,int y1,int z1,int c1,int t1,
+                                          boolean bigEndian,
+                                          ImageServerCallback callback)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getROIAsync(pixels.getImageServerID().longValue(),
+                              x0,y0,z0,c0,t0,x1,y1,z1,c1,t1,
+                              bigEndian,callback);
     }
 
     /**
@@ -775,6 +1345,45 @@ public class PixelsFactory
             pixels.setImageServerID(new Long(newID));
         String sha1 = is.getPixelsSHA1(newID);
         pixels.setFileSHA1(sha1);
+
+        PixelsCache cache = getPixelsCache();
+        if (cache != null)
+            cache.setFinished(pixels);
+    }
+
+    /**
+     * <p>Creates a new, empty {@link PixelsConversion} for the
+     * specified pixels file.  The conversion can be used to populate
+     * the pixels file from one or more uploaded original files,
+     * sending several <code>convert*</code> calls to the image server
+     * at once, and finishing the pixels file once they have all
+     * completed.</p>
+     *
+     * @param pixels a {@link Pixels} attribute for a pixels file
+     * which has not been finished
+     * @return a new {@link PixelsConversion}
+     */
+    public PixelsConversion createConversion(Pixels pixels)
+    {
+        return new PixelsConversion(this,pixels);
+    }
+
+    /**
+     * <p>Creates a new {@link LocalCompositor} for the specified
+     * pixels file.  The compositor fetches the planes of the pixels
+     * file once, and composites them on the client, so that changes
+     * to the black and white levels do not require a round trip to
+     * the image server.</p>
+     *
+     * @param pixels a {@link Pixels} attribute for a finished pixels
+     * file
+     * @return a new {@link LocalCompositor}
+     */
+    public LocalCompositor createCompositor(Pixels pixels)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return new LocalCompositor(is,pixels.getImageServerID().longValue());
     }
 
     /**
@@ -803,6 +1412,44 @@ public class PixelsFactory
         return is.getStackStatistics(pixels.getImageServerID().longValue());
     }
 
+    /**
+     * Returns a {@link StatisticsTable} containing the specified
+     * plane statistics of a pixels file.  The table is cached by the
+     * image server object, so only statistics which have not been
+     * loaded yet cause a call to the image server.
+     *
+     * @param pixels a {@link Pixels} attribute
+     * @param statistics the statistics to load (see the constants in
+     * {@link StatisticsTable}), or <code>null</code> for all of them
+     */
+    public StatisticsTable getPlaneStatisticsTable(Pixels pixels,
+                                                   int[] statistics)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getPlaneStatisticsTable(pixels.getImageServerID().longValue(),
+                                          statistics);
+    }
+
+    /**
+     * Returns a {@link StatisticsTable} containing the specified
+     * stack statistics of a pixels file.  The table is cached by the
+     * image server object, so only statistics which have not been
+     * loaded yet cause a call to the image server.
+     *
+     * @param pixels a {@link Pixels} attribute
+     * @param statistics the statistics to load (see the constants in
+     * {@link StatisticsTable}), or <code>null</code> for all of them
+     */
+    public StatisticsTable getStackStatisticsTable(Pixels pixels,
+                                                   int[] statistics)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        return is.getStackStatisticsTable(pixels.getImageServerID().longValue(),
+                                          statistics);
+    }
+
     /**
      * Composites a single plane of a multi-channel image into a
      * grayscale or RGB image, according to the state of the
@@ -818,7 +1465,43 @@ public class PixelsFactory
         throws ImageServerException
     {
         ImageServer is = activatePixels(pixels);
-        return is.getComposite(pixels.getImageServerID().longValue(),settings);
+        RenderCache cache = getRenderCache();
+        if (cache == null)
+            return is.getComposite(pixels.getImageServerID().longValue(),settings);
+
+        BufferedImage result =
+            cache.getImage(is,new RenderCache.Key(pixels,
+                                                  RenderCache.COMPOSITE,
+                                                  settings,0,0));
+        cache.prefetch(is,pixels,settings);
+        return result;
+    }
+
+    /**
+     * Composites a single plane of a multi-channel image, returning
+     * the image in its encoded (JPEG) form.
+     *
+     * @see #getComposite
+     * @param pixels a {@link Pixels} attribute
+     * @param settings a {@link CompositingSettings} object describing
+     * the compositing which should be performed
+     * @return the encoded image
+     */
+    public byte[] getCompositeBytes(Pixels pixels,
+                                    CompositingSettings settings)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        RenderCache cache = getRenderCache();
+        if (cache == null)
+            return is.getCompositeBytes(pixels.getImageServerID().longValue(),settings);
+
+        byte[] result =
+            cache.getBytes(is,new RenderCache.Key(pixels,
+                                                  RenderCache.COMPOSITE,
+                                                  settings,0,0));
+        cache.prefetch(is,pixels,settings);
+        return result;
     }
 
 
@@ -837,6 +1520,10 @@ public class PixelsFactory
     {
         ImageServer is = activatePixels(pixels);
         is.setThumbnail(pixels.getImageServerID().longValue(),settings);
+
+        RenderCache cache = getRenderCache();
+        if (cache != null)
+            cache.invalidatePixels(pixels);
     }
 
     /**
@@ -850,7 +1537,13 @@ public class PixelsFactory
         throws ImageServerException
     {
         ImageServer is = activatePixels(pixels);
-        return is.getThumbnail(pixels.getImageServerID().longValue());
+        RenderCache cache = getRenderCache();
+        if (cache == null)
+            return is.getThumbnail(pixels.getImageServerID().longValue());
+
+        return cache.getImage(is,new RenderCache.Key(pixels,
+                                                     RenderCache.THUMBNAIL,
+                                                     null,0,0));
     }
 
     /**
@@ -868,8 +1561,59 @@ public class PixelsFactory
         throws ImageServerException
     {
         ImageServer is = activatePixels(pixels);
-        return is.getThumbnail(pixels.getImageServerID().longValue(),
-                               sizeX,sizeY);
+        RenderCache cache = getRenderCache();
+        if (cache == null)
+            return is.getThumbnail(pixels.getImageServerID().longValue(),
+                                   sizeX,sizeY);
+
+        return cache.getImage(is,new RenderCache.Key(pixels,
+                                                     RenderCache.SIZED_THUMBNAIL,
+                                                     null,sizeX,sizeY));
+    }
+
+    /**
+     * Returns a thumbnail for the specified image in its encoded
+     * form.
+     *
+     * @see #getThumbnail(Pixels)
+     * @param pixels a {@link Pixels} attribute
+     * @return the encoded thumbnail
+     */
+    public byte[] getThumbnailBytes(Pixels pixels)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        RenderCache cache = getRenderCache();
+        if (cache == null)
+            return is.getThumbnailBytes(pixels.getImageServerID().longValue());
+
+        return cache.getBytes(is,new RenderCache.Key(pixels,
+                                                     RenderCache.THUMBNAIL,
+                                                     null,0,0));
+    }
+
+    /**
+     * Returns a thumbnail for the specified image of the requested
+     * size in its encoded form.
+     *
+     * @see #getThumbnail(Pixels,int,int)
+     * @param pixels a {@link Pixels} attribute
+     * @param sizeX the width of the desired thumbnail
+     * @param sizeY the height of the desired thumbnail
+     * @return the encoded thumbnail
+     */
+    public byte[] getThumbnailBytes(Pixels pixels, int sizeX, int sizeY)
+        throws ImageServerException
+    {
+        ImageServer is = activatePixels(pixels);
+        RenderCache cache = getRenderCache();
+        if (cache == null)
+            return is.getThumbnailBytes(pixels.getImageServerID().longValue(),
+                                        sizeX,sizeY);
+
+        return cache.getBytes(is,new RenderCache.Key(pixels,
+                                                     RenderCache.SIZED_THUMBNAIL,
+                                                     null,sizeX,sizeY));
     }
 
     /**
@@ -923,6 +1667,12 @@ public class PixelsFactory
      * new pixels file to be created from the contents of the original
      * file.</p>
      *
+     * <p>The file is sent in chunks, several at a time, and is
+     * verified against its SHA-1 digest once it has been uploaded.
+     * To be able to resume an upload which fails partway through,
+     * call the {@link #uploadFile(Repository,ModuleExecution,FileUpload)}
+     * method instead.</p>
+     *
      * @param repository the repository to upload to
      * @param file the file to upload
      * @return an {@link OriginalFile} attribute
@@ -935,20 +1685,48 @@ public class PixelsFactory
                                    ModuleExecution mex,
                                    File file)
         throws ImageServerException, FileNotFoundException
+    {
+        return uploadFile(repository,mex,new FileUpload(file));
+    }
+
+    /**
+     * <p>Transfers the specified file to the image server in chunks,
+     * returning an {@link OriginalFile} attribute.  If this method
+     * throws an exception, the {@link FileUpload} records which
+     * chunks made it to the image server; calling this method again
+     * with the same repository and upload will send only the
+     * remaining chunks.</p>
+     *
+     * @see ImageServer#uploadFile(FileUpload)
+     * @param repository the repository to upload to
+     * @param upload the file to upload, and the progress of any
+     * previous attempt to upload it
+     * @return an {@link OriginalFile} attribute
+     * @throws ImageServerException if there was an error contacting
+     * the image server or uploading the file
+     * @throws FileNotFoundException if the specified file cannot be
+     * read
+     */
+    public OriginalFile uploadFile(Repository repository,
+                                   ModuleExecution mex,
+                                   FileUpload upload)
+        throws ImageServerException, FileNotFoundException
     {
         if (repository == null)
             throw new IllegalArgumentException("Repository cannot be null");
 
         ImageServer is = activateRepository(repository);
-        long fileID = is.uploadFile(file);
-        String sha1 = is.getFileSHA1(fileID);
+        long fileID = is.uploadFile(upload);
+
+        // The upload has already been verified against this digest.
+        String sha1 = upload.getSHA1();
 
         OriginalFile fileAttr = (OriginalFile) factory.createNew("OriginalFile");
         fileAttr.setRepository(repository);
         fileAttr.setModuleExecution(mex);
         fileAttr.setFileID(new Long(fileID));
         fileAttr.setSHA1(sha1);
-        fileAttr.setPath(file.getAbsolutePath());
+        fileAttr.setPath(upload.getFile().getAbsolutePath());
         factory.markForUpdate(fileAttr);
 
         return fileAttr;
@@ -1034,14 +1812,14 @@ public class PixelsFactory
      * many I/O calls to the image server.</p>
      *
      * <p>The caching is implemented entirely by the {@link
-     * ImageServer} instance of the OriginalFile's repository.  Please
-     * see the {@link ImageServer#readFile} method for more
-     * information.</p>
+     * FileBlockCache} of the {@link ImageServer} instance of the
+     * OriginalFile's repository, so reads through this method share
+     * their cached blocks with any direct calls to that image
+     * server's {@link ImageServer#readFile} method.  Please see that
+     * method for more information.</p>
      *
-     * <p><b>This method is not thread-safe</b>; it is up to the
-     * caller to perform any necessary synchronization.  If multiple
-     * threads try to call this method simultaneously, Bad Things
-     * could happen.</p>
+     * <p>This method is thread-safe; any number of threads can read
+     * from the same or from different files simultaneously.</p>
      *
      * @see ImageServer#readFile
      * @param file an {@link OriginalFile} attribute
@@ -1060,6 +1838,27 @@ public class PixelsFactory
                            offset,length);
     }
 
+    /**
+     * Returns the block cache used by the {@link #readFile} method
+     * for files in the specified repository.  This can be used to
+     * inspect the cache's hit and miss counters, or to replace it
+     * (via {@link ImageServer#setReadCache}) with a cache of a
+     * different block size or byte budget.
+     *
+     * @param repository a {@link Repository} attribute
+     * @return the read cache for that repository's image server
+     * @throws ImageServerException if the repository does not
+     * contain a valid image server URL
+     */
+    public FileBlockCache getReadCache(Repository repository)
+        throws ImageServerException
+    {
+        if (repository == null)
+            throw new IllegalArgumentException("Repository cannot be null");
+
+        return activateRepository(repository).getReadCache();
+    }
+
     /**
      * <p>Copies pixels from an original file into a new pixels file.
      * The original file should have been previously uploaded via the
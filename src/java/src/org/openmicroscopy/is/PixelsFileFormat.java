@@ -257,4 +257,25 @@ public class PixelsFileFormat
     public void setIsFloat(boolean isFloat)
     { this.isFloat = isFloat; }
 
+    /**
+     * Returns the number of bytes in a single XY plane of pixels.
+     * @return the number of bytes in a single XY plane of pixels
+     */
+    public int getPlaneSize()
+    { return sizeX*sizeY*bytesPerPixel; }
+
+    /**
+     * Returns the number of bytes in a single XYZ stack of pixels.
+     * @return the number of bytes in a single XYZ stack of pixels
+     */
+    public long getStackSize()
+    { return ((long) getPlaneSize())*sizeZ; }
+
+    /**
+     * Returns the number of bytes in the entire pixels file.
+     * @return the number of bytes in the entire pixels file
+     */
+    public long getPixelsSize()
+    { return getStackSize()*sizeC*sizeT; }
+
 }
\ No newline at end of file
@@ -0,0 +1,665 @@
+/*
+ * org.openmicroscopy.is.RenderCache
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+
+package org.openmicroscopy.is;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.openmicroscopy.ds.DataException;
+import org.openmicroscopy.ds.st.Pixels;
+
+/**
+ * <p>A bounded cache of the composites and thumbnails rendered by an
+ * image server.  Composites are keyed by the value of their {@link
+ * CompositingSettings}, so two requests with identical settings share
+ * a single entry, even if they use different
+ * <code>CompositingSettings</code> instances.  Thumbnails are keyed
+ * by their requested size.  Each entry holds the encoded image
+ * returned by the image server, and the decoded image once it has
+ * been requested.  When the total size of the entries exceeds the
+ * cache's byte budget, the least recently used entries are
+ * evicted.</p>
+ *
+ * <p>The cache is used by {@link PixelsFactory} once it has been
+ * installed with the {@link PixelsFactory#setRenderCache} method.
+ * Only images of pixels files which have been finished are cached,
+ * since the composites of a pixels file which is still being written
+ * would become stale.  Whether a pixels file is finished is tracked
+ * as in {@link PixelsCache}.
+ * Encoded images are copied on each hit, but decoded images are
+ * shared between every caller which requests them; client code
+ * which draws on a decoded image must make its own copy first.</p>
+ *
+ * <p>When a composite is requested, the composites for the
+ * neighboring Z sections and timepoints (within the cache's {@link
+ * #getPrefetchRadius prefetch radius}) are requested in the
+ * background, so that a viewer which is scrolling through an image
+ * finds them in the cache.</p>
+ *
+ * <p>All of the methods of this class are synchronized, so a single
+ * instance can be shared by any number of threads.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ */
+
+public class RenderCache
+{
+    /**
+     * The default byte budget of the cache.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 32*1024*1024;
+
+    /**
+     * The default number of neighboring Z sections and timepoints
+     * which are prefetched in each direction.
+     */
+    public static final int DEFAULT_PREFETCH_RADIUS = 1;
+
+    /** Key type for a composite. */
+    static final int COMPOSITE = 0;
+
+    /** Key type for a default-sized thumbnail. */
+    static final int THUMBNAIL = 1;
+
+    /** Key type for a thumbnail of a specific size. */
+    static final int SIZED_THUMBNAIL = 2;
+
+    /** The maximum number of bytes of image data to keep. */
+    private long maximumSize;
+
+    /**
+     * The number of neighboring Z sections and timepoints to
+     * prefetch in each direction.
+     */
+    private int prefetchRadius = DEFAULT_PREFETCH_RADIUS;
+
+    /**
+     * The cached entries, keyed by {@link Key}.  This map is kept in
+     * access order, so its first entry is always the least recently
+     * used one.
+     */
+    private LinkedHashMap  entries;
+
+    /** The keys which are currently being prefetched. */
+    private Set  pending;
+
+    /**
+     * The number of times each pixels file has been invalidated, as
+     * {@link Integer}s keyed by a {@link Key} with no type.  An image
+     * which was requested before an invalidation is not stored
+     * after it.
+     */
+    private Map  epochs;
+
+    /** Which pixels files are finished, and can therefore be cached. */
+    private FinishedPixels  finishedPixels;
+
+    /** The number of bytes of image data currently cached. */
+    private long currentSize;
+
+    /** The number of lookups which were satisfied by the cache. */
+    private long hitCount;
+
+    /** The number of lookups which were not. */
+    private long missCount;
+
+    /** The number of entries which have been evicted. */
+    private long evictionCount;
+
+    /** The number of prefetches which have been started. */
+    private long prefetchCount;
+
+    /**
+     * Creates a new cache with the default byte budget.
+     */
+    public RenderCache()
+    {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new cache with the specified byte budget.
+     *
+     * @param maximumSize the maximum number of bytes of encoded and
+     * decoded image data to keep in the cache
+     */
+    public RenderCache(long maximumSize)
+    {
+        super();
+
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("Maximum size must be positive");
+
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap(16,0.75f,true);
+        this.pending = new HashSet();
+        this.epochs = new HashMap();
+        this.finishedPixels = new FinishedPixels();
+    }
+
+    /**
+     * Returns the maximum number of bytes of image data that will be
+     * kept in the cache.
+     */
+    public long getMaximumSize() { return maximumSize; }
+
+    /**
+     * Returns the number of neighboring Z sections and timepoints
+     * which are prefetched in each direction when a composite is
+     * requested.
+     */
+    public synchronized int getPrefetchRadius() { return prefetchRadius; }
+
+    /**
+     * Sets the number of neighboring Z sections and timepoints which
+     * are prefetched in each direction when a composite is requested.
+     *
+     * @param prefetchRadius the number of neighbors to prefetch, or 0
+     * to disable prefetching
+     */
+    public synchronized void setPrefetchRadius(int prefetchRadius)
+    {
+        if (prefetchRadius < 0)
+            throw new IllegalArgumentException("Prefetch radius cannot be negative");
+        this.prefetchRadius = prefetchRadius;
+    }
+
+    /**
+     * Returns the number of milliseconds for which a pixels file
+     * which is not finished is remembered as such.
+     */
+    public long getUnfinishedLifetime()
+    {
+        return finishedPixels.getUnfinishedLifetime();
+    }
+
+    /**
+     * Sets the number of milliseconds for which a pixels file which
+     * is not finished is remembered as such.  Within this time, its
+     * images are rendered by the image server without asking it
+     * again whether the file is finished.
+     */
+    public void setUnfinishedLifetime(long unfinishedLifetime)
+    {
+        finishedPixels.setUnfinishedLifetime(unfinishedLifetime);
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns a copy of the encoded image
+     * for the specified key, retrieving it from the image server if
+     * it is not in the cache.
+     */
+    byte[] getBytes(ImageServer is, Key key)
+        throws ImageServerException
+    {
+        return (byte[]) lookup(is,key).encoded.clone();
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns the decoded image for the
+     * specified key, retrieving it from the image server if it is not
+     * in the cache.
+     */
+    BufferedImage getImage(ImageServer is, Key key)
+        throws ImageServerException
+    {
+        Entry entry = lookup(is,key);
+
+        synchronized (this)
+        {
+            if (entry.image != null)
+                return entry.image;
+        }
+
+        BufferedImage image = ImageServer.decodeImage(entry.encoded);
+
+        synchronized (this)
+        {
+            // The entry might have been evicted while we were
+            // decoding, in which case the image is not cached.
+            if (entry.image == null && entries.get(key) == entry)
+            {
+                entry.image = image;
+                currentSize += sizeOf(image);
+                evict();
+            }
+        }
+
+        return image;
+    }
+
+    /**
+     * Returns the cached entry for the specified key, or retrieves it
+     * from the image server.  An entry which cannot be cached is
+     * returned without being stored.
+     */
+    private Entry lookup(ImageServer is, Key key)
+        throws ImageServerException
+    {
+        int epoch;
+        synchronized (this)
+        {
+            Entry entry = (Entry) entries.get(key);
+            if (entry != null)
+            {
+                hitCount++;
+                return entry;
+            }
+            missCount++;
+            epoch = getEpoch(key);
+        }
+
+        // The image must be rendered after the pixels are known to be
+        // finished, or it could show a partly written file.
+        if (!finishedPixels.isFinished(key.pixels,is))
+            return new Entry(key.fetch(is));
+
+        return store(key,key.fetch(is),epoch);
+    }
+
+    /**
+     * Returns the number of times the pixels file of the specified
+     * key has been invalidated.  Must be called while holding the
+     * cache's lock.
+     */
+    private int getEpoch(Key key)
+    {
+        Integer epoch = (Integer) epochs.get(key.getPixelsKey());
+        return (epoch == null)? 0: epoch.intValue();
+    }
+
+    /**
+     * Stores an entry for the specified key, unless its pixels file
+     * has been invalidated since the image was requested.
+     */
+    private synchronized Entry store(Key key, byte[] encoded, int epoch)
+    {
+        Entry entry = new Entry(encoded);
+        if (getEpoch(key) != epoch)
+            return entry;
+
+        Entry old = (Entry) entries.put(key,entry);
+        if (old != null)
+            currentSize -= old.size();
+        currentSize += entry.size();
+        evict();
+        return entry;
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is
+     * within its byte budget.  Must be called while holding the
+     * cache's lock.
+     */
+    private void evict()
+    {
+        Iterator it = entries.values().iterator();
+        while (currentSize > maximumSize && it.hasNext())
+        {
+            Entry eldest = (Entry) it.next();
+            it.remove();
+            currentSize -= eldest.size();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * <b>Non-public method:</b> Starts retrieving the composites for
+     * the Z sections and timepoints which neighbor the specified
+     * settings, if they are not already cached.  The prefetches are
+     * submitted to the image server's request pipeline, but only
+     * while it has room for them, so that they never delay the
+     * caller.  Nothing is prefetched if the dimensions of the pixels
+     * are not known, or if the pixels file is not known to be
+     * finished.
+     */
+    void prefetch(final ImageServer is, Pixels pixels,
+                  CompositingSettings settings)
+    {
+        int radius = getPrefetchRadius();
+        if (radius == 0 || !finishedPixels.isKnownFinished(pixels))
+            return;
+
+        int sizeZ, sizeT;
+        try
+        {
+            sizeZ = pixels.getSizeZ().intValue();
+            sizeT = pixels.getSizeT().intValue();
+        } catch (DataException e) {
+            return;
+        } catch (NullPointerException e) {
+            return;
+        }
+
+        RequestPipeline pipeline = is.getPipeline();
+        int theZ = settings.getTheZ();
+        int theT = settings.getTheT();
+
+        for (int d = 1; d <= radius; d++)
+        {
+            int[][] neighbors = {
+                { theZ-d, theT }, { theZ+d, theT },
+                { theZ, theT-d }, { theZ, theT+d }
+            };
+
+            for (int i = 0; i < neighbors.length; i++)
+            {
+                int z = neighbors[i][0];
+                int t = neighbors[i][1];
+                if (z < 0 || z >= sizeZ || t < 0 || t >= sizeT)
+                    continue;
+                if (pipeline.getQueueLength() >= pipeline.getMaxInFlight())
+                    return;
+
+                CompositingSettings neighbor =
+                    new CompositingSettings(settings);
+                neighbor.setTheZ(z);
+                neighbor.setTheT(t);
+                final Key key = new Key(pixels,COMPOSITE,neighbor,0,0);
+                final int epoch;
+
+                synchronized (this)
+                {
+                    if (entries.containsKey(key) || !pending.add(key))
+                        continue;
+                    prefetchCount++;
+                    epoch = getEpoch(key);
+                }
+
+                try
+                {
+                    is.submitRequest(new ImageServerRequest()
+                        {
+                            protected Object execute()
+                                throws ImageServerException
+                            {
+                                try
+                                {
+                                    store(key,key.fetch(is),epoch);
+                                } finally {
+                                    synchronized (RenderCache.this)
+                                    {
+                                        pending.remove(key);
+                                    }
+                                }
+                                return null;
+                            }
+                        });
+                } catch (ImageServerException e) {
+                    synchronized (this)
+                    {
+                        pending.remove(key);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all of the cached composites and thumbnails for the
+     * specified pixels file.  Images of the pixels file which are
+     * being retrieved, including prefetches, are not cached when
+     * they arrive.
+     *
+     * @param pixels a {@link Pixels} attribute
+     */
+    public synchronized void invalidatePixels(Pixels pixels)
+    {
+        int repositoryID = pixels.getRepository().getID();
+        long pixelsID = pixels.getImageServerID().longValue();
+
+        Key pixelsKey = new Key(pixels,-1,null,0,0);
+        epochs.put(pixelsKey,new Integer(getEpoch(pixelsKey)+1));
+
+        Iterator it = entries.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry entry = (Map.Entry) it.next();
+            Key key = (Key) entry.getKey();
+            if (key.repositoryID == repositoryID &&
+                key.pixelsID == pixelsID)
+            {
+                currentSize -= ((Entry) entry.getValue()).size();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all of the entries from the cache.  The hit and miss
+     * counters are not reset.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        currentSize = 0;
+    }
+
+    /**
+     * Resets the hit, miss, eviction, and prefetch counters to zero.
+     */
+    public synchronized void resetStatistics()
+    {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+        prefetchCount = 0;
+    }
+
+    /**
+     * Returns the number of lookups which were satisfied by the
+     * cache.
+     */
+    public synchronized long getHitCount() { return hitCount; }
+
+    /**
+     * Returns the number of lookups which were not satisfied by the
+     * cache.
+     */
+    public synchronized long getMissCount() { return missCount; }
+
+    /**
+     * Returns the number of entries which have been evicted to keep
+     * the cache within its byte budget.
+     */
+    public synchronized long getEvictionCount() { return evictionCount; }
+
+    /**
+     * Returns the number of composites which have been prefetched.
+     */
+    public synchronized long getPrefetchCount() { return prefetchCount; }
+
+    /**
+     * Returns the fraction of lookups which were satisfied by the
+     * cache, or 0 if there have not been any lookups.
+     */
+    public synchronized double getHitRate()
+    {
+        long total = hitCount+missCount;
+        return (total == 0)? 0.0: ((double) hitCount)/total;
+    }
+
+    /**
+     * Returns the number of entries currently in the cache.
+     */
+    public synchronized int getEntryCount() { return entries.size(); }
+
+    /**
+     * Returns the number of bytes of image data currently in the
+     * cache.
+     */
+    public synchronized long getCurrentSize() { return currentSize; }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        return "RenderCache ("+entries.size()+" entries, "+
+            currentSize+"/"+maximumSize+" bytes, "+
+            hitCount+" hits, "+missCount+" misses)";
+    }
+
+    /**
+     * Returns the approximate number of bytes used by a decoded
+     * image.
+     */
+    private static long sizeOf(BufferedImage image)
+    {
+        DataBuffer buf = image.getRaster().getDataBuffer();
+        return ((long) buf.getSize())*buf.getNumBanks()*
+            DataBuffer.getDataTypeSize(buf.getDataType())/8;
+    }
+
+    /**
+     * A single cached image.
+     */
+    private static final class Entry
+    {
+        final byte[] encoded;
+        BufferedImage image;
+
+        Entry(byte[] encoded)
+        {
+            this.encoded = encoded;
+        }
+
+        long size()
+        {
+            return encoded.length + ((image == null)? 0: sizeOf(image));
+        }
+    }
+
+    /**
+     * The key used to identify a single cached image.
+     */
+    static final class Key
+    {
+        /** The pixels file; not part of the key's identity. */
+        final Pixels pixels;
+        final int    repositoryID;
+        final long   pixelsID;
+        final int    type;
+        final CompositingSettings settings;
+        final int    sizeX, sizeY;
+
+        /**
+         * Creates a new key.  The settings are copied, so that later
+         * changes to them do not affect the key.
+         */
+        Key(Pixels pixels, int type, CompositingSettings settings,
+            int sizeX, int sizeY)
+        {
+            this.pixels = pixels;
+            this.repositoryID = pixels.getRepository().getID();
+            this.pixelsID = pixels.getImageServerID().longValue();
+            this.type = type;
+            this.settings = (settings == null)? null:
+                new CompositingSettings(settings);
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+        }
+
+        /**
+         * Returns a key with no type, which identifies the pixels
+         * file of this key.
+         */
+        Key getPixelsKey()
+        {
+            return (type == -1)? this: new Key(pixels,-1,null,0,0);
+        }
+
+        /**
+         * Retrieves the encoded image for this key from the image
+         * server.
+         */
+        byte[] fetch(ImageServer is)
+            throws ImageServerException
+        {
+            switch (type)
+            {
+            case COMPOSITE:
+                return is.getCompositeBytes(pixelsID,settings);
+            case THUMBNAIL:
+                return is.getThumbnailBytes(pixelsID);
+            default:
+                return is.getThumbnailBytes(pixelsID,sizeX,sizeY);
+            }
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return
+                (key.repositoryID == repositoryID) &&
+                (key.pixelsID == pixelsID) &&
+                (key.type == type) &&
+                (key.sizeX == sizeX) &&
+                (key.sizeY == sizeY) &&
+                ((settings == null)?
+                 (key.settings == null):
+                 settings.equals(key.settings));
+        }
+
+        public int hashCode()
+        {
+            long h = pixelsID*31 + repositoryID;
+            h = h*31 + type;
+            h = (h*31 + sizeX)*31 + sizeY;
+            if (settings != null)
+                h = h*31 + settings.hashCode();
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
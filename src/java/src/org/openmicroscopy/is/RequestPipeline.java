@@ -0,0 +1,247 @@
+/*
+ * org.openmicroscopy.is.RequestPipeline
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+package org.openmicroscopy.is;
+
+import java.util.LinkedList;
+
+/**
+ * <p>Executes {@link ImageServerRequest}s on a small pool of worker
+ * threads, so that several image server calls can be in flight at
+ * once.  Each image server instance has its own pipeline, which is
+ * used by its <code>*Async</code> methods.  A caller which submits a
+ * long series of requests (a Z-sweep of planes, for instance) no
+ * longer needs to wait for each network round trip to finish before
+ * sending the next request.</p>
+ *
+ * <p>The number of requests executing at once is bounded by the
+ * pipeline's <i>maximum in-flight</i> count.  Requests beyond that
+ * are queued; once the queue holds as many requests as there are
+ * worker threads, the {@link #submit} method blocks until a worker
+ * takes the next request.  This provides back-pressure, so that a
+ * fast producer cannot queue an unbounded number of requests (and
+ * their results) in memory.</p>
+ *
+ * <p>Worker threads are started on demand and exit once they have
+ * been idle for a while.  They are daemon threads, and will not
+ * prevent the JVM from exiting.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ */
+
+public class RequestPipeline
+{
+    /**
+     * The default number of requests that can be in flight at once.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    /**
+     * How long (in milliseconds) an idle worker thread waits for a
+     * new request before exiting.
+     */
+    private static final long IDLE_TIMEOUT = 30000;
+
+    /** The requests which have been submitted but not started. */
+    private LinkedList  queue = new LinkedList();
+
+    /** The maximum number of requests executing at once. */
+    private int  maxInFlight;
+
+    /** The number of live worker threads. */
+    private int  workerCount = 0;
+
+    /** The number of worker threads waiting for a request. */
+    private int  idleCount = 0;
+
+    /** The name used for this pipeline's worker threads. */
+    private String  name;
+
+    /**
+     * Creates a new pipeline which allows the default number of
+     * requests to be in flight at once.
+     */
+    public RequestPipeline(String name)
+    {
+        this(name,DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Creates a new pipeline which allows the specified number of
+     * requests to be in flight at once.
+     *
+     * @param name the name used for this pipeline's threads
+     * @param maxInFlight the maximum number of requests to execute at
+     * once
+     */
+    public RequestPipeline(String name, int maxInFlight)
+    {
+        super();
+        this.name = name;
+        setMaxInFlight(maxInFlight);
+    }
+
+    /**
+     * Returns the maximum number of requests which will be executed
+     * at once.
+     */
+    public synchronized int getMaxInFlight() { return maxInFlight; }
+
+    /**
+     * Sets the maximum number of requests which will be executed at
+     * once.  If the value is decreased, any excess worker threads
+     * will exit once they finish their current request.
+     *
+     * @param maxInFlight the maximum number of requests to execute at
+     * once
+     */
+    public synchronized void setMaxInFlight(int maxInFlight)
+    {
+        if (maxInFlight <= 0)
+            throw new IllegalArgumentException("Must allow at least one request in flight");
+        this.maxInFlight = maxInFlight;
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of requests which have been submitted but
+     * have not been started yet.
+     */
+    public synchronized int getQueueLength() { return queue.size(); }
+
+    /**
+     * Submits a request for execution.  If the pipeline's queue is
+     * full, this method blocks until there is room for the
+     * request.
+     *
+     * @param request the request to execute
+     * @return the request
+     * @throws ImageServerException if the calling thread is
+     * interrupted while waiting for room in the queue
+     */
+    public synchronized ImageServerRequest submit(ImageServerRequest request)
+        throws ImageServerException
+    {
+        if (request == null)
+            throw new IllegalArgumentException("Request cannot be null");
+
+        while (queue.size() >= maxInFlight)
+        {
+            try
+            {
+                wait();
+            } catch (InterruptedException e) {
+                ImageServerException ise = new ImageServerException("Interrupted while submitting image server request");
+                request.fail(ise);
+                throw ise;
+            }
+        }
+
+        queue.addLast(request);
+
+        if (queue.size() > idleCount && workerCount < maxInFlight)
+            startWorker();
+
+        notifyAll();
+        return request;
+    }
+
+    /**
+     * Starts a new worker thread.  Must be called while holding the
+     * pipeline's lock.
+     */
+    private void startWorker()
+    {
+        workerCount++;
+        Thread thread = new Thread(new Runnable()
+            {
+                public void run() { runWorker(); }
+            },name+"-"+workerCount);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The main loop of a worker thread.
+     */
+    private void runWorker()
+    {
+        while (true)
+        {
+            ImageServerRequest request;
+
+            synchronized (this)
+            {
+                long idleSince = System.currentTimeMillis();
+                while (queue.isEmpty() || workerCount > maxInFlight)
+                {
+                    long idleTime = System.currentTimeMillis()-idleSince;
+                    if (workerCount > maxInFlight ||
+                        idleTime >= IDLE_TIMEOUT)
+                    {
+                        workerCount--;
+                        return;
+                    }
+
+                    idleCount++;
+                    try
+                    {
+                        wait(IDLE_TIMEOUT-idleTime);
+                    } catch (InterruptedException e) {
+                        // Check the queue again
+                    } finally {
+                        idleCount--;
+                    }
+                }
+
+                request = (ImageServerRequest) queue.removeFirst();
+
+                // Wake up any producers waiting for room in the queue.
+                notifyAll();
+            }
+
+            request.run();
+        }
+    }
+}
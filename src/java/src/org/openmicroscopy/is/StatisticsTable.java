@@ -0,0 +1,397 @@
+/*
+ * org.openmicroscopy.is.StatisticsTable
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+
+
+
+
+package org.openmicroscopy.is;
+
+/**
+ * <p>Stores the plane or stack statistics of a pixels file in
+ * columnar form.  Each statistic is held in a single flat
+ * <code>double</code> array, which contains one entry per plane (or
+ * per stack); the entry for a given plane is found with the {@link
+ * #getIndex} method.  The planes are stored in the same order that
+ * the image server reports them: Z varies fastest, then C, then T.
+ * For stack statistics, the Z size is 1.</p>
+ *
+ * <p>Only the statistics which have been asked for are loaded.  A
+ * table is created by the {@link ImageServer#getPlaneStatisticsTable}
+ * and {@link ImageServer#getStackStatisticsTable} methods, which
+ * cache it for each pixels file; asking for more statistics later
+ * fills in the missing columns of the same table.</p>
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <i>(Internal: $Revision$ $Date$)</i>
+ * @since OME2.2
+ * @see PlaneStatistics
+ * @see StackStatistics
+ */
+
+public class StatisticsTable
+{
+    public static final int MINIMUM = 0;
+    public static final int MAXIMUM = 1;
+    public static final int MEAN = 2;
+    public static final int SIGMA = 3;
+    public static final int GEOMETRIC_MEAN = 4;
+    public static final int GEOMETRIC_SIGMA = 5;
+    public static final int CENTROID_X = 6;
+    public static final int CENTROID_Y = 7;
+
+    /**
+     * The Z centroid of each stack.  This statistic is not available
+     * for planes.
+     */
+    public static final int CENTROID_Z = 8;
+
+    public static final int SUM_I = 9;
+    public static final int SUM_I2 = 10;
+    public static final int SUM_LOG_I = 11;
+    public static final int SUM_XI = 12;
+    public static final int SUM_YI = 13;
+    public static final int SUM_ZI = 14;
+
+    /**
+     * The number of different statistics.
+     */
+    public static final int STATISTIC_COUNT = 15;
+
+    private static final String[] STATISTIC_NAMES =
+    { "minimum", "maximum", "mean", "sigma",
+      "geometricMean", "geometricSigma",
+      "centroidX", "centroidY", "centroidZ",
+      "sumI", "sumI2", "sumLogI", "sumXI", "sumYI", "sumZI" };
+
+    /**
+     * The statistics which are needed to interpret the black and
+     * white levels of a {@link CompositingSettings} object.
+     */
+    public static final int[] LEVEL_STATISTICS =
+    { MINIMUM, MAXIMUM, MEAN, SIGMA, GEOMETRIC_MEAN, GEOMETRIC_SIGMA };
+
+    private long pixelsID;
+    private boolean stack;
+    private int sizeZ, sizeC, sizeT;
+
+    /** The columns of the table, or <code>null</code> if not loaded. */
+    private double[][] columns = new double[STATISTIC_COUNT][];
+
+    /**
+     * <b>Non-public constructor:</b> Creates a new, empty table.
+     * Tables are created by the {@link ImageServer} class.
+     */
+    StatisticsTable(long pixelsID, boolean stack,
+                    int sizeZ, int sizeC, int sizeT)
+    {
+        super();
+        this.pixelsID = pixelsID;
+        this.stack = stack;
+        this.sizeZ = stack? 1: sizeZ;
+        this.sizeC = sizeC;
+        this.sizeT = sizeT;
+    }
+
+    /**
+     * Returns the name of the specified statistic.
+     */
+    public static String getStatisticName(int statistic)
+    {
+        checkStatistic(statistic);
+        return STATISTIC_NAMES[statistic];
+    }
+
+    /**
+     * Returns the image server ID of the pixels file.
+     */
+    public long getPixelsID() { return pixelsID; }
+
+    /**
+     * Returns whether this table contains stack statistics, rather
+     * than plane statistics.
+     */
+    public boolean isStack() { return stack; }
+
+    /**
+     * Returns the Z size of the table, which is 1 for stack
+     * statistics.
+     */
+    public int getSizeZ() { return sizeZ; }
+
+    public int getSizeC() { return sizeC; }
+
+    public int getSizeT() { return sizeT; }
+
+    /**
+     * Returns the number of entries in each column.
+     */
+    public int getEntryCount() { return sizeZ*sizeC*sizeT; }
+
+    /**
+     * Returns the index of the specified plane in each column.  For
+     * stack statistics, <code>theZ</code> must be 0.
+     */
+    public int getIndex(int theZ, int theC, int theT)
+    {
+        if (theZ < 0 || theZ >= sizeZ ||
+            theC < 0 || theC >= sizeC ||
+            theT < 0 || theT >= sizeT)
+            throw new IndexOutOfBoundsException("("+theZ+","+theC+","+theT+
+                                                ") is not in the table");
+        return (theT*sizeC + theC)*sizeZ + theZ;
+    }
+
+    /**
+     * Returns whether the specified statistic has been loaded.
+     */
+    public synchronized boolean isLoaded(int statistic)
+    {
+        checkStatistic(statistic);
+        return columns[statistic] != null;
+    }
+
+    /**
+     * Returns whether all of the specified statistics have been
+     * loaded.  A <code>null</code> array specifies all of the
+     * statistics.
+     */
+    public synchronized boolean isLoaded(int[] statistics)
+    {
+        return getMissing(statistics).length == 0;
+    }
+
+    /**
+     * Returns the column of the specified statistic.  The returned
+     * array is shared, and must not be modified.
+     *
+     * @throws IllegalStateException if the statistic has not been
+     * loaded
+     */
+    public synchronized double[] getColumn(int statistic)
+    {
+        checkStatistic(statistic);
+        double[] column = columns[statistic];
+        if (column == null)
+            throw new IllegalStateException(STATISTIC_NAMES[statistic]+
+                                            " has not been loaded");
+        return column;
+    }
+
+    /**
+     * Returns the value of a statistic for the specified plane.
+     */
+    public double get(int statistic, int theZ, int theC, int theT)
+    {
+        return getColumn(statistic)[getIndex(theZ,theC,theT)];
+    }
+
+    /**
+     * Returns the value of a statistic for the specified stack.
+     */
+    public double get(int statistic, int theC, int theT)
+    {
+        return getColumn(statistic)[getIndex(0,theC,theT)];
+    }
+
+    /**
+     * Converts this table into a {@link PlaneStatistics} object.
+     * Statistics which have not been loaded are <code>null</code>.
+     */
+    public synchronized PlaneStatistics toPlaneStatistics()
+    {
+        if (stack)
+            throw new IllegalStateException("Table contains stack statistics");
+
+        return new PlaneStatistics(toPlaneArray(MINIMUM),
+                                   toPlaneArray(MAXIMUM),
+                                   toPlaneArray(MEAN),
+                                   toPlaneArray(SIGMA),
+                                   toPlaneArray(GEOMETRIC_MEAN),
+                                   toPlaneArray(GEOMETRIC_SIGMA),
+                                   toPlaneArray(CENTROID_X),
+                                   toPlaneArray(CENTROID_Y),
+                                   toPlaneArray(SUM_I),
+                                   toPlaneArray(SUM_I2),
+                                   toPlaneArray(SUM_LOG_I),
+                                   toPlaneArray(SUM_XI),
+                                   toPlaneArray(SUM_YI),
+                                   toPlaneArray(SUM_ZI));
+    }
+
+    /**
+     * Converts this table into a {@link StackStatistics} object.
+     * Statistics which have not been loaded are <code>null</code>.
+     */
+    public synchronized StackStatistics toStackStatistics()
+    {
+        if (!stack)
+            throw new IllegalStateException("Table contains plane statistics");
+
+        return new StackStatistics(toStackArray(MINIMUM),
+                                   toStackArray(MAXIMUM),
+                                   toStackArray(MEAN),
+                                   toStackArray(SIGMA),
+                                   toStackArray(GEOMETRIC_MEAN),
+                                   toStackArray(GEOMETRIC_SIGMA),
+                                   toStackArray(CENTROID_X),
+                                   toStackArray(CENTROID_Y),
+                                   toStackArray(CENTROID_Z),
+                                   toStackArray(SUM_I),
+                                   toStackArray(SUM_I2),
+                                   toStackArray(SUM_LOG_I),
+                                   toStackArray(SUM_XI),
+                                   toStackArray(SUM_YI),
+                                   toStackArray(SUM_ZI));
+    }
+
+    /**
+     * Returns a {@link String} representation of this object.
+     */
+    public synchronized String toString()
+    {
+        int loaded = 0;
+        for (int i = 0; i < STATISTIC_COUNT; i++)
+            if (columns[i] != null) loaded++;
+        return "StatisticsTable ("+pixelsID+", "+
+            (stack? "stack": "plane")+", "+
+            sizeZ+"x"+sizeC+"x"+sizeT+", "+loaded+" statistics)";
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns which of the specified
+     * statistics have not been loaded yet.  A <code>null</code> array
+     * specifies all of the statistics which are available for this
+     * kind of table.
+     */
+    synchronized int[] getMissing(int[] statistics)
+    {
+        boolean all = (statistics == null);
+        if (all)
+        {
+            statistics = new int[STATISTIC_COUNT];
+            for (int i = 0; i < STATISTIC_COUNT; i++)
+                statistics[i] = i;
+        }
+
+        boolean[] missing = new boolean[STATISTIC_COUNT];
+        int count = 0;
+        for (int i = 0; i < statistics.length; i++)
+        {
+            int statistic = statistics[i];
+            checkStatistic(statistic);
+            if (!stack && statistic == CENTROID_Z)
+            {
+                if (!all)
+                    throw new IllegalArgumentException("centroidZ is not available for planes");
+                continue;
+            }
+            if (columns[statistic] == null && !missing[statistic])
+            {
+                missing[statistic] = true;
+                count++;
+            }
+        }
+
+        int[] result = new int[count];
+        count = 0;
+        for (int i = 0; i < STATISTIC_COUNT; i++)
+            if (missing[i]) result[count++] = i;
+        return result;
+    }
+
+    /**
+     * <b>Non-public method:</b> Stores a newly loaded column.
+     */
+    synchronized void setColumn(int statistic, double[] column)
+    {
+        if (column.length != getEntryCount())
+            throw new IllegalArgumentException("Column has the wrong length");
+        columns[statistic] = column;
+    }
+
+    /**
+     * <b>Non-public method:</b> Returns the number of bytes used by
+     * the loaded columns.
+     */
+    synchronized long getSize()
+    {
+        long size = 0;
+        for (int i = 0; i < STATISTIC_COUNT; i++)
+            if (columns[i] != null)
+                size += 8L*columns[i].length;
+        return size;
+    }
+
+    private double[][][] toPlaneArray(int statistic)
+    {
+        double[] column = columns[statistic];
+        if (column == null) return null;
+
+        double[][][] result = new double[sizeZ][sizeC][sizeT];
+        int index = 0;
+        for (int t = 0; t < sizeT; t++)
+            for (int c = 0; c < sizeC; c++)
+                for (int z = 0; z < sizeZ; z++)
+                    result[z][c][t] = column[index++];
+        return result;
+    }
+
+    private double[][] toStackArray(int statistic)
+    {
+        double[] column = columns[statistic];
+        if (column == null) return null;
+
+        double[][] result = new double[sizeC][sizeT];
+        int index = 0;
+        for (int t = 0; t < sizeT; t++)
+            for (int c = 0; c < sizeC; c++)
+                result[c][t] = column[index++];
+        return result;
+    }
+
+    private static void checkStatistic(int statistic)
+    {
+        if (statistic < 0 || statistic >= STATISTIC_COUNT)
+            throw new IllegalArgumentException("Invalid statistic "+statistic);
+    }
+}
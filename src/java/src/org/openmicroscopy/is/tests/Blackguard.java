@@ -58,6 +58,7 @@ public class Blackguard
     BlackguardControlFrame bcf = null;
     BlackguardImageFrame bif = null;
     ImageServer is = null;
+    LocalCompositor compositor = null;
 
     private Blackguard()
     {
@@ -93,7 +94,15 @@ public class Blackguard
             {
                 cs = createCompositingSettings();
                 pixelsID = Long.parseLong(bcf.tfPixelsID.getText());
-                image = is.getComposite(pixelsID,cs);
+                if (bcf.cbLocal.isSelected())
+                {
+                    if (compositor == null ||
+                        compositor.getPixelsID() != pixelsID)
+                        compositor = new LocalCompositor(is,pixelsID);
+                    image = compositor.composite(cs);
+                } else {
+                    image = is.getComposite(pixelsID,cs);
+                }
             } catch (Exception ex) {
                 ex.printStackTrace();
                 return;
@@ -121,6 +121,7 @@ public class BlackguardControlFrame
     JLabel jLabel14 = new JLabel();
     JPanel jPanel7 = new JPanel();
     JComboBox cbLevelBasis = new JComboBox(LEVEL_BASES);
+    JCheckBox cbLocal = new JCheckBox();
 
     private void jbInit()
     {
@@ -204,6 +205,7 @@ public class BlackguardControlFrame
         jPanel6.setLayout(flowLayout2);
         jLabel14.setText("Level basis");
         cbLevelBasis.setActionCommand("levelBasis");
+        cbLocal.setText("Composite locally");
         this.getContentPane().add(jPanel1, BorderLayout.CENTER);
         jPanel1.add(jPanel2,       new GridBagConstraints(1, 0, 1, 3, 0.0, 0.0
                                                           ,GridBagConstraints.NORTH, GridBagConstraints.NONE, new Insets(0, 0, 0, 0), 0, 0));
@@ -277,6 +279,7 @@ public class BlackguardControlFrame
                                                      ,GridBagConstraints.CENTER, GridBagConstraints.NONE, new Insets(0, 0, 0, 0), 0, 0));
         jPanel6.add(jLabel14, null);
         jPanel6.add(cbLevelBasis, null);
+        jPanel6.add(cbLocal, null);
     }
 
 }
@@ -0,0 +1,623 @@
+/*
+ * org.openmicroscopy.is.tests.FileUploadTest
+ *
+ *------------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 Open Microscopy Environment
+ *      Massachusetts Institute of Technology,
+ *      National Institutes of Health,
+ *      University of Dundee
+ *
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2.1 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public
+ *    License along with this library; if not, write to the Free Software
+ *    Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ *------------------------------------------------------------------------------
+ */
+
+
+
+
+/*------------------------------------------------------------------------------
+ *
+ * Written by:    agent <agent@local>
+ *
+ *------------------------------------------------------------------------------
+ */
+
+package org.openmicroscopy.is.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.openmicroscopy.is.FileUpload;
+import org.openmicroscopy.is.ImageServer;
+import org.openmicroscopy.is.ImageServerException;
+import org.openmicroscopy.is.UnknownMethodException;
+
+/**
+ * A test program for the {@link ImageServer#uploadFile(FileUpload)}
+ * method.  The uploads are sent over HTTP to a small fake image
+ * server, which keeps its files in memory and can be told to fail
+ * some of its next calls.  It checks that a chunked upload arrives
+ * intact, that an upload interrupted by failed <code>WriteFile</code>
+ * calls resumes with only the missing chunks, that a failed
+ * <code>FinishFile</code> call starts the upload over, that a failed
+ * verification is retried without finishing the file again, that an
+ * image server without <code>NewFile</code> is sent the file in one
+ * piece, and that any other <code>NewFile</code> error is reported
+ * rather than hidden by that fallback.  No image server is needed;
+ * the program exits with a non-zero status if a check fails.
+ *
+ * @author agent (agent@local)
+ * @version 2.2 <small><i>(Internal: $Revision$ $Date$)</i></small>
+ * @since OME2.2
+ */
+
+public class FileUploadTest
+{
+    private static final int  CHUNK_SIZE = 1000;
+
+    /**
+     * An image server which implements the upload methods of OMEIS,
+     * keeping its files in memory.  Each connection is answered by
+     * its own thread and then closed.
+     */
+    private static class FakeImageServer
+        implements Runnable
+    {
+        private ServerSocket  socket;
+
+        /** The contents of each file, keyed by file ID. */
+        private Map  files = new HashMap();
+        /** The IDs of the files which have not been finished. */
+        private Set  pending = new HashSet();
+        /** The number of calls to each method. */
+        private Map  calls = new HashMap();
+        /** The number of upcoming calls to each method which fail. */
+        private Map  failures = new HashMap();
+        /** The methods which the server reports that it lacks. */
+        private Set  unknown = new HashSet();
+        private long  nextID = 1;
+
+        FakeImageServer()
+            throws IOException
+        {
+            socket = new ServerSocket(0);
+            Thread thread = new Thread(this);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        String getURL()
+        {
+            return "http://localhost:"+socket.getLocalPort()+"/omeis";
+        }
+
+        synchronized void reset()
+        {
+            calls.clear();
+            failures.clear();
+            unknown.clear();
+        }
+
+        synchronized void fail(String method, int count)
+        {
+            failures.put(method,new Integer(count));
+        }
+
+        synchronized void removeMethod(String method)
+        {
+            unknown.add(method);
+        }
+
+        synchronized int getCalls(String method)
+        {
+            Integer count = (Integer) calls.get(method);
+            return (count == null)? 0: count.intValue();
+        }
+
+        synchronized byte[] getFile(long fileID)
+        {
+            Long key = new Long(fileID);
+            return pending.contains(key)? null: (byte[]) files.get(key);
+        }
+
+        public void run()
+        {
+            while (true)
+            {
+                final Socket connection;
+                try
+                {
+                    connection = socket.accept();
+                } catch (IOException e) {
+                    return;
+                }
+
+                Thread thread = new Thread(new Runnable()
+                    {
+                        public void run() { serve(connection); }
+                    });
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        private void serve(Socket connection)
+        {
+            try
+            {
+                InputStream in = connection.getInputStream();
+                String header = readHeader(in);
+                byte[] body = new byte[getHeaderInt(header,"Content-Length")];
+                int read = 0;
+                while (read < body.length)
+                {
+                    int count = in.read(body,read,body.length-read);
+                    if (count < 0)
+                        throw new IOException("Request was truncated");
+                    read += count;
+                }
+
+                Map parts = parseParts(header,body);
+                int status = 200;
+                String response;
+                try
+                {
+                    response = call(parts);
+                } catch (IllegalStateException e) {
+                    status = 500;
+                    response = e.getMessage();
+                }
+
+                byte[] bytes = response.getBytes("ISO-8859-1");
+                OutputStream out = connection.getOutputStream();
+                out.write(("HTTP/1.1 "+status+
+                           ((status == 200)? " OK": " Internal Server Error")+
+                           "\r\nContent-Type: text/plain"+
+                           "\r\nContent-Length: "+bytes.length+
+                           "\r\nConnection: close\r\n\r\n").
+                          getBytes("ISO-8859-1"));
+                out.write(bytes);
+                out.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                try { connection.close(); } catch (IOException e) {}
+            }
+        }
+
+        /**
+         * Performs a single call, returning its response.  Errors are
+         * thrown as {@link IllegalStateException}s, and returned as
+         * an HTTP error.
+         */
+        private synchronized String call(Map parts)
+        {
+            String method = new String((byte[]) parts.get("Method"));
+            calls.put(method,new Integer(getCalls(method)+1));
+
+            if (unknown.contains(method))
+                throw new IllegalStateException("Error calling "+method+
+                                                ": Method doesn't exist");
+
+            Integer failing = (Integer) failures.get(method);
+            boolean fail = (failing != null && failing.intValue() > 0);
+            if (fail)
+                failures.put(method,new Integer(failing.intValue()-1));
+
+            // A FinishFile call can fail after the file has been
+            // finished, which is the case a client can least recover
+            // from.
+            if (fail && !method.equals("FinishFile"))
+                throw new IllegalStateException("Error calling "+method);
+
+            String response;
+            if (method.equals("UploadFile"))
+            {
+                response = Long.toString(store((byte[]) parts.get("File")));
+            } else if (method.equals("NewFile")) {
+                int size = Integer.parseInt(getString(parts,"Size"));
+                long fileID = store(new byte[size]);
+                pending.add(new Long(fileID));
+                response = Long.toString(fileID);
+            } else if (method.equals("WriteFile")) {
+                byte[] file = getPending(parts);
+                byte[] buf = (byte[]) parts.get("File");
+                int offset = Integer.parseInt(getString(parts,"Offset"));
+                if (offset+buf.length > file.length)
+                    throw new IllegalStateException("Write past end of file");
+                System.arraycopy(buf,0,file,offset,buf.length);
+                response = digest(buf);
+            } else if (method.equals("FinishFile")) {
+                getPending(parts);
+                Long fileID = new Long(getString(parts,"FileID"));
+                pending.remove(fileID);
+                response = fileID.toString();
+            } else if (method.equals("FileSHA1")) {
+                Long fileID = new Long(getString(parts,"FileID"));
+                if (!files.containsKey(fileID) || pending.contains(fileID))
+                    throw new IllegalStateException("Unknown file");
+                response = digest((byte[]) files.get(fileID));
+            } else {
+                throw new IllegalStateException("Error calling "+method+
+                                                ": Method doesn't exist");
+            }
+
+            if (fail)
+                throw new IllegalStateException("Error calling "+method);
+            return response;
+        }
+
+        private long store(byte[] buf)
+        {
+            long fileID = nextID++;
+            files.put(new Long(fileID),buf);
+            return fileID;
+        }
+
+        private byte[] getPending(Map parts)
+        {
+            Long fileID = new Long(getString(parts,"FileID"));
+            if (!pending.contains(fileID))
+                throw new IllegalStateException("File "+fileID+" is not pending");
+            return (byte[]) files.get(fileID);
+        }
+
+        private static String getString(Map parts, String name)
+        {
+            return new String((byte[]) parts.get(name));
+        }
+
+        private static String readHeader(InputStream in)
+            throws IOException
+        {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            int matched = 0;
+            while (matched < 4)
+            {
+                int b = in.read();
+                if (b < 0)
+                    throw new IOException("Request header was truncated");
+                header.write(b);
+                if (b == "\r\n\r\n".charAt(matched))
+                    matched++;
+                else
+                    matched = (b == '\r')? 1: 0;
+            }
+            return header.toString("ISO-8859-1");
+        }
+
+        private static String getHeader(String header, String name)
+        {
+            String lower = header.toLowerCase();
+            int start = lower.indexOf("\r\n"+name.toLowerCase()+":");
+            if (start < 0)
+                throw new IllegalArgumentException("Missing "+name+" header");
+            start += name.length()+3;
+            return header.substring(start,header.indexOf("\r\n",start)).trim();
+        }
+
+        private static int getHeaderInt(String header, String name)
+        {
+            return Integer.parseInt(getHeader(header,name));
+        }
+
+        /**
+         * Splits a <code>multipart/form-data</code> request body into
+         * its parts, keyed by name.
+         */
+        private static Map parseParts(String header, byte[] body)
+            throws IOException
+        {
+            String type = getHeader(header,"Content-Type");
+            String boundary = type.substring(type.indexOf("boundary=")+9);
+            byte[] delimiter = ("\r\n--"+boundary).getBytes("ISO-8859-1");
+            byte[] separator = "\r\n\r\n".getBytes("ISO-8859-1");
+
+            // The first delimiter is not preceded by a line break.
+            Map parts = new HashMap();
+            int start = indexOf(body,delimiter,0,2)+delimiter.length-2;
+            while (body[start] != '-')
+            {
+                int end = indexOf(body,delimiter,start,0);
+                int data = indexOf(body,separator,start,0)+separator.length;
+                String headers = new String(body,start,data-start,"ISO-8859-1");
+                int nameStart = headers.indexOf("name=\"")+6;
+                String name = headers.substring(nameStart,
+                                                headers.indexOf('"',nameStart));
+
+                byte[] value = new byte[end-data];
+                System.arraycopy(body,data,value,0,value.length);
+                parts.put(name,value);
+                start = end+delimiter.length;
+            }
+            return parts;
+        }
+
+        /**
+         * Returns the position of the first occurrence of a pattern,
+         * skipping the first <code>skip</code> bytes of the pattern.
+         */
+        private static int indexOf(byte[] buf, byte[] pattern,
+                                   int from, int skip)
+            throws IOException
+        {
+            for (int i = from; i+pattern.length-skip <= buf.length; i++)
+            {
+                int j = skip;
+                while (j < pattern.length && buf[i+j-skip] == pattern[j])
+                    j++;
+                if (j == pattern.length)
+                    return i;
+            }
+            throw new IOException("Malformed multipart request");
+        }
+    }
+
+    private static int failures = 0;
+
+    private static void check(boolean condition, String message)
+    {
+        if (condition)
+        {
+            System.out.println("ok      "+message);
+        } else {
+            System.out.println("FAILED  "+message);
+            failures++;
+        }
+    }
+
+    private static String digest(byte[] buf)
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] hash = md.digest(buf);
+            StringBuffer hex = new StringBuffer();
+            for (int i = 0; i < hash.length; i++)
+            {
+                String digit = Integer.toHexString(hash[i] & 0xFF);
+                if (digit.length() == 1)
+                    hex.append('0');
+                hex.append(digit);
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new RuntimeException(e.toString());
+        }
+    }
+
+    private static File createFile(byte[] contents)
+        throws IOException
+    {
+        File file = File.createTempFile("upload",".dat");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static boolean arrived(FakeImageServer server, long fileID,
+                                   byte[] contents)
+    {
+        byte[] file = server.getFile(fileID);
+        if (file == null || file.length != contents.length)
+            return false;
+        for (int i = 0; i < file.length; i++)
+            if (file[i] != contents[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Uploads a file, returning the exception which the upload
+     * threw, or <code>null</code> if it succeeded.
+     */
+    private static Exception tryUpload(ImageServer is, FileUpload upload)
+    {
+        try
+        {
+            is.uploadFile(upload);
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    private static void testChunkedUpload(FakeImageServer server,
+                                          ImageServer is, byte[] contents)
+        throws Exception
+    {
+        server.reset();
+        FileUpload upload = new FileUpload(createFile(contents),CHUNK_SIZE);
+        long fileID = is.uploadFile(upload);
+
+        check(arrived(server,fileID,contents),
+              "a chunked upload arrives intact");
+        check(server.getCalls("NewFile") == 1 &&
+              server.getCalls("WriteFile") == upload.getChunkCount() &&
+              server.getCalls("FinishFile") == 1 &&
+              server.getCalls("FileSHA1") == 1 &&
+              server.getCalls("UploadFile") == 0,
+              "each chunk is written once, then finished and verified");
+
+        server.reset();
+        check(is.uploadFile(upload) == fileID &&
+              server.getCalls("FileSHA1") == 0,
+              "a finished upload returns its ID without any calls");
+    }
+
+    private static void testResume(FakeImageServer server,
+                                   ImageServer is, byte[] contents)
+        throws Exception
+    {
+        server.reset();
+        server.fail("WriteFile",2);
+        FileUpload upload = new FileUpload(createFile(contents),CHUNK_SIZE);
+        int chunks = upload.getChunkCount();
+
+        Exception error = tryUpload(is,upload);
+        check(error instanceof ImageServerException &&
+              upload.getUploadedChunkCount() == chunks-2 &&
+              server.getCalls("FinishFile") == 0,
+              "failed writes leave the other chunks recorded");
+
+        server.reset();
+        long fileID = is.uploadFile(upload);
+        check(server.getCalls("NewFile") == 0 &&
+              server.getCalls("WriteFile") == 2,
+              "the resumed upload sends only the missing chunks");
+        check(arrived(server,fileID,contents),
+              "the resumed upload arrives intact");
+    }
+
+    private static void testFailedFinish(FakeImageServer server,
+                                         ImageServer is, byte[] contents)
+        throws Exception
+    {
+        server.reset();
+        server.fail("FinishFile",1);
+        FileUpload upload = new FileUpload(createFile(contents),CHUNK_SIZE);
+
+        Exception error = tryUpload(is,upload);
+        check(error instanceof ImageServerException &&
+              upload.getPendingFileID() < 0 &&
+              upload.getUploadedChunkCount() == 0,
+              "a failed FinishFile call resets the upload");
+
+        server.reset();
+        error = tryUpload(is,upload);
+        check(error == null && server.getCalls("NewFile") == 1 &&
+              server.getCalls("WriteFile") == upload.getChunkCount(),
+              "the next attempt starts the upload over");
+        check(error == null && arrived(server,upload.getFileID(),contents),
+              "the restarted upload arrives intact");
+    }
+
+    private static void testFailedVerification(FakeImageServer server,
+                                               ImageServer is,
+                                               byte[] contents)
+        throws Exception
+    {
+        server.reset();
+        server.fail("FileSHA1",1);
+        FileUpload upload = new FileUpload(createFile(contents),CHUNK_SIZE);
+
+        Exception error = tryUpload(is,upload);
+        check(error instanceof ImageServerException && !upload.isFinished(),
+              "a failed verification fails the upload");
+
+        server.reset();
+        error = tryUpload(is,upload);
+        check(error == null &&
+              server.getCalls("NewFile") == 0 &&
+              server.getCalls("WriteFile") == 0 &&
+              server.getCalls("FinishFile") == 0 &&
+              server.getCalls("FileSHA1") == 1,
+              "only the verification is retried");
+        check(error == null && arrived(server,upload.getFileID(),contents),
+              "the verified upload arrived intact");
+    }
+
+    private static void testFallback(FakeImageServer server,
+                                     ImageServer is, byte[] contents)
+        throws Exception
+    {
+        server.reset();
+        server.removeMethod("NewFile");
+        FileUpload upload = new FileUpload(createFile(contents),CHUNK_SIZE);
+
+        Exception error = tryUpload(is,upload);
+        check(error == null && server.getCalls("UploadFile") == 1 &&
+              server.getCalls("WriteFile") == 0,
+              "a server without NewFile is sent the whole file");
+        check(error == null && arrived(server,upload.getFileID(),contents),
+              "the whole file arrives intact");
+
+        server.reset();
+        server.fail("NewFile",1);
+        upload = new FileUpload(createFile(contents),CHUNK_SIZE);
+        error = tryUpload(is,upload);
+        check(error instanceof ImageServerException &&
+              !(error instanceof UnknownMethodException) &&
+              server.getCalls("UploadFile") == 0,
+              "any other NewFile error is reported");
+
+        server.reset();
+        error = tryUpload(is,upload);
+        check(error == null && server.getCalls("NewFile") == 1 &&
+              arrived(server,upload.getFileID(),contents),
+              "the upload succeeds in chunks once NewFile works");
+    }
+
+    private static void testSmallFile(FakeImageServer server,
+                                      ImageServer is)
+        throws Exception
+    {
+        server.reset();
+        byte[] contents = "A file smaller than a chunk".getBytes();
+        FileUpload upload = new FileUpload(createFile(contents),CHUNK_SIZE);
+
+        long fileID = is.uploadFile(upload);
+        check(server.getCalls("UploadFile") == 1 &&
+              server.getCalls("NewFile") == 0 &&
+              arrived(server,fileID,contents),
+              "a file which fits in one chunk is sent in one piece");
+    }
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        FakeImageServer server = new FakeImageServer();
+        ImageServer is = ImageServer.getHTTPImageServer(server.getURL(),
+                                                        "session");
+
+        byte[] contents = new byte[10*CHUNK_SIZE+123];
+        new Random(42).nextBytes(contents);
+
+        testChunkedUpload(server,is,contents);
+        testResume(server,is,contents);
+        testFailedFinish(server,is,contents);
+        testFailedVerification(server,is,contents);
+        testFallback(server,is,contents);
+        testSmallFile(server,is);
+
+        if (failures > 0)
+        {
+            System.out.println(failures+" check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+}
@@ -420,6 +420,7 @@ JAVA
     if (!defined $class->{Superclass}) {
         print $dto_fh <<"JAVA";
 import org.openmicroscopy.ds.dto.MappedDTO;
+import org.openmicroscopy.ds.dto.DTOFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -430,6 +431,14 @@ public class ${dto_class}
     public ${dto_class}() { super(); }
     public ${dto_class}(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(${dto_class}.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ${dto_class}(); }
+            });
+    }
+
     public String getDTOTypeName() { return "${dtn_prefix}${int_class}"; }
     public Class getDTOType() { return ${int_class}.class; }
 
@@ -440,6 +449,8 @@ JAVA
 
         print $dto_fh <<"JAVA";
 import ${superpackage}.${superclass};
+import org.openmicroscopy.ds.dto.DTOFactory;
+import org.openmicroscopy.ds.dto.MappedDTO;
 import java.util.List;
 import java.util.Map;
 
@@ -450,6 +461,14 @@ public class ${dto_class}
     public ${dto_class}() { super(); }
     public ${dto_class}(Map elements) { super(elements); }
 
+    static
+    {
+        registerFactory(${dto_class}.class,new DTOFactory()
+            {
+                public MappedDTO newInstance() { return new ${dto_class}(); }
+            });
+    }
+
     public String getDTOTypeName() { return "${dtn_prefix}${int_class}"; }
     public Class getDTOType() { return ${int_class}.class; }
 
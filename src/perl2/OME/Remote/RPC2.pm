@@ -132,6 +132,10 @@ sub serve {
     }
 
     my $method = $call->{'method_name'};
+
+    if ($method eq 'system.multicall') {
+	return $self->serve_multicall($call->{'value'}[0]);
+    }
     
     if (!OME::Remote::Facade->hasMethod($method)) {
         return $self->encode_fault(3, "no such method \`$method'\n");
@@ -153,6 +157,66 @@ sub serve {
     return $response_xml;
 }
 
+# Executes each of the calls in a system.multicall request in turn.
+# Each call's result is returned as a one-element array, or as a fault
+# struct if the call failed; a failed call does not prevent the later
+# ones from running.
+
+sub serve_multicall {
+    my $self = shift; my $calls = shift;
+
+    if (ref($calls) ne 'ARRAY') {
+	return $self->encode_fault(5, "system.multicall expects an array of calls\n");
+    }
+
+    my @text;
+    push @text, <<EOF;
+<?xml version="1.0"$self->{'encoding_'}?>
+<methodResponse>
+<params>
+<param><value><array><data>
+EOF
+
+    foreach my $call (@$calls) {
+	my $method = (ref($call) eq 'HASH') ? $call->{'methodName'} : undef;
+	my $params = (ref($call) eq 'HASH') ? $call->{'params'} : undef;
+	$params = [] unless ref($params) eq 'ARRAY';
+
+	if (!defined $method || $method eq 'system.multicall' ||
+	    !OME::Remote::Facade->hasMethod($method)) {
+	    $method = '' unless defined $method;
+	    push @text, $self->_item({faultCode => 3,
+				      faultString => "no such method \`$method'\n"});
+	    next;
+	}
+
+	my $result;
+	eval { $result = OME::Remote::Facade->$method(@$params) };
+	if ($@) {
+	    push @text, $self->_item({faultCode => 4,
+				      faultString => "error executing RPC \`$method'.\n" . $@});
+	    next;
+	}
+
+	if (ref($result) eq 'OME::Remote::Response::XMLRPC') {
+	    # The result has already been serialized as a complete
+	    # response; pull its value out of it.
+	    my ($value) = ($$result =~ m{<param>\s*(.*?)\s*</param>}s);
+	    push @text, "<value><array><data>", $value, "</data></array></value>\n";
+	} else {
+	    push @text, $self->_array([$result]);
+	}
+    }
+
+    push @text, <<EOF;
+</data></array></value></param>
+</params>
+</methodResponse>
+EOF
+
+    return join('', @text);
+}
+
 sub _params {
     my $self = shift; my $array = shift;
 
@@ -656,7 +720,9 @@ array contains a hash with the two members `C<faultCode>' and
 
 `C<serve>' decodes `C<$request_xml>', looks up the called method name
 in the `C<$methods>' hash and calls it, and then encodes and returns
-the response as XML.
+the response as XML.  A `C<system.multicall>' request is executed by
+`C<serve_multicall>', which calls each of the requested methods in
+turn and returns an array of their results.
 
 =item $boolean_object = $coder->boolean($boolean);
 